@@ -23,6 +23,8 @@
  */
 package co.aikar.timings;
 
+import org.cloudburstmc.server.CloudServer;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -79,7 +81,7 @@ public class Timing implements AutoCloseable {
     }
 
     public Timing startTiming() {
-        if (!this.enabled) {
+        if (!this.enabled || !isPrimaryThread()) {
             return this;
         }
 
@@ -93,7 +95,7 @@ public class Timing implements AutoCloseable {
     }
 
     public void stopTiming() {
-        if (!this.enabled) {
+        if (!this.enabled || !isPrimaryThread()) {
             return;
         }
 
@@ -103,6 +105,30 @@ public class Timing implements AutoCloseable {
         }
     }
 
+    /**
+     * Timings are not thread safe, so only the main thread is recorded. Levels ticked in parallel are not included.
+     */
+    private static boolean isPrimaryThread() {
+        CloudServer server = CloudServer.getInstance();
+        return server == null || server.isPrimaryThread();
+    }
+
+    /**
+     * Records the total time of tasks which ran off the main thread, where {@link #startTiming()} is ignored. Has to be
+     * called by the main thread.
+     */
+    public void addSamples(int count, long totalNanos) {
+        if (!this.enabled || count == 0 || !isPrimaryThread()) {
+            return;
+        }
+        this.record.add(totalNanos, count);
+        if (!this.added) {
+            this.added = true;
+            this.timed = true;
+            TimingsManager.TIMINGS.add(this);
+        }
+    }
+
     public void abort() {
         if (this.enabled && this.timingDepth > 0) {
             this.start = 0;
@@ -34,7 +34,7 @@ class TimingData {
     private long lagTotalTime = 0;
 
     int curTickCount = 0;
-    int curTickTotal = 0;
+    long curTickTotal = 0;
 
     TimingData(int id) {
         this.id = id;
@@ -53,6 +53,11 @@ class TimingData {
         this.curTickTotal += diff;
     }
 
+    void add(long total, int count) {
+        this.curTickCount += count;
+        this.curTickTotal += total;
+    }
+
     void tick(boolean violated) {
         this.count += this.curTickCount;
         this.totalTime += this.curTickTotal;
@@ -31,6 +31,8 @@ import org.cloudburstmc.server.Bootstrap;
 import org.cloudburstmc.server.CloudServer;
 import org.cloudburstmc.server.command.ConsoleCommandSender;
 import org.cloudburstmc.server.locale.TranslationContainer;
+import org.cloudburstmc.server.network.LoginVerifier;
+import org.cloudburstmc.server.scheduler.AutoSaveScheduler;
 import org.cloudburstmc.server.timings.JsonUtil;
 import org.cloudburstmc.server.utils.TextFormat;
 
@@ -42,6 +44,7 @@ import java.net.InetAddress;
 import java.net.URL;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPOutputStream;
 
 import static co.aikar.timings.TimingsManager.HISTORY;
@@ -94,6 +97,19 @@ public class TimingsExport extends Thread {
         system.put("flags", String.join(" ", runtimeBean.getInputArguments()));
         system.set("gc", JsonUtil.mapToObject(ManagementFactory.getGarbageCollectorMXBeans(), (input) ->
                 new JsonUtil.JSONPair(input.getName(), JsonUtil.toArray(input.getCollectionCount(), input.getCollectionTime()))));
+        system.set("executors", JsonUtil.mapToObject(CloudServer.getInstance().getScheduler().getExecutors(), (executor) ->
+                new JsonUtil.JSONPair(executor.getName(), JsonUtil.toArray(executor.getThreads(), executor.getQueueSize(), executor.getCompleted()))));
+        LoginVerifier loginVerifier = CloudServer.getInstance().getLoginVerifier();
+        if (loginVerifier != null) {
+            system.set("login", JsonUtil.toArray(loginVerifier.getPending(), loginVerifier.getVerified(),
+                    loginVerifier.getFailed(), loginVerifier.getRejected(), TimeUnit.NANOSECONDS.toMillis(loginVerifier.getAverageLatencyNanos())));
+        }
+        AutoSaveScheduler autoSave = CloudServer.getInstance().getAutoSaveScheduler();
+        if (autoSave != null) {
+            system.set("autosave", JsonUtil.toArray(autoSave.getBacklog(), autoSave.getSaved(),
+                    TimeUnit.NANOSECONDS.toMillis(autoSave.getAverageLatencyNanos()),
+                    TimeUnit.NANOSECONDS.toMillis(autoSave.getLastCycleNanos())));
+        }
         out.set("system", system);
 
         TimingsHistory[] history = HISTORY.toArray(new TimingsHistory[HISTORY.size() + 1]);
@@ -102,6 +102,7 @@ open module org.cloudburstmc.server {
     exports org.cloudburstmc.server.level.biome;
     exports org.cloudburstmc.server.level.chunk;
     exports org.cloudburstmc.server.level.chunk.bitarray;
+    exports org.cloudburstmc.server.level.chunk.palette;
     exports org.cloudburstmc.server.level.feature;
     exports org.cloudburstmc.server.level.feature.tree;
     exports org.cloudburstmc.server.level.generator;
@@ -124,6 +125,7 @@ open module org.cloudburstmc.server {
     exports org.cloudburstmc.server.level.generator.standard.population.tree;
     exports org.cloudburstmc.server.level.generator.standard.registry;
     exports org.cloudburstmc.server.level.generator.standard.store;
+    exports org.cloudburstmc.server.level.light;
     exports org.cloudburstmc.server.level.manager;
     exports org.cloudburstmc.server.level.particle;
     exports org.cloudburstmc.server.level.provider;
@@ -48,9 +48,13 @@ import org.cloudburstmc.server.locale.TranslationContainer;
 import org.cloudburstmc.server.math.NukkitMath;
 import org.cloudburstmc.server.metrics.CloudMetrics;
 import org.cloudburstmc.server.network.BedrockInterface;
+import org.cloudburstmc.server.network.ClientBlobStore;
+import org.cloudburstmc.server.network.EncodedBatch;
+import org.cloudburstmc.server.network.LoginVerifier;
 import org.cloudburstmc.server.network.Network;
 import org.cloudburstmc.server.network.ProtocolInfo;
 import org.cloudburstmc.server.network.SourceInterface;
+import org.cloudburstmc.server.network.StaticPacketCache;
 import org.cloudburstmc.server.network.query.QueryHandler;
 import org.cloudburstmc.server.pack.PackManager;
 import org.cloudburstmc.server.permission.BanEntry;
@@ -58,9 +62,11 @@ import org.cloudburstmc.server.permission.BanList;
 import org.cloudburstmc.server.permission.CloudPermissionManager;
 import org.cloudburstmc.server.player.CloudPlayer;
 import org.cloudburstmc.server.player.OfflinePlayer;
+import org.cloudburstmc.server.player.manager.ChunkSendLimiter;
 import org.cloudburstmc.server.plugin.CloudPluginManager;
 import org.cloudburstmc.server.plugin.loader.JavaPluginLoader;
 import org.cloudburstmc.server.registry.*;
+import org.cloudburstmc.server.scheduler.AutoSaveScheduler;
 import org.cloudburstmc.server.scheduler.ServerScheduler;
 import org.cloudburstmc.server.scheduler.Task;
 import org.cloudburstmc.server.utils.*;
@@ -152,8 +158,19 @@ public class CloudServer implements Server {
 
     private Network network;
 
+    private ClientBlobStore blobStore;
+
+    private ChunkSendLimiter chunkSendLimiter;
+
+    private LoginVerifier loginVerifier;
+
+    private AutoSaveScheduler autoSaveScheduler;
+
+    private final StaticPacketCache staticPacketCache = new StaticPacketCache();
+
     private boolean networkCompressionAsync = true;
     public int networkCompressionLevel = 7;
+    private int broadcastThreshold = 8;
 
     private boolean upnpEnabled = false;
     private boolean autoTickRate = true;
@@ -431,12 +448,21 @@ public class CloudServer implements Server {
         System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", String.valueOf(parallelism));
         System.setProperty("java.util.concurrent.ForkJoinPool.common.exceptionHandler", "org.cloudburstmc.server.scheduler.ServerScheduler.ExceptionHandler");
         log.debug("Async pool parallelism: {}", parallelism == -1 ? "auto" : parallelism);
+        this.scheduler.initExecutors(getConfig().getSettings().getIoWorkers(),
+                getConfig().getSettings().getGenerationWorkers(), getConfig().getSettings().getNetworkWorkers(),
+                getConfig().getSettings().getLoginWorkers());
 
 //        this.networkZlibProvider = this.getConfig("network.zlib-provider", 2);
 //        Zlib.setProvider(this.networkZlibProvider);
 
         this.networkCompressionLevel = getConfig().getNetwork().getCompressionLevel();
         this.networkCompressionAsync = getConfig().getNetwork().isAsyncCompression();
+        this.broadcastThreshold = getConfig().getNetwork().getBroadcastThreshold();
+        this.blobStore = new ClientBlobStore(getConfig().getChunkSending().getBlobCacheSize() * 1024L * 1024L);
+        this.chunkSendLimiter = new ChunkSendLimiter(getConfig().getChunkSending().getBytesPerTick());
+        this.loginVerifier = new LoginVerifier(this.scheduler.getLoginExecutor(),
+                getConfig().getNetwork().getMaxPendingLogins(), getConfig().getNetwork().getLoginsPerMinute());
+        this.autoSaveScheduler = new AutoSaveScheduler(this, getConfig().getLevelSettings().getAutosaveTickBudget());
 
         this.autoTickRate = getConfig().getLevelSettings().isAutoTickRate();
         this.autoTickRateLimit = getConfig().getLevelSettings().getAutoTickRateLimit();
@@ -596,6 +622,11 @@ public class CloudServer implements Server {
         }
 
         try (Timing ignored = Timings.playerNetworkSendTimer.startTiming()) {
+            if (players.length >= this.broadcastThreshold) {
+                this.broadcastEncoded(players, packets);
+                return;
+            }
+
             for (Player p : players) {
                 if (p.isConnected()) {
                     for (BedrockPacket packet : packets) {
@@ -606,6 +637,49 @@ public class CloudServer implements Server {
         }
     }
 
+    /**
+     * Serializes and compresses the packets once and sends the same batch to every player which hasn't cancelled any
+     * of them.
+     */
+    private void broadcastEncoded(Player[] players, BedrockPacket[] packets) {
+        List<BedrockPacket> packetList = Arrays.asList(packets);
+        boolean[] allowed = new boolean[packets.length];
+        EncodedBatch batch = null;
+        try {
+            for (Player p : players) {
+                CloudPlayer player = (CloudPlayer) p;
+                if (!player.isConnected()) {
+                    continue;
+                }
+
+                boolean allAllowed = true;
+                for (int i = 0; i < packets.length; i++) {
+                    allAllowed &= allowed[i] = player.preparePacket(packets[i]);
+                }
+
+                if (allAllowed) {
+                    if (batch == null) {
+                        batch = player.encodeBatch(packetList);
+                    }
+                    if (player.sendBatch(batch)) {
+                        continue;
+                    }
+                }
+
+                // Some packets have been cancelled or the player uses another protocol version
+                for (int i = 0; i < packets.length; i++) {
+                    if (allowed[i]) {
+                        player.sendPacketInternal(packets[i]);
+                    }
+                }
+            }
+        } finally {
+            if (batch != null) {
+                batch.release();
+            }
+        }
+    }
+
     public boolean dispatchCommand(CommandSender sender, String commandLine) throws ServerException {
         // First we need to check if this command is on the main thread or not, if not, warn the user
         if (!this.isPrimaryThread()) {
@@ -659,6 +733,7 @@ public class CloudServer implements Server {
 
             log.debug("Unloading all levels");
             this.levelManager.close();
+            this.scheduler.shutdownExecutors();
 
             log.debug("Closing console");
             this.consoleThread.interrupt();
@@ -880,14 +955,12 @@ public class CloudServer implements Server {
         if (this.getAutoSave()) {
             try (Timing ignored = Timings.levelSaveTimer.startTiming()) {
                 for (Player player : new ArrayList<>(this.players.values())) {
-                    if (player.isOnline()) {
-                        player.save(true);
-                    } else if (!player.isConnected()) {
+                    if (!player.isOnline() && !player.isConnected()) {
                         this.removePlayer(player);
                     }
                 }
 
-                this.levelManager.save();
+                this.autoSaveScheduler.start(this.autoSaveTicks);
             }
         }
     }
@@ -926,6 +999,7 @@ public class CloudServer implements Server {
 
             this.levelManager.tick(this.tickCounter);
 
+            this.chunkSendLimiter.tick();
             for (Player player : new ArrayList<>(this.players.values())) {
                 ((CloudPlayer) player).checkNetwork();
             }
@@ -954,6 +1028,7 @@ public class CloudServer implements Server {
                 this.autoSaveTicker = 0;
                 this.doAutoSave();
             }
+            this.autoSaveScheduler.tick();
 
             if (this.sendUsageTicker > 0 && --this.sendUsageTicker == 0) {
                 this.sendUsageTicker = 6000;
@@ -1183,6 +1258,26 @@ public class CloudServer implements Server {
         return scheduler;
     }
 
+    public ClientBlobStore getBlobStore() {
+        return blobStore;
+    }
+
+    public ChunkSendLimiter getChunkSendLimiter() {
+        return chunkSendLimiter;
+    }
+
+    public LoginVerifier getLoginVerifier() {
+        return loginVerifier;
+    }
+
+    public AutoSaveScheduler getAutoSaveScheduler() {
+        return autoSaveScheduler;
+    }
+
+    public StaticPacketCache getStaticPacketCache() {
+        return staticPacketCache;
+    }
+
     public int getTick() {
         return tickCounter;
     }
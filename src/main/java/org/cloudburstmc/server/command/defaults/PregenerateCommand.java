@@ -0,0 +1,114 @@
+package org.cloudburstmc.server.command.defaults;
+
+import com.nukkitx.math.vector.Vector3f;
+import com.nukkitx.protocol.bedrock.data.command.CommandParamType;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.api.command.CommandSender;
+import org.cloudburstmc.server.CloudServer;
+import org.cloudburstmc.server.command.Command;
+import org.cloudburstmc.server.command.data.CommandData;
+import org.cloudburstmc.server.command.data.CommandParameter;
+import org.cloudburstmc.server.level.CloudLevel;
+import org.cloudburstmc.server.level.LevelManager;
+import org.cloudburstmc.server.level.Pregenerator;
+import org.cloudburstmc.server.utils.TextFormat;
+
+import java.io.IOException;
+
+/**
+ * Pre-generates the chunks of a square area of a level, or resumes, stops and shows the progress of it.
+ */
+@Log4j2
+public class PregenerateCommand extends Command {
+
+    public PregenerateCommand() {
+        super("pregenerate", CommandData.builder("pregenerate")
+                .setDescription("cloudburst.command.pregenerate.description")
+                .setUsageMessage("/pregenerate <start|resume|stop|status> [level] [radius] [centerX] [centerZ] [chunksInFlight]")
+                .setPermissions("cloudburst.command.pregenerate")
+                .setParameters(new CommandParameter[]{
+                        new CommandParameter("start|resume|stop|status"),
+                        new CommandParameter("level", true),
+                        new CommandParameter("radius", CommandParamType.INT, true),
+                        new CommandParameter("centerX", CommandParamType.INT, true),
+                        new CommandParameter("centerZ", CommandParamType.INT, true),
+                        new CommandParameter("chunksInFlight", CommandParamType.INT, true)
+                })
+                .build());
+    }
+
+    @Override
+    public boolean execute(CommandSender sender, String commandLabel, String[] args) {
+        if (!this.testPermission(sender)) {
+            return true;
+        }
+
+        if (args.length < 1) {
+            return false;
+        }
+
+        CloudServer server = (CloudServer) sender.getServer();
+        LevelManager levelManager = server.getLevelManager();
+        CloudLevel level = args.length > 1 ? server.getLevel(args[1]) : server.getDefaultLevel();
+        if (level == null) {
+            sender.sendMessage(TextFormat.RED + "Unknown level " + args[1]);
+            return true;
+        }
+
+        try {
+            switch (args[0].toLowerCase()) {
+                case "start": {
+                    if (args.length < 3) {
+                        return false;
+                    }
+                    Vector3f spawn = level.getSpawnLocation();
+                    int radius = Integer.parseInt(args[2]);
+                    int centerX = args.length > 3 ? Integer.parseInt(args[3]) : spawn.getFloorX();
+                    int centerZ = args.length > 4 ? Integer.parseInt(args[4]) : spawn.getFloorZ();
+                    int inFlight = args.length > 5 ? Integer.parseInt(args[5]) : 0;
+                    Pregenerator pregenerator = levelManager.pregenerate(level, centerX >> 4, centerZ >> 4,
+                            (radius + 15) >> 4, inFlight);
+                    sender.sendMessage(TextFormat.GREEN + "Pre-generating " + pregenerator.getTotal() + " chunks of level " + level.getId());
+                    return true;
+                }
+                case "resume": {
+                    int inFlight = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+                    Pregenerator pregenerator = levelManager.resumePregeneration(level, inFlight);
+                    if (pregenerator == null) {
+                        sender.sendMessage(TextFormat.RED + "Level " + level.getId() + " has no pre-generation to resume");
+                    } else {
+                        sender.sendMessage(TextFormat.GREEN + "Resumed pre-generation of level " + level.getId() + ": " + pregenerator.getProgress());
+                    }
+                    return true;
+                }
+                case "stop":
+                    if (levelManager.stopPregeneration(level)) {
+                        sender.sendMessage(TextFormat.GREEN + "Stopped pre-generation of level " + level.getId() + ", resume it with /pregenerate resume");
+                    } else {
+                        sender.sendMessage(TextFormat.RED + "Level " + level.getId() + " is not being pre-generated");
+                    }
+                    return true;
+                case "status": {
+                    Pregenerator pregenerator = levelManager.getPregenerator(level);
+                    if (pregenerator == null) {
+                        sender.sendMessage(TextFormat.RED + "Level " + level.getId() + " is not being pre-generated");
+                    } else {
+                        sender.sendMessage(TextFormat.YELLOW + "Pre-generating level " + level.getId() + ": " + TextFormat.GREEN + pregenerator.getProgress());
+                    }
+                    return true;
+                }
+                default:
+                    return false;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            sender.sendMessage(TextFormat.RED + e.getMessage());
+            return true;
+        } catch (IOException e) {
+            log.warn("Unable to read the pre-generation checkpoint of level {}", level.getId(), e);
+            sender.sendMessage(TextFormat.RED + "Unable to read the pre-generation checkpoint of level " + level.getId());
+            return true;
+        }
+    }
+}
@@ -6,7 +6,9 @@ import org.cloudburstmc.server.CloudServer;
 import org.cloudburstmc.server.command.Command;
 import org.cloudburstmc.server.command.data.CommandData;
 import org.cloudburstmc.server.level.CloudLevel;
+import org.cloudburstmc.server.level.manager.PopulationStats;
 import org.cloudburstmc.server.math.NukkitMath;
+import org.cloudburstmc.server.scheduler.AutoSaveScheduler;
 import org.cloudburstmc.server.utils.TextFormat;
 
 import java.util.Objects;
@@ -89,14 +91,24 @@ public class StatusCommand extends Command {
         sender.sendMessage(TextFormat.YELLOW + "Players: " + playerColor + server.getOnlinePlayers().size() + TextFormat.GREEN + " online, " +
                 TextFormat.RED + server.getMaxPlayers() + TextFormat.GREEN + " max. ");
 
+        AutoSaveScheduler autoSave = server.getAutoSaveScheduler();
+        sender.sendMessage(TextFormat.YELLOW + "Autosave: " + TextFormat.RED + autoSave.getBacklog() + TextFormat.GREEN +
+                " queued, " + TextFormat.YELLOW + NukkitMath.round(autoSave.getAverageLatencyNanos() / 1_000_000d, 2) +
+                TextFormat.GREEN + "ms per chunk, last run " + TextFormat.YELLOW +
+                NukkitMath.round(autoSave.getLastCycleNanos() / 1_000_000_000d, 1) + TextFormat.GREEN + "s");
+
         for (CloudLevel level : server.getLevels()) {
+            PopulationStats population = level.getPopulationStats();
             sender.sendMessage(
                     TextFormat.YELLOW + "World \"" + level.getId() + "\"" + (!Objects.equals(level.getId(), level.getName()) ? " (" + level.getName() + ")" : "") + ": " +
                             TextFormat.RED + level.getChunks().size() + TextFormat.GREEN + " chunks, " +
                             TextFormat.RED + level.getEntities().length + TextFormat.GREEN + " entities, " +
                             TextFormat.RED + level.getBlockEntities().size() + TextFormat.GREEN + " blockEntities." +
                             " Time " + ((level.getTickRate() > 1 || level.getTickRateTime() > 40) ? TextFormat.RED : TextFormat.YELLOW) + NukkitMath.round(level.getTickRateTime(), 2) + "ms" +
-                            (level.getTickRate() > 1 ? " (tick rate " + level.getTickRate() + ")" : "")
+                            (level.getTickRate() > 1 ? " (tick rate " + level.getTickRate() + ")" : "") +
+                            (population.getChunks() > 0 ? " Population " + TextFormat.YELLOW + NukkitMath.round(population.getChunksPerSecond(), 1) +
+                                    TextFormat.GREEN + " chunks/s, " + TextFormat.YELLOW + NukkitMath.round(population.getChunksPerSecondPerCore(), 1) +
+                                    TextFormat.GREEN + " per core" : "")
             );
         }
 
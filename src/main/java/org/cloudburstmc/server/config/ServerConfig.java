@@ -30,6 +30,15 @@ public class ServerConfig {
         @Builder.Default
         private int batchThreshold = 256;
 
+        @Builder.Default
+        private int broadcastThreshold = 8;
+
+        @Builder.Default
+        private int maxPendingLogins = 256;
+
+        @Builder.Default
+        private int loginsPerMinute = 0;
+
     }
 
     @Data
@@ -117,6 +126,18 @@ public class ServerConfig {
         @Builder.Default
         private int chunkTimeoutAfterLastAccess = 120;
 
+        @Builder.Default
+        private boolean parallelTicking = false;
+
+        @Builder.Default
+        private int tickThreads = 0;
+
+        @Builder.Default
+        private int pregenerationChunksInFlight = 64;
+
+        @Builder.Default
+        private int autosaveTickBudget = 5;
+
     }
 
     @Data
@@ -130,7 +151,13 @@ public class ServerConfig {
         private int maxChunkRadius = 10;
 
         @Builder.Default
-        private int perTick = 4;
+        private int perTick = 16;
+
+        @Builder.Default
+        private int bytesPerTick = 524288;
+
+        @Builder.Default
+        private int playerBytesPerTick = 131072;
 
         @Builder.Default
         private int spawnThreshold = 56;
@@ -138,6 +165,12 @@ public class ServerConfig {
         @Builder.Default
         private boolean cacheChunks = false;
 
+        @Builder.Default
+        private boolean clientBlobCache = true;
+
+        @Builder.Default
+        private int blobCacheSize = 64;
+
     }
 
     @Data
@@ -177,6 +210,18 @@ public class ServerConfig {
         @Builder.Default
         private String asyncWorkers = "auto";
 
+        @Builder.Default
+        private int ioWorkers = 2;
+
+        @Builder.Default
+        private int generationWorkers = 0;
+
+        @Builder.Default
+        private int networkWorkers = 0;
+
+        @Builder.Default
+        private int loginWorkers = 0;
+
         @Builder.Default
         private boolean deprecatedVerbose = true;
 
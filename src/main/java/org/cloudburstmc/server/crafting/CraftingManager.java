@@ -1,7 +1,9 @@
 package org.cloudburstmc.server.crafting;
 
+import com.nukkitx.protocol.bedrock.packet.CraftingDataPacket;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.api.item.ItemStack;
+import org.cloudburstmc.server.network.StaticPacketCache;
 import org.cloudburstmc.server.player.CloudPlayer;
 import org.cloudburstmc.server.registry.CloudRecipeRegistry;
 
@@ -18,7 +20,8 @@ public class CraftingManager {
     private CloudRecipeRegistry registry = CloudRecipeRegistry.get();
 
     public void sendRecipesTo(CloudPlayer player) {
-        player.sendPacket(registry.getNetworkData());
+        CraftingDataPacket packet = registry.getNetworkData();
+        player.sendStaticPacket(StaticPacketCache.Payload.CRAFTING_DATA, packet, packet);
     }
 
     private ItemStack[][] cloneItemMap(ItemStack[][] map) {
@@ -51,7 +51,9 @@ import org.cloudburstmc.server.block.behavior.BlockBehaviorLiquid;
 import org.cloudburstmc.server.block.behavior.BlockBehaviorNetherPortal;
 import org.cloudburstmc.server.entity.data.SyncedEntityData;
 import org.cloudburstmc.server.level.CloudLevel;
+import org.cloudburstmc.server.level.CollisionBoxes;
 import org.cloudburstmc.server.level.EnumLevel;
+import org.cloudburstmc.server.level.LevelManager;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.math.MathHelper;
 import org.cloudburstmc.server.math.NukkitMath;
@@ -65,6 +67,7 @@ import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -125,6 +128,8 @@ public abstract class BaseEntity implements Entity {
     public boolean invulnerable;
     protected CloudLevel level;
     public boolean closed = false;
+    // Teleports to other levels waiting for the levels to finish ticking
+    private final AtomicInteger pendingTeleports = new AtomicInteger();
     protected Entity vehicle;
     protected EntityDamageEvent lastDamageCause = null;
     protected int age = 0;
@@ -1421,6 +1426,33 @@ public abstract class BaseEntity implements Entity {
         return false;
     }
 
+    /**
+     * Levels may be ticked in parallel, so moving to another level from a level tick worker is delayed until no level
+     * is ticking anymore. Teleports from any other thread happen right away, as before.
+     *
+     * @return whether the teleport has been delayed
+     */
+    protected boolean deferLevelChange(Location location, PlayerTeleportEvent.TeleportCause cause) {
+        LevelManager levelManager = this.server.getLevelManager();
+        if (location.getLevel() == this.level || !levelManager.isParallelTicking() ||
+                levelManager.getTickingLevel() == null || this.server.isPrimaryThread()) {
+            return false;
+        }
+        this.pendingTeleports.incrementAndGet();
+        levelManager.executeAfterTick(() -> {
+            this.pendingTeleports.decrementAndGet();
+            this.teleport(location, cause);
+        });
+        return true;
+    }
+
+    /**
+     * @return whether a teleport to another level has been accepted but delayed until the levels finished ticking
+     */
+    public boolean isTeleportPending() {
+        return this.pendingTeleports.get() > 0;
+    }
+
     protected boolean switchLevel(CloudLevel targetLevel) {
         checkNotNull(targetLevel, "targetLevel");
         if (this.closed) {
@@ -1558,24 +1590,24 @@ public abstract class BaseEntity implements Entity {
 
                 AxisAlignedBB axisalignedbb = this.boundingBox.clone();
 
-                AxisAlignedBB[] list = this.level.getCollisionCubes(this, this.level.getTickRate() > 1 ? this.boundingBox.getOffsetBoundingBox(dx, dy, dz) : this.boundingBox.addCoord(dx, dy, dz), false, true);
+                CollisionBoxes list = this.level.getCollisionBoxes(this, this.level.getTickRate() > 1 ? this.boundingBox.getOffsetBoundingBox(dx, dy, dz) : this.boundingBox.addCoord(dx, dy, dz), true);
 
-                for (AxisAlignedBB bb : list) {
-                    dy = bb.calculateYOffset(this.boundingBox, dy);
+                for (int i = 0; i < list.size(); i++) {
+                    dy = list.get(i).calculateYOffset(this.boundingBox, dy);
                 }
 
                 this.boundingBox.offset(0, dy, 0);
 
                 boolean fallingFlag = (this.onGround || (dy != movY && movY < 0));
 
-                for (AxisAlignedBB bb : list) {
-                    dx = bb.calculateXOffset(this.boundingBox, dx);
+                for (int i = 0; i < list.size(); i++) {
+                    dx = list.get(i).calculateXOffset(this.boundingBox, dx);
                 }
 
                 this.boundingBox.offset(dx, 0, 0);
 
-                for (AxisAlignedBB bb : list) {
-                    dz = bb.calculateZOffset(this.boundingBox, dz);
+                for (int i = 0; i < list.size(); i++) {
+                    dz = list.get(i).calculateZOffset(this.boundingBox, dz);
                 }
 
                 this.boundingBox.offset(0, 0, dz);
@@ -1592,22 +1624,22 @@ public abstract class BaseEntity implements Entity {
 
                     this.boundingBox.setBB(axisalignedbb);
 
-                    list = this.level.getCollisionCubes(this, this.boundingBox.addCoord(dx, dy, dz), false);
+                    list = this.level.getCollisionBoxes(this, this.boundingBox.addCoord(dx, dy, dz), false);
 
-                    for (AxisAlignedBB bb : list) {
-                        dy = bb.calculateYOffset(this.boundingBox, dy);
+                    for (int i = 0; i < list.size(); i++) {
+                        dy = list.get(i).calculateYOffset(this.boundingBox, dy);
                     }
 
                     this.boundingBox.offset(0, dy, 0);
 
-                    for (AxisAlignedBB bb : list) {
-                        dx = bb.calculateXOffset(this.boundingBox, dx);
+                    for (int i = 0; i < list.size(); i++) {
+                        dx = list.get(i).calculateXOffset(this.boundingBox, dx);
                     }
 
                     this.boundingBox.offset(dx, 0, 0);
 
-                    for (AxisAlignedBB bb : list) {
-                        dz = bb.calculateZOffset(this.boundingBox, dz);
+                    for (int i = 0; i < list.size(); i++) {
+                        dz = list.get(i).calculateZOffset(this.boundingBox, dz);
                     }
 
                     this.boundingBox.offset(0, 0, dz);
@@ -1764,6 +1796,10 @@ public abstract class BaseEntity implements Entity {
     }
 
     protected void checkChunks() {
+        if (!this.closed) {
+            this.level.getEntityIndex().update(this);
+        }
+
         Vector3f pos = this.getPosition();
         if (this.chunk == null || (this.chunk.getX() != pos.getFloorX() >> 4 || this.chunk.getZ() != pos.getFloorZ() >> 4)) {
             if (this.chunk != null) {
@@ -1817,7 +1853,7 @@ public abstract class BaseEntity implements Entity {
     }
 
     public boolean setMotion(Vector3f motion) {
-        if (!this.justCreated) {
+        if (!this.justCreated && this.server.getEventManager().hasListeners(EntityMotionEvent.class)) {
             EntityMotionEvent ev = new EntityMotionEvent(this, motion);
             this.server.getEventManager().fire(ev);
             if (ev.isCancelled()) {
@@ -1864,7 +1900,15 @@ public abstract class BaseEntity implements Entity {
         return this.teleport(location, PlayerTeleportEvent.TeleportCause.PLUGIN);
     }
 
+    /**
+     * @return false if the teleport was cancelled, true if it happened or has been delayed until the levels finished
+     * ticking, see {@link #isTeleportPending()}
+     */
     public boolean teleport(Location location, PlayerTeleportEvent.TeleportCause cause) {
+        if (this.deferLevelChange(location, cause)) {
+            return true;
+        }
+
         float yaw = location.getYaw();
         float pitch = location.getPitch();
 
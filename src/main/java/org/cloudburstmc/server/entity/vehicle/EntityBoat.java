@@ -192,9 +192,11 @@ public class EntityBoat extends EntityVehicle implements Boat {
             Location from = Location.from(this.lastPosition, lastYaw, lastPitch, this.getLevel());
             Location to = Location.from(this.position, this.yaw, this.pitch, this.getLevel());
 
-            this.getServer().getEventManager().fire(new VehicleUpdateEvent(this));
+            if (this.getServer().getEventManager().hasListeners(VehicleUpdateEvent.class)) {
+                this.getServer().getEventManager().fire(new VehicleUpdateEvent(this));
+            }
 
-            if (!from.equals(to)) {
+            if (!from.equals(to) && this.getServer().getEventManager().hasListeners(VehicleMoveEvent.class)) {
                 this.getServer().getEventManager().fire(new VehicleMoveEvent(this, from, to));
             }
 
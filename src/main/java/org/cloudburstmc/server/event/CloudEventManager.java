@@ -9,7 +9,8 @@ import org.cloudburstmc.api.event.EventManager;
 import org.cloudburstmc.api.event.Listener;
 import org.cloudburstmc.api.plugin.PluginContainer;
 import org.cloudburstmc.api.plugin.PluginManager;
-import org.cloudburstmc.server.event.firehandler.ReflectionEventFireHandler;
+import org.cloudburstmc.server.event.firehandler.EventExecutor;
+import org.cloudburstmc.server.event.firehandler.GeneratedEventFireHandler;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -29,6 +30,8 @@ public class CloudEventManager implements EventManager {
     private final Map<PluginContainer, Set<Object>> listenersByPlugin = new IdentityHashMap<>();
     private final Object registerLock = new Object();
     private volatile Map<Class<? extends Event>, EventFireHandler> eventHandlers = Collections.emptyMap();
+    // Executors of the baked listener methods, kept so baking again doesn't generate them again
+    private Map<Method, EventExecutor> executors = Collections.emptyMap();
 
     private final PluginManager pluginManager;
 
@@ -86,6 +89,17 @@ public class CloudEventManager implements EventManager {
         }
     }
 
+    /**
+     * Whether any listener would receive an event of the given class. Hot call sites check this before creating their
+     * event, firing an event nobody listens to is a waste of the allocation.
+     *
+     * @param eventClass exact class of the event, listeners of super classes don't receive it
+     * @return false if firing the event would do nothing
+     */
+    public boolean hasListeners(Class<? extends Event> eventClass) {
+        return eventHandlers.containsKey(eventClass);
+    }
+
     @Override
     public void deregisterListener(Object listener) {
         checkNotNull(listener, "listener");
@@ -136,7 +150,8 @@ public class CloudEventManager implements EventManager {
 
     @SuppressWarnings("unchecked")
     private void bakeHandlers() {
-        Map<Class<? extends Event>, List<ReflectionEventFireHandler.ListenerMethod>> listenerMap = new HashMap<>();
+        Map<Class<? extends Event>, List<GeneratedEventFireHandler.ListenerMethod>> listenerMap = new HashMap<>();
+        Map<Method, EventExecutor> executors = new HashMap<>();
 
         for (Entry<PluginContainer, Set<Object>> entry : listenersByPlugin.entrySet()) {
             var container = entry.getKey();
@@ -146,20 +161,27 @@ public class CloudEventManager implements EventManager {
                     if (method.isAnnotationPresent(Listener.class)) {
                         var event = (Class<? extends Event>) method.getParameterTypes()[0];
                         listenerMap.computeIfAbsent(event, (k) -> new ArrayList<>())
-                                .add(new ReflectionEventFireHandler.ListenerMethod(listener, method, Timings.getPluginEventTiming(event, listener, method, container)));
+                                .add(new GeneratedEventFireHandler.ListenerMethod(listener, method, Timings.getPluginEventTiming(event, listener, method, container),
+                                        executors.computeIfAbsent(method, this::getExecutor)));
                     }
                 }
             }
         }
 
-        for (List<ReflectionEventFireHandler.ListenerMethod> methods : listenerMap.values()) {
+        for (List<GeneratedEventFireHandler.ListenerMethod> methods : listenerMap.values()) {
             Collections.sort(methods);
         }
 
         Map<Class<? extends Event>, EventFireHandler> handlerMap = new HashMap<>();
-        for (Map.Entry<Class<? extends Event>, List<ReflectionEventFireHandler.ListenerMethod>> entry : listenerMap.entrySet()) {
-            handlerMap.put(entry.getKey(), new ReflectionEventFireHandler(entry.getValue()));
+        for (Map.Entry<Class<? extends Event>, List<GeneratedEventFireHandler.ListenerMethod>> entry : listenerMap.entrySet()) {
+            handlerMap.put(entry.getKey(), new GeneratedEventFireHandler(entry.getValue()));
         }
         this.eventHandlers = Collections.unmodifiableMap(handlerMap);
+        this.executors = executors;
+    }
+
+    private EventExecutor getExecutor(Method method) {
+        EventExecutor executor = this.executors.get(method);
+        return executor != null ? executor : GeneratedEventFireHandler.createExecutor(method);
     }
 }
@@ -0,0 +1,14 @@
+package org.cloudburstmc.server.event.firehandler;
+
+import org.cloudburstmc.api.event.Event;
+
+/**
+ * Calls a listener method with an event.
+ *
+ * @see GeneratedEventFireHandler#createExecutor(java.lang.reflect.Method)
+ */
+@FunctionalInterface
+public interface EventExecutor {
+
+    void execute(Object listener, Event event) throws Throwable;
+}
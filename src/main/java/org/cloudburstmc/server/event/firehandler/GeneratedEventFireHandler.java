@@ -0,0 +1,152 @@
+package org.cloudburstmc.server.event.firehandler;
+
+import co.aikar.timings.Timing;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.api.event.Event;
+import org.cloudburstmc.api.event.EventFireHandler;
+import org.cloudburstmc.api.event.Listener;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires an event to its listener methods through executors generated with {@link LambdaMetafactory}, so firing costs
+ * about as much as calling the listeners directly instead of a reflective call per listener.
+ */
+@Log4j2
+public class GeneratedEventFireHandler implements EventFireHandler {
+    private static final long LONG_RUNNING_EVENT_TIME = TimeUnit.MILLISECONDS.toNanos(5);
+    private final ListenerMethod[] methods;
+
+    public GeneratedEventFireHandler(Collection<ListenerMethod> methods) {
+        this.methods = methods.toArray(new ListenerMethod[0]);
+    }
+
+    @Override
+    public void fire(Event event) {
+        long start = System.nanoTime();
+        for (ListenerMethod method : methods) {
+            try {
+                method.run(event);
+            } catch (Throwable e) {
+                log.error("Exception occurred while executing method " + method + " for " + event, e);
+            }
+        }
+        long differenceTaken = System.nanoTime() - start;
+        if (differenceTaken >= LONG_RUNNING_EVENT_TIME) {
+            log.warn("Event {} took {} ms to fire", event, BigDecimal.valueOf(differenceTaken)
+                    .divide(new BigDecimal("1000000"), RoundingMode.HALF_UP)
+                    .setScale(2, RoundingMode.HALF_UP));
+        }
+    }
+
+    @Override
+    public List<EventFireHandler.ListenerMethod> getMethods() {
+        return Collections.unmodifiableList(Arrays.asList(methods.clone()));
+    }
+
+    /**
+     * Creates an executor calling the method through a class generated by {@link LambdaMetafactory}. Falls back to
+     * reflection for static methods or if the class can't be generated.
+     */
+    public static EventExecutor createExecutor(Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            return createReflectiveExecutor(method);
+        }
+        try {
+            Class<?> listenerClass = method.getDeclaringClass();
+            // Listeners of plugins are usually in unnamed modules, which this module doesn't read by default
+            EventExecutor.class.getModule().addReads(listenerClass.getModule());
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(listenerClass, MethodHandles.lookup());
+            MethodHandle handle = lookup.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(lookup, "execute",
+                    MethodType.methodType(EventExecutor.class),
+                    MethodType.methodType(void.class, Object.class, Event.class),
+                    handle,
+                    handle.type().changeReturnType(void.class));
+            return (EventExecutor) site.getTarget().invokeExact();
+        } catch (Throwable t) {
+            log.debug("Unable to generate executor of {}, using reflection", method, t);
+            return createReflectiveExecutor(method);
+        }
+    }
+
+    public static EventExecutor createReflectiveExecutor(Method method) {
+        return (listener, event) -> {
+            try {
+                method.invoke(listener, event);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    public static class ListenerMethod implements EventFireHandler.ListenerMethod {
+
+        private final Object listener;
+        private final Method method;
+        private final Timing timing;
+        private final EventExecutor executor;
+
+        public ListenerMethod(Object listener, Method method, Timing timing) {
+            this(listener, method, timing, createExecutor(method));
+        }
+
+        public ListenerMethod(Object listener, Method method, Timing timing, EventExecutor executor) {
+            this.listener = listener;
+            this.method = method;
+            this.timing = timing;
+            this.executor = executor;
+        }
+
+        public void run(Event event) throws Throwable {
+            try (Timing t = this.timing.startTiming()) {
+                executor.execute(listener, event);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return listener.getClass().getName() + "#" + method.getName();
+        }
+
+        @Override
+        public Object getListener() {
+            return listener;
+        }
+
+        @Override
+        public Method getMethod() {
+            return method;
+        }
+
+        @Override
+        public int compareTo(@Nonnull EventFireHandler.ListenerMethod o) {
+            Listener thisListener = getMethod().getAnnotation(Listener.class);
+            if (listener == null) {
+                return -1;
+            }
+
+            Listener thatListener = o.getMethod().getAnnotation(Listener.class);
+            if (thatListener == null) {
+                return 1;
+            }
+
+            return Integer.compare(thisListener.priority().ordinal(), thatListener.priority().ordinal());
+        }
+    }
+}
@@ -15,6 +15,7 @@ import org.cloudburstmc.api.item.ItemStack;
 import org.cloudburstmc.api.player.Player;
 import org.cloudburstmc.server.CloudServer;
 import org.cloudburstmc.server.item.CloudItemStack;
+import org.cloudburstmc.server.network.StaticPacketCache;
 import org.cloudburstmc.server.player.CloudPlayer;
 import org.cloudburstmc.server.registry.CloudItemRegistry;
 
@@ -292,16 +293,14 @@ public class CloudPlayerInventory extends CloudCreatureInventory implements Play
     public void sendCreativeContents() {
         CloudPlayer p = this.getHolder();
 
-        CreativeContentPacket pk;
-
         if (!p.isSpectator()) {
-            pk = CloudItemRegistry.get().getCreativeContent();
+            CreativeContentPacket pk = CloudItemRegistry.get().getCreativeContent();
+            p.sendStaticPacket(StaticPacketCache.Payload.CREATIVE_CONTENT, pk, pk);
         } else {
-            pk = new CreativeContentPacket();
+            CreativeContentPacket pk = new CreativeContentPacket();
             pk.setContents(new ItemData[0]);
+            p.sendPacket(pk);
         }
-
-        p.sendPacket(pk);
     }
 
     @Override
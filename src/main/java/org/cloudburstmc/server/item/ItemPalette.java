@@ -82,6 +82,7 @@ public class ItemPalette {
 
     private final AtomicInteger runtimeIdAllocator = new AtomicInteger(itemEntries.size());
     private volatile CreativeContentPacket creativeContentPacket;
+    private volatile List<StartGamePacket.ItemEntry> itemPalette;
     private final List<ItemData> creativeItems = new ArrayList<>();
 
     public ItemPalette(CloudItemRegistry registry) {
@@ -97,6 +98,7 @@ public class ItemPalette {
             idRuntimeMap.putIfAbsent(identifier, runtimeId);
 
             itemEntries.put(identifier, new StartGamePacket.ItemEntry(identifier.toString(), (short) runtimeId));
+            this.itemPalette = null;
             return runtimeId;
         }
         return -1;
@@ -141,7 +143,11 @@ public class ItemPalette {
     }
 
     public List<StartGamePacket.ItemEntry> getItemPalette() {
-        return ImmutableList.copyOf(itemEntries.values());
+        List<StartGamePacket.ItemEntry> itemPalette = this.itemPalette;
+        if (itemPalette == null) {
+            this.itemPalette = itemPalette = ImmutableList.copyOf(itemEntries.values());
+        }
+        return itemPalette;
     }
 
     public ImmutableList<Identifier> getItemIds() {
@@ -0,0 +1,261 @@
+package org.cloudburstmc.server.level;
+
+import com.nukkitx.math.vector.Vector3i;
+import com.nukkitx.protocol.bedrock.BedrockPacket;
+import com.nukkitx.protocol.bedrock.data.BlockChangeEntry;
+import com.nukkitx.protocol.bedrock.packet.UpdateBlockPacket;
+import com.nukkitx.protocol.bedrock.packet.UpdateSubChunkBlocksPacket;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.cloudburstmc.api.player.Player;
+import org.cloudburstmc.server.CloudServer;
+import org.cloudburstmc.server.block.BlockPalette;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.CloudChunkSection;
+import org.cloudburstmc.server.player.CloudPlayer;
+import org.cloudburstmc.server.utils.VarInt;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the blocks changed in a level, per sub-chunk and block layer, until they are sent to the players of their
+ * chunks at the end of the tick.
+ * <p>
+ * Sub-chunks with up to {@value #BATCH_THRESHOLD} changes are sent as single block updates, only for the layers that
+ * changed. Past that, the changes of a chunk are sent as one {@link UpdateSubChunkBlocksPacket} per sub-chunk, unless
+ * resending the whole chunk takes fewer bytes. Chunks with more changes than the tracker keeps are always resent.
+ */
+public class BlockChangeTracker {
+
+    /**
+     * Sub-chunks with more changes than this are batched.
+     */
+    public static final int BATCH_THRESHOLD = 4;
+
+    // Neighbors and network, the bits of UpdateBlockPacket.FLAG_ALL
+    private static final int UPDATE_FLAGS = 0b11;
+    private static final int UPDATE_BLOCK_HEADER_SIZE = 1;
+    private static final int UPDATE_SUB_CHUNK_BLOCKS_HEADER_SIZE = 2;
+    private static final int LEVEL_CHUNK_HEADER_SIZE = 1;
+
+    private final int maxChanges;
+    private Long2ObjectMap<ChunkChanges> chunks = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * @param maxChanges changes to keep per chunk, chunks with more are resent
+     */
+    public BlockChangeTracker(int maxChanges) {
+        this.maxChanges = maxChanges;
+    }
+
+    public synchronized void add(int x, int y, int z, int layer) {
+        long key = CloudChunk.key(x >> 4, z >> 4);
+        ChunkChanges changes = this.chunks.get(key);
+        if (changes == null) {
+            changes = new ChunkChanges(key);
+            this.chunks.put(key, changes);
+        }
+        changes.add(x & 0xf, y, z & 0xf, layer, this.maxChanges);
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.chunks.isEmpty();
+    }
+
+    /**
+     * Sends the changes collected so far to the players of their chunks. Changes in chunks which aren't loaded or
+     * which no player has loaded are dropped.
+     */
+    public void send(CloudLevel level) {
+        Long2ObjectMap<ChunkChanges> chunks;
+        synchronized (this) {
+            if (this.chunks.isEmpty()) {
+                return;
+            }
+            chunks = this.chunks;
+            this.chunks = new Long2ObjectOpenHashMap<>();
+        }
+
+        for (ChunkChanges changes : chunks.values()) {
+            CloudChunk chunk = level.getLoadedChunk(CloudChunk.fromKeyX(changes.key), CloudChunk.fromKeyZ(changes.key));
+            if (chunk == null) {
+                continue;
+            }
+            Set<CloudPlayer> players = chunk.getPlayerLoaders();
+            if (players.isEmpty()) {
+                continue;
+            }
+
+            List<BedrockPacket> packets = changes.createPackets(chunk);
+            if (packets == null) {
+                for (CloudPlayer player : players) {
+                    player.onChunkChanged(chunk);
+                }
+            } else {
+                CloudServer.broadcastPackets(players.toArray(new Player[0]), packets.toArray(new BedrockPacket[0]));
+            }
+        }
+    }
+
+    /**
+     * Packs a position within a sub-chunk and its layer into the key changes are kept as.
+     */
+    static int change(int x, int y, int z, int layer) {
+        return layer << 12 | CloudChunkSection.blockIndex(x, y & 0xf, z);
+    }
+
+    static UpdateBlockPacket createUpdateBlock(CloudChunk chunk, int sectionY, int change) {
+        int x = change >> 8 & 0xf;
+        int y = sectionY << 4 | change & 0xf;
+        int z = change >> 4 & 0xf;
+        int layer = change >>> 12;
+
+        UpdateBlockPacket packet = new UpdateBlockPacket();
+        packet.setBlockPosition(Vector3i.from(chunk.getX() << 4 | x, y, chunk.getZ() << 4 | z));
+        packet.setDataLayer(layer);
+        packet.setRuntimeId(BlockPalette.INSTANCE.getRuntimeId(chunk.getBlock(x, y, z, layer)));
+        packet.getFlags().addAll(UpdateBlockPacket.FLAG_ALL);
+        return packet;
+    }
+
+    static UpdateSubChunkBlocksPacket createUpdateSubChunkBlocks(CloudChunk chunk, int sectionY, IntSet changes) {
+        UpdateSubChunkBlocksPacket packet = new UpdateSubChunkBlocksPacket();
+        packet.setChunkX(chunk.getX());
+        packet.setChunkY(sectionY);
+        packet.setChunkZ(chunk.getZ());
+
+        IntIterator iterator = changes.iterator();
+        while (iterator.hasNext()) {
+            int change = iterator.nextInt();
+            int x = change >> 8 & 0xf;
+            int y = sectionY << 4 | change & 0xf;
+            int z = change >> 4 & 0xf;
+            int layer = change >>> 12;
+
+            int runtimeId = BlockPalette.INSTANCE.getRuntimeId(chunk.getBlock(x, y, z, layer));
+            BlockChangeEntry entry = new BlockChangeEntry(Vector3i.from(chunk.getX() << 4 | x, y, chunk.getZ() << 4 | z),
+                    runtimeId, UPDATE_FLAGS, 0, BlockChangeEntry.MessageType.NONE);
+            (layer == 0 ? packet.getStandardBlocks() : packet.getExtraBlocks()).add(entry);
+        }
+        return packet;
+    }
+
+    static int updateBlockSize(UpdateBlockPacket packet) {
+        Vector3i position = packet.getBlockPosition();
+        return UPDATE_BLOCK_HEADER_SIZE + blockPositionSize(position.getX(), position.getY(), position.getZ()) +
+                VarInt.sizeOfUnsignedVarInt(packet.getRuntimeId()) + VarInt.sizeOfUnsignedVarInt(UPDATE_FLAGS) +
+                VarInt.sizeOfUnsignedVarInt(packet.getDataLayer());
+    }
+
+    static int updateSubChunkBlocksSize(UpdateSubChunkBlocksPacket packet) {
+        int size = UPDATE_SUB_CHUNK_BLOCKS_HEADER_SIZE + VarInt.sizeOfVarInt(packet.getChunkX()) +
+                VarInt.sizeOfUnsignedVarInt(packet.getChunkY()) + VarInt.sizeOfVarInt(packet.getChunkZ());
+        size += blockChangesSize(packet.getStandardBlocks());
+        size += blockChangesSize(packet.getExtraBlocks());
+        return size;
+    }
+
+    private static int blockChangesSize(List<BlockChangeEntry> entries) {
+        int size = VarInt.sizeOfUnsignedVarInt(entries.size());
+        for (BlockChangeEntry entry : entries) {
+            Vector3i position = entry.getPosition();
+            size += blockPositionSize(position.getX(), position.getY(), position.getZ()) +
+                    VarInt.sizeOfUnsignedVarInt(entry.getRuntimeId()) +
+                    VarInt.sizeOfUnsignedVarInt(entry.getUpdateFlags()) +
+                    VarInt.sizeOfUnsignedVarInt(entry.getMessageEntityId()) +
+                    VarInt.sizeOfUnsignedVarInt(entry.getMessageType().ordinal());
+        }
+        return size;
+    }
+
+    /**
+     * Gets the size of the chunk packet resending the chunk would take, leaving out block entities.
+     */
+    static int levelChunkSize(CloudChunk chunk) {
+        int data = chunk.getNetworkSize();
+        return LEVEL_CHUNK_HEADER_SIZE + VarInt.sizeOfVarInt(chunk.getX()) + VarInt.sizeOfVarInt(chunk.getZ()) +
+                VarInt.sizeOfUnsignedVarInt(CloudChunk.SECTION_COUNT) + 1 + // Sub-chunk count and caching
+                VarInt.sizeOfUnsignedVarInt(data) + data;
+    }
+
+    private static int blockPositionSize(int x, int y, int z) {
+        return VarInt.sizeOfVarInt(x) + VarInt.sizeOfUnsignedVarInt(y) + VarInt.sizeOfVarInt(z);
+    }
+
+    /**
+     * Changes of a single chunk. Positions are kept per sub-chunk as {@code layer << 12 | x << 8 | z << 4 | y}.
+     */
+    static final class ChunkChanges {
+        private final long key;
+        private final IntSet[] sections = new IntSet[CloudChunk.SECTION_COUNT];
+        private int size; // -1 once there are too many changes to keep
+
+        ChunkChanges(long key) {
+            this.key = key;
+        }
+
+        void add(int x, int y, int z, int layer, int maxChanges) {
+            if (this.size < 0) {
+                return;
+            }
+            IntSet section = this.sections[y >> 4];
+            if (section == null) {
+                section = new IntOpenHashSet();
+                this.sections[y >> 4] = section;
+            }
+            if (section.add(change(x, y, z, layer)) && ++this.size > maxChanges) {
+                this.size = -1;
+                Arrays.fill(this.sections, null);
+            }
+        }
+
+        /**
+         * Creates the packets sending these changes in the fewest bytes.
+         *
+         * @return packets to send, or {@code null} if the chunk should be resent instead
+         */
+        @Nullable
+        List<BedrockPacket> createPackets(CloudChunk chunk) {
+            if (this.size < 0) {
+                return null;
+            }
+
+            List<BedrockPacket> packets = new ArrayList<>();
+            int bytes = 0;
+            boolean batched = false;
+            for (int sectionY = 0; sectionY < this.sections.length; sectionY++) {
+                IntSet changes = this.sections[sectionY];
+                if (changes == null) {
+                    continue;
+                }
+
+                if (changes.size() <= BATCH_THRESHOLD) {
+                    IntIterator iterator = changes.iterator();
+                    while (iterator.hasNext()) {
+                        UpdateBlockPacket packet = createUpdateBlock(chunk, sectionY, iterator.nextInt());
+                        packets.add(packet);
+                        bytes += updateBlockSize(packet);
+                    }
+                } else {
+                    UpdateSubChunkBlocksPacket packet = createUpdateSubChunkBlocks(chunk, sectionY, changes);
+                    packets.add(packet);
+                    bytes += updateSubChunkBlocksSize(packet);
+                    batched = true;
+                }
+            }
+
+            // Single updates of a few sub-chunks always take less than a chunk
+            if (batched && bytes >= levelChunkSize(chunk)) {
+                return null;
+            }
+            return packets;
+        }
+    }
+}
@@ -20,9 +20,6 @@ import io.netty.buffer.ByteBuf;
 import it.unimi.dsi.fastutil.ints.*;
 import it.unimi.dsi.fastutil.longs.*;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
-import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
-import it.unimi.dsi.fastutil.shorts.ShortSet;
-import lombok.Synchronized;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.api.block.*;
 import org.cloudburstmc.api.block.behavior.BlockBehavior;
@@ -67,13 +64,15 @@ import org.cloudburstmc.server.block.BlockPalette;
 import org.cloudburstmc.server.block.CloudBlock;
 import org.cloudburstmc.server.block.behavior.BlockBehaviorLiquid;
 import org.cloudburstmc.server.block.behavior.BlockBehaviorRedstoneDiode;
-import org.cloudburstmc.server.block.util.BlockUtils;
 import org.cloudburstmc.server.blockentity.BaseBlockEntity;
 import org.cloudburstmc.server.entity.BaseEntity;
 import org.cloudburstmc.server.entity.projectile.EntityArrow;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.HeightMapType;
 import org.cloudburstmc.server.level.generator.Generator;
+import org.cloudburstmc.server.level.light.LightEngine;
 import org.cloudburstmc.server.level.manager.LevelChunkManager;
+import org.cloudburstmc.server.level.manager.PopulationStats;
 import org.cloudburstmc.server.level.particle.DestroyBlockParticle;
 import org.cloudburstmc.server.level.particle.Particle;
 import org.cloudburstmc.server.level.provider.LevelProvider;
@@ -85,9 +84,9 @@ import org.cloudburstmc.server.registry.CloudItemRegistry;
 import org.cloudburstmc.server.registry.EntityRegistry;
 import org.cloudburstmc.server.registry.GeneratorRegistry;
 import org.cloudburstmc.server.scheduler.BlockUpdateScheduler;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
 import org.cloudburstmc.server.timings.LevelTimings;
 import org.cloudburstmc.server.utils.BlockUpdateEntry;
-import org.cloudburstmc.server.utils.Hash;
 import org.cloudburstmc.server.utils.TextFormat;
 
 import javax.annotation.Nonnull;
@@ -95,6 +94,8 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -113,8 +114,8 @@ public class CloudLevel implements Level {
     public static final int DIMENSION_NETHER = 1;
     public static final int DIMENSION_THE_END = 2;
 
-    // Lower values use less memory
-    public static final int MAX_BLOCK_CACHE = 512;
+    // Chunks with more block changes in a tick are resent. Lower values use less memory
+    public static final int MAX_BLOCK_CACHE = 4096;
 
     // The blocks that can randomly tick
     private static final Set<Identifier> randomTickBlocks = Collections.newSetFromMap(new IdentityHashMap<>());
@@ -151,6 +152,8 @@ public class CloudLevel implements Level {
     private final Long2ObjectOpenHashMap<CloudPlayer> players = new Long2ObjectOpenHashMap<>();
 
     private final Long2ObjectOpenHashMap<Entity> entities = new Long2ObjectOpenHashMap<>();
+    private final EntityIndex entityIndex = new EntityIndex();
+    private final LongFunction<CloudChunk> loadedChunks = this::getLoadedChunk;
     private static final RemovalListener<Long, ByteBuf> cacheRemover = notification -> notification.getValue().release();
 
     private final ConcurrentLinkedQueue<BlockEntity> updateBlockEntities = new ConcurrentLinkedQueue<>();
@@ -168,19 +171,8 @@ public class CloudLevel implements Level {
     private final Long2ObjectOpenHashMap<Deque<BedrockPacket>> chunkPackets = new Long2ObjectOpenHashMap<>();
 
     public float skyLightSubtracted;
-    // Avoid OOM, gc'd references result in whole chunk being sent (possibly higher cpu)
-    private final Cache<Long, IntSet> changedBlocks = CacheBuilder.newBuilder().softValues().build();
-    //    private final Long2ObjectOpenHashMap<SoftReference<Map<Character, Object>>> changedBlocks = new Long2ObjectOpenHashMap<>();
-    // Storing the vector is redundant
-    private final Object changeBlocksPresent = new Object();
-    private final Long2ObjectMap<ShortSet> lightQueue = new Long2ObjectOpenHashMap<>();
-    // Storing extra blocks past 512 is redundant
-    private final Map<Character, Object> changeBlocksFullMap = new HashMap<Character, Object>() {
-        @Override
-        public int size() {
-            return Character.MAX_VALUE;
-        }
-    };
+    private final BlockChangeTracker blockChanges = new BlockChangeTracker(MAX_BLOCK_CACHE);
+    private final LightEngine lightEngine;
 
 
     private final BlockUpdateScheduler updateQueue;
@@ -208,6 +200,7 @@ public class CloudLevel implements Level {
     private int tickRate;
     public int tickRateTime = 0;
     public int tickRateCounter = 0;
+    private final LevelTickStats tickStats = new LevelTickStats();
 
     private final Long2ObjectOpenHashMap<Set<Player>> chunkPlayers = new Long2ObjectOpenHashMap<>();
     private final Cache<Long, ByteBuf> chunkCache = CacheBuilder.newBuilder()
@@ -278,6 +271,7 @@ public class CloudLevel implements Level {
         this.chunkTickList.clear();
         this.clearChunksOnTick = this.server.getConfig().getChunkTicking().isClearTickList();
         this.tickRate = 1;
+        this.lightEngine = new LightEngine(this, this.server.getScheduler().getGenerationExecutor());
         this.chunkManager = new LevelChunkManager(this);
 
         this.skyLightSubtracted = this.calculateSkylightSubtracted(1);
@@ -299,6 +293,14 @@ public class CloudLevel implements Level {
         this.tickRate = tickRate;
     }
 
+    public LevelTickStats getTickStats() {
+        return tickStats;
+    }
+
+    public PopulationStats getPopulationStats() {
+        return this.chunkManager.getPopulationStats();
+    }
+
     public void init() {
     }
 
@@ -583,9 +585,6 @@ public class CloudLevel implements Level {
 
     public void doTick(int currentTick) {
         try (Timing ignored = this.timings.doTick.startTiming()) {
-            synchronized (lightQueue) {
-                updateBlockLight(lightQueue);
-            }
             this.checkTime();
 
             if (currentTick % 600 == 0 && doDaylightCycle()) {
@@ -654,39 +653,7 @@ public class CloudLevel implements Level {
                     this.tickChunks();
                 }
 
-                synchronized (changedBlocks) {
-                    ConcurrentMap<Long, IntSet> changedBlocks = this.changedBlocks.asMap();
-                    if (!changedBlocks.isEmpty()) {
-                        if (!this.players.isEmpty()) {
-                            Iterator<Map.Entry<Long, IntSet>> iter = changedBlocks.entrySet().iterator();
-                            while (iter.hasNext()) {
-                                Map.Entry<Long, IntSet> entry = iter.next();
-                                long chunkKey = entry.getKey();
-                                IntSet blocks = entry.getValue();
-                                int chunkX = CloudChunk.fromKeyX(chunkKey);
-                                int chunkZ = CloudChunk.fromKeyZ(chunkKey);
-                                if (blocks.size() > MAX_BLOCK_CACHE) {
-                                    Chunk chunk = this.getLoadedChunk(chunkX, chunkZ);
-                                    if (chunk != null) {
-                                        for (Player p : this.getChunkPlayers(chunkX, chunkZ)) {
-                                            ((CloudPlayer) p).onChunkChanged(chunk);
-                                        }
-                                    }
-                                } else {
-                                    Collection<CloudPlayer> toSend = this.getChunkPlayers(chunkX, chunkZ);
-                                    Player[] playerArray = toSend.toArray(new Player[0]);
-                                    Block[] blocksArray = new Block[blocks.size()];
-                                    int i = 0;
-                                    for (int blockKey : blocks) {
-                                        blocksArray[i++] = this.getBlock(CloudChunk.fromKey(chunkKey, blockKey).toVector3()); //TODO: send layers separately
-                                    }
-                                    this.sendBlocks(playerArray, blocksArray, UpdateBlockPacket.FLAG_ALL);
-                                }
-                                iter.remove();
-                            }
-                        }
-                    }
-                }
+                this.blockChanges.send(this);
 
                 //this.processChunkRequest();
 
@@ -704,9 +671,10 @@ public class CloudLevel implements Level {
                             continue;
                         }
 
-                        for (BedrockPacket packet : this.chunkPackets.get(index)) {
-                            CloudServer.broadcastPacket(playerLoaders, packet);
-                        }
+                        // Sent as one batch so it only has to be encoded once for all loaders
+                        Deque<BedrockPacket> packets = this.chunkPackets.get(index);
+                        CloudServer.broadcastPackets(playerLoaders.toArray(new CloudPlayer[0]),
+                                packets.toArray(new BedrockPacket[0]));
                     }
                     this.chunkPackets.clear();
                 }
@@ -777,7 +745,7 @@ public class CloudLevel implements Level {
     }
 
     public Vector3f adjustPosToNearbyEntity(Vector3f pos) {
-        pos = Vector3f.from(pos.getX(), this.getHighestBlockAt(pos.getFloorX(), pos.getFloorZ()), pos.getZ());
+        pos = Vector3f.from(pos.getX(), this.getHeight(HeightMapType.MOTION_BLOCKING, pos.getFloorX(), pos.getFloorZ()), pos.getZ());
         AxisAlignedBB axisalignedbb = new SimpleAxisAlignedBB(pos, Vector3f.from(pos.getX(), 255, pos.getZ())).expand(3, 3, 3);
         List<Entity> list = new ArrayList<>();
 
@@ -866,10 +834,8 @@ public class CloudLevel implements Level {
             return false;
         }
 
-        this.server.getEventManager().fire(new LevelSaveEvent(this));
-
+        CompletableFuture<Void> dataFuture = this.saveLevelData();
         CompletableFuture<Void> chunksFuture = this.saveChunks();
-        CompletableFuture<Void> dataFuture = this.provider.saveLevelData(this.levelData);
 
         if (sync) {
             chunksFuture.join();
@@ -879,10 +845,22 @@ public class CloudLevel implements Level {
         return true;
     }
 
+    /**
+     * Saves the level data without any chunks.
+     */
+    public CompletableFuture<Void> saveLevelData() {
+        this.server.getEventManager().fire(new LevelSaveEvent(this));
+        return this.provider.saveLevelData(this.levelData);
+    }
+
     public CompletableFuture<Void> saveChunks() {
         return this.chunkManager.saveChunks();
     }
 
+    public CompletableFuture<Void> saveChunk(CloudChunk chunk) {
+        return this.chunkManager.saveChunk(chunk);
+    }
+
     private void tickChunks() {
         if (this.chunksPerTicks <= 0 || this.players.isEmpty()) {
             this.chunkTickList.clear();
@@ -1008,6 +986,7 @@ public class CloudLevel implements Level {
     }
 
     public void updateAround(int posX, int posY, int posZ) {
+        boolean fireEvents = this.server.getEventManager().hasListeners(BlockUpdateEvent.class);
         BlockUpdateEvent ev;
         Block block;
 
@@ -1017,11 +996,14 @@ public class CloudLevel implements Level {
                     if (x == posX && y == posY && z == posZ) continue;
                     block = this.getBlock(x, y, z);
                     if (block.getState().getType() != BlockTypes.AIR) {
-                        this.getServer().getEventManager().fire(
-                                ev = new BlockUpdateEvent(block));
-                        if (!ev.isCancelled()) {
-                            normalUpdateQueue.add(block);
+                        if (fireEvents) {
+                            this.getServer().getEventManager().fire(
+                                    ev = new BlockUpdateEvent(block));
+                            if (ev.isCancelled()) {
+                                continue;
+                            }
                         }
+                        normalUpdateQueue.add(block);
                     }
                 }
             }
@@ -1060,9 +1042,7 @@ public class CloudLevel implements Level {
 
         BlockUpdateEntry entry = new BlockUpdateEntry(pos, block, ((long) delay) + getCurrentTick(), priority);
 
-        if (!this.updateQueue.contains(entry)) {
-            this.updateQueue.add(entry);
-        }
+        this.updateQueue.add(entry);
     }
 
     @Override
@@ -1074,13 +1054,16 @@ public class CloudLevel implements Level {
         return this.updateQueue.contains(new BlockUpdateEntry(pos, getBlock(pos)));
     }
 
-    public Set<BlockUpdateEntry> getPendingBlockUpdates(CloudChunk chunk) {
-        int minX = (chunk.getX() << 4) - 2;
-        int maxX = minX + 16 + 2;
-        int minZ = (chunk.getZ() << 4) - 2;
-        int maxZ = minZ + 16 + 2;
+    /**
+     * @return the updates scheduled inside the chunk, each update belongs to exactly one chunk so they can be saved
+     * with it
+     */
+    public List<BlockUpdateEntry> getPendingBlockUpdates(CloudChunk chunk) {
+        return this.updateQueue.getPendingBlockUpdates(chunk.getX(), chunk.getZ());
+    }
 
-        return this.getPendingBlockUpdates(new SimpleAxisAlignedBB(minX, 0, minZ, maxX, 256, maxZ));
+    public boolean hasPendingBlockUpdates(CloudChunk chunk) {
+        return this.updateQueue.hasPendingBlockUpdates(chunk.getX(), chunk.getZ());
     }
 
     public Set<BlockUpdateEntry> getPendingBlockUpdates(AxisAlignedBB boundingBox) {
@@ -1141,36 +1124,25 @@ public class CloudLevel implements Level {
     }
 
     public AxisAlignedBB[] getCollisionCubes(Entity entity, AxisAlignedBB bb, boolean entities, boolean solidEntities) {
-        int minX = NukkitMath.floorDouble(bb.getMinX());
-        int minY = NukkitMath.floorDouble(bb.getMinY());
-        int minZ = NukkitMath.floorDouble(bb.getMinZ());
-        int maxX = NukkitMath.ceilDouble(bb.getMaxX());
-        int maxY = NukkitMath.ceilDouble(bb.getMaxY());
-        int maxZ = NukkitMath.ceilDouble(bb.getMaxZ());
-
-        List<AxisAlignedBB> collides = new ArrayList<>();
-
-        for (int z = minZ; z <= maxZ; ++z) {
-            for (int x = minX; x <= maxX; ++x) {
-                for (int y = minY; y <= maxY; ++y) {
-                    Block block = this.getBlock(x, y, z); //TODO: check loaded block
-                    BlockBehavior behavior = block.getState().getBehavior();
-                    if (!behavior.canPassThrough(block.getState()) && behavior.collidesWithBB(block, bb)) {
-                        collides.add(behavior.getBoundingBox(block));
-                    }
-                }
-            }
-        }
+        return this.getCollisionBoxes(entity, bb, solidEntities).toArray();
+    }
 
-        if (entities || solidEntities) {
-            for (Entity ent : this.getCollidingEntities(bb.grow(0.25f, 0.25f, 0.25f), entity)) {
-                if (solidEntities && !ent.canPassThrough()) {
-                    collides.add(ent.getBoundingBox().clone());
-                }
-            }
+    /**
+     * Gathers the collision boxes of the blocks and optionally the solid entities intersecting the given box without
+     * allocating. Chunks are never loaded, unloaded chunks collide as a whole.
+     *
+     * @param entity        entity to check collisions for, may be null
+     * @param bb            box to check
+     * @param solidEntities whether solid entities the entity can collide with should be included
+     * @return per thread buffer which is only valid until the next call on the same thread
+     */
+    public CollisionBoxes getCollisionBoxes(@Nullable Entity entity, AxisAlignedBB bb, boolean solidEntities) {
+        CollisionBoxes boxes = CollisionBoxes.get();
+        boxes.addBlocks(bb, this.loadedChunks);
+        if (solidEntities) {
+            boxes.addEntities(this.entityIndex, bb, entity);
         }
-
-        return collides.toArray(new AxisAlignedBB[0]);
+        return boxes;
     }
 
     public boolean isFullBlock(Vector3i pos, BlockState state) {
@@ -1205,7 +1177,9 @@ public class CloudLevel implements Level {
         }
 
         if (entities) {
-            return !this.getCollidingEntities(bb.grow(0.25f, 0.25f, 0.25f), entity).isEmpty();
+            AxisAlignedBB grown = bb.grow(0.25f, 0.25f, 0.25f);
+            return (entity == null || entity.canCollide()) && this.entityIndex.anyIntersecting(grown,
+                    ent -> entity == null || (ent != entity && entity.canCollideWith(ent)));
         }
         return false;
     }
@@ -1296,138 +1270,27 @@ public class CloudLevel implements Level {
     }
 
     public void updateBlockSkyLight(int x, int y, int z) {
-        // todo
+        this.lightEngine.enqueueBlock(x, y, z);
     }
 
     public void updateAllLight(Vector3f pos) {
-        this.updateBlockSkyLight(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
-        this.addLightUpdate(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
+        this.lightEngine.enqueueBlock(pos.getFloorX(), pos.getFloorY(), pos.getFloorZ());
     }
 
-    public void updateBlockLight(Long2ObjectMap<ShortSet> map) {
-        if (map.isEmpty()) {
-            return;
-        }
-        LongPriorityQueue lightPropagationQueue = new LongArrayFIFOQueue();
-        Long2ByteMap lightRemovalQueue = new Long2ByteOpenHashMap();
-        LongSet visited = new LongOpenHashSet();
-        LongSet removalVisited = new LongOpenHashSet();
-
-        for (Long2ObjectMap.Entry<ShortSet> entry : map.long2ObjectEntrySet()) {
-            long chunkKey = entry.getLongKey();
-            ShortSet blocks = entry.getValue();
-            int chunkX = CloudChunk.fromKeyX(chunkKey);
-            int chunkZ = CloudChunk.fromKeyZ(chunkKey);
-            for (short blockKey : blocks) {
-                Vector3i position = CloudChunk.fromKey(chunkKey, blockKey);
-                Chunk chunk = this.getLoadedChunk(chunkX, chunkZ);
-                if (chunk != null) {
-                    int lcx = position.getX() & 0xF;
-                    int lcz = position.getZ() & 0xF;
-                    int oldLevel = chunk.getBlockLight(lcx, position.getY(), lcz);
-                    Block block = new CloudBlock(this, Vector3i.from(lcx, position.getY(), lcz), new BlockState[]{
-                            chunk.getBlock(lcx, position.getY(), lcz, 0),
-                            chunk.getBlock(lcx, position.getY(), lcz, 1)
-                    });
-                    int newLevel = block.getState().getBehavior().getLightLevel(block);
-                    if (oldLevel != newLevel) {
-                        this.setBlockLightAt(position.getX(), position.getY(), position.getZ(), newLevel);
-                        if (newLevel < oldLevel) {
-                            removalVisited.add(BlockUtils.key(position));
-                            lightRemovalQueue.put(BlockUtils.key(position), (byte) oldLevel);
-                        } else {
-                            visited.add(BlockUtils.key(position));
-                            lightPropagationQueue.enqueue(BlockUtils.key(position));
-                        }
-                    }
-                }
-            }
-        }
-        map.clear();
-
-        for (Long2ByteMap.Entry entry : lightRemovalQueue.long2ByteEntrySet()) {
-            long node = entry.getLongKey();
-            int x = Hash.hashBlockX(node);
-            int y = Hash.hashBlockY(node);
-            int z = Hash.hashBlockZ(node);
-
-            int lightLevel = entry.getByteValue();
-
-            this.computeRemoveBlockLight(x - 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x + 1, y, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y - 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y + 1, z, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y, z - 1, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-            this.computeRemoveBlockLight(x, y, z + 1, lightLevel, lightRemovalQueue, lightPropagationQueue,
-                    removalVisited, visited);
-        }
-
-        while (!lightPropagationQueue.isEmpty()) {
-            long node = lightPropagationQueue.dequeueLong();
-
-            int x = Hash.hashBlockX(node);
-            int y = Hash.hashBlockY(node);
-            int z = Hash.hashBlockZ(node);
-
-            Block block = this.getBlock(x, y, z);
-            BlockState state = block.getState();
-
-            int lightLevel = this.getBlockLightAt(x, y, z) - state.getBehavior().getFilterLevel(state);
-
-            if (lightLevel >= 1) {
-                this.computeSpreadBlockLight(x - 1, y, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x + 1, y, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y - 1, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y + 1, z, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y, z - 1, lightLevel, lightPropagationQueue, visited);
-                this.computeSpreadBlockLight(x, y, z + 1, lightLevel, lightPropagationQueue, visited);
-            }
-        }
+    public void addLightUpdate(int x, int y, int z) {
+        this.lightEngine.enqueueBlock(x, y, z);
     }
 
-    private void computeRemoveBlockLight(int x, int y, int z, int currentLight, Long2ByteMap queue,
-                                         LongPriorityQueue spreadQueue, LongSet visited, LongSet spreadVisited) {
-        int current = this.getBlockLightAt(x, y, z);
-        long index = Hash.hashBlock(x, y, z);
-        if (current != 0 && current < currentLight) {
-            this.setBlockLightAt(x, y, z, 0);
-            if (current > 1) {
-                if (visited.add(index)) {
-                    queue.put(Hash.hashBlock(x, y, z), (byte) current);
-                }
-            }
-        } else if (current >= currentLight) {
-            if (spreadVisited.add(index)) {
-                spreadQueue.enqueue(Hash.hashBlock(x, y, z));
-            }
-        }
+    public EntityIndex getEntityIndex() {
+        return entityIndex;
     }
 
-    private void computeSpreadBlockLight(int x, int y, int z, int currentLight, LongPriorityQueue queue, LongSet visited) {
-        int current = this.getBlockLightAt(x, y, z);
-        long index = Hash.hashBlock(x, y, z);
-
-        if (current < currentLight - 1) {
-            this.setBlockLightAt(x, y, z, currentLight);
-
-            if (visited.add(index)) {
-                if (currentLight > 1) {
-                    queue.enqueue(Hash.hashBlock(x, y, z));
-                }
-            }
-        }
+    public LightEngine getLightEngine() {
+        return lightEngine;
     }
 
-    @Synchronized("lightQueue")
-    public void addLightUpdate(int x, int y, int z) {
-        long index = CloudChunk.key(x >> 4, z >> 4);
-        this.lightQueue.computeIfAbsent(index, aLong -> new ShortOpenHashSet())
-                .add(CloudChunk.blockKey(x, y, z));
+    public BlockUpdateScheduler getBlockUpdateScheduler() {
+        return updateQueue;
     }
 
     public boolean setBlockState(int x, int y, int z, int layer, BlockState state, boolean direct, boolean update) {
@@ -1441,7 +1304,6 @@ public class CloudLevel implements Level {
         }
         int cx = x >> 4;
         int cz = z >> 4;
-        long index = CloudChunk.key(cx, cz);
 
         Vector3i position = Vector3i.from(x, y, z);
 
@@ -1457,19 +1319,23 @@ public class CloudLevel implements Level {
         if (direct) {
             this.sendBlocks(this.getChunkPlayers(cx, cz).toArray(new Player[0]), new Block[]{newBlock}, UpdateBlockPacket.FLAG_ALL_PRIORITY);
         } else {
-            addBlockChange(index, x, y, z, layer);
+            addBlockChange(x, y, z, layer);
         }
 
         if (update) {
             BlockBehavior behavior = state.getBehavior();
             BlockBehavior oldBehavior = oldState.getBehavior();
             if (oldBehavior.isTransparent(oldState) != behavior.isTransparent(state) ||
+                    oldBehavior.getFilterLevel(oldState) != behavior.getFilterLevel(state) ||
                     oldBehavior.getLightLevel(oldBlock) != behavior.getLightLevel(newBlock)) {
                 addLightUpdate(x, y, z);
             }
-            BlockUpdateEvent ev = new BlockUpdateEvent(newBlock);
-            this.server.getEventManager().fire(ev);
-            if (!ev.isCancelled()) {
+            BlockUpdateEvent ev = null;
+            if (this.server.getEventManager().hasListeners(BlockUpdateEvent.class)) {
+                ev = new BlockUpdateEvent(newBlock);
+                this.server.getEventManager().fire(ev);
+            }
+            if (ev == null || !ev.isCancelled()) {
                 for (Entity entity : this.getNearbyEntities(new SimpleAxisAlignedBB(x - 1, y - 1, z - 1, x + 1, y + 1, z + 1))) {
                     this.scheduleEntityUpdate(entity);
                 }
@@ -1485,20 +1351,7 @@ public class CloudLevel implements Level {
     }
 
     private void addBlockChange(int x, int y, int z, int layer) {
-        long index = CloudChunk.key(x >> 4, z >> 4);
-        addBlockChange(index, x, y, z, layer);
-    }
-
-    private void addBlockChange(long index, int x, int y, int z, int layer) {
-        IntSet current;
-        try {
-            current = this.changedBlocks.get(index, IntOpenHashSet::new);
-        } catch (ExecutionException e) {
-            throw new IllegalStateException("Unable to get block changes", e);
-        }
-        synchronized (changedBlocks) {
-            current.add(CloudChunk.blockKey(x, y, z, layer));
-        }
+        this.blockChanges.add(x, y, z, layer);
     }
 
     @Nonnull
@@ -1919,31 +1772,29 @@ public class CloudLevel implements Level {
     }
 
     public Set<Entity> getCollidingEntities(AxisAlignedBB bb, Entity entity) {
-        ImmutableSet.Builder<Entity> entities = null;
-
-        if (entity == null || entity.canCollide()) {
-            int minX = NukkitMath.floorDouble((bb.getMinX() - 2) / 16);
-            int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) / 16);
-            int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) / 16);
-            int maxZ = NukkitMath.ceilDouble((bb.getMaxZ() + 2) / 16);
+        ImmutableSet.Builder<Entity> entities = ImmutableSet.builder();
+        this.forEachCollidingEntity(bb, entity, entities::add);
+        return entities.build();
+    }
 
-            for (int x = minX; x <= maxX; ++x) {
-                for (int z = minZ; z <= maxZ; ++z) {
-                    Set<BaseEntity> colliding = this.getLoadedChunkEntities(x, z);
-                    for (BaseEntity ent : colliding) {
-                        if ((entity == null || (ent != entity && entity.canCollideWith(ent)))
-                                && ent.getBoundingBox().intersectsWith(bb)) {
-                            if (entities == null) {
-                                entities = ImmutableSet.builder();
-                            }
-                            entities.add(ent);
-                        }
-                    }
+    /**
+     * Visits the entities intersecting the given box which the given entity can collide with, without copying them
+     * into a set first.
+     *
+     * @param bb      box to check
+     * @param entity  entity to check collisions for, null to visit every intersecting entity
+     * @param visitor called for every colliding entity
+     */
+    public void forEachCollidingEntity(AxisAlignedBB bb, @Nullable Entity entity, Consumer<? super BaseEntity> visitor) {
+        if (entity == null) {
+            this.entityIndex.forEachIntersecting(bb, visitor);
+        } else if (entity.canCollide()) {
+            this.entityIndex.forEachIntersecting(bb, ent -> {
+                if (ent != entity && entity.canCollideWith(ent)) {
+                    visitor.accept(ent);
                 }
-            }
+            });
         }
-
-        return entities == null ? ImmutableSet.of() : entities.build();
     }
 
     @Override
@@ -1956,28 +1807,26 @@ public class CloudLevel implements Level {
     }
 
     public Set<Entity> getNearbyEntities(AxisAlignedBB bb, Entity entity, boolean loadChunks) {
-        int minX = NukkitMath.floorDouble((bb.getMinX() - 2) * 0.0625);
-        int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) * 0.0625);
-        int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) * 0.0625);
-        int maxZ = NukkitMath.ceilDouble((bb.getMaxZ() + 2) * 0.0625);
-
-        ImmutableSet.Builder<Entity> entities = null;
+        if (loadChunks) {
+            int minX = NukkitMath.floorDouble((bb.getMinX() - 2) * 0.0625);
+            int maxX = NukkitMath.ceilDouble((bb.getMaxX() + 2) * 0.0625);
+            int minZ = NukkitMath.floorDouble((bb.getMinZ() - 2) * 0.0625);
+            int maxZ = NukkitMath.ceilDouble((bb.getMaxZ() + 2) * 0.0625);
 
-        for (int x = minX; x <= maxX; ++x) {
-            for (int z = minZ; z <= maxZ; ++z) {
-                Set<BaseEntity> entitiesInRange = loadChunks ? this.getChunkEntities(x, z) : this.getLoadedChunkEntities(x, z);
-                for (BaseEntity entityInRange : entitiesInRange) {
-                    if (entityInRange != entity && entityInRange.getBoundingBox().intersectsWith(bb)) {
-                        if (entities == null) {
-                            entities = ImmutableSet.builder();
-                        }
-                        entities.add(entityInRange);
-                    }
+            for (int x = minX; x <= maxX; ++x) {
+                for (int z = minZ; z <= maxZ; ++z) {
+                    this.getChunk(x, z);
                 }
             }
         }
 
-        return entities == null ? ImmutableSet.of() : entities.build();
+        ImmutableSet.Builder<Entity> entities = ImmutableSet.builder();
+        this.entityIndex.forEachIntersecting(bb, entityInRange -> {
+            if (entityInRange != entity) {
+                entities.add(entityInRange);
+            }
+        });
+        return entities.build();
     }
 
     public Set<BlockEntity> getBlockEntities() {
@@ -2049,11 +1898,11 @@ public class CloudLevel implements Level {
     }
 
     public int getSkyLightAt(int x, int y, int z) {
-        return this.getChunk(x >> 4, z >> 4).getBlockLight(x & 0xF, y, z & 0xF);
+        return this.getChunk(x >> 4, z >> 4).getSkyLight(x & 0xF, y, z & 0xF);
     }
 
     public void setSkyLightAt(int x, int y, int z, int level) {
-        this.getChunk(x >> 4, z >> 4).setBlockLight(x & 0xF, y, z & 0xF, level);
+        this.getChunk(x >> 4, z >> 4).setSkyLight(x & 0xF, y, z & 0xF, level);
     }
 
     public int getBlockLightAt(int x, int y, int z) {
@@ -2122,10 +1971,24 @@ public class CloudLevel implements Level {
         return this.chunkManager.getChunkFuture(chunkX, chunkZ);
     }
 
+    /**
+     * @param priority priority of loading and generating the chunk, see {@link PriorityExecutor}
+     */
+    public CompletableFuture<CloudChunk> getChunkFuture(int chunkX, int chunkZ, int priority) {
+        return this.chunkManager.getChunkFuture(chunkX, chunkZ, priority);
+    }
+
     public int getHighestBlockAt(int x, int z) {
         return this.getChunk(x >> 4, z >> 4).getHighestBlock(x & 0x0f, z & 0x0f);
     }
 
+    /**
+     * @return height above the highest block of the column matching the heightmap type, 0 if there is none
+     */
+    public int getHeight(HeightMapType type, int x, int z) {
+        return this.getChunk(x >> 4, z >> 4).getHeight(type, x & 0x0f, z & 0x0f);
+    }
+
     public BlockColor getMapColorAt(int x, int z) {
         Chunk chunk = this.getChunk(x >> 4, z >> 4);
         int y = chunk.getHighestBlock(x & 0x0f, z & 0x0f);
@@ -2153,6 +2016,15 @@ public class CloudLevel implements Level {
         return this.chunkManager.isChunkLoaded(x, z);
     }
 
+    /**
+     * Unloads the chunk unless something still uses it.
+     *
+     * @return whether the chunk was unloaded
+     */
+    public boolean unloadChunk(int x, int z, boolean save) {
+        return this.chunkManager.unloadChunk(CloudChunk.key(x, z), save, true);
+    }
+
     private boolean areNeighboringChunksLoaded(long hash) {
         return this.chunkManager.isChunkLoaded(hash + 1) &&
                 this.chunkManager.isChunkLoaded(hash - 1) &&
@@ -2196,6 +2068,7 @@ public class CloudLevel implements Level {
         synchronized (entities) {
             this.entities.remove(entity.getUniqueId());
         }
+        this.entityIndex.remove((BaseEntity) entity);
         this.updateEntities.remove(entity);
     }
 
@@ -2210,6 +2083,7 @@ public class CloudLevel implements Level {
         synchronized (entities) {
             this.entities.put(entity.getUniqueId(), entity);
         }
+        this.entityIndex.update((BaseEntity) entity);
     }
 
     public void addBlockEntity(BlockEntity blockEntity) {
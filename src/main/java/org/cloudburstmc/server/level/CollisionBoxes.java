@@ -0,0 +1,179 @@
+package org.cloudburstmc.server.level;
+
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.entity.Entity;
+import org.cloudburstmc.api.level.chunk.LockableChunk;
+import org.cloudburstmc.api.util.AxisAlignedBB;
+import org.cloudburstmc.api.util.SimpleAxisAlignedBB;
+import org.cloudburstmc.server.entity.BaseEntity;
+import org.cloudburstmc.server.level.chunk.BlockStorage;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.CloudChunkSection;
+import org.cloudburstmc.server.math.NukkitMath;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Collision boxes gathered by {@link CloudLevel#getCollisionBoxes(Entity, AxisAlignedBB, boolean)}.
+ * <p>
+ * There is one instance per thread whose boxes are reused by every query, so the contents are only valid until the
+ * next query on the same thread.
+ */
+public final class CollisionBoxes implements Consumer<BaseEntity> {
+
+    private static final ThreadLocal<CollisionBoxes> BUFFERS = ThreadLocal.withInitial(CollisionBoxes::new);
+
+    private SimpleAxisAlignedBB[] boxes = new SimpleAxisAlignedBB[32];
+    private int size;
+
+    // State of the running entity query
+    private final SimpleAxisAlignedBB entityQuery = new SimpleAxisAlignedBB(0, 0, 0, 0, 0, 0);
+    private Entity collider;
+
+    private CollisionBoxes() {
+    }
+
+    static CollisionBoxes get() {
+        CollisionBoxes boxes = BUFFERS.get();
+        boxes.size = 0;
+        return boxes;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public AxisAlignedBB get(int index) {
+        checkElementIndex(index, this.size);
+        return this.boxes[index];
+    }
+
+    /**
+     * Copies the boxes so they can be kept after the next query.
+     */
+    public AxisAlignedBB[] toArray() {
+        AxisAlignedBB[] array = new AxisAlignedBB[this.size];
+        for (int i = 0; i < this.size; i++) {
+            array[i] = this.boxes[i].clone();
+        }
+        return array;
+    }
+
+    /**
+     * Adds the collision boxes of all blocks intersecting the given box. Chunks are never loaded, unloaded chunks
+     * collide as a whole so nothing can move into them.
+     */
+    void addBlocks(AxisAlignedBB bb, LongFunction<CloudChunk> loadedChunks) {
+        int minX = NukkitMath.floorDouble(bb.getMinX());
+        int minY = NukkitMath.floorDouble(bb.getMinY());
+        int minZ = NukkitMath.floorDouble(bb.getMinZ());
+        int maxX = NukkitMath.ceilDouble(bb.getMaxX());
+        int maxY = NukkitMath.ceilDouble(bb.getMaxY());
+        int maxZ = NukkitMath.ceilDouble(bb.getMaxZ());
+
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            int fromX = Math.max(minX, chunkX << 4);
+            int toX = Math.min(maxX, chunkX << 4 | 15);
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                int fromZ = Math.max(minZ, chunkZ << 4);
+                int toZ = Math.min(maxZ, chunkZ << 4 | 15);
+
+                CloudChunk chunk = loadedChunks.apply(CloudChunk.key(chunkX, chunkZ));
+                if (chunk == null) {
+                    this.add(fromX, minY, fromZ, toX + 1, maxY + 1, toZ + 1);
+                    continue;
+                }
+
+                LockableChunk lockable = chunk.readLockable();
+                lockable.lock();
+                try {
+                    for (int sectionY = Math.max(0, minY >> 4); sectionY <= Math.min(15, maxY >> 4); sectionY++) {
+                        CloudChunkSection section = (CloudChunkSection) lockable.getSection(sectionY);
+                        if (section == null) {
+                            continue;
+                        }
+                        BlockStorage storage = section.getBlockStorageArray()[0];
+                        int fromY = Math.max(minY, sectionY << 4);
+                        int toY = Math.min(maxY, sectionY << 4 | 15);
+                        for (int x = fromX; x <= toX; x++) {
+                            for (int z = fromZ; z <= toZ; z++) {
+                                for (int y = fromY; y <= toY; y++) {
+                                    BlockState state = storage.getBlock(CloudChunkSection.blockIndex(x & 15, y & 15, z & 15));
+                                    this.addBlock(CollisionShapes.get(state), x, y, z, bb);
+                                }
+                            }
+                        }
+                    }
+                } finally {
+                    lockable.unlock();
+                }
+            }
+        }
+    }
+
+    private void addBlock(AxisAlignedBB shape, int x, int y, int z, AxisAlignedBB bb) {
+        if (shape == CollisionShapes.NONE) {
+            return;
+        }
+        float minX = shape.getMinX() + x;
+        float minY = shape.getMinY() + y;
+        float minZ = shape.getMinZ() + z;
+        float maxX = shape.getMaxX() + x;
+        float maxY = shape.getMaxY() + y;
+        float maxZ = shape.getMaxZ() + z;
+        if (bb.getMaxX() > minX && bb.getMinX() < maxX && bb.getMaxY() > minY && bb.getMinY() < maxY &&
+                bb.getMaxZ() > minZ && bb.getMinZ() < maxZ) {
+            this.add(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+    }
+
+    /**
+     * Adds the bounding boxes of the solid entities near the given box which the collider can collide with.
+     */
+    void addEntities(EntityIndex index, AxisAlignedBB bb, Entity collider) {
+        if (collider != null && !collider.canCollide()) {
+            return;
+        }
+        this.entityQuery.setBounds(bb.getMinX() - 0.25f, bb.getMinY() - 0.25f, bb.getMinZ() - 0.25f,
+                bb.getMaxX() + 0.25f, bb.getMaxY() + 0.25f, bb.getMaxZ() + 0.25f);
+        this.collider = collider;
+        try {
+            index.forEachIntersecting(this.entityQuery, this);
+        } finally {
+            this.collider = null;
+        }
+    }
+
+    @Override
+    public void accept(BaseEntity entity) {
+        Entity collider = this.collider;
+        if (collider != null && (entity == collider || !collider.canCollideWith(entity))) {
+            return;
+        }
+        if (!entity.canPassThrough()) {
+            AxisAlignedBB bb = entity.getBoundingBox();
+            this.add(bb.getMinX(), bb.getMinY(), bb.getMinZ(), bb.getMaxX(), bb.getMaxY(), bb.getMaxZ());
+        }
+    }
+
+    private void add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (this.size == this.boxes.length) {
+            this.boxes = Arrays.copyOf(this.boxes, this.size << 1);
+        }
+        SimpleAxisAlignedBB box = this.boxes[this.size];
+        if (box == null) {
+            box = this.boxes[this.size] = new SimpleAxisAlignedBB(minX, minY, minZ, maxX, maxY, maxZ);
+        } else {
+            box.setBounds(minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        this.size++;
+    }
+}
@@ -0,0 +1,47 @@
+package org.cloudburstmc.server.level;
+
+import com.nukkitx.math.vector.Vector3i;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.behavior.BlockBehavior;
+import org.cloudburstmc.api.util.AxisAlignedBB;
+import org.cloudburstmc.api.util.SimpleAxisAlignedBB;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collision box of every block state at the origin, so movement doesn't need a {@link org.cloudburstmc.api.block.Block}
+ * per checked block.
+ */
+final class CollisionShapes {
+
+    // Marks states entities can pass through, the map can't hold null
+    static final AxisAlignedBB NONE = new SimpleAxisAlignedBB(0, 0, 0, 0, 0, 0);
+
+    private static final Map<BlockState, AxisAlignedBB> SHAPES = new ConcurrentHashMap<>();
+
+    private CollisionShapes() {
+    }
+
+    /**
+     * @return box relative to the block position or {@link #NONE}
+     */
+    static AxisAlignedBB get(BlockState state) {
+        AxisAlignedBB shape = SHAPES.get(state);
+        if (shape == null) {
+            shape = compute(state);
+            SHAPES.put(state, shape);
+        }
+        return shape;
+    }
+
+    private static AxisAlignedBB compute(BlockState state) {
+        BlockBehavior behavior = state.getBehavior();
+        if (behavior.canPassThrough(state)) {
+            return NONE;
+        }
+        // Bounding boxes only depend on the state, neighbour dependent shapes aren't implemented
+        AxisAlignedBB shape = behavior.getBoundingBox(Vector3i.ZERO, state);
+        return shape == null ? NONE : shape.clone();
+    }
+}
@@ -0,0 +1,349 @@
+package org.cloudburstmc.server.level;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import org.cloudburstmc.api.util.AxisAlignedBB;
+import org.cloudburstmc.server.entity.BaseEntity;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Spatial hash of the entities in a level, bucketed into 8x8x8 block cells by the bottom center of their bounding box.
+ * <p>
+ * Entities are stored as slot indices in their cell, so moving within a cell costs a single lookup and moving between
+ * cells doesn't allocate. Queries collect their matches into a thread local buffer before calling the visitor, which
+ * may therefore move, add or remove entities and run nested queries.
+ * <p>
+ * The index is updated by {@link BaseEntity} whenever it checks its chunk, which may happen on chunk loading threads,
+ * so all access is synchronized. The visitors are called without holding the lock.
+ */
+public final class EntityIndex {
+
+    private static final int CELL_SHIFT = 3;
+    private static final int CELL_Y_BITS = 14;
+    private static final int CELL_XZ_BITS = 25;
+    private static final int CELL_Y_MIN = -(1 << (CELL_Y_BITS - 1));
+    private static final int CELL_Y_MAX = (1 << (CELL_Y_BITS - 1)) - 1;
+    // Bounding boxes are changed during a move before the entity updates the index
+    private static final float SLACK = 2;
+    private static final int CELL_POOL_SIZE = 256;
+    private static final int HUGE_QUERY_CELLS = 512;
+
+    private static final ThreadLocal<QueryBuffers> BUFFERS = ThreadLocal.withInitial(QueryBuffers::new);
+
+    private final Long2ObjectOpenHashMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private final ArrayDeque<IntArrayList> cellPool = new ArrayDeque<>();
+    private final Reference2IntOpenHashMap<BaseEntity> slots = new Reference2IntOpenHashMap<>();
+    private final IntArrayList freeSlots = new IntArrayList();
+    private BaseEntity[] slotEntities = new BaseEntity[64];
+    private long[] slotCells = new long[64];
+    private int[] slotCellIndices = new int[64];
+    private int slotCount;
+    // Largest extents seen so far, queries are grown by these to find entities indexed in neighbouring cells
+    private float maxHalfWidth;
+    private float maxHeight;
+
+    public EntityIndex() {
+        this.slots.defaultReturnValue(-1);
+    }
+
+    /**
+     * Adds the entity or moves it to the cell of its current bounding box.
+     */
+    public synchronized void update(BaseEntity entity) {
+        AxisAlignedBB bb = entity.getBoundingBox();
+        float halfWidth = Math.max(bb.getMaxX() - bb.getMinX(), bb.getMaxZ() - bb.getMinZ()) / 2;
+        float height = bb.getMaxY() - bb.getMinY();
+        if (halfWidth > this.maxHalfWidth) {
+            this.maxHalfWidth = halfWidth;
+        }
+        if (height > this.maxHeight) {
+            this.maxHeight = height;
+        }
+
+        long cell = cellKey(
+                cellCoord((bb.getMinX() + bb.getMaxX()) / 2),
+                cellCoord(bb.getMinY()),
+                cellCoord((bb.getMinZ() + bb.getMaxZ()) / 2)
+        );
+
+        int slot = this.slots.getInt(entity);
+        if (slot == -1) {
+            slot = this.allocateSlot(entity);
+        } else if (this.slotCells[slot] == cell) {
+            return;
+        } else {
+            this.removeFromCell(slot);
+        }
+        this.addToCell(slot, cell);
+    }
+
+    public synchronized void remove(BaseEntity entity) {
+        int slot = this.slots.removeInt(entity);
+        if (slot == -1) {
+            return;
+        }
+        this.removeFromCell(slot);
+        this.slotEntities[slot] = null;
+        this.freeSlots.add(slot);
+    }
+
+    public synchronized int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * Visits every entity whose bounding box intersects the given box.
+     */
+    public void forEachIntersecting(AxisAlignedBB bb, Consumer<? super BaseEntity> visitor) {
+        QueryBuffers buffers = BUFFERS.get();
+        int depth = buffers.acquire();
+        int count = 0;
+        try {
+            count = this.collectIntersecting(bb, buffers, depth);
+            BaseEntity[] results = buffers.layers[depth];
+            for (int i = 0; i < count; i++) {
+                visitor.accept(results[i]);
+            }
+        } finally {
+            buffers.release(depth, count);
+        }
+    }
+
+    /**
+     * Checks whether any entity whose bounding box intersects the given box matches the predicate.
+     */
+    public boolean anyIntersecting(AxisAlignedBB bb, Predicate<? super BaseEntity> predicate) {
+        QueryBuffers buffers = BUFFERS.get();
+        int depth = buffers.acquire();
+        int count = 0;
+        try {
+            count = this.collectIntersecting(bb, buffers, depth);
+            BaseEntity[] results = buffers.layers[depth];
+            for (int i = 0; i < count; i++) {
+                if (predicate.test(results[i])) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            buffers.release(depth, count);
+        }
+    }
+
+    /**
+     * Visits every entity whose position is within the given distance of a point.
+     */
+    public void forEachInRadius(float x, float y, float z, float radius, Consumer<? super BaseEntity> visitor) {
+        QueryBuffers buffers = BUFFERS.get();
+        int depth = buffers.acquire();
+        int count = 0;
+        try {
+            count = this.collectInRadius(x, y, z, radius, buffers, depth);
+            BaseEntity[] results = buffers.layers[depth];
+            for (int i = 0; i < count; i++) {
+                visitor.accept(results[i]);
+            }
+        } finally {
+            buffers.release(depth, count);
+        }
+    }
+
+    private synchronized int collectIntersecting(AxisAlignedBB bb, QueryBuffers buffers, int depth) {
+        float horizontal = this.maxHalfWidth + SLACK;
+        int minX = cellCoord(bb.getMinX() - horizontal);
+        int minY = clampCellY(cellCoord(bb.getMinY() - this.maxHeight - SLACK));
+        int minZ = cellCoord(bb.getMinZ() - horizontal);
+        int maxX = cellCoord(bb.getMaxX() + horizontal);
+        int maxY = clampCellY(cellCoord(bb.getMaxY() + SLACK));
+        int maxZ = cellCoord(bb.getMaxZ() + horizontal);
+
+        int count = 0;
+        if (cellVolume(minX, minY, minZ, maxX, maxY, maxZ) > Math.max(HUGE_QUERY_CELLS, this.cells.size())) {
+            // Huge query, walking the occupied cells is cheaper
+            for (Long2ObjectMap.Entry<IntArrayList> entry : this.cells.long2ObjectEntrySet()) {
+                long cell = entry.getLongKey();
+                int cellX = cellX(cell);
+                int cellY = cellY(cell);
+                int cellZ = cellZ(cell);
+                if (cellX >= minX && cellX <= maxX && cellY >= minY && cellY <= maxY && cellZ >= minZ && cellZ <= maxZ) {
+                    count = this.collectIntersecting(entry.getValue(), bb, buffers, depth, count);
+                }
+            }
+            return count;
+        }
+
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                for (int cellY = minY; cellY <= maxY; cellY++) {
+                    IntArrayList cell = this.cells.get(cellKey(cellX, cellY, cellZ));
+                    if (cell != null) {
+                        count = this.collectIntersecting(cell, bb, buffers, depth, count);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int collectIntersecting(IntArrayList cell, AxisAlignedBB bb, QueryBuffers buffers, int depth, int count) {
+        int[] slots = cell.elements();
+        for (int i = 0, size = cell.size(); i < size; i++) {
+            BaseEntity entity = this.slotEntities[slots[i]];
+            if (entity.getBoundingBox().intersectsWith(bb)) {
+                buffers.add(depth, count++, entity);
+            }
+        }
+        return count;
+    }
+
+    private synchronized int collectInRadius(float x, float y, float z, float radius, QueryBuffers buffers, int depth) {
+        float radiusSquared = radius * radius;
+        int minX = cellCoord(x - radius - SLACK);
+        int minY = clampCellY(cellCoord(y - radius - SLACK));
+        int minZ = cellCoord(z - radius - SLACK);
+        int maxX = cellCoord(x + radius + SLACK);
+        int maxY = clampCellY(cellCoord(y + radius + SLACK));
+        int maxZ = cellCoord(z + radius + SLACK);
+
+        int count = 0;
+        for (int cellX = minX; cellX <= maxX; cellX++) {
+            for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+                for (int cellY = minY; cellY <= maxY; cellY++) {
+                    IntArrayList cell = this.cells.get(cellKey(cellX, cellY, cellZ));
+                    if (cell == null) {
+                        continue;
+                    }
+                    int[] slots = cell.elements();
+                    for (int i = 0, size = cell.size(); i < size; i++) {
+                        BaseEntity entity = this.slotEntities[slots[i]];
+                        float dx = entity.getX() - x;
+                        float dy = entity.getY() - y;
+                        float dz = entity.getZ() - z;
+                        if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                            buffers.add(depth, count++, entity);
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private int allocateSlot(BaseEntity entity) {
+        int slot;
+        if (!this.freeSlots.isEmpty()) {
+            slot = this.freeSlots.popInt();
+        } else {
+            slot = this.slotCount++;
+            if (slot == this.slotEntities.length) {
+                int length = slot << 1;
+                this.slotEntities = Arrays.copyOf(this.slotEntities, length);
+                this.slotCells = Arrays.copyOf(this.slotCells, length);
+                this.slotCellIndices = Arrays.copyOf(this.slotCellIndices, length);
+            }
+        }
+        this.slotEntities[slot] = entity;
+        this.slots.put(entity, slot);
+        return slot;
+    }
+
+    private void addToCell(int slot, long cellKey) {
+        IntArrayList cell = this.cells.get(cellKey);
+        if (cell == null) {
+            cell = this.cellPool.isEmpty() ? new IntArrayList() : this.cellPool.poll();
+            this.cells.put(cellKey, cell);
+        }
+        this.slotCells[slot] = cellKey;
+        this.slotCellIndices[slot] = cell.size();
+        cell.add(slot);
+    }
+
+    private void removeFromCell(int slot) {
+        long cellKey = this.slotCells[slot];
+        IntArrayList cell = this.cells.get(cellKey);
+        int index = this.slotCellIndices[slot];
+        int last = cell.popInt();
+        if (last != slot) {
+            // Move the last slot of the cell into the gap
+            cell.set(index, last);
+            this.slotCellIndices[last] = index;
+        }
+
+        if (cell.isEmpty()) {
+            this.cells.remove(cellKey);
+            if (this.cellPool.size() < CELL_POOL_SIZE) {
+                this.cellPool.add(cell);
+            }
+        }
+    }
+
+    private static int cellCoord(float coord) {
+        return (int) Math.floor(coord) >> CELL_SHIFT;
+    }
+
+    private static long cellVolume(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+    }
+
+    private static int clampCellY(int y) {
+        return Math.max(CELL_Y_MIN, Math.min(CELL_Y_MAX, y));
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        y = clampCellY(y);
+        return ((long) x & ((1L << CELL_XZ_BITS) - 1)) << (CELL_XZ_BITS + CELL_Y_BITS) |
+                ((long) z & ((1L << CELL_XZ_BITS) - 1)) << CELL_Y_BITS |
+                (y & ((1L << CELL_Y_BITS) - 1));
+    }
+
+    private static int cellX(long key) {
+        return (int) (key >> (CELL_XZ_BITS + CELL_Y_BITS));
+    }
+
+    private static int cellZ(long key) {
+        return (int) (key << (64 - CELL_XZ_BITS - CELL_Y_BITS) >> (64 - CELL_XZ_BITS));
+    }
+
+    private static int cellY(long key) {
+        return (int) (key << (64 - CELL_Y_BITS) >> (64 - CELL_Y_BITS));
+    }
+
+    private static final class QueryBuffers {
+
+        // One result buffer per nesting level of queries
+        private BaseEntity[][] layers = new BaseEntity[4][];
+        private int depth;
+
+        private int acquire() {
+            int depth = this.depth++;
+            if (depth == this.layers.length) {
+                this.layers = Arrays.copyOf(this.layers, depth << 1);
+            }
+            if (this.layers[depth] == null) {
+                this.layers[depth] = new BaseEntity[16];
+            }
+            return depth;
+        }
+
+        private void add(int depth, int index, BaseEntity entity) {
+            BaseEntity[] layer = this.layers[depth];
+            if (index == layer.length) {
+                layer = this.layers[depth] = Arrays.copyOf(layer, index << 1);
+            }
+            layer[index] = entity;
+        }
+
+        private void release(int depth, int count) {
+            if (count > 0) {
+                Arrays.fill(this.layers[depth], 0, count, null);
+            }
+            this.depth = depth;
+        }
+    }
+}
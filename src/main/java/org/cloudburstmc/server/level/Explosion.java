@@ -19,18 +19,14 @@ import org.cloudburstmc.api.event.entity.EntityDamageByEntityEvent;
 import org.cloudburstmc.api.event.entity.EntityDamageEvent;
 import org.cloudburstmc.api.event.entity.EntityExplodeEvent;
 import org.cloudburstmc.api.item.ItemStack;
-import org.cloudburstmc.api.util.AxisAlignedBB;
 import org.cloudburstmc.api.util.Direction;
-import org.cloudburstmc.api.util.SimpleAxisAlignedBB;
 import org.cloudburstmc.server.block.behavior.BlockBehaviorTNT;
 import org.cloudburstmc.server.level.particle.HugeExplodeSeedParticle;
-import org.cloudburstmc.server.math.NukkitMath;
 import org.cloudburstmc.server.registry.CloudItemRegistry;
 import org.cloudburstmc.server.utils.Hash;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static org.cloudburstmc.api.block.BlockTypes.FLOWING_WATER;
@@ -159,38 +155,8 @@ public class Explosion {
         }
 
         double explosionSize = this.size * 2d;
-        float minX = NukkitMath.floorDouble(this.source.getX() - explosionSize - 1);
-        float maxX = NukkitMath.ceilDouble(this.source.getX() + explosionSize + 1);
-        float minY = NukkitMath.floorDouble(this.source.getY() - explosionSize - 1);
-        float maxY = NukkitMath.ceilDouble(this.source.getY() + explosionSize + 1);
-        float minZ = NukkitMath.floorDouble(this.source.getZ() - explosionSize - 1);
-        float maxZ = NukkitMath.ceilDouble(this.source.getZ() + explosionSize + 1);
-
-        AxisAlignedBB explosionBB = new SimpleAxisAlignedBB(minX, minY, minZ, maxX, maxY, maxZ);
-
-        Set<Entity> entities = this.level.getNearbyEntities(explosionBB, this.what instanceof Entity ? (Entity) this.what : null);
-        for (Entity entity : entities) {
-            double distance = entity.getPosition().distance(this.source) / explosionSize;
-
-            if (distance <= 1) {
-                Vector3f motion = entity.getPosition().sub(this.source).normalize();
-                int exposure = 1;
-                double impact = (1 - distance) * exposure;
-                int damage = this.doesDamage ? (int) (((impact * impact + impact) / 2) * 8 * explosionSize + 1) : 0;
-
-                if (this.what instanceof Entity) {
-                    entity.attack(new EntityDamageByEntityEvent((Entity) this.what, entity, EntityDamageEvent.DamageCause.ENTITY_EXPLOSION, damage));
-                } else if (this.what instanceof Block) {
-                    entity.attack(new EntityDamageByBlockEvent((Block) this.what, entity, EntityDamageEvent.DamageCause.BLOCK_EXPLOSION, damage));
-                } else {
-                    entity.attack(new EntityDamageEvent(entity, EntityDamageEvent.DamageCause.BLOCK_EXPLOSION, damage));
-                }
-
-                if (!(entity instanceof DroppedItem || entity instanceof ExperienceOrb)) {
-                    entity.setMotion(motion.mul(impact));
-                }
-            }
-        }
+        this.level.getEntityIndex().forEachInRadius(this.source.getX(), this.source.getY(), this.source.getZ(),
+                (float) explosionSize, entity -> this.affectEntity(entity, explosionSize));
 
         ItemStack air = CloudItemRegistry.get().AIR;
 
@@ -214,11 +180,15 @@ public class Explosion {
                 Vector3i sidePos = sideBlock.getPosition();
                 long index = Hash.hashBlock(sidePos.getX(), sidePos.getY(), sidePos.getZ());
                 if (!this.affectedBlockStates.contains(sideBlock) && !updateBlocks.contains(index)) {
-                    BlockUpdateEvent ev = new BlockUpdateEvent(sideBlock);
-                    this.level.getServer().getEventManager().fire(ev);
-                    if (!ev.isCancelled()) {
-                        var b = ev.getBlock();
-                        b.getState().getBehavior().onUpdate(b, CloudLevel.BLOCK_UPDATE_NORMAL);
+                    if (!this.level.getServer().getEventManager().hasListeners(BlockUpdateEvent.class)) {
+                        sideBlock.getState().getBehavior().onUpdate(sideBlock, CloudLevel.BLOCK_UPDATE_NORMAL);
+                    } else {
+                        BlockUpdateEvent ev = new BlockUpdateEvent(sideBlock);
+                        this.level.getServer().getEventManager().fire(ev);
+                        if (!ev.isCancelled()) {
+                            var b = ev.getBlock();
+                            b.getState().getBehavior().onUpdate(b, CloudLevel.BLOCK_UPDATE_NORMAL);
+                        }
                     }
 
                     updateBlocks.add(index);
@@ -232,4 +202,30 @@ public class Explosion {
         return true;
     }
 
+    private void affectEntity(Entity entity, double explosionSize) {
+        if (entity == this.what) {
+            return;
+        }
+        double distance = entity.getPosition().distance(this.source) / explosionSize;
+
+        if (distance <= 1) {
+            Vector3f motion = entity.getPosition().sub(this.source).normalize();
+            int exposure = 1;
+            double impact = (1 - distance) * exposure;
+            int damage = this.doesDamage ? (int) (((impact * impact + impact) / 2) * 8 * explosionSize + 1) : 0;
+
+            if (this.what instanceof Entity) {
+                entity.attack(new EntityDamageByEntityEvent((Entity) this.what, entity, EntityDamageEvent.DamageCause.ENTITY_EXPLOSION, damage));
+            } else if (this.what instanceof Block) {
+                entity.attack(new EntityDamageByBlockEvent((Block) this.what, entity, EntityDamageEvent.DamageCause.BLOCK_EXPLOSION, damage));
+            } else {
+                entity.attack(new EntityDamageEvent(entity, EntityDamageEvent.DamageCause.BLOCK_EXPLOSION, damage));
+            }
+
+            if (!(entity instanceof DroppedItem || entity instanceof ExperienceOrb)) {
+                entity.setMotion(motion.mul(impact));
+            }
+        }
+    }
+
 }
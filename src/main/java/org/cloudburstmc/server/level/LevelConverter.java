@@ -3,18 +3,45 @@ package org.cloudburstmc.server.level;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.server.CloudServer;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.level.generator.impl.VoidGenerator;
 import org.cloudburstmc.server.level.provider.LevelProvider;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Copies all chunks of a level to another provider as a pipeline: the old provider reads and converts chunks on its
+ * workers, which hand them over in batches of {@value #BATCH_SIZE} to be encoded and written at once by the new
+ * provider.
+ * <p>
+ * At most {@value #MAX_PENDING_BATCHES} batches are waiting to be written, readers block until one is, so memory
+ * stays bounded however large the level is. The providers should not share an executor, or blocked readers could take
+ * all threads the writes need.
+ */
 @Log4j2
 public class LevelConverter {
+    private static final int BATCH_SIZE = 128;
+    private static final int MAX_PENDING_BATCHES = 4;
+    private static final int REPORT_INTERVAL = 4096;
+
     private final LevelProvider oldLevelProvider;
     private final LevelProvider newLevelProvider;
     private final CloudLevel fakeLevel;
 
+    private final Semaphore pendingBatches = new Semaphore(MAX_PENDING_BATCHES);
+    private final Set<CompletableFuture<Void>> writes = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger converted = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private List<CloudChunk> batch = new ArrayList<>(BATCH_SIZE);
+    private long startNanos;
+
     public LevelConverter(LevelProvider oldLevelProvider, LevelProvider newLevelProvider) {
         this.oldLevelProvider = oldLevelProvider;
         this.newLevelProvider = newLevelProvider;
@@ -28,27 +55,74 @@ public class LevelConverter {
 
     public CompletableFuture<Void> perform() {
         ChunkBuilder.Factory factory = (x, z) -> new ChunkBuilder(x, z, fakeLevel);
-        AtomicInteger converted = new AtomicInteger();
+        this.startNanos = System.nanoTime();
         return this.oldLevelProvider.forEachChunk(factory, (chunk, throwable) -> {
             if (throwable != null) {
+                this.failed.incrementAndGet();
                 log.error("Unable to convert chunk", throwable);
                 return;
             }
 
             if (chunk != null) {
-                int count = converted.incrementAndGet();
-                if ((count & 1023) == 512) {
-                    log.info("{} chunks converted", count);
-                }
                 chunk.init();
-                this.newLevelProvider.saveChunk(chunk).join();
+                // Loaded chunks are clean, but they still have to be written to the new provider
+                chunk.setDirty(true);
+                this.add(chunk);
             } else {
                 log.warn("Null chunk");
             }
+        }).thenCompose(aVoid -> {
+            List<CloudChunk> last;
+            synchronized (this) {
+                last = this.batch;
+                this.batch = null;
+            }
+            if (!last.isEmpty()) {
+                this.write(last);
+            }
+            return CompletableFuture.allOf(this.writes.toArray(new CompletableFuture[0]));
         }).thenApply(aVoid -> {
             fakeLevel.close();
-            log.info("Conversion completed. {} chunks converted", converted.get());
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - this.startNanos));
+            log.info("Conversion completed. {} chunks converted in {}s ({} chunks/s), {} failed", this.converted.get(),
+                    seconds, this.converted.get() / seconds, this.failed.get());
             return null;
         });
     }
+
+    private void add(CloudChunk chunk) {
+        List<CloudChunk> full;
+        synchronized (this) {
+            this.batch.add(chunk);
+            if (this.batch.size() < BATCH_SIZE) {
+                return;
+            }
+            full = this.batch;
+            this.batch = new ArrayList<>(BATCH_SIZE);
+        }
+        this.write(full);
+    }
+
+    /**
+     * Hands the batch to the new provider, waiting while too many batches are pending.
+     */
+    private void write(List<CloudChunk> chunks) {
+        this.pendingBatches.acquireUninterruptibly();
+        CompletableFuture<Void> future = this.newLevelProvider.saveChunks(chunks);
+        this.writes.add(future);
+        future.whenComplete((aVoid, throwable) -> {
+            this.writes.remove(future);
+            this.pendingBatches.release();
+            if (throwable != null) {
+                this.failed.addAndGet(chunks.size());
+                log.error("Unable to save {} converted chunks", chunks.size(), throwable);
+                return;
+            }
+            int count = this.converted.addAndGet(chunks.size());
+            if (count % REPORT_INTERVAL < chunks.size()) {
+                long millis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos));
+                log.info("{} chunks converted ({} chunks/s)", count, count * 1000L / millis);
+            }
+        });
+    }
 }
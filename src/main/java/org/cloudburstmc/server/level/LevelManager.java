@@ -2,6 +2,7 @@ package org.cloudburstmc.server.level;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.api.event.level.LevelLoadEvent;
 import org.cloudburstmc.api.event.level.LevelUnloadEvent;
@@ -13,21 +14,26 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.Closeable;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @Log4j2
 @Singleton
 public class LevelManager implements Closeable {
-    private final ExecutorService chunkExecutor = Executors.newWorkStealingPool();
+    private static final ThreadLocal<CloudLevel> TICKING_LEVEL = new ThreadLocal<>();
+
+    private final Queue<Runnable> afterTickTasks = new ConcurrentLinkedQueue<>();
+    private ExecutorService tickExecutor;
     private final CloudServer server;
     private final Set<CloudLevel> levels = new HashSet<>();
     private final Map<String, CloudLevel> levelIds = new HashMap<>();
     private volatile CloudLevel defaultLevel;
+    private final Map<CloudLevel, Pregenerator> pregenerators = new HashMap<>();
 
     @Inject
     public LevelManager(CloudServer server) {
@@ -59,6 +65,7 @@ public class LevelManager implements Closeable {
         if (event.isCancelled() && !force) {
             return false;
         } else {
+            this.stopPregeneration(level);
             this.levelIds.remove(level.getId());
             return levels.remove(level);
         }
@@ -98,51 +105,215 @@ public class LevelManager implements Closeable {
         this.levels.forEach(CloudLevel::save);
     }
 
+    /**
+     * Starts pre-generating the chunks within the radius around the center chunk, replacing the checkpoint of an
+     * earlier run.
+     *
+     * @param maxInFlight chunks to generate at once, 0 for the configured amount
+     */
+    public synchronized Pregenerator pregenerate(CloudLevel level, int centerX, int centerZ, int radius, int maxInFlight) {
+        Preconditions.checkArgument(levels.contains(level), "level not registered");
+        Preconditions.checkArgument(radius >= 0, "radius (%s) cannot be negative", radius);
+        Preconditions.checkState(!this.pregenerators.containsKey(level), "Level %s is already being pre-generated", level.getId());
+
+        Pregenerator pregenerator = new Pregenerator(level, centerX, centerZ, radius, this.maxInFlight(maxInFlight), 0);
+        this.pregenerators.put(level, pregenerator);
+        pregenerator.start();
+        return pregenerator;
+    }
+
+    /**
+     * Resumes pre-generating the level from its checkpoint.
+     *
+     * @param maxInFlight chunks to generate at once, 0 for the configured amount
+     * @return the pre-generator or null if the level has no checkpoint
+     */
+    @Nullable
+    public synchronized Pregenerator resumePregeneration(CloudLevel level, int maxInFlight) throws IOException {
+        Preconditions.checkArgument(levels.contains(level), "level not registered");
+        Preconditions.checkState(!this.pregenerators.containsKey(level), "Level %s is already being pre-generated", level.getId());
+
+        Pregenerator pregenerator = Pregenerator.resume(level, this.maxInFlight(maxInFlight));
+        if (pregenerator != null) {
+            this.pregenerators.put(level, pregenerator);
+            pregenerator.start();
+        }
+        return pregenerator;
+    }
+
+    public synchronized boolean stopPregeneration(CloudLevel level) {
+        Pregenerator pregenerator = this.pregenerators.remove(level);
+        if (pregenerator == null) {
+            return false;
+        }
+        pregenerator.stop();
+        return true;
+    }
+
+    @Nullable
+    public synchronized Pregenerator getPregenerator(CloudLevel level) {
+        return this.pregenerators.get(level);
+    }
+
+    synchronized void pregenerationDone(Pregenerator pregenerator) {
+        this.pregenerators.remove(pregenerator.getLevel(), pregenerator);
+    }
+
+    private int maxInFlight(int maxInFlight) {
+        return maxInFlight > 0 ? maxInFlight : this.server.getConfig().getLevelSettings().getPregenerationChunksInFlight();
+    }
+
     @Override
     public synchronized void close() {
+        for (Pregenerator pregenerator : this.pregenerators.values()) {
+            pregenerator.stop();
+        }
+        this.pregenerators.clear();
         for (CloudLevel level : this.levels) {
             level.close();
         }
+        if (this.tickExecutor != null) {
+            this.tickExecutor.shutdown();
+        }
     }
 
     public void tick(int currentTick) {
-        for (CloudLevel level : this.levels) {
+        if (this.isParallelTicking() && this.levels.size() > 1) {
+            this.tickParallel(currentTick);
+        } else {
+            for (CloudLevel level : this.levels) {
+                this.tickLevel(level, currentTick);
+            }
+        }
+        this.runAfterTickTasks();
+    }
+
+    private void tickParallel(int currentTick) {
+        CloudLevel[] levels;
+        synchronized (this) {
+            levels = this.levels.toArray(new CloudLevel[0]);
+        }
+
+        ExecutorService executor = this.getTickExecutor();
+        CompletableFuture<?>[] futures = new CompletableFuture[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            CloudLevel level = levels[i];
+            futures[i] = CompletableFuture.runAsync(() -> this.tickLevel(level, currentTick), executor);
+        }
+        // Everything after this, like player updates, teleports between levels, network and saving, relies on no
+        // level ticking anymore.
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private void tickLevel(CloudLevel level, int currentTick) {
+        TICKING_LEVEL.set(level);
+        try {
+            long levelTime = System.nanoTime();
+            level.doTick(currentTick);
+            level.getTickStats().record(System.nanoTime() - levelTime);
+            int tickMs = level.getTickStats().getLastTickMillis();
+            level.tickRateTime = tickMs;
+
+            if (server.isAutoTickRate()) {
+                this.adjustTickRate(level, tickMs);
+            }
+
+            if (currentTick % 100 == 0) {
+                level.doChunkGarbageCollection();
+            }
+        } catch (Exception e) {
+            log.error(server.getLanguage().translate("cloudburst.level.tickError", level.getId(), Utils.getExceptionMessage(e)));
+        } finally {
+            TICKING_LEVEL.remove();
+        }
+    }
+
+    private void adjustTickRate(CloudLevel level, int tickMs) {
+        if (tickMs < 50 && level.getTickRate() > server.getBaseTickRate()) {
+            int r;
+            level.setTickRate(r = level.getTickRate() - 1);
+            if (r > server.getBaseTickRate()) {
+                level.tickRateCounter = level.getTickRate();
+            }
+            log.debug("Raising level \"" + level.getName() + "\" tick rate to " + level.getTickRate() + " ticks");
+        } else if (tickMs >= 50) {
+            if (level.getTickRate() == server.getBaseTickRate()) {
+                level.setTickRate(Math.max(server.getBaseTickRate() + 1, Math.min(server.getAutoTickRateLimit(), tickMs / 50)));
+                log.debug("Level \"" + level.getName() + "\" took " + NukkitMath.round(tickMs, 2) + "ms, setting tick rate to " + level.getTickRate() + " ticks");
+            } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < server.getAutoTickRateLimit()) {
+                level.setTickRate(level.getTickRate() + 1);
+                log.debug("Level \"" + level.getName() + "\" took " + NukkitMath.round(tickMs, 2) + "ms, setting tick rate to " + level.getTickRate() + " ticks");
+            }
+            level.tickRateCounter = level.getTickRate();
+        }
+    }
+
+    /**
+     * Whether levels are ticked concurrently on dedicated threads.
+     * <p>
+     * While levels are ticking, code running inside a level tick (events, block updates, entities, ...) must only
+     * access its own level. Work touching other levels has to be handed off with {@link #executeAfterTick(Runnable)}.
+     *
+     * @return parallel ticking enabled
+     */
+    public boolean isParallelTicking() {
+        return this.server.getConfig().getLevelSettings().isParallelTicking();
+    }
+
+    /**
+     * Gets the level ticked by the current thread.
+     *
+     * @return level or null if the current thread is not ticking a level
+     */
+    @Nullable
+    public CloudLevel getTickingLevel() {
+        return TICKING_LEVEL.get();
+    }
+
+    /**
+     * Runs a task on the main thread while no level is ticking. If called from the main thread the task is run
+     * immediately, otherwise it runs once all levels finished the current tick.
+     *
+     * @param task task touching several levels
+     */
+    public void executeAfterTick(Runnable task) {
+        Preconditions.checkNotNull(task, "task");
+        if (this.server.isPrimaryThread()) {
+            task.run();
+        } else {
+            this.afterTickTasks.add(task);
+        }
+    }
+
+    private void runAfterTickTasks() {
+        Runnable task;
+        while ((task = this.afterTickTasks.poll()) != null) {
             try {
-                long levelTime = System.currentTimeMillis();
-                level.doTick(currentTick);
-                int tickMs = (int) (System.currentTimeMillis() - levelTime);
-                level.tickRateTime = tickMs;
-
-                if (server.isAutoTickRate()) {
-                    if (tickMs < 50 && level.getTickRate() > server.getBaseTickRate()) {
-                        int r;
-                        level.setTickRate(r = level.getTickRate() - 1);
-                        if (r > server.getBaseTickRate()) {
-                            level.tickRateCounter = level.getTickRate();
-                        }
-                        log.debug("Raising level \"" + level.getName() + "\" tick rate to " + level.getTickRate() + " ticks");
-                    } else if (tickMs >= 50) {
-                        if (level.getTickRate() == server.getBaseTickRate()) {
-                            level.setTickRate(Math.max(server.getBaseTickRate() + 1, Math.min(server.getAutoTickRateLimit(), tickMs / 50)));
-                            log.debug("Level \"" + level.getName() + "\" took " + NukkitMath.round(tickMs, 2) + "ms, setting tick rate to " + level.getTickRate() + " ticks");
-                        } else if ((tickMs / level.getTickRate()) >= 50 && level.getTickRate() < server.getAutoTickRateLimit()) {
-                            level.setTickRate(level.getTickRate() + 1);
-                            log.debug("Level \"" + level.getName() + "\" took " + NukkitMath.round(tickMs, 2) + "ms, setting tick rate to " + level.getTickRate() + " ticks");
-                        }
-                        level.tickRateCounter = level.getTickRate();
-                    }
-                }
-
-                if (currentTick % 100 == 0) {
-                    level.doChunkGarbageCollection();
-                }
+                task.run();
             } catch (Exception e) {
-                log.error(server.getLanguage().translate("cloudburst.level.tickError", level.getId(), Utils.getExceptionMessage(e)));
+                log.error("Exception whilst running task after level tick", e);
+            }
+        }
+    }
+
+    private ExecutorService getTickExecutor() {
+        if (this.tickExecutor == null) {
+            int threads = this.server.getConfig().getLevelSettings().getTickThreads();
+            if (threads <= 0) {
+                threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
             }
+            this.tickExecutor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                    .setNameFormat("Level Tick Thread - #%d")
+                    .setDaemon(true)
+                    .build());
         }
+        return this.tickExecutor;
     }
 
-    public ExecutorService getChunkExecutor() {
-        return chunkExecutor;
+    /**
+     * @return executor of level storage I/O
+     */
+    public Executor getChunkExecutor() {
+        return this.server.getScheduler().getIoExecutor();
     }
 }
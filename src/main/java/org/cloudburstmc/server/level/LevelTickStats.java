@@ -0,0 +1,38 @@
+package org.cloudburstmc.server.level;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tick time statistics of a single level.
+ * <p>
+ * Written by the thread ticking the level, which is either the main thread or a level tick thread when levels are
+ * ticked in parallel.
+ */
+public class LevelTickStats {
+
+    // Weight of the newest tick in the average, about one second of ticks
+    private static final double AVERAGE_WEIGHT = 1.0 / 20;
+
+    private volatile long lastTickNanos;
+    private volatile double averageTickNanos;
+    private volatile long ticks;
+
+    void record(long nanos) {
+        this.lastTickNanos = nanos;
+        this.averageTickNanos = this.ticks == 0 ? nanos :
+                this.averageTickNanos + (nanos - this.averageTickNanos) * AVERAGE_WEIGHT;
+        this.ticks++;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public int getLastTickMillis() {
+        return (int) TimeUnit.NANOSECONDS.toMillis(this.lastTickNanos);
+    }
+
+    public double getAverageTickMillis() {
+        return this.averageTickNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
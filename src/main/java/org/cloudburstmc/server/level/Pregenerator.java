@@ -0,0 +1,334 @@
+package org.cloudburstmc.server.level;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
+import org.cloudburstmc.server.scheduler.TaskHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates all chunks of a square area of a level ahead of time.
+ * <p>
+ * Chunks are requested region by region, in the order they are stored in region files, with a cap on the chunks
+ * being generated at once. Generated chunks are saved and unloaded once no chunk within two chunks of them, which
+ * population and finishing use, is left to generate. Chunks which can't be unloaded yet are tried again later, and
+ * the border around the area population loaded is unloaded when the run ends. The progress is checkpointed to the
+ * level folder so a restart can resume where it left off.
+ * <p>
+ * Runs on the main thread, started and stopped through the {@link LevelManager}.
+ */
+@Log4j2
+public class Pregenerator {
+
+    private static final String CHECKPOINT_FILE = "pregeneration.properties";
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+    private static final long CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+    // Ticks per second below which only half as many chunks are generated at once
+    private static final float LAGGING_TPS = 18;
+
+    private final CloudLevel level;
+    private final Path checkpointPath;
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private final int maxInFlight;
+
+    private final int minRegionX;
+    private final int minRegionZ;
+    private final int regionsX;
+    private final long slotCount;
+    private final long total;
+
+    // Slots are the chunk positions of the regions covering the area, in region file order
+    private long nextSlot;
+    // All slots below are done
+    private long watermark;
+    // Done slots at or above the watermark
+    private final LongSet completed = new LongOpenHashSet();
+    // Keys of generated chunks which are still loaded
+    private final LongSet resident = new LongOpenHashSet();
+    private final Queue<Long> finished = new ConcurrentLinkedQueue<>();
+    private int inFlight;
+    private long done;
+    private final LongAdder failed = new LongAdder();
+
+    private final long startDone;
+    private long startNanos;
+    private long lastReportNanos;
+    private long lastCheckpointNanos;
+    private TaskHandler handler;
+
+    Pregenerator(CloudLevel level, int centerX, int centerZ, int radius, int maxInFlight, long startSlot) {
+        this.level = level;
+        this.checkpointPath = checkpointPath(level);
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        this.maxInFlight = Math.max(1, maxInFlight);
+
+        this.minRegionX = (centerX - radius) >> 5;
+        this.minRegionZ = (centerZ - radius) >> 5;
+        this.regionsX = ((centerX + radius) >> 5) - this.minRegionX + 1;
+        int regionsZ = ((centerZ + radius) >> 5) - this.minRegionZ + 1;
+        this.slotCount = (long) this.regionsX * regionsZ << 10;
+        this.total = (2L * radius + 1) * (2L * radius + 1);
+
+        this.nextSlot = this.watermark = Math.min(startSlot, this.slotCount);
+        for (long slot = 0; slot < this.watermark; slot++) {
+            if (this.isInside(slotX(slot), slotZ(slot))) {
+                this.done++;
+            }
+        }
+        this.startDone = this.done;
+    }
+
+    /**
+     * Resumes the pre-generation of the level from its checkpoint.
+     *
+     * @return the pre-generator or null if the level has no checkpoint
+     */
+    static Pregenerator resume(CloudLevel level, int maxInFlight) throws IOException {
+        Path path = checkpointPath(level);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream stream = Files.newInputStream(path)) {
+            properties.load(stream);
+        }
+        return new Pregenerator(level,
+                Integer.parseInt(properties.getProperty("center-x")),
+                Integer.parseInt(properties.getProperty("center-z")),
+                Integer.parseInt(properties.getProperty("radius")),
+                maxInFlight,
+                Long.parseLong(properties.getProperty("slot")));
+    }
+
+    private static Path checkpointPath(CloudLevel level) {
+        return level.getServer().getDataPath().resolve("worlds").resolve(level.getId()).resolve(CHECKPOINT_FILE);
+    }
+
+    void start() {
+        this.startNanos = this.lastReportNanos = this.lastCheckpointNanos = System.nanoTime();
+        this.handler = this.level.getServer().getScheduler().scheduleRepeatingTask(null, this::tick, 1);
+        log.info("Pre-generating {} chunks around chunk ({}, {}) in level {}, {} already done",
+                this.total, this.centerX, this.centerZ, this.level.getId(), this.done);
+    }
+
+    /**
+     * Stops requesting chunks and saves the checkpoint, chunks being generated finish in the background.
+     */
+    void stop() {
+        if (this.handler == null) {
+            return;
+        }
+        this.handler.cancel();
+        this.handler = null;
+        this.checkpoint();
+        log.info("Stopped pre-generation of level {} at {}", this.level.getId(), this.getProgress());
+    }
+
+    public boolean isRunning() {
+        return this.handler != null;
+    }
+
+    public long getDone() {
+        return done;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getFailed() {
+        return this.failed.sum();
+    }
+
+    /**
+     * @return chunks generated per second since this run started
+     */
+    public double getChunksPerSecond() {
+        long nanos = System.nanoTime() - this.startNanos;
+        return nanos <= 0 ? 0 : (this.done - this.startDone) / (double) nanos * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @return estimated seconds until all chunks are generated, -1 if unknown
+     */
+    public long getEtaSeconds() {
+        double rate = this.getChunksPerSecond();
+        return rate <= 0 ? -1 : (long) ((this.total - this.done) / rate);
+    }
+
+    public String getProgress() {
+        long eta = this.getEtaSeconds();
+        return String.format("%d/%d chunks (%.1f%%), %.1f chunks/s, ETA %s%s", this.done, this.total,
+                this.done * 100.0 / this.total, this.getChunksPerSecond(),
+                eta < 0 ? "unknown" : String.format("%d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60),
+                this.getFailed() > 0 ? ", " + this.getFailed() + " failed" : "");
+    }
+
+    private void tick() {
+        boolean changed = false;
+        Long slot;
+        while ((slot = this.finished.poll()) != null) {
+            this.inFlight--;
+            this.done++;
+            this.completed.add(slot.longValue());
+            this.resident.add(CloudChunk.key(slotX(slot), slotZ(slot)));
+            changed = true;
+        }
+        while (this.watermark < this.nextSlot && (!this.isInside(slotX(this.watermark), slotZ(this.watermark)) ||
+                this.completed.remove(this.watermark))) {
+            this.watermark++;
+        }
+        if (changed) {
+            this.unloadDone();
+        }
+
+        int maxInFlight = this.level.getServer().getTicksPerSecond() < LAGGING_TPS ?
+                Math.max(1, this.maxInFlight / 2) : this.maxInFlight;
+        while (this.inFlight < maxInFlight && this.nextSlot < this.slotCount) {
+            long next = this.nextSlot++;
+            int x = slotX(next);
+            int z = slotZ(next);
+            if (!this.isInside(x, z)) {
+                continue;
+            }
+            this.inFlight++;
+            this.level.getChunkFuture(x, z, PriorityExecutor.PRIORITY_BACKGROUND).whenComplete((chunk, throwable) -> {
+                if (throwable != null) {
+                    log.warn("Unable to pre-generate chunk ({}, {}) in level {}", x, z, this.level.getId(), throwable);
+                    this.failed.increment();
+                }
+                this.finished.add(next);
+            });
+        }
+
+        long now = System.nanoTime();
+        if (this.nextSlot >= this.slotCount && this.inFlight == 0) {
+            this.handler.cancel();
+            this.handler = null;
+            this.unloadDone();
+            this.unloadBorder();
+            try {
+                Files.deleteIfExists(this.checkpointPath);
+            } catch (IOException e) {
+                log.warn("Unable to delete pre-generation checkpoint {}", this.checkpointPath, e);
+            }
+            this.level.getServer().getLevelManager().pregenerationDone(this);
+            log.info("Finished pre-generation of level {}: {}", this.level.getId(), this.getProgress());
+            return;
+        }
+        if (now - this.lastCheckpointNanos >= CHECKPOINT_INTERVAL) {
+            this.lastCheckpointNanos = now;
+            this.checkpoint();
+        }
+        if (now - this.lastReportNanos >= REPORT_INTERVAL) {
+            this.lastReportNanos = now;
+            log.info("Pre-generating level {}: {}", this.level.getId(), this.getProgress());
+        }
+    }
+
+    private void unloadDone() {
+        LongIterator iterator = this.resident.iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.nextLong();
+            int x = CloudChunk.fromKeyX(key);
+            int z = CloudChunk.fromKeyZ(key);
+            // Chunks kept loaded, for example by a player or a plugin, are tried again on the next pass
+            if (this.isAreaDone(x, z) && (this.level.unloadChunk(x, z, true) || this.level.getLoadedChunk(x, z) == null)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Unloads the chunks within two chunks outside of the area, which were loaded to populate and finish its edge.
+     */
+    private void unloadBorder() {
+        int minX = this.centerX - this.radius - 2;
+        int maxX = this.centerX + this.radius + 2;
+        int minZ = this.centerZ - this.radius - 2;
+        int maxZ = this.centerZ + this.radius + 2;
+        for (int z = minZ; z <= maxZ; z++) {
+            boolean edge = z < minZ + 2 || z > maxZ - 2;
+            for (int x = minX; x <= maxX; x++) {
+                if (!edge && x == minX + 2) {
+                    // Skip the inside of the area
+                    x = maxX - 1;
+                }
+                if (this.level.getLoadedChunk(x, z) != null) {
+                    this.level.unloadChunk(x, z, true);
+                }
+            }
+        }
+    }
+
+    private boolean isAreaDone(int chunkX, int chunkZ) {
+        for (int z = chunkZ - 2; z <= chunkZ + 2; z++) {
+            for (int x = chunkX - 2; x <= chunkX + 2; x++) {
+                if (!this.isInside(x, z)) {
+                    continue;
+                }
+                long slot = this.slot(x, z);
+                if (slot >= this.watermark && !this.completed.contains(slot)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void checkpoint() {
+        Properties properties = new Properties();
+        properties.setProperty("center-x", Integer.toString(this.centerX));
+        properties.setProperty("center-z", Integer.toString(this.centerZ));
+        properties.setProperty("radius", Integer.toString(this.radius));
+        properties.setProperty("slot", Long.toString(this.watermark));
+        try {
+            Path temp = this.checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+            try (OutputStream stream = Files.newOutputStream(temp)) {
+                properties.store(stream, "Pre-generation progress of level " + this.level.getId());
+            }
+            Files.move(temp, this.checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to save pre-generation checkpoint {}", this.checkpointPath, e);
+        }
+    }
+
+    private boolean isInside(int chunkX, int chunkZ) {
+        return Math.abs(chunkX - this.centerX) <= this.radius && Math.abs(chunkZ - this.centerZ) <= this.radius;
+    }
+
+    private long slot(int chunkX, int chunkZ) {
+        long region = (long) ((chunkZ >> 5) - this.minRegionZ) * this.regionsX + ((chunkX >> 5) - this.minRegionX);
+        return region << 10 | (chunkZ & 31) << 5 | chunkX & 31;
+    }
+
+    private int slotX(long slot) {
+        return (this.minRegionX + (int) ((slot >> 10) % this.regionsX)) << 5 | (int) slot & 31;
+    }
+
+    private int slotZ(long slot) {
+        return (this.minRegionZ + (int) ((slot >> 10) / this.regionsX)) << 5 | (int) (slot >> 5) & 31;
+    }
+
+    public CloudLevel getLevel() {
+        return level;
+    }
+}
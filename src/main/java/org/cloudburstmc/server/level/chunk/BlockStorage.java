@@ -1,48 +1,69 @@
 package org.cloudburstmc.server.level.chunk;
 
-import com.nukkitx.nbt.NBTInputStream;
 import com.nukkitx.nbt.NBTOutputStream;
-import com.nukkitx.nbt.NbtMap;
 import com.nukkitx.nbt.NbtUtils;
 import com.nukkitx.network.VarInts;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
 import it.unimi.dsi.fastutil.objects.ReferenceArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.api.block.BlockState;
 import org.cloudburstmc.server.block.BlockPalette;
 import org.cloudburstmc.server.level.chunk.bitarray.BitArray;
 import org.cloudburstmc.server.level.chunk.bitarray.BitArrayVersion;
+import org.cloudburstmc.server.level.chunk.palette.Palette;
 import org.cloudburstmc.server.registry.CloudBlockRegistry;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static org.cloudburstmc.api.block.BlockStates.AIR;
 
+/**
+ * Paletted block storage of a single chunk section layer.
+ * <p>
+ * The storage switches between three modes depending on the amount of distinct block states:
+ * <ul>
+ *     <li>single value - no bit array is allocated at all</li>
+ *     <li>linear - small palettes which are scanned on lookup</li>
+ *     <li>hashed - large palettes with a reverse lookup map</li>
+ * </ul>
+ * Palette entries that are no longer referenced are only removed by {@link #compact()}, which must be called while
+ * holding exclusive access to the storage. Encoding always writes the compacted form.
+ */
 @Log4j2
 public class BlockStorage {
 
     private static final int SIZE = 4096;
+    private static final int SINGLE_VALUE_NETWORK_HEADER = 1; // 0 bits per block, runtime
 
-    private final List<BlockState> palette;
-    private BitArray bitArray;
+    private Palette palette;
+    private BitArray bitArray; // null in single value mode
+    private boolean compacted;
 
     public BlockStorage() {
-        this(BitArrayVersion.V2);
+        this(AIR);
+    }
+
+    public BlockStorage(BlockState state) {
+        this(null, Palette.of(state));
     }
 
     public BlockStorage(BitArrayVersion version) {
-        this.bitArray = version.createPalette(SIZE);
-        this.palette = new ReferenceArrayList<>(16);
-        this.palette.add(AIR); // Air is at the start of every palette.
+        this(version.createPalette(SIZE), Palette.of(Collections.singletonList(AIR)).expand());
     }
 
-    private BlockStorage(BitArray bitArray, List<BlockState> palette) {
+    private BlockStorage(BitArray bitArray, Palette palette) {
         this.palette = palette;
         this.bitArray = bitArray;
+        this.compacted = bitArray == null;
     }
 
     private int getPaletteHeader(BitArrayVersion version, boolean runtime) {
@@ -54,43 +75,149 @@ public class BlockStorage {
     }
 
     public BlockState getBlock(int index) {
+        if (this.bitArray == null) {
+            checkElementIndex(index, SIZE);
+            return this.palette.get(0);
+        }
         return this.blockFor(this.bitArray.get(index));
     }
 
     public void setBlock(int index, BlockState blockState) {
         try {
             int idx = this.idFor(blockState);
+            if (this.bitArray == null) {
+                // Still a single value and the state didn't change
+                checkElementIndex(index, SIZE);
+                return;
+            }
             this.bitArray.set(index, idx);
+            this.compacted = false;
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Unable to set block: " + blockState + ", palette: " + palette, e);
         }
     }
 
+    /**
+     * Sets every {@code step}th block from {@code from} up to {@code to} (exclusive), looking the state up only once.
+     */
+    public void fill(int from, int to, int step, BlockState blockState) {
+        checkArgument(from >= 0 && from <= to && to <= SIZE && step > 0, "Invalid range: %s to %s, step %s",
+                from, to, step);
+        if (from == 0 && to == SIZE && step == 1) {
+            this.palette = Palette.of(blockState);
+            this.bitArray = null;
+            this.compacted = true;
+            return;
+        }
+
+        int idx = this.idFor(blockState);
+        if (this.bitArray == null) {
+            return;
+        }
+        for (int i = from; i < to; i += step) {
+            this.bitArray.set(i, idx);
+        }
+        this.compacted = false;
+    }
+
+    /**
+     * Replaces every block with the states of a buffer of ids. The palette is built from the ids that are actually
+     * used and the bit array is packed directly, so the storage is compacted afterwards.
+     *
+     * @param states block state of every id
+     * @param ids    id of every block in block index order, starting at the offset
+     * @param offset index of the id of the first block
+     */
+    public void setBlocks(BlockState[] states, int[] ids, int offset) {
+        checkArgument(offset >= 0 && offset + SIZE <= ids.length, "Not enough ids after offset %s", offset);
+        int[] remap = new int[states.length];
+        Arrays.fill(remap, -1);
+        List<BlockState> palette = new ReferenceArrayList<>();
+        for (int i = offset, end = offset + SIZE; i < end; i++) {
+            int id = ids[i];
+            if (remap[id] == -1) {
+                remap[id] = palette.size();
+                palette.add(states[id]);
+            }
+        }
+
+        if (palette.size() == 1) {
+            this.palette = Palette.of(palette.get(0));
+            this.bitArray = null;
+        } else {
+            BitArray bitArray = BitArrayVersion.forPaletteSize(palette.size()).createPalette(SIZE);
+            bitArray.setAll(ids, offset, remap);
+            this.palette = Palette.of(palette);
+            this.bitArray = bitArray;
+        }
+        this.compacted = true;
+    }
+
+    public boolean isSingleValue() {
+        return this.bitArray == null;
+    }
+
+    public int getPaletteSize() {
+        return this.palette.size();
+    }
+
+    /**
+     * Tests the palette entries of this storage. Entries which are no longer used are included until compacted.
+     *
+     * @param predicate predicate to test
+     * @return whether any palette entry matches
+     */
+    public boolean anyMatch(Predicate<BlockState> predicate) {
+        for (int i = 0; i < this.palette.size(); i++) {
+            if (predicate.test(this.palette.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public void writeToNetwork(ByteBuf buffer) {
+        BlockStorage storage = this.compactedView();
+        CloudBlockRegistry registry = CloudBlockRegistry.get();
+
+        if (storage.bitArray == null) {
+            buffer.writeByte(SINGLE_VALUE_NETWORK_HEADER);
+            VarInts.writeInt(buffer, registry.getRuntimeId(storage.palette.get(0)));
+            return;
+        }
+
+        BitArray bitArray = storage.bitArray;
         buffer.writeByte(getPaletteHeader(bitArray.getVersion(), true));
 
         for (int word : bitArray.getWords()) {
             buffer.writeIntLE(word);
         }
 
+        Palette palette = storage.palette;
         VarInts.writeInt(buffer, palette.size());
 
-        CloudBlockRegistry registry = CloudBlockRegistry.get();
-        palette.forEach(state -> VarInts.writeInt(buffer, registry.getRuntimeId(state)));
+        for (int i = 0; i < palette.size(); i++) {
+            VarInts.writeInt(buffer, registry.getRuntimeId(palette.get(i)));
+        }
     }
 
     public void writeToStorage(ByteBuf buffer) {
+        BlockStorage storage = this.compactedView();
+        // Single value storages are written as an empty V1 array for compatibility with older readers.
+        BitArray bitArray = storage.bitArray == null ? BitArrayVersion.V1.createPalette(SIZE) : storage.bitArray;
+
         buffer.writeByte(getPaletteHeader(bitArray.getVersion(), false));
         for (int word : bitArray.getWords()) {
             buffer.writeIntLE(word);
         }
 
-        buffer.writeIntLE(this.palette.size());
+        Palette palette = storage.palette;
+        buffer.writeIntLE(palette.size());
 
         try (ByteBufOutputStream stream = new ByteBufOutputStream(buffer);
              NBTOutputStream nbtOutputStream = NbtUtils.createWriterLE(stream)) {
-            for (BlockState state : this.palette) {
-                nbtOutputStream.writeTag(BlockPalette.INSTANCE.getSerialized(state));
+            for (int i = 0; i < palette.size(); i++) {
+                nbtOutputStream.writeTag(BlockPalette.INSTANCE.getSerialized(palette.get(i)));
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -105,34 +232,45 @@ public class BlockStorage {
         for (int i = 0; i < expectedWordCount; i++) {
             words[i] = buffer.readIntLE();
         }
-        this.bitArray = version.createPalette(SIZE, words);
 
-        this.palette.clear();
         int paletteSize = buffer.readIntLE();
 
         checkArgument(version.getMaxEntryValue() >= paletteSize - 1,
                 "Palette is too large. Max size %s. Actual size %s", version.getMaxEntryValue(),
                 paletteSize);
 
-        try (ByteBufInputStream stream = new ByteBufInputStream(buffer);
-             NBTInputStream nbtInputStream = NbtUtils.createReaderLE(stream)) {
-            for (int i = 0; i < paletteSize; i++) {
-                try {
-                    NbtMap tag = (NbtMap) nbtInputStream.readTag();
-
-                    BlockState state = CloudBlockRegistry.get().getBlock(tag);
-
-                    if (this.palette.contains(state)) {
-                        log.warn("Palette contains block state ({}) twice! ({}) (palette: {})", state, tag, this.palette);
-                    }
-
-                    this.palette.add(state);
-                } catch (Exception e) {
-                    log.throwing(e);
+        List<BlockState> palette = new ReferenceArrayList<>(paletteSize);
+        Set<BlockState> seen = new ReferenceOpenHashSet<>(paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            int start = buffer.readerIndex();
+            BlockState state;
+            try {
+                state = PaletteEntryCache.read(buffer);
+            } catch (Exception e) {
+                if (buffer.readerIndex() == start) {
+                    // The end of a malformed entry is unknown, so the rest of the storage can't be read
+                    throw new IllegalArgumentException("Malformed palette entry " + i, e);
                 }
+                // Entries which can't be resolved still take their index
+                log.throwing(e);
+                state = AIR;
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+
+            if (!seen.add(state)) {
+                log.warn("Palette contains block state ({}) twice! (palette: {})", state, palette);
+            }
+            palette.add(state);
+        }
+
+        if (palette.size() == 1) {
+            // Every index has to point to the only entry so the bit array can be dropped.
+            this.palette = Palette.of(palette.get(0));
+            this.bitArray = null;
+            this.compacted = true;
+        } else {
+            this.palette = Palette.of(palette);
+            this.bitArray = version.createPalette(SIZE, words);
+            this.compacted = false;
         }
     }
 
@@ -152,14 +290,23 @@ public class BlockStorage {
         }
 
         index = this.palette.size();
-        BitArrayVersion version = this.bitArray.getVersion();
-        if (index > version.getMaxEntryValue()) {
-            BitArrayVersion next = version.next();
-            if (next != null) {
-                this.onResize(next);
+        if (this.bitArray == null) {
+            // Leaving single value mode. Every index is 0 which maps to the previous value.
+            this.bitArray = BitArrayVersion.V1.createPalette(SIZE);
+        } else {
+            BitArrayVersion version = this.bitArray.getVersion();
+            if (index > version.getMaxEntryValue()) {
+                BitArrayVersion next = version.next();
+                if (next != null) {
+                    this.onResize(next);
+                }
             }
         }
-        this.palette.add(blockState);
+
+        if (this.palette.add(blockState) == -1) {
+            this.palette = this.palette.expand();
+            this.palette.add(blockState);
+        }
         return index;
     }
 
@@ -167,9 +314,84 @@ public class BlockStorage {
         return this.palette.get(index);
     }
 
+    /**
+     * Removes unused palette entries and shrinks the bit array to the smallest version able to hold the remaining
+     * entries. Falls back to single value mode if only one entry is left.
+     * <p>
+     * Replaces the internal arrays so callers need exclusive access to this storage.
+     */
+    public void compact() {
+        if (this.compacted) {
+            return;
+        }
+
+        int paletteSize = this.palette.size();
+        int[] remap = new int[paletteSize];
+        int used = this.markUsed(remap);
+
+        if (used == paletteSize && this.bitArray.getVersion() == BitArrayVersion.forPaletteSize(paletteSize)) {
+            // Nothing to shrink
+            this.compacted = true;
+            return;
+        }
+
+        List<BlockState> states = new ReferenceArrayList<>(used);
+        for (int i = 0; i < paletteSize; i++) {
+            if (remap[i] != -1) {
+                states.add(this.palette.get(i));
+            }
+        }
+
+        if (used == 1) {
+            this.palette = Palette.of(states.get(0));
+            this.bitArray = null;
+        } else {
+            BitArray newBitArray = BitArrayVersion.forPaletteSize(used).createPalette(SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                newBitArray.set(i, remap[this.bitArray.get(i)]);
+            }
+            this.palette = Palette.of(states);
+            this.bitArray = newBitArray;
+        }
+        this.compacted = true;
+    }
+
+    /**
+     * Fills the remap table with the new id of every palette entry, or -1 if the entry is unused.
+     *
+     * @return amount of used entries
+     */
+    private int markUsed(int[] remap) {
+        boolean[] used = new boolean[remap.length];
+        for (int i = 0; i < SIZE; i++) {
+            used[this.bitArray.get(i)] = true;
+        }
+
+        int count = 0;
+        for (int i = 0; i < remap.length; i++) {
+            remap[i] = used[i] ? count++ : -1;
+        }
+        return count;
+    }
+
+    /**
+     * Gets a compacted view of this storage without modifying it, so it is safe to call with shared access.
+     */
+    private BlockStorage compactedView() {
+        if (this.compacted) {
+            return this;
+        }
+        BlockStorage storage = this.copy();
+        storage.compact();
+        return storage;
+    }
+
     public boolean isEmpty() {
-        if (this.palette.size() == 1) {
-            return true;
+        if (this.bitArray == null) {
+            return this.palette.get(0) == AIR;
+        }
+        if (this.palette.get(0) != AIR) {
+            return false;
         }
         for (int word : this.bitArray.getWords()) {
             if (Integer.toUnsignedLong(word) != 0L) {
@@ -180,6 +402,8 @@ public class BlockStorage {
     }
 
     public BlockStorage copy() {
-        return new BlockStorage(this.bitArray.copy(), new ReferenceArrayList<>(this.palette));
+        BlockStorage storage = new BlockStorage(this.bitArray == null ? null : this.bitArray.copy(), this.palette.copy());
+        storage.compacted = this.compacted;
+        return storage;
     }
 }
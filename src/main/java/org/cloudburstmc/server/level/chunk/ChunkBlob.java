@@ -0,0 +1,13 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.server.utils.XXHash64;
+
+/**
+ * Network encoded part of a chunk which can be cached by the client, identified by the xxHash64 of its contents.
+ */
+public record ChunkBlob(long id, byte[] data) {
+
+    public static ChunkBlob of(byte[] data) {
+        return new ChunkBlob(XXHash64.hash(data), data);
+    }
+}
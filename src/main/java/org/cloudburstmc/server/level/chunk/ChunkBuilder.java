@@ -6,6 +6,7 @@ import it.unimi.dsi.fastutil.ints.Int2ShortOpenHashMap;
 import org.cloudburstmc.api.level.chunk.Chunk;
 import org.cloudburstmc.server.level.BlockUpdate;
 import org.cloudburstmc.server.level.CloudLevel;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,8 +22,10 @@ public class ChunkBuilder {
     private CloudChunkSection[] sections;
     private byte[] biomes;
     private int[] heightMap;
+    private int[] heightMaps;
     private boolean dirty;
     private int state = Chunk.STATE_NEW;
+    private int priority = PriorityExecutor.PRIORITY_DEFAULT;
 
     public ChunkBuilder(int x, int z, CloudLevel level) {
         this.x = x;
@@ -38,6 +41,10 @@ public class ChunkBuilder {
         return z;
     }
 
+    public CloudLevel getLevel() {
+        return level;
+    }
+
     public ChunkBuilder sections(CloudChunkSection[] sections) {
         this.sections = Preconditions.checkNotNull(sections, "sections");
         return this;
@@ -58,6 +65,18 @@ public class ChunkBuilder {
         return this;
     }
 
+    /**
+     * Sets all saved {@link HeightMapType heightmaps}, one after another in their order. Chunks without them have their
+     * heightmaps rebuilt from the blocks.
+     */
+    public ChunkBuilder heightMaps(int[] heightMaps) {
+        Preconditions.checkNotNull(heightMaps, "heightMaps");
+        Preconditions.checkArgument(heightMaps.length == HeightMapType.values().length * CloudChunk.ARRAY_SIZE,
+                "Invalid heightmaps length: %s", heightMaps.length);
+        this.heightMaps = heightMaps;
+        return this;
+    }
+
     public ChunkBuilder blockUpdate(BlockUpdate blockUpdate) {
         Preconditions.checkNotNull(blockUpdate, "blockUpdate");
         this.blockUpdates.add(blockUpdate);
@@ -75,6 +94,18 @@ public class ChunkBuilder {
         return this;
     }
 
+    /**
+     * Sets the {@link PriorityExecutor} priority of reading the chunk.
+     */
+    public ChunkBuilder priority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
     public ChunkBuilder dirty() {
         this.dirty = true;
         return this;
@@ -85,7 +116,7 @@ public class ChunkBuilder {
         Preconditions.checkNotNull(this.biomes, "biomes");
         Preconditions.checkNotNull(this.heightMap, "heightMap");
         CloudChunk chunk = new CloudChunk(new UnsafeChunk(this.x, this.z, this.level, this.sections, this.biomes,
-                this.heightMap), this.chunkDataLoaders, this.blockUpdates);
+                this.heightMap, this.heightMaps), this.chunkDataLoaders, this.blockUpdates);
         if (this.state != Chunk.STATE_NEW) {
             chunk.setState(this.state);
         }
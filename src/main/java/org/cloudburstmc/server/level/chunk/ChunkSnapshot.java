@@ -0,0 +1,124 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.server.blockentity.BaseBlockEntity;
+import org.cloudburstmc.server.entity.BaseEntity;
+import org.cloudburstmc.server.level.BlockUpdate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Consistent view of a chunk taken under its read lock, to save or encode the chunk without holding the lock.
+ * <p>
+ * Sections are shared with the chunk instead of copied, the chunk copies a shared section before writing to it. Close
+ * the snapshot once done with it, so the chunk can write to its sections in place again.
+ *
+ * @see CloudChunk#snapshot()
+ */
+@NotThreadSafe
+public final class ChunkSnapshot implements Closeable {
+
+    private final CloudChunk chunk;
+    private final int state;
+    private final CloudChunkSection[] sections;
+    private final byte[] biomes;
+    private final int[] heightMap;
+    private final int[] heightMaps;
+    private final Set<BaseBlockEntity> blockEntities;
+    private final Set<BaseEntity> entities;
+    private final List<BlockUpdate> pendingUpdates;
+    private boolean closed;
+
+    ChunkSnapshot(CloudChunk chunk, int state, CloudChunkSection[] sections, byte[] biomes, int[] heightMap,
+                  @Nullable int[] heightMaps, Set<BaseBlockEntity> blockEntities, Set<BaseEntity> entities,
+                  List<BlockUpdate> pendingUpdates) {
+        this.chunk = chunk;
+        this.state = state;
+        this.sections = sections;
+        this.biomes = biomes;
+        this.heightMap = heightMap;
+        this.heightMaps = heightMaps;
+        this.blockEntities = blockEntities;
+        this.entities = entities;
+        this.pendingUpdates = pendingUpdates;
+    }
+
+    public int getX() {
+        return this.chunk.getX();
+    }
+
+    public int getZ() {
+        return this.chunk.getZ();
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return section at the given height, null if there is none. Must not be written to.
+     */
+    @Nullable
+    public CloudChunkSection getSection(int y) {
+        checkElementIndex(y, this.sections.length, "section Y");
+        return this.sections[y];
+    }
+
+    /**
+     * @return all sections, null where there is none. Must not be written to.
+     */
+    @Nonnull
+    public CloudChunkSection[] getSections() {
+        return sections;
+    }
+
+    @Nonnull
+    public byte[] getBiomeArray() {
+        return biomes;
+    }
+
+    @Nonnull
+    public int[] getHeightMapArray() {
+        return heightMap;
+    }
+
+    /**
+     * @return all heightmaps one after another in {@link HeightMapType} order, null if they weren't built yet
+     */
+    @Nullable
+    public int[] getHeightMaps() {
+        return heightMaps;
+    }
+
+    @Nonnull
+    public Set<BaseBlockEntity> getBlockEntities() {
+        return blockEntities;
+    }
+
+    @Nonnull
+    public Set<BaseEntity> getEntities() {
+        return entities;
+    }
+
+    /**
+     * @see CloudChunk#getPendingUpdates()
+     */
+    @Nonnull
+    public List<BlockUpdate> getPendingUpdates() {
+        return pendingUpdates;
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.chunk.releaseSnapshot();
+        }
+    }
+}
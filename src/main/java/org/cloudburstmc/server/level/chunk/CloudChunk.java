@@ -29,7 +29,7 @@ import org.cloudburstmc.server.blockentity.BaseBlockEntity;
 import org.cloudburstmc.server.entity.BaseEntity;
 import org.cloudburstmc.server.level.BlockUpdate;
 import org.cloudburstmc.server.level.CloudLevel;
-import org.cloudburstmc.server.level.chunk.bitarray.BitArrayVersion;
+import org.cloudburstmc.server.network.ClientBlobStore;
 import org.cloudburstmc.server.player.CloudPlayer;
 
 import javax.annotation.Nonnull;
@@ -55,8 +55,8 @@ public final class CloudChunk implements Chunk, Closeable {
 
     static final int ARRAY_SIZE = 256;
 
-    private static final CloudChunkSection EMPTY = new CloudChunkSection(new BlockStorage[]{new BlockStorage(BitArrayVersion.V1),
-            new BlockStorage(BitArrayVersion.V1)});
+    private static final CloudChunkSection EMPTY = new CloudChunkSection(new BlockStorage[]{new BlockStorage(),
+            new BlockStorage()});
 
     private final Lock readLock; //avoid pointer chasing and an additional interface method call
     private final Lock writeLock;
@@ -73,6 +73,9 @@ public final class CloudChunk implements Chunk, Closeable {
 
     private List<BlockUpdate> blockUpdates;
 
+    private volatile List<BlockUpdate> pendingUpdates = Collections.emptyList();
+    private volatile long pendingUpdatesTick;
+
     private final CloudLockableChunk readLockable;
     private final CloudLockableChunk writeLockable;
 
@@ -93,8 +96,8 @@ public final class CloudChunk implements Chunk, Closeable {
         this.readLock = lock.readLock();
         this.writeLock = lock.writeLock();
 
-        this.readLockable = new CloudLockableChunk(unsafe, this.readLock);
-        this.writeLockable = new CloudLockableChunk(unsafe, this.writeLock);
+        this.readLockable = new CloudLockableChunk(unsafe, this.readLock, false);
+        this.writeLockable = new CloudLockableChunk(unsafe, this.writeLock, true);
     }
 
     public void init() {
@@ -115,6 +118,9 @@ public final class CloudChunk implements Chunk, Closeable {
             for (BlockUpdate update : blockUpdates) {
                 ((CloudLevel) this.unsafe.getLevel()).scheduleUpdate(update);
             }
+            // What was loaded is what the save has to replace
+            this.pendingUpdatesTick = ((CloudLevel) this.unsafe.getLevel()).getCurrentTick();
+            this.pendingUpdates = this.blockUpdates;
             this.blockUpdates = null;
 
 //            if(getX() == 0 && getZ() == 0) {
@@ -159,6 +165,20 @@ public final class CloudChunk implements Chunk, Closeable {
         }
     }
 
+    /**
+     * @return a copy of the section at the given height, null if there is none
+     */
+    @Nullable
+    CloudChunkSection copySection(int y) {
+        this.readLock.lock();
+        try {
+            CloudChunkSection section = unsafe.getSections()[y];
+            return section == null ? null : section.copy();
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
     @Nonnull
     @Override
     public BlockState getBlock(int x, int y, int z, int layer) {
@@ -261,6 +281,27 @@ public final class CloudChunk implements Chunk, Closeable {
         }
     }
 
+    /**
+     * @return height above the highest block of the column matching the heightmap type, 0 if there is none
+     */
+    public int getHeight(HeightMapType type, int x, int z) {
+        this.readLock.lock();
+        try {
+            return this.unsafe.getHeight(type, x, z);
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    public void recalculateHeightMaps() {
+        this.writeLock.lock();
+        try {
+            this.unsafe.recalculateHeightMaps();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
     @Override
     public void addEntity(@Nonnull Entity entity) {
         this.writeLock.lock();
@@ -296,6 +337,42 @@ public final class CloudChunk implements Chunk, Closeable {
         return Vector3i.from(x, y, z);
     }
 
+    /**
+     * Takes a snapshot of the blocks, biomes, block entities, entities and pending updates of this chunk. Only holds the
+     * read lock for as long as copying the references takes, sections are copied on the next write to them instead.
+     *
+     * @return snapshot, which has to be closed once done with
+     */
+    @Nonnull
+    public ChunkSnapshot snapshot() {
+        this.readLock.lock();
+        try {
+            CloudChunkSection[] sections = unsafe.shareSections();
+            return new ChunkSnapshot(this, unsafe.getState(), sections, unsafe.getBiomeArray().clone(),
+                    unsafe.getHeightMapArray(), unsafe.getHeightMaps(), unsafe.getBlockEntities(),
+                    new HashSet<>(unsafe.getEntities()), this.pendingUpdates);
+        } finally {
+            this.readLock.unlock();
+        }
+    }
+
+    void releaseSnapshot() {
+        unsafe.releaseSections();
+    }
+
+    /**
+     * Shrinks the block palettes of all sections which no snapshot shares. Takes the write lock, so it should be done
+     * before taking the snapshot to serialize.
+     */
+    public void compact() {
+        this.writeLock.lock();
+        try {
+            unsafe.compact();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
     @Override
     public int getX() {
         return unsafe.getX();
@@ -427,6 +504,26 @@ public final class CloudChunk implements Chunk, Closeable {
         //todo
     }
 
+    /**
+     * Scheduled block updates to write with the next save, delays are relative to the tick the save was queued at.
+     */
+    public List<BlockUpdate> getPendingUpdates() {
+        return pendingUpdates;
+    }
+
+    /**
+     * @return tick the delays of the {@link #getPendingUpdates() pending updates} are relative to
+     */
+    public long getPendingUpdatesTick() {
+        return pendingUpdatesTick;
+    }
+
+    public void setPendingUpdates(List<BlockUpdate> pendingUpdates, long tick) {
+        checkNotNull(pendingUpdates, "pendingUpdates");
+        this.pendingUpdatesTick = tick;
+        this.pendingUpdates = pendingUpdates;
+    }
+
     @Override
     public LockableChunk readLockable() {
         return this.readLockable;
@@ -560,53 +657,21 @@ public final class CloudChunk implements Chunk, Closeable {
         packet.setChunkX(this.getX());
         packet.setChunkZ(this.getZ());
 
-        this.readLock.lock();
-        try {
-            CloudChunkSection[] sections = unsafe.getSections();
-
-            int subChunkCount = SECTION_COUNT - 1; // index
-            while (subChunkCount >= 0 && (sections[subChunkCount] == null || sections[subChunkCount].isEmpty())) {
-                subChunkCount--;
-            }
-            subChunkCount++; // length
-
-            CloudChunkSection[] networkSections = Arrays.copyOf(sections, subChunkCount);
-            for (int i = 0; i < subChunkCount; i++) {
-                if (networkSections[i] == null) {
-                    networkSections[i] = EMPTY;
-                }
-            }
+        try (ChunkSnapshot snapshot = this.snapshot()) {
+            CloudChunkSection[] sections = snapshot.getSections();
+            int subChunkCount = getSubChunkCount(sections);
 
             packet.setSubChunksLength(subChunkCount);
 
             ByteBuf buffer = Unpooled.buffer();
             try {
                 for (int i = 0; i < subChunkCount; i++) {
-                    networkSections[i].writeToNetwork(buffer);
+                    CloudChunkSection section = sections[i];
+                    (section == null ? EMPTY : section).writeToNetwork(buffer);
                 }
 
-                buffer.writeBytes(unsafe.getBiomeArray()); // Biomes - 256 bytes
-                buffer.writeByte(0); // Border blocks size - Education Edition only
-
-                // Extra Data length. Replaced by second block layer.
-                VarInts.writeUnsignedInt(buffer, 0);
-
-                Set<BaseBlockEntity> tiles = unsafe.getBlockEntities();
-                // Block entities
-                if (!tiles.isEmpty()) {
-                    try (ByteBufOutputStream stream = new ByteBufOutputStream(buffer);
-                         NBTOutputStream nbtOutputStream = NbtUtils.createNetworkWriter(stream)) {
-                        tiles.forEach(blockEntity -> {
-                            if (blockEntity.isSpawnable()) {
-                                try {
-                                    nbtOutputStream.writeTag(((BaseBlockEntity) blockEntity).getChunkTag());
-                                } catch (IOException e) {
-                                    throw new RuntimeException(e);
-                                }
-                            }
-                        });
-                    }
-                }
+                buffer.writeBytes(snapshot.getBiomeArray()); // Biomes - 256 bytes
+                writeNetworkFooter(buffer, snapshot);
 
                 byte[] data = new byte[buffer.readableBytes()];
                 buffer.readBytes(data);
@@ -623,8 +688,103 @@ public final class CloudChunk implements Chunk, Closeable {
             } finally {
                 buffer.release();
             }
-        } finally {
-            this.readLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a chunk packet for clients supporting the blob cache. Sub-chunks and biomes are only referenced by
+     * their hash and the blobs themselves are put into the given store so missing ones can be answered later.
+     *
+     * @param blobStore store for the referenced blobs
+     * @return chunk packet
+     */
+    @Nonnull
+    public LevelChunkPacket createCachedChunkPacket(ClientBlobStore blobStore) {
+        LevelChunkPacket packet = new LevelChunkPacket();
+        packet.setChunkX(this.getX());
+        packet.setChunkZ(this.getZ());
+        packet.setCachingEnabled(true);
+
+        try (ChunkSnapshot snapshot = this.snapshot()) {
+            CloudChunkSection[] sections = snapshot.getSections();
+            int subChunkCount = getSubChunkCount(sections);
+
+            packet.setSubChunksLength(subChunkCount);
+
+            for (int i = 0; i < subChunkCount; i++) {
+                CloudChunkSection section = sections[i];
+                ChunkBlob blob = (section == null ? EMPTY : section).getNetworkBlob();
+                blobStore.put(blob);
+                packet.getBlobIds().add(blob.id());
+            }
+
+            ChunkBlob biomes = ChunkBlob.of(snapshot.getBiomeArray());
+            blobStore.put(biomes);
+            packet.getBlobIds().add(biomes.id());
+
+            ByteBuf buffer = Unpooled.buffer();
+            try {
+                writeNetworkFooter(buffer, snapshot);
+
+                byte[] data = new byte[buffer.readableBytes()];
+                buffer.readBytes(data);
+
+                packet.setData(data);
+                return packet;
+            } catch (IOException e) {
+                log.error("Error whilst encoding chunk", e);
+                throw new ChunkException("Unable to create chunk packet", e);
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    /**
+     * Gets the size of the data {@link #createChunkPacket()} encodes, leaving out block entities. The sections stay
+     * encoded, so creating the chunk packet afterwards doesn't encode them again.
+     *
+     * @return size in bytes
+     */
+    public int getNetworkSize() {
+        try (ChunkSnapshot snapshot = this.snapshot()) {
+            CloudChunkSection[] sections = snapshot.getSections();
+            int subChunkCount = getSubChunkCount(sections);
+
+            int size = 0;
+            for (int i = 0; i < subChunkCount; i++) {
+                CloudChunkSection section = sections[i];
+                size += (section == null ? EMPTY : section).getNetworkBlob().data().length;
+            }
+            return size + ARRAY_SIZE + 2; // Biomes and footer
+        }
+    }
+
+    private static int getSubChunkCount(CloudChunkSection[] sections) {
+        int subChunkCount = SECTION_COUNT - 1; // index
+        while (subChunkCount >= 0 && (sections[subChunkCount] == null || sections[subChunkCount].isEmpty())) {
+            subChunkCount--;
+        }
+        return subChunkCount + 1; // length
+    }
+
+    private static void writeNetworkFooter(ByteBuf buffer, ChunkSnapshot snapshot) throws IOException {
+        buffer.writeByte(0); // Border blocks size - Education Edition only
+
+        // Extra Data length. Replaced by second block layer.
+        VarInts.writeUnsignedInt(buffer, 0);
+
+        Set<BaseBlockEntity> tiles = snapshot.getBlockEntities();
+        // Block entities
+        if (!tiles.isEmpty()) {
+            try (ByteBufOutputStream stream = new ByteBufOutputStream(buffer);
+                 NBTOutputStream nbtOutputStream = NbtUtils.createNetworkWriter(stream)) {
+                for (BaseBlockEntity blockEntity : tiles) {
+                    if (blockEntity.isSpawnable()) {
+                        nbtOutputStream.writeTag(blockEntity.getChunkTag());
+                    }
+                }
+            }
         }
     }
 }
@@ -2,6 +2,7 @@ package org.cloudburstmc.server.level.chunk;
 
 import com.google.common.base.Preconditions;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.cloudburstmc.api.block.BlockState;
 import org.cloudburstmc.api.level.chunk.ChunkSection;
 import org.cloudburstmc.server.utils.NibbleArray;
@@ -16,6 +17,7 @@ public class CloudChunkSection implements ChunkSection {
     private final BlockStorage[] storage;
     private final NibbleArray blockLight;
     private final NibbleArray skyLight;
+    private volatile ChunkBlob networkBlob; // Cleared whenever a block changes
 
     public CloudChunkSection() {
         this(new BlockStorage[]{new BlockStorage(), new BlockStorage()}, new NibbleArray(SIZE),
@@ -68,6 +70,45 @@ public class CloudChunkSection implements ChunkSection {
         checkBounds(x, y, z);
         checkLayer(layer);
         this.storage[layer].setBlock(blockIndex(x, y, z), blockState);
+        this.networkBlob = null;
+    }
+
+    /**
+     * Sets the blocks of a column from {@code fromY} up to {@code toY} (exclusive).
+     */
+    public void fillColumn(int x, int z, int fromY, int toY, int layer, BlockState blockState) {
+        checkBounds(x, fromY, z);
+        Preconditions.checkArgument(toY >= fromY && toY <= 16, "toY (%s) is not between %s and 16", toY, fromY);
+        checkLayer(layer);
+        this.storage[layer].fill(blockIndex(x, fromY, z), blockIndex(x, 0, z) + toY, 1, blockState);
+        this.networkBlob = null;
+    }
+
+    /**
+     * Sets the blocks of the horizontal slice at the given height.
+     */
+    public void fillSlice(int y, int layer, BlockState blockState) {
+        checkBounds(0, y, 0);
+        checkLayer(layer);
+        this.storage[layer].fill(y, SIZE, 16, blockState);
+        this.networkBlob = null;
+    }
+
+    public void fill(int layer, BlockState blockState) {
+        checkLayer(layer);
+        this.storage[layer].fill(0, SIZE, 1, blockState);
+        this.networkBlob = null;
+    }
+
+    /**
+     * Replaces every block of a layer from a buffer of ids.
+     *
+     * @see BlockStorage#setBlocks(BlockState[], int[], int)
+     */
+    public void setBlocks(int layer, BlockState[] states, int[] ids, int offset) {
+        checkLayer(layer);
+        this.storage[layer].setBlocks(states, ids, offset);
+        this.networkBlob = null;
     }
 
     public byte getSkyLight(int x, int y, int z) {
@@ -91,11 +132,35 @@ public class CloudChunkSection implements ChunkSection {
     }
 
     public void writeToNetwork(ByteBuf buffer) {
-        buffer.writeByte(CHUNK_SECTION_VERSION);
-        buffer.writeByte(this.storage.length);
-        for (BlockStorage blockStorage : this.storage) {
-            blockStorage.writeToNetwork(buffer);
+        buffer.writeBytes(this.getNetworkBlob().data());
+    }
+
+    /**
+     * Gets the network encoding of this section. The encoding and its hash are kept until a block in this section
+     * changes.
+     *
+     * @return network blob
+     */
+    public ChunkBlob getNetworkBlob() {
+        ChunkBlob blob = this.networkBlob;
+        if (blob == null) {
+            ByteBuf buffer = Unpooled.buffer();
+            try {
+                buffer.writeByte(CHUNK_SECTION_VERSION);
+                buffer.writeByte(this.storage.length);
+                for (BlockStorage blockStorage : this.storage) {
+                    blockStorage.writeToNetwork(buffer);
+                }
+
+                byte[] data = new byte[buffer.readableBytes()];
+                buffer.readBytes(data);
+                blob = ChunkBlob.of(data);
+            } finally {
+                buffer.release();
+            }
+            this.networkBlob = blob;
         }
+        return blob;
     }
 
     public NibbleArray getSkyLightArray() {
@@ -119,11 +184,22 @@ public class CloudChunkSection implements ChunkSection {
         return true;
     }
 
+    /**
+     * Removes unused palette entries of every layer.
+     *
+     * @see BlockStorage#compact()
+     */
+    public void compact() {
+        for (BlockStorage blockStorage : this.storage) {
+            blockStorage.compact();
+        }
+    }
+
     public CloudChunkSection copy() {
         BlockStorage[] storage = new BlockStorage[this.storage.length];
         for (int i = 0; i < storage.length; i++) {
             storage[i] = this.storage[i].copy();
         }
-        return new CloudChunkSection(storage, skyLight.copy(), blockLight.copy());
+        return new CloudChunkSection(storage, blockLight.copy(), skyLight.copy());
     }
 }
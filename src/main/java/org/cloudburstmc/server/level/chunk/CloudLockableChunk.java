@@ -21,10 +21,13 @@ import java.util.concurrent.locks.Lock;
 @NotThreadSafe
 public final class CloudLockableChunk extends LockableChunk {
     private final UnsafeChunk unsafe;
+    // Whether the lock is the write lock, sections are handed out to be written to
+    private final boolean write;
 
-    CloudLockableChunk(UnsafeChunk unsafe, Lock lock) {
+    CloudLockableChunk(UnsafeChunk unsafe, Lock lock, boolean write) {
         super(lock);
         this.unsafe = unsafe;
+        this.write = write;
     }
 
     @Nonnull
@@ -36,13 +39,18 @@ public final class CloudLockableChunk extends LockableChunk {
     @Nullable
     @Override
     public CloudChunkSection getSection(int y) {
-        return unsafe.getSection(y);
+        return this.write ? unsafe.getWritableSection(y) : unsafe.getSection(y);
     }
 
     @Nonnull
     @Override
     public CloudChunkSection[] getSections() {
         CloudChunkSection[] sections = unsafe.getSections();
+        if (this.write) {
+            for (int y = 0; y < sections.length; y++) {
+                unsafe.getWritableSection(y);
+            }
+        }
         return Arrays.copyOf(sections, sections.length);
     }
 
@@ -97,6 +105,18 @@ public final class CloudLockableChunk extends LockableChunk {
         return this.unsafe.getHighestBlock(x, z);
     }
 
+    public int getHeight(HeightMapType type, int x, int z) {
+        return this.unsafe.getHeight(type, x, z);
+    }
+
+    public byte getDefaultSkyLight(int x, int y, int z) {
+        return this.unsafe.getDefaultSkyLight(x, y, z);
+    }
+
+    public void recalculateHeightMaps() {
+        this.unsafe.recalculateHeightMaps();
+    }
+
     @Override
     public void addEntity(@Nonnull Entity entity) {
         this.unsafe.addEntity(entity);
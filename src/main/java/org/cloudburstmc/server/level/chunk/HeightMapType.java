@@ -0,0 +1,20 @@
+package org.cloudburstmc.server.level.chunk;
+
+/**
+ * Heightmaps every chunk keeps up to date. Heights are one above the highest matching block of a column, or 0 if
+ * there is none.
+ */
+public enum HeightMapType {
+    /**
+     * Highest block that isn't air.
+     */
+    WORLD_SURFACE,
+    /**
+     * Highest block that blocks movement or holds a liquid, where rain, snow and lightning stop.
+     */
+    MOTION_BLOCKING,
+    /**
+     * Highest block that filters sky light.
+     */
+    LIGHT_BLOCKING
+}
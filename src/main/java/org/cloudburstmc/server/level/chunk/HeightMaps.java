@@ -0,0 +1,199 @@
+package org.cloudburstmc.server.level.chunk;
+
+import com.google.common.base.Preconditions;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.api.block.BlockType;
+import org.cloudburstmc.api.block.behavior.BlockBehavior;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.cloudburstmc.api.block.BlockTypes.FLOWING_LAVA;
+import static org.cloudburstmc.api.block.BlockTypes.FLOWING_WATER;
+import static org.cloudburstmc.api.block.BlockTypes.LAVA;
+import static org.cloudburstmc.api.block.BlockTypes.WATER;
+
+/**
+ * The {@link HeightMapType heightmaps} of a chunk, updated on every block change so sky exposure checks don't need
+ * to look at the blocks of a column.
+ */
+final class HeightMaps {
+
+    private static final HeightMapType[] TYPES = HeightMapType.values();
+    private static final int ALL = (1 << TYPES.length) - 1;
+
+    // Bit per heightmap type a block state of the first layer counts for, and of the second layer in the upper bits
+    private static final Map<BlockState, Integer> FLAGS = new ConcurrentHashMap<>();
+
+    private final short[] heights = new short[TYPES.length * CloudChunk.ARRAY_SIZE];
+    private boolean valid;
+
+    int get(HeightMapType type, int x, int z) {
+        return this.heights[type.ordinal() << 8 | UnsafeChunk.get2dIndex(x, z)];
+    }
+
+    /**
+     * Updates the column after the block at the given position changed.
+     */
+    void update(CloudChunkSection[] sections, int x, int y, int z) {
+        int flags = flags(sections, x, y, z);
+        int column = UnsafeChunk.get2dIndex(x, z);
+        for (int type = 0; type < TYPES.length; type++) {
+            int index = type << 8 | column;
+            int height = this.heights[index];
+            if ((flags & 1 << type) != 0) {
+                if (y >= height) {
+                    this.heights[index] = (short) (y + 1);
+                }
+            } else if (y == height - 1) {
+                // The top block is gone, look for the next one
+                this.heights[index] = 0;
+                this.scan(sections, x, y - 1, z, 1 << type);
+            }
+        }
+    }
+
+    /**
+     * Whether the heightmaps were built from the blocks, fresh chunks only get them once their terrain is written.
+     */
+    boolean isValid() {
+        return this.valid;
+    }
+
+    /**
+     * Rebuilds all heightmaps from the blocks, after the whole chunk was written at once.
+     */
+    void recalculate(CloudChunkSection[] sections) {
+        this.valid = true;
+        Arrays.fill(this.heights, (short) 0);
+        int top = sections.length - 1;
+        while (top >= 0 && isEmpty(sections[top])) {
+            top--;
+        }
+        if (top < 0) {
+            return;
+        }
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                this.scan(sections, x, top << 4 | 15, z, ALL);
+            }
+        }
+    }
+
+    /**
+     * Sets all heightmaps from an array created by {@link #toArray()}, so saved chunks don't need to be rebuilt.
+     */
+    void load(int[] heights) {
+        Preconditions.checkArgument(heights.length == this.heights.length, "Invalid heightmaps length: %s",
+                heights.length);
+        this.valid = true;
+        for (int i = 0; i < heights.length; i++) {
+            this.heights[i] = (short) heights[i];
+        }
+    }
+
+    /**
+     * @return copy of all heightmaps one after another in {@link HeightMapType} order, null if they weren't built yet
+     */
+    @Nullable
+    int[] toArray() {
+        if (!this.valid) {
+            return null;
+        }
+        int[] heights = new int[this.heights.length];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = this.heights[i];
+        }
+        return heights;
+    }
+
+    void clear() {
+        this.valid = false;
+        Arrays.fill(this.heights, (short) 0);
+    }
+
+    private void scan(CloudChunkSection[] sections, int x, int fromY, int z, int types) {
+        int column = UnsafeChunk.get2dIndex(x, z);
+        for (int y = fromY; y >= 0 && types != 0; y--) {
+            if (sections[y >> 4] == null) {
+                y &= ~0xf;
+                continue;
+            }
+            int found = flags(sections, x, y, z) & types;
+            if (found != 0) {
+                for (int type = 0; type < TYPES.length; type++) {
+                    if ((found & 1 << type) != 0) {
+                        this.heights[type << 8 | column] = (short) (y + 1);
+                    }
+                }
+                types &= ~found;
+            }
+        }
+    }
+
+    private static boolean isEmpty(CloudChunkSection section) {
+        if (section == null) {
+            return true;
+        }
+        for (BlockStorage storage : section.getBlockStorageArray()) {
+            if (storage.anyMatch(state -> state != BlockStates.AIR)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int flags(CloudChunkSection[] sections, int x, int y, int z) {
+        CloudChunkSection section = sections[y >> 4];
+        if (section == null) {
+            return 0;
+        }
+        int index = CloudChunkSection.blockIndex(x, y & 0xf, z);
+        BlockStorage[] storages = section.getBlockStorageArray();
+        int flags = flags(storages[0].getBlock(index)) & ALL;
+        if (storages.length > 1) {
+            flags |= flags(storages[1].getBlock(index)) >> TYPES.length;
+        }
+        return flags;
+    }
+
+    private static int flags(BlockState state) {
+        if (state == BlockStates.AIR) {
+            return 0;
+        }
+        Integer flags = FLAGS.get(state);
+        if (flags == null) {
+            flags = compute(state);
+            FLAGS.put(state, flags);
+        }
+        return flags;
+    }
+
+    private static int compute(BlockState state) {
+        BlockBehavior behavior = state.getBehavior();
+        BlockType type = state.getType();
+        boolean liquid = type == WATER || type == FLOWING_WATER || type == LAVA || type == FLOWING_LAVA;
+        boolean lightBlocking = behavior.getFilterLevel(state) > 0;
+
+        int flags = 1 << HeightMapType.WORLD_SURFACE.ordinal();
+        if (liquid || !behavior.canPassThrough(state)) {
+            flags |= 1 << HeightMapType.MOTION_BLOCKING.ordinal();
+        }
+        if (lightBlocking) {
+            flags |= 1 << HeightMapType.LIGHT_BLOCKING.ordinal();
+        }
+
+        // Blocks of the second layer, like the water of waterlogged blocks, don't make up the world surface
+        int extraFlags = 0;
+        if (liquid) {
+            extraFlags |= 1 << HeightMapType.MOTION_BLOCKING.ordinal();
+        }
+        if (lightBlocking) {
+            extraFlags |= 1 << HeightMapType.LIGHT_BLOCKING.ordinal();
+        }
+        return extraFlags << TYPES.length | flags;
+    }
+}
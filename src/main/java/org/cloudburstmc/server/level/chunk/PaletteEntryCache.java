@@ -0,0 +1,176 @@
+package org.cloudburstmc.server.level.chunk;
+
+import com.nukkitx.nbt.NBTInputStream;
+import com.nukkitx.nbt.NbtMap;
+import com.nukkitx.nbt.NbtUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+
+import java.io.IOException;
+
+/**
+ * Block states of stored palette entries, keyed by the bytes of the entry's little endian NBT. Palettes repeat across
+ * sections and chunks, so most entries are found by their bytes without decoding the NBT or allocating anything.
+ * <p>
+ * The table is direct mapped and lock free: colliding entries replace each other and threads racing on the same slot
+ * may each decode the entry.
+ */
+final class PaletteEntryCache {
+
+    private static final int SIZE = 4096;
+    private static final int MASK = SIZE - 1;
+
+    private static final int TAG_END = 0;
+    private static final int TAG_BYTE = 1;
+    private static final int TAG_SHORT = 2;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_FLOAT = 5;
+    private static final int TAG_DOUBLE = 6;
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_STRING = 8;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+    private static final int TAG_INT_ARRAY = 11;
+    private static final int TAG_LONG_ARRAY = 12;
+
+    private static final Entry[] TABLE = new Entry[SIZE];
+
+    private PaletteEntryCache() {
+    }
+
+    /**
+     * Reads a palette entry and moves the reader index past it, also if resolving the entry fails. Malformed entries
+     * leave the reader index where it was, as their end is unknown.
+     *
+     * @return block state of the entry
+     * @throws IOException if the entry is malformed or truncated
+     */
+    static BlockState read(ByteBuf buffer) throws IOException {
+        int start = buffer.readerIndex();
+        int end;
+        try {
+            end = skipNamedTag(buffer, start);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Palette entry is truncated", e);
+        }
+        if (end > buffer.writerIndex()) {
+            throw new IOException("Palette entry is truncated");
+        }
+        int length = end - start;
+        int hash = hash(buffer, start, length);
+        int slot = slot(hash);
+
+        Entry entry = TABLE[slot];
+        if (entry != null && entry.hash == hash && entry.matches(buffer, start, length)) {
+            buffer.readerIndex(end);
+            return entry.state;
+        }
+
+        NbtMap tag;
+        try (NBTInputStream stream = NbtUtils.createReaderLE(new ByteBufInputStream(buffer.slice(start, length)))) {
+            tag = (NbtMap) stream.readTag();
+        } finally {
+            buffer.readerIndex(end);
+        }
+        BlockState state = CloudBlockRegistry.get().getBlock(tag);
+
+        byte[] bytes = new byte[length];
+        buffer.getBytes(start, bytes);
+        TABLE[slot] = new Entry(bytes, hash, state);
+        return state;
+    }
+
+    static int slot(int hash) {
+        return (hash ^ hash >>> 16) & MASK;
+    }
+
+    static int hash(ByteBuf buffer, int index, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.getByte(index + i);
+        }
+        return hash;
+    }
+
+    /**
+     * @return index after the named tag starting at the given index
+     */
+    private static int skipNamedTag(ByteBuf buffer, int index) throws IOException {
+        int type = buffer.getUnsignedByte(index);
+        if (type != TAG_COMPOUND) {
+            throw new IOException("Palette entry is not a compound tag: " + type);
+        }
+        index++;
+        index += 2 + buffer.getUnsignedShortLE(index);
+        return skipPayload(buffer, index, type);
+    }
+
+    private static int skipPayload(ByteBuf buffer, int index, int type) throws IOException {
+        switch (type) {
+            case TAG_BYTE:
+                return index + 1;
+            case TAG_SHORT:
+                return index + 2;
+            case TAG_INT:
+            case TAG_FLOAT:
+                return index + 4;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                return index + 8;
+            case TAG_BYTE_ARRAY:
+                return index + 4 + buffer.getIntLE(index);
+            case TAG_STRING:
+                return index + 2 + buffer.getUnsignedShortLE(index);
+            case TAG_INT_ARRAY:
+                return index + 4 + buffer.getIntLE(index) * 4;
+            case TAG_LONG_ARRAY:
+                return index + 4 + buffer.getIntLE(index) * 8;
+            case TAG_LIST: {
+                int elementType = buffer.getUnsignedByte(index);
+                int size = buffer.getIntLE(index + 1);
+                index += 5;
+                for (int i = 0; i < size; i++) {
+                    index = skipPayload(buffer, index, elementType);
+                }
+                return index;
+            }
+            case TAG_COMPOUND: {
+                int childType;
+                while ((childType = buffer.getUnsignedByte(index++)) != TAG_END) {
+                    index += 2 + buffer.getUnsignedShortLE(index);
+                    index = skipPayload(buffer, index, childType);
+                }
+                return index;
+            }
+            default:
+                throw new IOException("Unknown tag type " + type);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final int hash;
+        private final BlockState state;
+
+        private Entry(byte[] bytes, int hash, BlockState state) {
+            this.bytes = bytes;
+            this.hash = hash;
+            this.state = state;
+        }
+
+        private boolean matches(ByteBuf buffer, int index, int length) {
+            if (this.bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.bytes[i] != buffer.getByte(index + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.api.blockentity.BlockEntity;
+import org.cloudburstmc.api.entity.Entity;
+import org.cloudburstmc.api.level.ChunkLoader;
+import org.cloudburstmc.api.level.Level;
+import org.cloudburstmc.api.level.chunk.LockableChunk;
+import org.cloudburstmc.api.player.Player;
+import org.cloudburstmc.server.blockentity.BaseBlockEntity;
+import org.cloudburstmc.server.entity.BaseEntity;
+import org.cloudburstmc.server.player.CloudPlayer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Copy-on-access view of a {@link CloudChunk} that populators write into, so they don't hold the lock of the chunk
+ * while they run. Sections are copied from the chunk the first time they are touched and
+ * {@link #merge(ScratchChunk[])} applies the written blocks and biomes of a whole population area at once.
+ * <p>
+ * Only blocks and biomes are buffered, everything else goes straight to the chunk. Blocks set on sections handed out by
+ * {@link #getSection(int)} and friends are found by comparing the section with a copy taken when it was handed out.
+ */
+@NotThreadSafe
+public final class ScratchChunk extends LockableChunk {
+
+    private static final int WORDS_PER_LAYER = CloudChunkSection.SIZE >> 6;
+
+    private final CloudChunk chunk;
+    private final CloudChunkSection[] sections = new CloudChunkSection[CloudChunk.SECTION_COUNT];
+    private final boolean[] copied = new boolean[CloudChunk.SECTION_COUNT];
+    // Sections as they were when handed out to be written to directly, null if it didn't exist
+    private final CloudChunkSection[] originals = new CloudChunkSection[CloudChunk.SECTION_COUNT];
+    private final boolean[] exposed = new boolean[CloudChunk.SECTION_COUNT];
+    // Bit per written block of each layer of a section
+    private final long[][] written = new long[CloudChunk.SECTION_COUNT][];
+    // Highest written y of each column, -1 if none
+    private final short[] writtenHeights = new short[CloudChunk.ARRAY_SIZE];
+    private int[] biomes;
+    private boolean modified;
+
+    public ScratchChunk(CloudChunk chunk) {
+        // Confined to the population task, the lock only satisfies the lockable contract
+        super(new ReentrantLock());
+        this.chunk = chunk;
+        Arrays.fill(this.writtenHeights, (short) -1);
+    }
+
+    public CloudChunk getChunk() {
+        return chunk;
+    }
+
+    @Nullable
+    private CloudChunkSection section(int y) {
+        if (!this.copied[y]) {
+            this.sections[y] = this.chunk.copySection(y);
+            this.copied[y] = true;
+        }
+        return this.sections[y];
+    }
+
+    /**
+     * Hands out a section to be written to directly, keeping a copy to find the written blocks by.
+     */
+    @Nullable
+    private CloudChunkSection expose(int y) {
+        CloudChunkSection section = this.section(y);
+        if (!this.exposed[y]) {
+            this.exposed[y] = true;
+            this.originals[y] = section == null ? null : section.copy();
+            this.modified = true;
+        }
+        return section;
+    }
+
+    private CloudChunkSection createSection(int y) {
+        CloudChunkSection section = this.section(y);
+        if (section == null) {
+            section = new CloudChunkSection();
+            this.sections[y] = section;
+        }
+        return section;
+    }
+
+    /**
+     * Applies the written blocks and biomes of the given chunks while holding the write locks of all of them, so
+     * nothing sees a population area half written.
+     *
+     * @return whether anything was written
+     */
+    public static boolean merge(ScratchChunk... chunks) {
+        LockableChunk[] locks = new LockableChunk[chunks.length];
+        int count = 0;
+        for (ScratchChunk chunk : chunks) {
+            if (chunk.modified) {
+                chunk.findExposedWrites();
+                locks[count++] = chunk.chunk.writeLockable();
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+
+        // Same order as population and lighting so the locks can't dead lock
+        Arrays.sort(locks, 0, count);
+        for (int i = 0; i < count; i++) {
+            locks[i].lock();
+        }
+        try {
+            for (ScratchChunk chunk : chunks) {
+                if (chunk.modified) {
+                    chunk.apply(chunk.chunk.writeLockable());
+                }
+            }
+        } finally {
+            for (int i = count - 1; i >= 0; i--) {
+                locks[i].unlock();
+            }
+        }
+        return true;
+    }
+
+    private void apply(LockableChunk lockable) {
+        for (int sectionY = 0; sectionY < this.written.length; sectionY++) {
+            long[] words = this.written[sectionY];
+            if (words == null) {
+                continue;
+            }
+            BlockStorage[] storages = this.sections[sectionY].getBlockStorageArray();
+            for (int word = 0; word < words.length; word++) {
+                long bits = words[word];
+                while (bits != 0) {
+                    int bit = word << 6 | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+
+                    int layer = bit >> 12;
+                    int index = bit & 0xfff;
+                    lockable.setBlock(index >> 8, sectionY << 4 | index & 0xf, index >> 4 & 0xf, layer,
+                            storages[layer].getBlock(index));
+                }
+            }
+        }
+        if (this.biomes != null) {
+            for (int i = 0; i < this.biomes.length; i++) {
+                if (this.biomes[i] >= 0) {
+                    lockable.setBiome(i & 0xf, i >> 4, this.biomes[i]);
+                }
+            }
+        }
+        lockable.setDirty();
+    }
+
+    /**
+     * Marks the blocks which were changed on exposed sections as written.
+     */
+    private void findExposedWrites() {
+        for (int sectionY = 0; sectionY < this.exposed.length; sectionY++) {
+            CloudChunkSection section = this.sections[sectionY];
+            if (!this.exposed[sectionY] || section == null) {
+                continue;
+            }
+            CloudChunkSection original = this.originals[sectionY];
+            BlockStorage[] storages = section.getBlockStorageArray();
+            for (int layer = 0; layer < storages.length; layer++) {
+                BlockStorage storage = storages[layer];
+                BlockStorage originalStorage = original == null || layer >= original.getBlockStorageArray().length ?
+                        null : original.getBlockStorageArray()[layer];
+                for (int index = 0; index < CloudChunkSection.SIZE; index++) {
+                    BlockState state = storage == null ? BlockStates.AIR : storage.getBlock(index);
+                    BlockState previous = originalStorage == null ? BlockStates.AIR : originalStorage.getBlock(index);
+                    if (state != previous) {
+                        this.markWritten(sectionY, section, layer, index);
+                    }
+                }
+            }
+            this.exposed[sectionY] = false;
+            this.originals[sectionY] = null;
+        }
+    }
+
+    private void markWritten(int sectionY, CloudChunkSection section, int layer, int index) {
+        long[] words = this.written[sectionY];
+        if (words == null) {
+            words = new long[section.getBlockStorageArray().length * WORDS_PER_LAYER];
+            this.written[sectionY] = words;
+        }
+        int bit = layer << 12 | index;
+        words[bit >> 6] |= 1L << bit;
+    }
+
+    @Nonnull
+    @Override
+    public CloudChunkSection getOrCreateSection(int y) {
+        this.expose(y);
+        return this.createSection(y);
+    }
+
+    @Nullable
+    @Override
+    public CloudChunkSection getSection(int y) {
+        return this.expose(y);
+    }
+
+    @Nonnull
+    @Override
+    public CloudChunkSection[] getSections() {
+        for (int y = 0; y < this.sections.length; y++) {
+            this.expose(y);
+        }
+        return Arrays.copyOf(this.sections, this.sections.length);
+    }
+
+    @Nonnull
+    @Override
+    public BlockState getBlock(int x, int y, int z, int layer) {
+        UnsafeChunk.checkBounds(x, y, z);
+        CloudChunkSection section = this.section(y >> 4);
+        return section == null ? BlockStates.AIR : section.getBlock(x, y & 0xf, z, layer);
+    }
+
+    @Override
+    public BlockState getAndSetBlock(int x, int y, int z, int layer, BlockState blockState) {
+        BlockState previous = this.getBlock(x, y, z, layer);
+        this.setBlock(x, y, z, layer, blockState);
+        return previous;
+    }
+
+    @Override
+    public void setBlock(int x, int y, int z, int layer, BlockState blockState) {
+        UnsafeChunk.checkBounds(x, y, z);
+        int sectionY = y >> 4;
+        CloudChunkSection section = this.createSection(sectionY);
+        section.setBlock(x, y & 0xf, z, layer, blockState);
+        this.markWritten(sectionY, section, layer, CloudChunkSection.blockIndex(x, y & 0xf, z));
+
+        int column = UnsafeChunk.get2dIndex(x, z);
+        if (y > this.writtenHeights[column]) {
+            this.writtenHeights[column] = (short) y;
+        }
+        this.modified = true;
+    }
+
+    @Override
+    public int getBiome(int x, int z) {
+        if (this.biomes != null) {
+            int biome = this.biomes[UnsafeChunk.get2dIndex(x, z)];
+            if (biome >= 0) {
+                return biome;
+            }
+        }
+        return this.chunk.getBiome(x, z);
+    }
+
+    @Override
+    public void setBiome(int x, int z, int biome) {
+        UnsafeChunk.checkBounds(x, z);
+        if (this.biomes == null) {
+            this.biomes = new int[CloudChunk.ARRAY_SIZE];
+            Arrays.fill(this.biomes, -1);
+        }
+        this.biomes[UnsafeChunk.get2dIndex(x, z)] = biome & 0xff;
+        this.modified = true;
+    }
+
+    @Override
+    public byte getSkyLight(int x, int y, int z) {
+        return this.chunk.getSkyLight(x, y, z);
+    }
+
+    @Override
+    public void setSkyLight(int x, int y, int z, int level) {
+        this.chunk.setSkyLight(x, y, z, level);
+    }
+
+    @Override
+    public byte getBlockLight(int x, int y, int z) {
+        return this.chunk.getBlockLight(x, y, z);
+    }
+
+    @Override
+    public void setBlockLight(int x, int y, int z, int level) {
+        this.chunk.setBlockLight(x, y, z, level);
+    }
+
+    @Override
+    public int getHighestBlock(int x, int z) {
+        int height = this.chunk.getHighestBlock(x, z);
+        int written = this.writtenHeights[UnsafeChunk.get2dIndex(x, z)];
+        if (written < 0) {
+            return height;
+        }
+        // Written blocks may have removed the top of the column or added a new one
+        for (int y = Math.max(height, written); y >= 0; y--) {
+            if (this.getBlock(x, y, z, 0) != BlockStates.AIR) {
+                return y;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void addEntity(@Nonnull Entity entity) {
+        this.chunk.addEntity(entity);
+    }
+
+    @Override
+    public void removeEntity(Entity entity) {
+        this.chunk.removeEntity(entity);
+    }
+
+    @Override
+    public void addBlockEntity(BlockEntity blockEntity) {
+        this.chunk.addBlockEntity(blockEntity);
+    }
+
+    @Override
+    public void removeBlockEntity(BlockEntity blockEntity) {
+        this.chunk.removeBlockEntity(blockEntity);
+    }
+
+    @Override
+    public BlockEntity getBlockEntity(int x, int y, int z) {
+        return this.chunk.getBlockEntity(x, y, z);
+    }
+
+    @Override
+    public int getX() {
+        return this.chunk.getX();
+    }
+
+    @Override
+    public int getZ() {
+        return this.chunk.getZ();
+    }
+
+    @Nonnull
+    @Override
+    public Level getLevel() {
+        return this.chunk.getLevel();
+    }
+
+    @Nonnull
+    @Override
+    public byte[] getBiomeArray() {
+        byte[] biomes = this.chunk.getBiomeArray();
+        if (this.biomes != null) {
+            for (int i = 0; i < biomes.length; i++) {
+                if (this.biomes[i] >= 0) {
+                    biomes[i] = (byte) this.biomes[i];
+                }
+            }
+        }
+        return biomes;
+    }
+
+    @Nonnull
+    @Override
+    public int[] getHeightMapArray() {
+        return this.chunk.getHeightMapArray();
+    }
+
+    @Nonnull
+    @Override
+    public Set<CloudPlayer> getPlayers() {
+        return this.chunk.getPlayers();
+    }
+
+    @Nonnull
+    @Override
+    public Set<BaseEntity> getEntities() {
+        return this.chunk.getEntities();
+    }
+
+    @Nonnull
+    @Override
+    public Set<BaseBlockEntity> getBlockEntities() {
+        return this.chunk.getBlockEntities();
+    }
+
+    @Override
+    public int getState() {
+        return this.chunk.getState();
+    }
+
+    @Override
+    public int setState(int next) {
+        return this.chunk.setState(next);
+    }
+
+    @Override
+    public boolean isDirty() {
+        return this.modified || this.chunk.isDirty();
+    }
+
+    @Override
+    public void setDirty(boolean dirty) {
+        this.chunk.setDirty(dirty);
+    }
+
+    @Override
+    public boolean clearDirty() {
+        return this.chunk.clearDirty();
+    }
+
+    /**
+     * @throws IllegalStateException always, chunks may not be cleared while they are being populated
+     */
+    @Override
+    public void clear() {
+        throw new IllegalStateException("Cannot clear a chunk during population");
+    }
+
+    @Override
+    public long key() {
+        return CloudChunk.key(getX(), getZ());
+    }
+
+    @Override
+    public LockableChunk readLockable() {
+        return this;
+    }
+
+    @Override
+    public LockableChunk writeLockable() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        // Owns nothing, the chunk is closed by its level
+    }
+
+    @Override
+    public Set<? extends ChunkLoader> getLoaders() {
+        return this.chunk.getLoaders();
+    }
+
+    @Override
+    public Set<? extends Player> getPlayerLoaders() {
+        return this.chunk.getPlayerLoaders();
+    }
+}
@@ -16,12 +16,14 @@ import org.cloudburstmc.api.player.Player;
 import org.cloudburstmc.server.blockentity.BaseBlockEntity;
 import org.cloudburstmc.server.entity.BaseEntity;
 import org.cloudburstmc.server.player.CloudPlayer;
+import org.cloudburstmc.server.utils.NibbleArray;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import static com.google.common.base.Preconditions.checkElementIndex;
 
@@ -37,6 +39,10 @@ public final class UnsafeChunk implements Chunk, Closeable {
             .newUpdater(UnsafeChunk.class, "closed");
     static final AtomicIntegerFieldUpdater<UnsafeChunk> CLEAR_CACHE_FIELD = AtomicIntegerFieldUpdater
             .newUpdater(UnsafeChunk.class, "clearCache");
+    private static final AtomicLongFieldUpdater<UnsafeChunk> SNAPSHOT_STATE_FIELD = AtomicLongFieldUpdater
+            .newUpdater(UnsafeChunk.class, "snapshotState");
+    private static final long SHARED_SECTIONS_MASK = (1L << CloudChunk.SECTION_COUNT) - 1;
+    private static final long ONE_SNAPSHOT = 1L << CloudChunk.SECTION_COUNT;
 
     private final int x;
 
@@ -54,7 +60,7 @@ public final class UnsafeChunk implements Chunk, Closeable {
 
     private final byte[] biomes;
 
-    private final int[] heightMap;
+    private final HeightMaps heightMaps = new HeightMaps();
 
     private volatile int dirty;
 
@@ -66,16 +72,20 @@ public final class UnsafeChunk implements Chunk, Closeable {
 
     private volatile int clearCache;
 
+    // Open snapshots in the upper bits and a bit per section they still reference in the lower ones, a shared section
+    // is copied before it is written to. Kept in one field so snapshots can be released without taking a lock.
+    private volatile long snapshotState;
+
     public UnsafeChunk(int x, int z, Level level) {
         this.x = x;
         this.z = z;
         this.level = level;
         this.sections = new CloudChunkSection[CloudChunk.SECTION_COUNT];
         this.biomes = new byte[CloudChunk.ARRAY_SIZE];
-        this.heightMap = new int[CloudChunk.ARRAY_SIZE];
     }
 
-    UnsafeChunk(int x, int z, Level level, CloudChunkSection[] sections, byte[] biomes, int[] heightMap) {
+    UnsafeChunk(int x, int z, Level level, CloudChunkSection[] sections, byte[] biomes, int[] heightMap,
+                @Nullable int[] heightMaps) {
         this.x = x;
         this.z = z;
         this.level = level;
@@ -84,7 +94,12 @@ public final class UnsafeChunk implements Chunk, Closeable {
         Preconditions.checkNotNull(biomes, "biomes");
         this.biomes = Arrays.copyOf(biomes, CloudChunk.ARRAY_SIZE);
         Preconditions.checkNotNull(heightMap, "heightMap");
-        this.heightMap = Arrays.copyOf(heightMap, CloudChunk.ARRAY_SIZE);
+        if (heightMaps != null) {
+            this.heightMaps.load(heightMaps);
+        } else {
+            // Only the world surface was saved before, and it was never updated, so it is rebuilt from the blocks
+            this.heightMaps.recalculate(this.sections);
+        }
     }
 
     static void checkBounds(int x, int y, int z) {
@@ -111,15 +126,44 @@ public final class UnsafeChunk implements Chunk, Closeable {
     public CloudChunkSection getOrCreateSection(int y) {
         checkElementIndex(y, sections.length, "section Y");
 
-        CloudChunkSection section = this.sections[y];
+        CloudChunkSection section = this.getWritableSection(y);
         if (section == null) {
             section = new CloudChunkSection();
+            this.fillSkyLight(section, y);
             this.sections[y] = section;
             this.setDirty();
         }
         return section;
     }
 
+    /**
+     * Gives the blocks of a new section which see the sky full sky light. Light spreading below overhangs is left to
+     * the light engine, as are chunks whose heightmaps aren't built yet, which are lit once they are.
+     */
+    private void fillSkyLight(CloudChunkSection section, int y) {
+        if (!this.heightMaps.isValid()) {
+            return;
+        }
+        NibbleArray skyLight = section.getSkyLightArray();
+        int bottom = y << 4;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int height = this.heightMaps.get(HeightMapType.LIGHT_BLOCKING, x, z);
+                for (int blockY = Math.max(height - bottom, 0); blockY < 16; blockY++) {
+                    skyLight.set(CloudChunkSection.blockIndex(x, blockY, z), (byte) 15);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the sky light of a block in a missing section, which is what {@link #fillSkyLight} gives it once the section
+     * is created: full at or above the light blocking height of its column, none below it or without heightmaps.
+     */
+    public byte getDefaultSkyLight(int x, int y, int z) {
+        return this.heightMaps.isValid() && y >= this.heightMaps.get(HeightMapType.LIGHT_BLOCKING, x, z) ? (byte) 15 : 0;
+    }
+
     @Nullable
     @Override
     public CloudChunkSection getSection(int y) {
@@ -133,6 +177,49 @@ public final class UnsafeChunk implements Chunk, Closeable {
         return this.sections;
     }
 
+    /**
+     * Gets the section at the given height to write to, copying it first if a snapshot shares it. Needs the write
+     * lock.
+     *
+     * @return section or null if there is none
+     */
+    @Nullable
+    CloudChunkSection getWritableSection(int y) {
+        checkElementIndex(y, sections.length, "section Y");
+        CloudChunkSection section = this.sections[y];
+        long bit = 1L << y;
+        if (section != null && (this.snapshotState & bit) != 0) {
+            section = section.copy();
+            this.sections[y] = section;
+            SNAPSHOT_STATE_FIELD.getAndUpdate(this, state -> state & ~bit);
+        }
+        return section;
+    }
+
+    /**
+     * Marks all sections as shared with a new snapshot. Needs the read lock.
+     *
+     * @return the sections of the snapshot
+     */
+    CloudChunkSection[] shareSections() {
+        int shared = 0;
+        for (int y = 0; y < this.sections.length; y++) {
+            if (this.sections[y] != null) {
+                shared |= 1 << y;
+            }
+        }
+        SNAPSHOT_STATE_FIELD.accumulateAndGet(this, shared, (state, added) -> (state + ONE_SNAPSHOT) | added);
+        return this.sections.clone();
+    }
+
+    /**
+     * Releases the sections of a closed snapshot, once no snapshot is left sections are written in place again. Needs
+     * no lock, the last snapshot clears the shared sections in the same update that releases it.
+     */
+    void releaseSections() {
+        SNAPSHOT_STATE_FIELD.getAndUpdate(this, state -> state < 2 * ONE_SNAPSHOT ? 0 : state - ONE_SNAPSHOT);
+    }
+
 
     @Nonnull
     @Override
@@ -159,7 +246,7 @@ public final class UnsafeChunk implements Chunk, Closeable {
     @Override
     public void setBlock(int x, int y, int z, int layer, BlockState blockState) {
         checkBounds(x, y, z);
-        CloudChunkSection section = this.getSection(y >> 4);
+        CloudChunkSection section = this.getWritableSection(y >> 4);
         if (section == null) {
             if (blockState.getType() == BlockTypes.AIR) {
                 // Setting air in an empty section.
@@ -169,6 +256,10 @@ public final class UnsafeChunk implements Chunk, Closeable {
         }
 
         section.setBlock(x, y & 0xf, z, layer, blockState);
+        if (this.heightMaps.isValid()) {
+            // Generators write the terrain of fresh chunks in bulk and build the heightmaps once it is done
+            this.heightMaps.update(this.sections, x, y, z);
+        }
         this.setDirty();
     }
 
@@ -193,7 +284,7 @@ public final class UnsafeChunk implements Chunk, Closeable {
     public byte getSkyLight(int x, int y, int z) {
         checkBounds(x, y, z);
         CloudChunkSection section = this.getSection(y >> 4);
-        return section == null ? 0 : section.getSkyLight(x, y & 0xf, z);
+        return section == null ? this.getDefaultSkyLight(x, y, z) : section.getSkyLight(x, y & 0xf, z);
     }
 
     @Override
@@ -219,32 +310,18 @@ public final class UnsafeChunk implements Chunk, Closeable {
 
     @Override
     public int getHighestBlock(int x, int z) {
-        checkBounds(x, z);
-        for (int sectionY = 15; sectionY >= 0; sectionY--) {
-            CloudChunkSection section = this.sections[sectionY];
-            if (section != null) {
-                for (int y = 15; y >= 0; y--) {
-                    if (section.getBlock(x, y, z, 0) != BlockStates.AIR) {
-                        return (sectionY << 4) | y;
-                    }
-                }
-            }
-        }
-        return -1;
+        return this.getHeight(HeightMapType.WORLD_SURFACE, x, z) - 1;
     }
 
-    /*@Override
-    public int getHeightMap(int x, int z) {
+    public int getHeight(HeightMapType type, int x, int z) {
+        Preconditions.checkNotNull(type, "type");
         checkBounds(x, z);
-        return this.heightMap[get2dIndex(x, z)] & 0xFF;
+        return this.heightMaps.get(type, x, z);
     }
 
-    @Override
-    public void setHeightMap(int x, int z, int value) {
-        checkBounds(x, z);
-        this.heightMap[get2dIndex(x, z)] = (byte) value;
-        setDirty();
-    }*/
+    public void recalculateHeightMaps() {
+        this.heightMaps.recalculate(this.sections);
+    }
 
     @Override
     public void addEntity(@Nonnull Entity entity) {
@@ -291,6 +368,17 @@ public final class UnsafeChunk implements Chunk, Closeable {
         return this.tiles.get(CloudChunk.blockKey(x, y, z));
     }
 
+    public void compact() {
+        long shared = this.snapshotState;
+        for (int y = 0; y < this.sections.length; y++) {
+            CloudChunkSection section = this.sections[y];
+            // Shared sections are left for the next compaction rather than copied
+            if (section != null && (shared & 1L << y) == 0) {
+                section.compact();
+            }
+        }
+    }
+
     @Override
     public int getX() {
         return x;
@@ -316,9 +404,23 @@ public final class UnsafeChunk implements Chunk, Closeable {
     @Nonnull
     @Override
     public int[] getHeightMapArray() {
+        int[] heightMap = new int[CloudChunk.ARRAY_SIZE];
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                heightMap[get2dIndex(x, z)] = this.heightMaps.get(HeightMapType.WORLD_SURFACE, x, z);
+            }
+        }
         return heightMap;
     }
 
+    /**
+     * @return copy of all heightmaps one after another in {@link HeightMapType} order, null if they weren't built yet
+     */
+    @Nullable
+    int[] getHeightMaps() {
+        return this.heightMaps.toArray();
+    }
+
 
     /**
      * Gets an immutable copy of players currently in this chunk
@@ -399,8 +501,9 @@ public final class UnsafeChunk implements Chunk, Closeable {
     @Override
     public void clear() {
         Arrays.fill(this.sections, null);
+        SNAPSHOT_STATE_FIELD.getAndUpdate(this, state -> state & ~SHARED_SECTIONS_MASK);
         Arrays.fill(this.biomes, (byte) 0);
-        Arrays.fill(this.heightMap, (byte) 0);
+        this.heightMaps.clear();
         this.tiles.clear();
         this.entities.clear();
         this.state = STATE_NEW;
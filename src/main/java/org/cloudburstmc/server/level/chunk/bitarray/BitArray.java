@@ -1,11 +1,36 @@
 package org.cloudburstmc.server.level.chunk.bitarray;
 
+import com.google.common.base.Preconditions;
+
 public interface BitArray {
 
     void set(int index, int value);
 
     int get(int index);
 
+    /**
+     * Sets every entry at once, packing whole words instead of setting entries one by one.
+     *
+     * @param values values to map to the entries, starting at the offset
+     * @param offset index of the value of the first entry
+     * @param remap  entry to store for every value
+     */
+    default void setAll(int[] values, int offset, int[] remap) {
+        BitArrayVersion version = this.getVersion();
+        int size = this.size();
+        Preconditions.checkPositionIndexes(offset, offset + size, values.length);
+        int[] words = this.getWords();
+        int bits = version.bits;
+        int entriesPerWord = version.entriesPerWord;
+        for (int i = 0, index = 0; i < words.length; i++) {
+            int word = 0;
+            for (int shift = 0, end = Math.min(size, index + entriesPerWord); index < end; index++, shift += bits) {
+                word |= remap[values[offset + index]] << shift;
+            }
+            words[i] = word;
+        }
+    }
+
     int size();
 
     int[] getWords();
@@ -31,6 +31,23 @@ public enum BitArrayVersion {
         throw new IllegalArgumentException("Invalid palette version: " + version);
     }
 
+    /**
+     * Gets the smallest version that is able to address every entry of a palette with the given size
+     *
+     * @param paletteSize palette size
+     * @return bit array version
+     */
+    public static BitArrayVersion forPaletteSize(int paletteSize) {
+        BitArrayVersion version = V1;
+        while (version.maxEntryValue < paletteSize - 1) {
+            version = version.next;
+            if (version == null) {
+                throw new IllegalArgumentException("Palette is too large: " + paletteSize);
+            }
+        }
+        return version;
+    }
+
     public BitArray createPalette(int size) {
         return this.createPalette(size, new int[this.getWordsForSize(size)]);
     }
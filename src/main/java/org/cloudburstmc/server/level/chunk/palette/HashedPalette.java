@@ -0,0 +1,70 @@
+package org.cloudburstmc.server.level.chunk.palette;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceArrayList;
+import org.cloudburstmc.api.block.BlockState;
+
+import java.util.List;
+
+/**
+ * Palette for large amounts of entries which keeps a reverse lookup map next to the id list.
+ */
+public class HashedPalette implements Palette {
+
+    private final List<BlockState> states;
+    private final Reference2IntMap<BlockState> ids;
+
+    HashedPalette(List<BlockState> states) {
+        this.states = new ReferenceArrayList<>(Math.max(states.size(), LINEAR_MAX_SIZE * 2));
+        this.ids = new Reference2IntOpenHashMap<>(states.size());
+        this.ids.defaultReturnValue(-1);
+        for (BlockState state : states) {
+            this.ids.putIfAbsent(state, this.states.size());
+            this.states.add(state);
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.states.size();
+    }
+
+    @Override
+    public BlockState get(int id) {
+        return this.states.get(id);
+    }
+
+    @Override
+    public int indexOf(BlockState state) {
+        return this.ids.getInt(state);
+    }
+
+    @Override
+    public int add(BlockState state) {
+        int id = this.states.size();
+        this.states.add(state);
+        this.ids.put(state, id);
+        return id;
+    }
+
+    @Override
+    public Palette expand() {
+        return this;
+    }
+
+    @Override
+    public List<BlockState> toList() {
+        return new ReferenceArrayList<>(this.states);
+    }
+
+    @Override
+    public Palette copy() {
+        return new HashedPalette(this.states);
+    }
+
+    @Override
+    public String toString() {
+        return this.states.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package org.cloudburstmc.server.level.chunk.palette;
+
+import org.cloudburstmc.api.block.BlockState;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Palette for a small amount of entries where a reference scan beats hashing.
+ */
+public class LinearPalette implements Palette {
+
+    private final BlockState[] states;
+    private int size;
+
+    LinearPalette(List<BlockState> states) {
+        checkArgument(states.size() <= LINEAR_MAX_SIZE, "Too many entries for linear palette: %s", states.size());
+        this.states = states.toArray(new BlockState[LINEAR_MAX_SIZE]);
+        this.size = states.size();
+    }
+
+    private LinearPalette(BlockState[] states, int size) {
+        this.states = states;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public BlockState get(int id) {
+        checkElementIndex(id, this.size);
+        return this.states[id];
+    }
+
+    @Override
+    public int indexOf(BlockState state) {
+        BlockState[] states = this.states;
+        for (int i = 0, size = this.size; i < size; i++) {
+            if (states[i] == state) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int add(BlockState state) {
+        if (this.size >= this.states.length) {
+            return -1;
+        }
+        this.states[this.size] = state;
+        return this.size++;
+    }
+
+    @Override
+    public Palette expand() {
+        return new HashedPalette(this.toList());
+    }
+
+    @Override
+    public List<BlockState> toList() {
+        return Arrays.asList(Arrays.copyOf(this.states, this.size));
+    }
+
+    @Override
+    public Palette copy() {
+        return new LinearPalette(this.states.clone(), this.size);
+    }
+
+    @Override
+    public String toString() {
+        return this.toList().toString();
+    }
+}
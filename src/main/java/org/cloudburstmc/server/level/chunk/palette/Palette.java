@@ -0,0 +1,65 @@
+package org.cloudburstmc.server.level.chunk.palette;
+
+import org.cloudburstmc.api.block.BlockState;
+
+import java.util.List;
+
+public interface Palette {
+
+    /**
+     * Largest palette that is still looked up with a linear scan before switching to a hashed lookup.
+     */
+    int LINEAR_MAX_SIZE = 16;
+
+    static Palette of(BlockState state) {
+        return new SingleValuePalette(state);
+    }
+
+    /**
+     * Creates the most suitable palette for the given entries
+     *
+     * @param states entries in palette id order
+     * @return palette
+     */
+    static Palette of(List<BlockState> states) {
+        int size = states.size();
+        if (size == 1) {
+            return new SingleValuePalette(states.get(0));
+        } else if (size <= LINEAR_MAX_SIZE) {
+            return new LinearPalette(states);
+        } else {
+            return new HashedPalette(states);
+        }
+    }
+
+    int size();
+
+    BlockState get(int id);
+
+    /**
+     * Gets the palette id of the given block state.
+     *
+     * @param state block state
+     * @return palette id or -1 if the state is not in this palette
+     */
+    int indexOf(BlockState state);
+
+    /**
+     * Appends a block state which is not yet in this palette.
+     *
+     * @param state block state
+     * @return new palette id or -1 if this palette is full and has to be {@link #expand() expanded} first
+     */
+    int add(BlockState state);
+
+    /**
+     * Creates a palette of the next storage mode containing all entries of this palette.
+     *
+     * @return expanded palette
+     */
+    Palette expand();
+
+    List<BlockState> toList();
+
+    Palette copy();
+}
@@ -0,0 +1,62 @@
+package org.cloudburstmc.server.level.chunk.palette;
+
+import org.cloudburstmc.api.block.BlockState;
+
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Palette of a storage where every block is the same, so no bit array is required.
+ */
+public class SingleValuePalette implements Palette {
+
+    private final BlockState state;
+
+    SingleValuePalette(BlockState state) {
+        this.state = checkNotNull(state, "state");
+    }
+
+    @Override
+    public int size() {
+        return 1;
+    }
+
+    @Override
+    public BlockState get(int id) {
+        checkElementIndex(id, 1);
+        return this.state;
+    }
+
+    @Override
+    public int indexOf(BlockState state) {
+        return this.state == state ? 0 : -1;
+    }
+
+    @Override
+    public int add(BlockState state) {
+        return -1;
+    }
+
+    @Override
+    public Palette expand() {
+        return new LinearPalette(Collections.singletonList(this.state));
+    }
+
+    @Override
+    public List<BlockState> toList() {
+        return Collections.singletonList(this.state);
+    }
+
+    @Override
+    public Palette copy() {
+        return this; // immutable
+    }
+
+    @Override
+    public String toString() {
+        return "[" + this.state + "]";
+    }
+}
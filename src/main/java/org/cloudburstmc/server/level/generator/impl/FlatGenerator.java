@@ -1,16 +1,22 @@
 package org.cloudburstmc.server.level.generator.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.common.base.Preconditions;
 import net.daporkchop.lib.random.PRandom;
 import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
 import org.cloudburstmc.api.level.ChunkManager;
 import org.cloudburstmc.api.level.chunk.Chunk;
 import org.cloudburstmc.api.util.Identifier;
 import org.cloudburstmc.server.Bootstrap;
+import org.cloudburstmc.server.level.chunk.CloudChunkSection;
 import org.cloudburstmc.server.level.generator.Generator;
 import org.cloudburstmc.server.level.generator.standard.misc.selector.BlockSelector;
 import org.cloudburstmc.server.level.generator.standard.misc.selector.BlockSelector.Entry;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A basic generator for superflat worlds.
  *
@@ -21,34 +27,56 @@ public final class FlatGenerator implements Generator {
 
     private static final String DEFAULT_PRESET = "bedrock,3*dirt,grass";
 
-    private final Entry[] layers;
+    private final BlockState[] states;
+    private final int[] blocks; // ids into states of every block of the filled sections
+    private final int sections;
 
     public FlatGenerator(long seed, String options) {
         if (options == null || options.isEmpty()) {
             options = DEFAULT_PRESET;
         }
 
+        Entry[] layers;
         try {
-            this.layers = Bootstrap.YAML_MAPPER.readValue(options, BlockSelector.class).entries().toArray(Entry[]::new);
+            layers = Bootstrap.YAML_MAPPER.readValue(options, BlockSelector.class).entries().toArray(Entry[]::new);
         } catch (JsonProcessingException e) {
             throw new IllegalArgumentException(options, e);
         }
-    }
 
-    @Override
-    public void generate(PRandom random, Chunk chunk, int chunkX, int chunkZ) {
-        int y = 0;
+        int height = 0;
+        for (Entry layer : layers) {
+            height += layer.weight();
+        }
+        Preconditions.checkArgument(height <= 256, "Layers are %s blocks high, at most 256 are allowed", height);
 
-        for (Entry layer : this.layers) {
-            BlockState state = layer.state();
+        // Every chunk is the same, so the sections are laid out once and copied into the chunks
+        List<BlockState> states = new ArrayList<>();
+        states.add(BlockStates.AIR);
+        this.sections = (height + 15) >> 4;
+        this.blocks = new int[this.sections * CloudChunkSection.SIZE];
+        int y = 0;
+        for (Entry layer : layers) {
+            int id = states.indexOf(layer.state());
+            if (id == -1) {
+                id = states.size();
+                states.add(layer.state());
+            }
             for (int i = 0, size = layer.weight(); i < size; i++, y++) {
-                for (int x = 15; x >= 0; x--) {
-                    for (int z = 15; z >= 0; z--) {
-                        chunk.setBlock(x, y, z, state);
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        this.blocks[(y >> 4) * CloudChunkSection.SIZE + CloudChunkSection.blockIndex(x, y & 0xf, z)] = id;
                     }
                 }
             }
         }
+        this.states = states.toArray(new BlockState[0]);
+    }
+
+    @Override
+    public void generate(PRandom random, Chunk chunk, int chunkX, int chunkZ) {
+        for (int y = 0; y < this.sections; y++) {
+            ((CloudChunkSection) chunk.getOrCreateSection(y)).setBlocks(0, this.states, this.blocks, y * CloudChunkSection.SIZE);
+        }
     }
 
     @Override
@@ -16,10 +16,13 @@ import net.daporkchop.lib.common.ref.ThreadRef;
 import net.daporkchop.lib.random.PRandom;
 import net.daporkchop.lib.random.impl.FastPRandom;
 import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
 import org.cloudburstmc.api.level.ChunkManager;
 import org.cloudburstmc.api.level.chunk.Chunk;
 import org.cloudburstmc.api.util.Identifier;
 import org.cloudburstmc.server.Bootstrap;
+import org.cloudburstmc.server.level.chunk.CloudChunkSection;
+import org.cloudburstmc.server.level.chunk.CloudLockableChunk;
 import org.cloudburstmc.server.level.generator.Generator;
 import org.cloudburstmc.server.level.generator.GeneratorFactory;
 import org.cloudburstmc.server.level.generator.standard.biome.GenerationBiome;
@@ -81,13 +84,19 @@ public final class StandardGenerator implements Generator {
     public static final double SCALE_Y = 1.0d / STEP_Y;
     public static final double SCALE_Z = 1.0d / STEP_Z;
 
+    private static final int AIR_ID = 0;
+    private static final int GROUND_ID = 1;
+    private static final int SEA_ID = 2;
+
     private static final Ref<ThreadData> THREAD_DATA_CACHE = ThreadRef.soft(ThreadData::new);
 
     @JsonProperty
     @JsonDeserialize(using = BiomeMapReferenceDeserializer.class)
+    @Getter
     private BiomeMap biomes;
     @JsonProperty
     @JsonDeserialize(using = DensitySourceReferenceDeserializer.class)
+    @Getter
     private DensitySource density;
     @JsonProperty
     private Decorator[] decorators = Decorator.EMPTY_ARRAY;
@@ -110,12 +119,15 @@ public final class StandardGenerator implements Generator {
     @Getter
     private int seaLevel = -1;
 
+    private BlockState[] terrainStates;
+
     private StandardGenerator init(long seed) {
         try {
             Collection<GenerationBiome> biomes = this.biomes.possibleBiomes();
 
             Preconditions.checkState(this.ground != null, "groundBlock must be set!");
             Preconditions.checkState(this.seaLevel < 0 || this.sea != null, "seaBlock and seaLevel must either both be set or be omitted!");
+            this.terrainStates = new BlockState[]{BlockStates.AIR, this.ground, this.sea};
 
             Collection<GenerationPass> generationPasses = new LinkedHashSet<>(); //preserve order but don't allow duplicates
             generationPasses.add(Objects.requireNonNull(this.density, "density must be set!"));
@@ -165,7 +177,9 @@ public final class StandardGenerator implements Generator {
         final double[] densityCache = threadData.densityCache
                 = this.density.get(threadData.densityCache, 0, this.biomes, baseX, 0, baseZ, CACHE_X, CACHE_Y, CACHE_Z, STEP_X, STEP_Y, STEP_Z);
 
-        //interpolate densities and build initial surfaces
+        //interpolate densities into a buffer of terrain ids, written to the chunk a section at a time
+        final int[] blocks = threadData.blocks;
+        int usedSections = 0;
         for (int i = 0, sectionX = 0; sectionX < SAMPLES_X; sectionX++) {
             for (int sectionZ = 0; sectionZ < SAMPLES_Z; sectionZ++) {
                 for (int sectionY = 0; sectionY < SAMPLES_Y; sectionY++, i++) {
@@ -212,10 +226,17 @@ public final class StandardGenerator implements Generator {
                                 int blockY = sectionY * STEP_Y | stepY;
                                 int blockZ = sectionZ * STEP_Z | stepZ;
 
+                                int id;
                                 if (iz > 0.0d) {
-                                    chunk.setBlock(blockX, blockY, blockZ, 0, this.ground);
+                                    id = GROUND_ID;
                                 } else if (blockY <= this.seaLevel) {
-                                    chunk.setBlock(blockX, blockY, blockZ, 0, this.sea);
+                                    id = SEA_ID;
+                                } else {
+                                    id = AIR_ID;
+                                }
+                                blocks[(blockY >> 4) * CloudChunkSection.SIZE + CloudChunkSection.blockIndex(blockX, blockY & 0xf, blockZ)] = id;
+                                if (id != AIR_ID) {
+                                    usedSections |= 1 << (blockY >> 4);
                                 }
                             }
                         }
@@ -226,6 +247,14 @@ public final class StandardGenerator implements Generator {
             i += CACHE_Y;
         }
 
+        for (int y = 0; y < 16; y++) {
+            if ((usedSections & 1 << y) != 0) {
+                ((CloudChunkSection) chunk.getOrCreateSection(y)).setBlocks(0, this.terrainStates, blocks, y * CloudChunkSection.SIZE);
+            }
+        }
+        // Decorators look for the surface, which the terrain written in bulk didn't update
+        ((CloudLockableChunk) chunk).recalculateHeightMaps();
+
         //run decorators and set biomes
         GenerationBiome[] biomes = threadData.biomes = this.biomes.getRegion(threadData.biomes, baseX, baseZ, 16, 16);
         for (int x = 0; x < 16; x++) {
@@ -300,6 +329,7 @@ public final class StandardGenerator implements Generator {
     }
 
     private static final class ThreadData {
+        private final int[] blocks = new int[16 * CloudChunkSection.SIZE];
         private double[] densityCache;
         private GenerationBiome[] biomes;
     }
@@ -3,6 +3,8 @@ package org.cloudburstmc.server.level.generator.standard.generation.density;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.NonNull;
+import net.daporkchop.lib.common.ref.Ref;
+import net.daporkchop.lib.common.ref.ThreadRef;
 import net.daporkchop.lib.common.util.PValidation;
 import net.daporkchop.lib.noise.NoiseSource;
 import net.daporkchop.lib.random.PRandom;
@@ -11,9 +13,13 @@ import org.cloudburstmc.api.util.Identifier;
 import org.cloudburstmc.server.level.generator.standard.StandardGenerator;
 import org.cloudburstmc.server.level.generator.standard.biome.BiomeTerrainCache;
 import org.cloudburstmc.server.level.generator.standard.biome.map.BiomeMap;
+import org.cloudburstmc.server.level.generator.standard.generation.noise.NoiseColumnCache;
 import org.cloudburstmc.server.level.generator.standard.generation.noise.NoiseGenerator;
+import org.cloudburstmc.server.level.generator.standard.generation.noise.NoiseGrids;
 import org.cloudburstmc.server.level.generator.standard.misc.AbstractGenerationPass;
 
+import java.util.Arrays;
+
 import static java.lang.Math.signum;
 import static java.util.Objects.requireNonNull;
 import static net.daporkchop.lib.common.math.PMath.clamp;
@@ -28,6 +34,9 @@ import static net.daporkchop.lib.common.math.PMath.lerp;
 public class VanillaDensitySource extends AbstractGenerationPass implements DensitySource {
     public static final Identifier ID = Identifier.fromString("cloudburst:vanilla");
 
+    //enough for the edge columns of the chunks around a few players
+    private static final int COLUMN_CACHE_SIZE = 512;
+
     //these fields aren't sorted in ascending order by size (so there's a possibility that fields might not be word-aligned), however they ARE sorted
     // by the order in which they're used (so they can be prefetched into the cache)
     private NoiseSource selector;
@@ -38,6 +47,8 @@ public class VanillaDensitySource extends AbstractGenerationPass implements Dens
     @JsonProperty("terrainSmoothing")
     private BiomeTerrainCache terrainCache;
 
+    private final Ref<ThreadData> threadData = ThreadRef.soft(ThreadData::new);
+
     @JsonProperty
     private double specialHeightVariation = 0.25d;
     @JsonProperty
@@ -108,27 +119,61 @@ public class VanillaDensitySource extends AbstractGenerationPass implements Dens
             arr = newArr;
         }
 
+        ThreadData threadData = this.threadData.get();
+        threadData.ensureCapacity(sizeY);
         for (int i = startIndex, dx = 0, xx = x; dx < sizeX; dx++, xx += stepX) {
-            for (int dz = 0, zz = z; dz < sizeZ; dz++, zz += stepZ) {
-                double depth = this.getDepth(xx, zz);
-
-                BiomeTerrainCache.Data terrainData = this.terrainCache.get(xx, zz, biomes);
-                double height = terrainData.baseHeight * this.heightFactor + this.heightOffset;
-                double columnVariation = terrainData.heightVariation;
-
-                for (int dy = 0, yy = y; dy < sizeY; dy++, yy += stepY) {
-                    double selector = clamp(this.selector.get(xx, yy, (double) zz), 0.0d, 1.0d);
-                    double low = this.low.get(xx, yy, (double) zz);
-                    double high = this.high.get(xx, yy, (double) zz);
+            for (int dz = 0, zz = z; dz < sizeZ; dz++, zz += stepZ, i += sizeY) {
+                //only the edge columns are shared with neighbouring chunks
+                boolean edge = dx == 0 || dx == sizeX - 1 || dz == 0 || dz == sizeZ - 1;
+                double[] cached = edge ? threadData.columns.get(xx, zz, y, sizeY, stepY) : null;
+                if (cached != null) {
+                    System.arraycopy(cached, 0, arr, i, sizeY);
+                    continue;
+                }
 
-                    double variation = (height > yy ? columnVariation * this.specialHeightVariation : columnVariation) * this.heightVariationFactor + this.heightVariationOffset;
-                    arr[i++] = (lerp(low, high, selector) + depth) * variation + height - signum(variation) * yy;
+                this.getColumn(arr, i, threadData, biomes, xx, y, zz, sizeY, stepY);
+                if (edge) {
+                    threadData.columns.put(xx, zz, Arrays.copyOfRange(arr, i, i + sizeY));
                 }
             }
         }
         return arr;
     }
 
+    private void getColumn(double[] arr, int offset, ThreadData threadData, BiomeMap biomes, int x, int y, int z, int sizeY, int stepY) {
+        double[] selector = threadData.selector;
+        double[] low = threadData.low;
+        double[] high = threadData.high;
+        NoiseGrids.sampleColumn(this.selector, selector, 0, x, y, z, sizeY, stepY);
+        NoiseGrids.sampleColumn(this.low, low, 0, x, y, z, sizeY, stepY);
+        NoiseGrids.sampleColumn(this.high, high, 0, x, y, z, sizeY, stepY);
+
+        double depth = this.getDepth(x, z);
+
+        BiomeTerrainCache.Data terrainData = this.terrainCache.get(x, z, biomes);
+        double height = terrainData.baseHeight * this.heightFactor + this.heightOffset;
+        double columnVariation = terrainData.heightVariation;
+
+        //the variation only changes where the column passes the base height, so the column is split there into two loops without any branches
+        int split = 0;
+        while (split < sizeY && height > y + split * stepY) {
+            split++;
+        }
+        double lowerVariation = columnVariation * this.specialHeightVariation * this.heightVariationFactor + this.heightVariationOffset;
+        double upperVariation = columnVariation * this.heightVariationFactor + this.heightVariationOffset;
+        combine(arr, offset, selector, low, high, 0, split, y, stepY, depth, height, lowerVariation);
+        combine(arr, offset, selector, low, high, split, sizeY, y, stepY, depth, height, upperVariation);
+    }
+
+    private static void combine(double[] arr, int offset, double[] selector, double[] low, double[] high, int from, int to, int y, int stepY, double depth, double height, double variation) {
+        double sign = signum(variation);
+        for (int dy = from; dy < to; dy++) {
+            double yy = y + dy * stepY;
+            double s = Math.min(Math.max(selector[dy], 0.0d), 1.0d);
+            arr[offset + dy] = (lerp(low[dy], high[dy], s) + depth) * variation + height - sign * yy;
+        }
+    }
+
     protected double getDepth(double x, double z) {
         double depth = this.depth.get(x, z);
         if (depth < 0.0d) {
@@ -144,4 +189,19 @@ public class VanillaDensitySource extends AbstractGenerationPass implements Dens
     public Identifier getId() {
         return ID;
     }
+
+    private static final class ThreadData {
+        private final NoiseColumnCache columns = new NoiseColumnCache(COLUMN_CACHE_SIZE);
+        private double[] selector = new double[0];
+        private double[] low = new double[0];
+        private double[] high = new double[0];
+
+        private void ensureCapacity(int sizeY) {
+            if (this.selector.length < sizeY) {
+                this.selector = new double[sizeY];
+                this.low = new double[sizeY];
+                this.high = new double[sizeY];
+            }
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package org.cloudburstmc.server.level.generator.standard.generation.noise;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+
+/**
+ * A small LRU cache of sampled columns, keyed by their X and Z coordinates.
+ * <p>
+ * Chunks sample their grid on the chunk edges, so the edge columns of a chunk are sampled again by its neighbours.
+ * Keeping them around lets neighbouring chunks generated by the same thread skip those columns. All columns share the
+ * same Y coordinates, sampling columns with other ones clears the cache.
+ * <p>
+ * Not thread-safe, every thread should use its own cache.
+ */
+public final class NoiseColumnCache {
+    private final Long2ObjectLinkedOpenHashMap<double[]> columns = new Long2ObjectLinkedOpenHashMap<>();
+    private final int capacity;
+
+    private int y;
+    private int sizeY;
+    private int stepY;
+
+    /**
+     * @param capacity the maximum number of columns to keep
+     */
+    public NoiseColumnCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Gets the cached column at the given coordinates.
+     *
+     * @return the samples of the column, or {@code null} if it isn't cached
+     */
+    public double[] get(int x, int z, int y, int sizeY, int stepY) {
+        if (y != this.y || sizeY != this.sizeY || stepY != this.stepY) {
+            this.columns.clear();
+            this.y = y;
+            this.sizeY = sizeY;
+            this.stepY = stepY;
+            return null;
+        }
+        return this.columns.getAndMoveToLast(CloudChunk.key(x, z));
+    }
+
+    /**
+     * Caches a column sampled with the Y coordinates of the last {@link #get(int, int, int, int, int)}, evicting the
+     * least recently used column if the cache is full.
+     */
+    public void put(int x, int z, double[] column) {
+        if (this.columns.size() >= this.capacity) {
+            this.columns.removeFirst();
+        }
+        this.columns.putAndMoveToLast(CloudChunk.key(x, z), column);
+    }
+}
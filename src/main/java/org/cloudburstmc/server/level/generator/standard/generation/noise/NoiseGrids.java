@@ -0,0 +1,34 @@
+package org.cloudburstmc.server.level.generator.standard.generation.noise;
+
+import com.google.common.base.Preconditions;
+import lombok.NonNull;
+import lombok.experimental.UtilityClass;
+import net.daporkchop.lib.noise.NoiseSource;
+
+/**
+ * Samples {@link NoiseSource}s on whole columns instead of one point per call.
+ * <p>
+ * Columns are sampled into contiguous arrays, so code combining several noise sources can do so in plain loops over
+ * arrays, which the JIT is able to unroll and vectorize, instead of interleaving the combination with the noise calls.
+ */
+@UtilityClass
+public class NoiseGrids {
+    /**
+     * Samples a column of noise.
+     *
+     * @param source the {@link NoiseSource} to sample
+     * @param dst    the array to store the samples in
+     * @param offset the index to store the first sample at
+     * @param x      the X coordinate of the column
+     * @param y      the Y coordinate of the first sample
+     * @param z      the Z coordinate of the column
+     * @param sizeY  the number of samples to take
+     * @param stepY  the spacing between samples
+     */
+    public void sampleColumn(@NonNull NoiseSource source, @NonNull double[] dst, int offset, double x, double y, double z, int sizeY, double stepY) {
+        Preconditions.checkPositionIndexes(offset, offset + sizeY, dst.length);
+        for (int dy = 0; dy < sizeY; dy++) {
+            dst[offset + dy] = source.get(x, y + dy * stepY, z);
+        }
+    }
+}
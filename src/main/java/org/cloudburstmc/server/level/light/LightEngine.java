@@ -0,0 +1,148 @@
+package org.cloudburstmc.server.level.light;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortIterator;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.server.level.CloudLevel;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Block and sky light engine of a level.
+ * <p>
+ * Changed blocks are collected per chunk and processed on a worker, one chunk at a time. Each batch reads the chunk
+ * and its eight neighbours under their read locks, so light can't travel further than one chunk away from the changed
+ * blocks, and then write locks only the chunks whose light changed to store it. Only one batch runs at a time per
+ * level, so blocks changed while a batch runs are relit by the next one.
+ */
+@Log4j2
+public class LightEngine {
+
+    private final CloudLevel level;
+    private final Executor executor;
+    private final LongLinkedOpenHashSet pendingChunks = new LongLinkedOpenHashSet();
+    private final Long2ObjectLinkedOpenHashMap<ShortSet> pendingBlocks = new Long2ObjectLinkedOpenHashMap<>();
+    private final AtomicLong processedChunks = new AtomicLong();
+    private boolean running;
+
+    // Only used by the running worker
+    private final LightRegion region = new LightRegion();
+    private final CloudChunk[] regionChunks = new CloudChunk[9];
+
+    public LightEngine(CloudLevel level, Executor executor) {
+        this.level = level;
+        this.executor = executor;
+    }
+
+    /**
+     * Queues a block whose light emission or filter level changed.
+     */
+    public void enqueueBlock(int x, int y, int z) {
+        long chunkKey = CloudChunk.key(x >> 4, z >> 4);
+        synchronized (this) {
+            this.pendingBlocks.computeIfAbsent(chunkKey, key -> new ShortOpenHashSet())
+                    .add(blockKey(x, y, z));
+            this.schedule();
+        }
+    }
+
+    /**
+     * Queues a chunk to be lit from scratch, for example after it has been loaded or generated.
+     */
+    public void enqueueChunk(int chunkX, int chunkZ) {
+        long chunkKey = CloudChunk.key(chunkX, chunkZ);
+        synchronized (this) {
+            this.pendingChunks.add(chunkKey);
+            // The full update includes all single blocks
+            this.pendingBlocks.remove(chunkKey);
+            this.schedule();
+        }
+    }
+
+    public synchronized int getPendingChunks() {
+        return this.pendingChunks.size() + this.pendingBlocks.size();
+    }
+
+    public long getProcessedChunks() {
+        return processedChunks.get();
+    }
+
+    private void schedule() {
+        if (!this.running) {
+            this.running = true;
+            this.executor.execute(this::process);
+        }
+    }
+
+    private void process() {
+        while (true) {
+            long chunkKey;
+            ShortSet blocks;
+            synchronized (this) {
+                if (!this.pendingChunks.isEmpty()) {
+                    chunkKey = this.pendingChunks.removeFirstLong();
+                    blocks = null;
+                } else if (!this.pendingBlocks.isEmpty()) {
+                    chunkKey = this.pendingBlocks.firstLongKey();
+                    blocks = this.pendingBlocks.remove(chunkKey);
+                } else {
+                    this.running = false;
+                    return;
+                }
+            }
+
+            try {
+                this.process(chunkKey, blocks);
+                this.processedChunks.incrementAndGet();
+            } catch (Exception e) {
+                log.error("Unable to update light of chunk ({}, {}) in {}", CloudChunk.fromKeyX(chunkKey),
+                        CloudChunk.fromKeyZ(chunkKey), this.level.getId(), e);
+            }
+        }
+    }
+
+    private void process(long chunkKey, ShortSet blocks) {
+        int chunkX = CloudChunk.fromKeyX(chunkKey);
+        int chunkZ = CloudChunk.fromKeyZ(chunkKey);
+        if (this.level.getLoadedChunk(chunkX, chunkZ) == null) {
+            return;
+        }
+
+        CloudChunk[] chunks = this.regionChunks;
+        for (int x = 0; x < 3; x++) {
+            for (int z = 0; z < 3; z++) {
+                chunks[x * 3 + z] = this.level.getLoadedChunk(chunkX + x - 1, chunkZ + z - 1);
+            }
+        }
+
+        LightRegion region = this.region;
+        region.load(chunks);
+        try {
+            if (blocks == null) {
+                region.lightCenter();
+            } else {
+                ShortIterator iterator = blocks.iterator();
+                while (iterator.hasNext()) {
+                    int blockKey = iterator.nextShort() & 0xffff;
+                    region.update(16 + (blockKey & 0xf), blockKey >>> 8, 16 + ((blockKey >>> 4) & 0xf));
+                }
+            }
+            region.propagate();
+            region.apply();
+        } finally {
+            region.unload();
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = null;
+            }
+        }
+    }
+
+    private static short blockKey(int x, int y, int z) {
+        return (short) ((y & 0xff) << 8 | (z & 0xf) << 4 | (x & 0xf));
+    }
+}
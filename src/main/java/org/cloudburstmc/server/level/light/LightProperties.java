@@ -0,0 +1,55 @@
+package org.cloudburstmc.server.level.light;
+
+import com.nukkitx.math.vector.Vector3i;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.api.block.behavior.BlockBehavior;
+import org.cloudburstmc.server.block.CloudBlock;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Light emission and filter level of every block state, so propagation doesn't need a {@link CloudBlock} per node.
+ */
+final class LightProperties {
+
+    // Emission in the upper and filter level in the lower 4 bits
+    private static final Map<BlockState, Integer> PROPERTIES = new ConcurrentHashMap<>();
+
+    private LightProperties() {
+    }
+
+    static int getEmission(BlockState state) {
+        return get(state) >> 4;
+    }
+
+    static int getFilter(BlockState state) {
+        return get(state) & 0xf;
+    }
+
+    private static int get(BlockState state) {
+        Integer properties = PROPERTIES.get(state);
+        if (properties == null) {
+            properties = compute(state);
+            PROPERTIES.put(state, properties);
+        }
+        return properties;
+    }
+
+    private static int compute(BlockState state) {
+        BlockBehavior behavior = state.getBehavior();
+        int emission;
+        try {
+            // Light levels only depend on the state, the position is never used.
+            emission = behavior.getLightLevel(new CloudBlock(null, Vector3i.ZERO, new BlockState[]{state, BlockStates.AIR}));
+        } catch (RuntimeException e) {
+            emission = 0;
+        }
+        return (clamp(emission) << 4) | clamp(behavior.getFilterLevel(state));
+    }
+
+    private static int clamp(int level) {
+        return Math.max(0, Math.min(15, level));
+    }
+}
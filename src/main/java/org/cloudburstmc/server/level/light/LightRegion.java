@@ -0,0 +1,476 @@
+package org.cloudburstmc.server.level.light;
+
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.level.chunk.LockableChunk;
+import org.cloudburstmc.server.level.chunk.BlockStorage;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.CloudChunkSection;
+import org.cloudburstmc.server.level.chunk.CloudLockableChunk;
+import org.cloudburstmc.server.level.chunk.HeightMapType;
+
+import java.util.Arrays;
+
+/**
+ * 3x3 chunks around a center chunk whose light is being updated.
+ * <p>
+ * Positions are relative to the north-west corner of the region and packed into ints, so the queues don't allocate.
+ * Light is read from the nibble arrays of the cached sections, and written to copies of them which are only stored in
+ * the chunks by {@link #apply()}. Missing sections count as air, with full sky light at or above the light blocking
+ * height of their column like the chunk gives them, and are only created once a different value has to be stored.
+ * Nodes in chunks which are not loaded are skipped.
+ * <p>
+ * Not thread safe, only one thread may use a region at a time.
+ */
+final class LightRegion {
+
+    static final int SIZE = 48;
+    private static final int HEIGHT = 256;
+    private static final int SECTIONS = 16;
+    private static final int NIBBLES = 2048;
+
+    private static final int DOWN = 0;
+    private static final int[] OFFSET_X = {0, 0, -1, 1, 0, 0};
+    private static final int[] OFFSET_Y = {-1, 1, 0, 0, 0, 0};
+    private static final int[] OFFSET_Z = {0, 0, 0, 0, -1, 1};
+
+    private final CloudChunk[] chunks = new CloudChunk[9];
+    // Lockable of each chunk for the lock currently held, null if it isn't locked
+    private final LockableChunk[] locked = new LockableChunk[9];
+    private final CloudChunkSection[] sections = new CloudChunkSection[9 * SECTIONS];
+    // Light written so far, per section, null where it didn't change
+    private final byte[][] blockLight = new byte[9 * SECTIONS][];
+    private final byte[][] skyLight = new byte[9 * SECTIONS][];
+    private final LockableChunk[] lockOrder = new LockableChunk[9];
+    private int lockCount;
+
+    // Removal entries are the packed position shifted left by 4 bits and the previous light level
+    private final IntArrayFIFOQueue blockRemoval = new IntArrayFIFOQueue();
+    private final IntArrayFIFOQueue blockSpread = new IntArrayFIFOQueue();
+    private final IntArrayFIFOQueue skyRemoval = new IntArrayFIFOQueue();
+    private final IntArrayFIFOQueue skySpread = new IntArrayFIFOQueue();
+    // Height below which sky light is no longer full, of the center chunk and its border columns
+    private final int[] skyHeights = new int[18 * 18];
+
+    /**
+     * Locks the given chunks for reading and caches their sections.
+     *
+     * @param chunks chunks ordered by x then z, the center chunk at index 4. Unloaded chunks are null.
+     */
+    void load(CloudChunk[] chunks) {
+        for (int i = 0; i < 9; i++) {
+            CloudChunk chunk = chunks[i];
+            this.chunks[i] = chunk;
+            this.locked[i] = chunk == null ? null : chunk.readLockable();
+        }
+        this.lock();
+
+        for (int i = 0; i < 9; i++) {
+            LockableChunk chunk = this.locked[i];
+            for (int y = 0; y < SECTIONS; y++) {
+                this.sections[i * SECTIONS + y] = chunk == null ? null : (CloudChunkSection) chunk.getSection(y);
+            }
+        }
+    }
+
+    /**
+     * Releases the read locks and stores the changed light in the chunks, only locking the chunks which changed for
+     * writing. Blocks changed in between are queued for their own update, which runs after this one.
+     */
+    void apply() {
+        this.unlock();
+
+        for (int i = 0; i < 9; i++) {
+            this.locked[i] = this.isChanged(i) ? this.chunks[i].writeLockable() : null;
+        }
+        this.lock();
+        try {
+            for (int i = 0; i < 9 * SECTIONS; i++) {
+                byte[] block = this.blockLight[i];
+                byte[] sky = this.skyLight[i];
+                if (block == null && sky == null) {
+                    continue;
+                }
+                CloudChunkSection section = (CloudChunkSection) this.locked[i / SECTIONS]
+                        .getOrCreateSection(i % SECTIONS);
+                if (block != null) {
+                    section.getBlockLightArray().copyFrom(block);
+                }
+                if (sky != null) {
+                    section.getSkyLightArray().copyFrom(sky);
+                }
+            }
+        } finally {
+            this.unlock();
+        }
+    }
+
+    void unload() {
+        this.unlock();
+        Arrays.fill(this.chunks, null);
+        Arrays.fill(this.locked, null);
+        Arrays.fill(this.sections, null);
+        Arrays.fill(this.blockLight, null);
+        Arrays.fill(this.skyLight, null);
+    }
+
+    private void lock() {
+        for (LockableChunk chunk : this.locked) {
+            if (chunk != null) {
+                this.lockOrder[this.lockCount++] = chunk;
+            }
+        }
+        // Same order as population so the locks can't dead lock
+        Arrays.sort(this.lockOrder, 0, this.lockCount);
+        for (int i = 0; i < this.lockCount; i++) {
+            this.lockOrder[i].lock();
+        }
+    }
+
+    private void unlock() {
+        for (int i = this.lockCount - 1; i >= 0; i--) {
+            this.lockOrder[i].unlock();
+            this.lockOrder[i] = null;
+        }
+        this.lockCount = 0;
+    }
+
+    private boolean isChanged(int chunkIndex) {
+        for (int i = chunkIndex * SECTIONS; i < (chunkIndex + 1) * SECTIONS; i++) {
+            if (this.blockLight[i] != null || this.skyLight[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Queues a changed block. Its previous light is removed and relit from its own emission and its neighbours.
+     */
+    void update(int x, int y, int z) {
+        if (!this.contains(x, y, z)) {
+            return;
+        }
+        int pos = pack(x, y, z);
+
+        int block = this.getLight(false, x, y, z);
+        if (block > 0) {
+            this.setLight(false, x, y, z, 0);
+            this.blockRemoval.enqueue(pos << 4 | block);
+        }
+        int emission = this.getEmission(x, y, z);
+        if (emission > 0) {
+            this.setLight(false, x, y, z, emission);
+            this.blockSpread.enqueue(pos);
+        }
+
+        int sky = this.getLight(true, x, y, z);
+        if (sky > 0) {
+            this.setLight(true, x, y, z, 0);
+            this.skyRemoval.enqueue(pos << 4 | sky);
+        }
+
+        for (int direction = 0; direction < 6; direction++) {
+            int nx = x + OFFSET_X[direction];
+            int ny = y + OFFSET_Y[direction];
+            int nz = z + OFFSET_Z[direction];
+            if (this.contains(nx, ny, nz)) {
+                int neighbour = pack(nx, ny, nz);
+                this.blockSpread.enqueue(neighbour);
+                this.skySpread.enqueue(neighbour);
+            }
+        }
+    }
+
+    /**
+     * Lights the center chunk from scratch: sky light straight down every column, spread sideways wherever the
+     * neighbouring column is shadowed, and block light from every emitting block.
+     */
+    void lightCenter() {
+        this.computeSkyHeights();
+
+        for (int x = 16; x < 32; x++) {
+            for (int z = 16; z < 32; z++) {
+                this.lightColumn(x, z);
+            }
+        }
+
+        // Spread sideways between columns where one is lit further down than the other
+        for (int x = 15; x < 33; x++) {
+            for (int z = 15; z < 33; z++) {
+                boolean center = x >= 16 && x < 32 && z >= 16 && z < 32;
+                int height = this.getSkyHeight(x, z);
+                for (int direction = 2; direction < 6; direction++) {
+                    int nx = x + OFFSET_X[direction];
+                    int nz = z + OFFSET_Z[direction];
+                    if (nx < 15 || nx >= 33 || nz < 15 || nz >= 33) {
+                        continue;
+                    }
+                    if (!center && (nx < 16 || nx >= 32 || nz < 16 || nz >= 32)) {
+                        continue;
+                    }
+                    int neighbourHeight = this.getSkyHeight(nx, nz);
+                    for (int y = height; y < neighbourHeight; y++) {
+                        if (this.contains(x, y, z)) {
+                            this.skySpread.enqueue(pack(x, y, z));
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int sectionY = 0; sectionY < SECTIONS; sectionY++) {
+            CloudChunkSection section = this.sections[4 * SECTIONS + sectionY];
+            if (section == null || !this.hasEmitter(section)) {
+                continue;
+            }
+            for (int index = 0; index < 4096; index++) {
+                int x = 16 + (index >> 8);
+                int z = 16 + ((index >> 4) & 0xf);
+                int y = (sectionY << 4) | (index & 0xf);
+                int emission = this.getEmission(x, y, z);
+                if (emission > this.getLight(false, x, y, z)) {
+                    this.setLight(false, x, y, z, emission);
+                    this.blockSpread.enqueue(pack(x, y, z));
+                }
+            }
+        }
+    }
+
+    private boolean hasEmitter(CloudChunkSection section) {
+        for (BlockStorage storage : section.getBlockStorageArray()) {
+            if (storage.anyMatch(state -> LightProperties.getEmission(state) > 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void lightColumn(int x, int z) {
+        int light = 15;
+        for (int y = HEIGHT - 1; y >= 0 && light > 0; y--) {
+            if (light == 15 && this.sections[sectionIndex(x, y, z)] == null &&
+                    this.getDefaultSkyLight(x, y & ~0xf, z) == 15) {
+                // Missing sections above the light blocking height already count as fully lit
+                y &= ~0xf;
+                continue;
+            }
+            int filter = this.getFilter(x, y, z);
+            if (light < 15 || filter > 0) {
+                light = Math.max(0, light - Math.max(1, filter));
+            }
+            if (light > this.getLight(true, x, y, z)) {
+                this.setLight(true, x, y, z, light);
+            }
+        }
+    }
+
+    private void computeSkyHeights() {
+        for (int x = 15; x < 33; x++) {
+            for (int z = 15; z < 33; z++) {
+                LockableChunk chunk = this.locked[chunkIndex(x, z)];
+                this.skyHeights[(x - 15) * 18 + (z - 15)] = chunk == null ? 0 :
+                        ((CloudLockableChunk) chunk).getHeight(HeightMapType.LIGHT_BLOCKING, x & 0xf, z & 0xf);
+            }
+        }
+    }
+
+    private int getSkyHeight(int x, int z) {
+        return this.skyHeights[(x - 15) * 18 + (z - 15)];
+    }
+
+    private int getDefaultSkyLight(int x, int y, int z) {
+        return ((CloudLockableChunk) this.locked[chunkIndex(x, z)]).getDefaultSkyLight(x & 0xf, y, z & 0xf);
+    }
+
+    /**
+     * Fills the sky light of a missing section the way the chunk creates it.
+     */
+    private void fillDefaultSkyLight(byte[] data, int x, int y, int z) {
+        CloudLockableChunk chunk = (CloudLockableChunk) this.locked[chunkIndex(x, z)];
+        int bottom = y & ~0xf;
+        for (int index = 0; index < 4096; index++) {
+            int blockX = index >> 8;
+            int blockZ = (index >> 4) & 0xf;
+            if (chunk.getDefaultSkyLight(blockX, bottom | (index & 0xf), blockZ) == 15) {
+                data[index >> 1] |= (byte) ((index & 1) == 0 ? 0x0f : 0xf0);
+            }
+        }
+    }
+
+    /**
+     * Processes all queued removals and spreads of both light types.
+     */
+    void propagate() {
+        this.propagate(false, this.blockRemoval, this.blockSpread);
+        this.propagate(true, this.skyRemoval, this.skySpread);
+    }
+
+    private void propagate(boolean sky, IntArrayFIFOQueue removal, IntArrayFIFOQueue spread) {
+        while (!removal.isEmpty()) {
+            int entry = removal.dequeueInt();
+            int pos = entry >>> 4;
+            int light = entry & 0xf;
+            int x = unpackX(pos);
+            int y = unpackY(pos);
+            int z = unpackZ(pos);
+
+            for (int direction = 0; direction < 6; direction++) {
+                int nx = x + OFFSET_X[direction];
+                int ny = y + OFFSET_Y[direction];
+                int nz = z + OFFSET_Z[direction];
+                if (!this.contains(nx, ny, nz)) {
+                    continue;
+                }
+                int current = this.getLight(sky, nx, ny, nz);
+                if (current == 0) {
+                    continue;
+                }
+                // Full sky light travels down without being reduced, so it has to be removed the same way.
+                if (current < light || (sky && direction == DOWN && light == 15 && current == 15)) {
+                    this.setLight(sky, nx, ny, nz, 0);
+                    removal.enqueue(pack(nx, ny, nz) << 4 | current);
+                    if (!sky) {
+                        int emission = this.getEmission(nx, ny, nz);
+                        if (emission > 0) {
+                            this.setLight(false, nx, ny, nz, emission);
+                            spread.enqueue(pack(nx, ny, nz));
+                        }
+                    }
+                } else {
+                    spread.enqueue(pack(nx, ny, nz));
+                }
+            }
+        }
+
+        while (!spread.isEmpty()) {
+            int pos = spread.dequeueInt();
+            int x = unpackX(pos);
+            int y = unpackY(pos);
+            int z = unpackZ(pos);
+            int light = this.getLight(sky, x, y, z);
+            if (light <= 1) {
+                continue;
+            }
+
+            for (int direction = 0; direction < 6; direction++) {
+                int nx = x + OFFSET_X[direction];
+                int ny = y + OFFSET_Y[direction];
+                int nz = z + OFFSET_Z[direction];
+                if (!this.contains(nx, ny, nz)) {
+                    continue;
+                }
+                int filter = this.getFilter(nx, ny, nz);
+                int newLight;
+                if (sky && direction == DOWN && light == 15 && filter == 0) {
+                    newLight = 15;
+                } else {
+                    newLight = light - Math.max(1, filter);
+                }
+                if (newLight > this.getLight(sky, nx, ny, nz)) {
+                    this.setLight(sky, nx, ny, nz, newLight);
+                    spread.enqueue(pack(nx, ny, nz));
+                }
+            }
+        }
+    }
+
+    boolean contains(int x, int y, int z) {
+        return x >= 0 && x < SIZE && z >= 0 && z < SIZE && y >= 0 && y < HEIGHT &&
+                this.chunks[chunkIndex(x, z)] != null;
+    }
+
+    int getLight(boolean sky, int x, int y, int z) {
+        int sectionIndex = sectionIndex(x, y, z);
+        byte[] data = (sky ? this.skyLight : this.blockLight)[sectionIndex];
+        if (data == null) {
+            CloudChunkSection section = this.sections[sectionIndex];
+            if (section == null) {
+                return sky ? this.getDefaultSkyLight(x, y, z) : 0;
+            }
+            data = (sky ? section.getSkyLightArray() : section.getBlockLightArray()).getData();
+        }
+        int index = CloudChunkSection.blockIndex(x & 0xf, y & 0xf, z & 0xf);
+        int value = data[index >> 1];
+        return (index & 1) == 0 ? value & 0xf : (value >> 4) & 0xf;
+    }
+
+    private void setLight(boolean sky, int x, int y, int z, int light) {
+        int sectionIndex = sectionIndex(x, y, z);
+        byte[][] written = sky ? this.skyLight : this.blockLight;
+        byte[] data = written[sectionIndex];
+        if (data == null) {
+            CloudChunkSection section = this.sections[sectionIndex];
+            if (section == null) {
+                if (light == (sky ? this.getDefaultSkyLight(x, y, z) : 0)) {
+                    return;
+                }
+                data = new byte[NIBBLES];
+                if (sky) {
+                    this.fillDefaultSkyLight(data, x, y, z);
+                }
+            } else {
+                data = (sky ? section.getSkyLightArray() : section.getBlockLightArray()).getData().clone();
+            }
+            written[sectionIndex] = data;
+        }
+        int index = CloudChunkSection.blockIndex(x & 0xf, y & 0xf, z & 0xf);
+        int half = index >> 1;
+        if ((index & 1) == 0) {
+            data[half] = (byte) (data[half] & 0xf0 | light);
+        } else {
+            data[half] = (byte) (data[half] & 0x0f | light << 4);
+        }
+    }
+
+    private int getFilter(int x, int y, int z) {
+        CloudChunkSection section = this.sections[sectionIndex(x, y, z)];
+        if (section == null) {
+            return 0;
+        }
+        int index = CloudChunkSection.blockIndex(x & 0xf, y & 0xf, z & 0xf);
+        int filter = 0;
+        for (BlockStorage storage : section.getBlockStorageArray()) {
+            BlockState state = storage.getBlock(index);
+            filter = Math.max(filter, LightProperties.getFilter(state));
+        }
+        return filter;
+    }
+
+    private int getEmission(int x, int y, int z) {
+        CloudChunkSection section = this.sections[sectionIndex(x, y, z)];
+        if (section == null) {
+            return 0;
+        }
+        int index = CloudChunkSection.blockIndex(x & 0xf, y & 0xf, z & 0xf);
+        int emission = 0;
+        for (BlockStorage storage : section.getBlockStorageArray()) {
+            emission = Math.max(emission, LightProperties.getEmission(storage.getBlock(index)));
+        }
+        return emission;
+    }
+
+    private static int chunkIndex(int x, int z) {
+        return (x >> 4) * 3 + (z >> 4);
+    }
+
+    private static int sectionIndex(int x, int y, int z) {
+        return chunkIndex(x, z) * SECTIONS + (y >> 4);
+    }
+
+    private static int pack(int x, int y, int z) {
+        return x << 14 | z << 8 | y;
+    }
+
+    private static int unpackX(int pos) {
+        return pos >>> 14;
+    }
+
+    private static int unpackY(int pos) {
+        return pos & 0xff;
+    }
+
+    private static int unpackZ(int pos) {
+        return (pos >>> 8) & 0x3f;
+    }
+}
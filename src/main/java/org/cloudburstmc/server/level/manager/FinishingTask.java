@@ -7,13 +7,12 @@ import lombok.NonNull;
 import net.daporkchop.lib.random.PRandom;
 import net.daporkchop.lib.random.impl.FastPRandom;
 import org.cloudburstmc.api.level.chunk.Chunk;
-import org.cloudburstmc.api.level.chunk.LockableChunk;
 import org.cloudburstmc.server.level.CloudLevel;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.ScratchChunk;
 import org.cloudburstmc.server.level.generator.Generator;
 
 import java.util.List;
-import java.util.concurrent.locks.Lock;
 import java.util.function.BiFunction;
 
 /**
@@ -35,21 +34,16 @@ public final class FinishingTask implements BiFunction<CloudChunk, List<CloudChu
         PRandom random = new FastPRandom(chunk.getX() * 9050650275199519859L ^ chunk.getZ() * 5251710924988638743L ^ chunk.getLevel().getSeed());
 
         chunks.add(chunk);
-        LockableChunk[] lockableChunks = chunks.stream()
+        ScratchChunk[] scratchChunks = chunks.stream()
                 .peek(populationChunk -> Preconditions.checkState(populationChunk.isGenerated(), "Chunk %d,%d was used for population before being generated!", populationChunk.getX(), populationChunk.getZ()))
-                .map(Chunk::writeLockable)
-                .sorted()
-                .peek(Lock::lock)
-                .toArray(LockableChunk[]::new);
-        try {
-            ((CloudLevel) chunk.getLevel()).getGenerator().finish(random, new PopulationChunkManager(chunk, lockableChunks, chunk.getLevel().getSeed()), chunk.getX(), chunk.getZ());
-            chunk.setState(Chunk.STATE_FINISHED);
-            chunk.setDirty();
-        } finally {
-            for (LockableChunk lockableChunk : lockableChunks) {
-                lockableChunk.unlock();
-            }
-        }
+                .map(ScratchChunk::new)
+                .toArray(ScratchChunk[]::new);
+        ((CloudLevel) chunk.getLevel()).getGenerator().finish(random, new PopulationChunkManager(chunk, scratchChunks, chunk.getLevel().getSeed()), chunk.getX(), chunk.getZ());
+
+        // The population scheduler keeps other tasks out of the area, the chunks are only locked to apply the writes
+        ScratchChunk.merge(scratchChunks);
+        chunk.setState(Chunk.STATE_FINISHED);
+        chunk.setDirty();
         return chunk;
     }
 }
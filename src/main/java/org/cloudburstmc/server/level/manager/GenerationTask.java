@@ -34,6 +34,7 @@ public final class GenerationTask implements Function<CloudChunk, CloudChunk> {
         lockable.lock();
         try {
             ((CloudLevel) chunk.getLevel()).getGenerator().generate(random, lockable, chunk.getX(), chunk.getZ());
+            chunk.recalculateHeightMaps();
             chunk.setState(Chunk.STATE_GENERATED);
             chunk.setDirty();
         } finally {
@@ -15,21 +15,28 @@ import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.cloudburstmc.api.event.level.ChunkUnloadEvent;
 import org.cloudburstmc.api.level.chunk.Chunk;
 import org.cloudburstmc.server.config.ServerConfig;
+import org.cloudburstmc.server.level.BlockUpdate;
 import org.cloudburstmc.server.level.CloudLevel;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.level.provider.LevelProvider;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
+import org.cloudburstmc.server.utils.BlockUpdateEntry;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Function;
 
 @Log4j2
 @ParametersAreNonnullByDefault
@@ -44,7 +51,8 @@ public final class LevelChunkManager {
     private final Long2ObjectMap<LoadingChunk> chunks = new Long2ObjectOpenHashMap<>();
     private final Long2LongMap chunkLoadedTimes = new Long2LongOpenHashMap();
     private final Long2LongMap chunkLastAccessTimes = new Long2LongOpenHashMap();
-    private final Executor executor;
+    private final PriorityExecutor executor;
+    private final PopulationScheduler populationScheduler;
 
     public LevelChunkManager(CloudLevel level) {
         this(level, level.getProvider());
@@ -52,7 +60,8 @@ public final class LevelChunkManager {
 
     public LevelChunkManager(CloudLevel level, LevelProvider provider) {
         this.level = level;
-        this.executor = this.level.getServer().getScheduler().getAsyncPool();
+        this.executor = this.level.getServer().getScheduler().getGenerationExecutor();
+        this.populationScheduler = new PopulationScheduler();
         this.provider = provider;
     }
 
@@ -73,6 +82,10 @@ public final class LevelChunkManager {
         return chunks.build();
     }
 
+    public PopulationStats getPopulationStats() {
+        return this.populationScheduler.getStats();
+    }
+
     public synchronized int getLoadedCount() {
         return this.chunks.size();
     }
@@ -127,14 +140,31 @@ public final class LevelChunkManager {
      */
     @Nonnull
     public CompletableFuture<CloudChunk> getChunkFuture(int x, int z) {
-        return this.getChunkFuture(x, z, true, true, true);
+        return this.getChunkFuture(x, z, PriorityExecutor.PRIORITY_DEFAULT);
     }
 
+    /**
+     * Get chunk future at specified coordinate, loading or generating the chunk at the given priority. A chunk which
+     * is already being loaded continues at the higher of both priorities.
+     *
+     * @param x        chunk x
+     * @param z        chunk z
+     * @param priority {@link PriorityExecutor} priority
+     * @return chunk future
+     */
     @Nonnull
-    private synchronized CompletableFuture<CloudChunk> getChunkFuture(int chunkX, int chunkZ, boolean generate, boolean populate, boolean finish) {
+    public CompletableFuture<CloudChunk> getChunkFuture(int x, int z, int priority) {
+        return this.getChunkFuture(x, z, true, true, true, priority);
+    }
+
+    @Nonnull
+    private synchronized CompletableFuture<CloudChunk> getChunkFuture(int chunkX, int chunkZ, boolean generate, boolean populate, boolean finish, int priority) {
         final long chunkKey = CloudChunk.key(chunkX, chunkZ);
         this.chunkLastAccessTimes.put(chunkKey, System.currentTimeMillis());
-        LoadingChunk chunk = this.chunks.computeIfAbsent(chunkKey, key -> new LoadingChunk(key, true));
+        LoadingChunk chunk = this.chunks.computeIfAbsent(chunkKey, key -> new LoadingChunk(key, true, priority));
+        if (priority < chunk.priority) {
+            chunk.priority = priority;
+        }
 
         if (finish) {
             chunk.finish();
@@ -216,6 +246,7 @@ public final class LevelChunkManager {
             this.chunkLoadedTimes.remove(chunkKey);
 
             chunk.close();
+            this.level.getBlockUpdateScheduler().removeChunk(chunk.getX(), chunk.getZ());
             return true;
         }
     }
@@ -236,6 +267,16 @@ public final class LevelChunkManager {
         Preconditions.checkNotNull(chunk, "chunk");
         Preconditions.checkArgument(chunk.getLevel() == this.level,
                 "Chunk is not from this ChunkManager's Level");
+        // Taken now, the chunk's updates are cancelled right after an unload queues its save
+        CloudChunk cloudChunk = (CloudChunk) chunk;
+        long currentTick = this.level.getCurrentTick();
+        List<BlockUpdate> updates = this.getPendingUpdates(cloudChunk, currentTick);
+        if (!samePendingUpdates(cloudChunk.getPendingUpdates(), cloudChunk.getPendingUpdatesTick(), updates,
+                currentTick)) {
+            cloudChunk.setDirty(true);
+        }
+        // Even if nothing changed, the delays have to be relative to now in case the chunk is saved for other reasons
+        cloudChunk.setPendingUpdates(updates, currentTick);
         if (chunk.isDirty()) {
             return this.provider.saveChunk(chunk).exceptionally(throwable -> {
                 log.warn("Unable to save chunk", throwable);
@@ -245,6 +286,47 @@ public final class LevelChunkManager {
         return COMPLETED_VOID_FUTURE;
     }
 
+    private List<BlockUpdate> getPendingUpdates(CloudChunk chunk, long currentTick) {
+        List<BlockUpdateEntry> entries = this.level.getPendingBlockUpdates(chunk);
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<BlockUpdate> updates = new ArrayList<>(entries.size());
+        for (BlockUpdateEntry entry : entries) {
+            int delay = (int) Math.max(0, entry.delay - currentTick);
+            updates.add(BlockUpdate.of(entry.block, entry.pos, delay, entry.priority, false));
+        }
+        return updates;
+    }
+
+    /**
+     * Whether the updates are the ones saved before, for the same blocks and due on the same ticks with the same
+     * priorities.
+     */
+    private static boolean samePendingUpdates(List<BlockUpdate> saved, long savedTick, List<BlockUpdate> updates,
+                                              long tick) {
+        if (saved.size() != updates.size()) {
+            return false;
+        }
+        if (saved.isEmpty()) {
+            return true;
+        }
+        // Entries are equal by position and block states
+        Map<BlockUpdateEntry, BlockUpdateEntry> savedEntries = new HashMap<>(saved.size());
+        for (BlockUpdate update : saved) {
+            BlockUpdateEntry entry = new BlockUpdateEntry(update.getPos(), update.getBlock(),
+                    savedTick + update.getDelay(), update.getPriority());
+            savedEntries.put(entry, entry);
+        }
+        for (BlockUpdate update : updates) {
+            BlockUpdateEntry entry = savedEntries.get(new BlockUpdateEntry(update.getPos(), update.getBlock()));
+            if (entry == null || entry.delay != tick + update.getDelay() || entry.priority != update.getPriority()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public synchronized void tick() {
         if (this.chunks.isEmpty()) {
             return;
@@ -306,14 +388,18 @@ public final class LevelChunkManager {
         volatile int generationRunning;
         volatile int populationRunning;
         volatile int finishRunning;
+        volatile int priority;
+        // Runs the stages at the priority of when they are scheduled
+        private final Executor executor = task -> LevelChunkManager.this.executor.execute(task, this.priority);
         private Chunk chunk;
 
-        public LoadingChunk(long key, boolean load) {
+        public LoadingChunk(long key, boolean load, int priority) {
             this.x = CloudChunk.fromKeyX(key);
             this.z = CloudChunk.fromKeyZ(key);
+            this.priority = priority;
 
             if (load) {
-                this.future = LevelChunkManager.this.provider.readChunk(new ChunkBuilder(x, z, LevelChunkManager.this.level))
+                this.future = LevelChunkManager.this.provider.readChunk(new ChunkBuilder(x, z, LevelChunkManager.this.level).priority(priority))
                         .thenApply(chunk -> {
                             if (chunk == null) {
                                 return new CloudChunk(this.x, this.z, LevelChunkManager.this.level);
@@ -338,7 +424,12 @@ public final class LevelChunkManager {
             } else {
                 this.future = CompletableFuture.completedFuture(new CloudChunk(x, z, LevelChunkManager.this.level));
             }
-            this.future.whenComplete((chunk, throwable) -> this.chunk = chunk);
+            this.future.whenComplete((chunk, throwable) -> {
+                this.chunk = chunk;
+                if (chunk != null && chunk.isFinished()) {
+                    LevelChunkManager.this.level.getLightEngine().enqueueChunk(this.x, this.z);
+                }
+            });
         }
 
         public CompletableFuture<CloudChunk> getFuture() {
@@ -355,7 +446,7 @@ public final class LevelChunkManager {
 
         private void generate() {
             if ((this.chunk == null || !this.chunk.isGenerated()) && GENERATION_RUNNING_UPDATER.compareAndSet(this, 0, 1)) {
-                future = future.thenApplyAsync(GenerationTask.INSTANCE, LevelChunkManager.this.executor);
+                future = future.thenApplyAsync(GenerationTask.INSTANCE, this.executor);
                 future.thenRun(() -> GENERATION_RUNNING_UPDATER.compareAndSet(this, 1, 0));
             }
         }
@@ -368,12 +459,13 @@ public final class LevelChunkManager {
                 for (int z = this.z - 1, maxZ = this.z + 1; z <= maxZ; z++) {
                     for (int x = this.x - 1, maxX = this.x + 1; x <= maxX; x++) {
                         if (x == this.x && z == this.z) continue;
-                        chunksToLoad.add(LevelChunkManager.this.getChunkFuture(x, z, true, false, false));
+                        chunksToLoad.add(LevelChunkManager.this.getChunkFuture(x, z, true, false, false, this.priority));
                     }
                 }
                 CompletableFuture<List<CloudChunk>> aroundFuture = CompletableFutures.allAsList(chunksToLoad);
 
-                future = future.thenCombineAsync(aroundFuture, PopulationTask.INSTANCE, LevelChunkManager.this.executor);
+                future = future.thenCombine(aroundFuture, (chunk, around) -> LevelChunkManager.this.populationScheduler.submit(chunk, around, PopulationTask.INSTANCE, this.executor))
+                        .thenCompose(Function.identity());
                 future.thenRun(() -> POPULATION_RUNNING_UPDATER.compareAndSet(this, 1, 0));
             }
         }
@@ -385,13 +477,17 @@ public final class LevelChunkManager {
                 for (int z = this.z - 1, maxZ = this.z + 1; z <= maxZ; z++) {
                     for (int x = this.x - 1, maxX = this.x + 1; x <= maxX; x++) {
                         if (x == this.x && z == this.z) continue;
-                        chunksToLoad.add(LevelChunkManager.this.getChunkFuture(x, z, true, true, false));
+                        chunksToLoad.add(LevelChunkManager.this.getChunkFuture(x, z, true, true, false, this.priority));
                     }
                 }
                 CompletableFuture<List<CloudChunk>> aroundFuture = CompletableFutures.allAsList(chunksToLoad);
 
-                future = future.thenCombineAsync(aroundFuture, FinishingTask.INSTANCE, LevelChunkManager.this.executor);
-                future.thenRun(() -> FINISH_RUNNING_UPDATER.compareAndSet(this, 1, 0));
+                future = future.thenCombine(aroundFuture, (chunk, around) -> LevelChunkManager.this.populationScheduler.submit(chunk, around, FinishingTask.INSTANCE, this.executor))
+                        .thenCompose(Function.identity());
+                future.thenRun(() -> {
+                    FINISH_RUNNING_UPDATER.compareAndSet(this, 1, 0);
+                    LevelChunkManager.this.level.getLightEngine().enqueueChunk(this.x, this.z);
+                });
             }
         }
 
@@ -0,0 +1,135 @@
+package org.cloudburstmc.server.level.manager;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import lombok.Getter;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+
+/**
+ * Runs population and finishing tasks of a level in parallel without them locking their neighbours: a task only
+ * starts once no running task uses a chunk of its 3x3 area, so the running tasks form a checkerboard of disjoint
+ * areas and each can write its area through {@link org.cloudburstmc.server.level.chunk.ScratchChunk scratch chunks}.
+ * <p>
+ * Tasks start in submission order, a task waiting for its area keeps later tasks from claiming any part of it.
+ */
+final class PopulationScheduler {
+
+    private final ArrayDeque<Task> pending = new ArrayDeque<>();
+    // Chunks in the areas of running tasks
+    private final LongSet claimed = new LongOpenHashSet();
+    @Getter
+    private final PopulationStats stats = new PopulationStats();
+
+    CompletableFuture<CloudChunk> submit(CloudChunk chunk, List<CloudChunk> around,
+                                         BiFunction<CloudChunk, List<CloudChunk>, CloudChunk> function, Executor executor) {
+        Task task = new Task(chunk, around, function, executor);
+        synchronized (this) {
+            this.pending.add(task);
+        }
+        this.drain();
+        return task.future;
+    }
+
+    private void drain() {
+        List<Task> ready = new ArrayList<>();
+        synchronized (this) {
+            LongSet waiting = null;
+            Iterator<Task> iterator = this.pending.iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (this.isFree(task, waiting)) {
+                    iterator.remove();
+                    this.forEachKey(task, this.claimed, true);
+                    ready.add(task);
+                } else {
+                    if (waiting == null) {
+                        waiting = new LongOpenHashSet();
+                    }
+                    this.forEachKey(task, waiting, true);
+                }
+            }
+        }
+        for (Task task : ready) {
+            try {
+                task.executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.future.completeExceptionally(e);
+                this.release(task);
+            }
+        }
+    }
+
+    private boolean isFree(Task task, LongSet waiting) {
+        int x = task.chunk.getX();
+        int z = task.chunk.getZ();
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                long key = CloudChunk.key(x + dx, z + dz);
+                if (this.claimed.contains(key) || waiting != null && waiting.contains(key)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private void forEachKey(Task task, LongSet keys, boolean add) {
+        int x = task.chunk.getX();
+        int z = task.chunk.getZ();
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                long key = CloudChunk.key(x + dx, z + dz);
+                if (add) {
+                    keys.add(key);
+                } else {
+                    keys.remove(key);
+                }
+            }
+        }
+    }
+
+    private void release(Task task) {
+        synchronized (this) {
+            this.forEachKey(task, this.claimed, false);
+        }
+        this.drain();
+    }
+
+    private class Task implements Runnable {
+        private final CloudChunk chunk;
+        private final List<CloudChunk> around;
+        private final BiFunction<CloudChunk, List<CloudChunk>, CloudChunk> function;
+        private final Executor executor;
+        private final CompletableFuture<CloudChunk> future = new CompletableFuture<>();
+
+        private Task(CloudChunk chunk, List<CloudChunk> around, BiFunction<CloudChunk, List<CloudChunk>, CloudChunk> function,
+                     Executor executor) {
+            this.chunk = chunk;
+            this.around = around;
+            this.function = function;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                this.future.complete(this.function.apply(this.chunk, this.around));
+            } catch (Throwable throwable) {
+                this.future.completeExceptionally(throwable);
+            } finally {
+                PopulationScheduler.this.stats.record(start, System.nanoTime());
+                PopulationScheduler.this.release(this);
+            }
+        }
+    }
+}
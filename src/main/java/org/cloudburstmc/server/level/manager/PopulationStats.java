@@ -0,0 +1,47 @@
+package org.cloudburstmc.server.level.manager;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of chunk population and finishing of a single level.
+ * <p>
+ * Written by the threads running the tasks, the busy time is the sum of their run times so dividing by it gives the
+ * rate a single core achieves.
+ */
+public class PopulationStats {
+
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private volatile long firstNanos;
+    private volatile long lastNanos;
+
+    void record(long startNanos, long endNanos) {
+        if (this.firstNanos == 0) {
+            this.firstNanos = startNanos;
+        }
+        this.lastNanos = endNanos;
+        this.chunks.increment();
+        this.busyNanos.add(endNanos - startNanos);
+    }
+
+    public long getChunks() {
+        return this.chunks.sum();
+    }
+
+    /**
+     * @return chunks per second of wall time between the start of the first and the end of the last task
+     */
+    public double getChunksPerSecond() {
+        long nanos = this.lastNanos - this.firstNanos;
+        return nanos <= 0 ? 0 : this.chunks.sum() / (double) nanos * TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * @return chunks per second of time a thread spent running the tasks
+     */
+    public double getChunksPerSecondPerCore() {
+        long nanos = this.busyNanos.sum();
+        return nanos <= 0 ? 0 : this.chunks.sum() / (double) nanos * TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -8,6 +8,7 @@ import org.cloudburstmc.server.utils.LoadState;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
@@ -48,6 +49,11 @@ public class ConversionProvider implements LevelProvider {
         return this.newChunkProvider.saveChunk(chunk);
     }
 
+    @Override
+    public CompletableFuture<Void> saveChunks(Collection<? extends Chunk> chunks) {
+        return this.newChunkProvider.saveChunks(chunks);
+    }
+
     @Override
     public CompletableFuture<Void> forEachChunk(ChunkBuilder.Factory factory, BiConsumer<CloudChunk, Throwable> consumer) {
         throw new UnsupportedOperationException();
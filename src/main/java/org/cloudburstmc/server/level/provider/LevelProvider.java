@@ -8,6 +8,7 @@ import org.cloudburstmc.server.utils.LoadState;
 
 import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.Closeable;
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 
@@ -40,6 +41,19 @@ public interface LevelProvider extends PlayerDataProvider, Closeable {
      */
     CompletableFuture<Void> saveChunk(Chunk chunk);
 
+    /**
+     * Saves chunks to provider asynchronously, in as few writes as the storage allows. Meant for bulk writes like
+     * level conversion.
+     *
+     * @param chunks chunks
+     * @return void future when all chunks are saved.
+     */
+    default CompletableFuture<Void> saveChunks(Collection<? extends Chunk> chunks) {
+        return CompletableFuture.allOf(chunks.stream()
+                .map(this::saveChunk)
+                .toArray(CompletableFuture[]::new));
+    }
+
     /**
      * Iterate over all chunks that the provider has.
      *
@@ -33,56 +33,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 public class AnvilConverter {
 
     public static void convertToCloudburst(ChunkBuilder chunkBuilder, ByteBuf chunkBuf) throws IOException {
+        NbtMap tag = readLevelTag(chunkBuf);
 
-        NbtMap tag;
-
-        try (ByteBufInputStream stream = new ByteBufInputStream(chunkBuf);
-             NBTInputStream nbtInputStream = NbtUtils.createReader(stream)) {
-            tag = (NbtMap) nbtInputStream.readTag();
-
-            if (!tag.containsKey("Level") || !(tag.get("Level") instanceof NbtMap)) {
-                throw new IllegalArgumentException("No level tag found in chunk data");
-            }
-            tag = tag.getCompound("Level");
-        }
-
-        CloudChunkSection[] sections = new CloudChunkSection[CloudChunk.SECTION_COUNT];
-
-        // Reusable array for performance
-        final int[] blockState = new int[2];
-        CloudBlockRegistry blockRegistry = CloudBlockRegistry.get();
-        LegacyBlockConverter legacyBlockConverter = LegacyBlockConverter.get();
-
-        // Chunk sections
-        for (NbtMap sectionTag : tag.getList("Sections", NbtType.COMPOUND)) {
-            int y = sectionTag.getByte("Y");
-            if (y >= 16) {
-                continue;
-            }
-
-            byte[] blocks = sectionTag.getByteArray("Blocks");
-            NibbleArray data = new NibbleArray(sectionTag.getByteArray("Data"));
-            byte[] blockLight = sectionTag.getByteArray("BlockLight");
-            byte[] skyLight = sectionTag.getByteArray("SkyLight");
-
-            BlockStorage blockStorage = new BlockStorage();
-            // Convert YZX to XZY
-            for (int blockX = 0; blockX < 16; blockX++) {
-                for (int blockZ = 0; blockZ < 16; blockZ++) {
-                    for (int blockY = 0; blockY < 16; blockY++) {
-                        int anvilIndex = getAnvilIndex(blockX, blockY, blockZ);
-                        int cloudburstIndex = CloudChunkSection.blockIndex(blockX, blockY, blockZ);
-                        blockState[0] = blocks[anvilIndex] & 0xff;
-                        blockState[1] = data.get(anvilIndex);
-                        legacyBlockConverter.convertBlockState(blockState);
-                        blockStorage.setBlock(cloudburstIndex, blockRegistry.getBlock(blockState[0], blockState[1]));
-                    }
-                }
-            }
-
-            sections[y] = new CloudChunkSection(new BlockStorage[]{blockStorage, new BlockStorage()}, blockLight, skyLight);
-        }
-        chunkBuilder.sections(sections);
+        chunkBuilder.sections(convertSections(tag));
 
         byte[] biomes;
         if (tag.containsKey("BiomeColors")) {
@@ -158,6 +111,64 @@ public class AnvilConverter {
         throw new UnsupportedOperationException();
     }
 
+    /**
+     * @return the level tag of the decompressed chunk data read from a region file
+     */
+    static NbtMap readLevelTag(ByteBuf chunkBuf) throws IOException {
+        try (ByteBufInputStream stream = new ByteBufInputStream(chunkBuf);
+             NBTInputStream nbtInputStream = NbtUtils.createReader(stream)) {
+            NbtMap tag = (NbtMap) nbtInputStream.readTag();
+
+            if (!tag.containsKey("Level") || !(tag.get("Level") instanceof NbtMap)) {
+                throw new IllegalArgumentException("No level tag found in chunk data");
+            }
+            return tag.getCompound("Level");
+        }
+    }
+
+    /**
+     * Converts the legacy block ids and data of the sections of a chunk level tag.
+     */
+    static CloudChunkSection[] convertSections(NbtMap tag) {
+        CloudChunkSection[] sections = new CloudChunkSection[CloudChunk.SECTION_COUNT];
+
+        // Reusable array for performance
+        final int[] blockState = new int[2];
+        CloudBlockRegistry blockRegistry = CloudBlockRegistry.get();
+        LegacyBlockConverter legacyBlockConverter = LegacyBlockConverter.get();
+
+        // Chunk sections
+        for (NbtMap sectionTag : tag.getList("Sections", NbtType.COMPOUND)) {
+            int y = sectionTag.getByte("Y");
+            if (y >= 16) {
+                continue;
+            }
+
+            byte[] blocks = sectionTag.getByteArray("Blocks");
+            NibbleArray data = new NibbleArray(sectionTag.getByteArray("Data"));
+            byte[] blockLight = sectionTag.getByteArray("BlockLight");
+            byte[] skyLight = sectionTag.getByteArray("SkyLight");
+
+            BlockStorage blockStorage = new BlockStorage();
+            // Convert YZX to XZY
+            for (int blockX = 0; blockX < 16; blockX++) {
+                for (int blockZ = 0; blockZ < 16; blockZ++) {
+                    for (int blockY = 0; blockY < 16; blockY++) {
+                        int anvilIndex = getAnvilIndex(blockX, blockY, blockZ);
+                        int cloudburstIndex = CloudChunkSection.blockIndex(blockX, blockY, blockZ);
+                        blockState[0] = blocks[anvilIndex] & 0xff;
+                        blockState[1] = data.get(anvilIndex);
+                        legacyBlockConverter.convertBlockState(blockState);
+                        blockStorage.setBlock(cloudburstIndex, blockRegistry.getBlock(blockState[0], blockState[1]));
+                    }
+                }
+            }
+
+            sections[y] = new CloudChunkSection(new BlockStorage[]{blockStorage, new BlockStorage()}, blockLight, skyLight);
+        }
+        return sections;
+    }
+
     private static int getAnvilIndex(int x, int y, int z) {
         return (y << 8) + (z << 4) + x;
     }
@@ -15,7 +15,9 @@ import org.cloudburstmc.server.level.LevelData;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.level.provider.LevelProvider;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
 import org.cloudburstmc.server.utils.LoadState;
+import org.cloudburstmc.server.utils.Zlib;
 
 import javax.annotation.Nullable;
 import javax.annotation.ParametersAreNonnullByDefault;
@@ -23,8 +25,7 @@ import java.io.IOException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.*;
 import java.util.function.BiConsumer;
 import java.util.regex.Matcher;
@@ -92,7 +93,7 @@ class AnvilProvider implements LevelProvider {
         final int inX = x & 0x1f;
         final int inZ = z & 0x1f;
 
-        this.executor.execute(() -> {
+        PriorityExecutor.withPriority(this.executor, chunkBuilder.getPriority()).execute(() -> {
             try {
                 Path regionPath = this.regionsPath.resolve(regionPosition.getFileName());
                 if (Files.notExists(regionPath)) {
@@ -142,13 +143,17 @@ class AnvilProvider implements LevelProvider {
                 RegionFile file = this.regionFiles.get(regionPosition);
 
                 ByteBuf buffer = ByteBufAllocator.DEFAULT.ioBuffer();
+                ByteBuf compressed = ByteBufAllocator.DEFAULT.ioBuffer();
                 try (ByteBufOutputStream stream = new ByteBufOutputStream(buffer);
                      NBTOutputStream nbtOutputStream = NbtUtils.createWriter(stream)) {
                     nbtOutputStream.writeTag(tag);
-                    file.writeChunk(inX, inZ, buffer);
+                    Zlib.DEFAULT.deflate(buffer, compressed, 6);
+                    file.writeChunk(inX, inZ, compressed);
                 } finally {
                     buffer.release();
+                    compressed.release();
                 }
+                savedFuture.complete(null);
             } catch (Exception e) {
                 savedFuture.completeExceptionally(e);
             }
@@ -161,67 +166,33 @@ class AnvilProvider implements LevelProvider {
     public CompletableFuture<Void> forEachChunk(ChunkBuilder.Factory factory, BiConsumer<CloudChunk, Throwable> consumer) {
         checkForClosed();
 
-        int workers = 1;
-        if (this.executor instanceof ForkJoinPool) {
-            workers = ((ForkJoinPool) this.executor).getParallelism();
-        }
-
-        log.info("Using {} workers to convert", workers);
-
-        //noinspection unchecked
-        List<Path>[] paths = new List[workers];
-
-        for (int i = 0; i < workers; i++) {
-            paths[i] = new ArrayList<>();
-        }
-
-        int counter = 0;
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.regionsPath, "**.mca")) {
+        // Workers take region files from a shared queue, so one large region doesn't hold up the others
+        Queue<Path> paths = new ConcurrentLinkedQueue<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.regionsPath, "*.mca")) {
             for (Path path : stream) {
-                paths[counter++ % workers].add(path);
+                paths.add(path);
             }
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
 
-        CompletableFuture<?>[] futures = new CompletableFuture[workers];
+        int workers = Math.max(1, Math.min(PriorityExecutor.getParallelism(this.executor), paths.size()));
+        log.debug("Iterating {} region files with {} workers", paths.size(), workers);
 
+        CompletableFuture<?>[] futures = new CompletableFuture[workers];
         for (int i = 0; i < workers; i++) {
-            final List<Path> pathList = paths[i];
-
             futures[i] = CompletableFuture.runAsync(() -> {
-                try {
-                    for (Path path : pathList) {
-                        RegionPosition regionPos = RegionPosition.fromPath(path);
-                        if (regionPos == null) {
-                            continue;
-                        }
-
-                        RegionFile regionFile = new RegionFile(path);
-
-                        for (int x = 0; x < 32; x++) {
-                            for (int z = 0; z < 32; z++) {
-                                if (!regionFile.hasChunk(x, z)) {
-                                    continue;
-                                }
-                                int chunkX = regionPos.x << 5 | x;
-                                int chunkZ = regionPos.z << 5 | z;
-                                ChunkBuilder builder = factory.create(chunkX, chunkZ);
-                                ByteBuf buffer = regionFile.readChunk(x, z);
-                                try {
-                                    AnvilConverter.convertToCloudburst(builder, buffer);
-                                } catch (Exception e) {
-                                    consumer.accept(null, e);
-                                    continue;
-                                } finally {
-                                    buffer.release();
-                                }
-                                consumer.accept(builder.build(), null);
-                            }
-                        }
+                Path path;
+                while ((path = paths.poll()) != null) {
+                    RegionPosition regionPos = RegionPosition.fromPath(path);
+                    if (regionPos == null) {
+                        continue;
+                    }
+                    try (RegionFile regionFile = new RegionFile(path)) {
+                        forEachChunk(regionFile, regionPos, factory, consumer);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
                     }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
                 }
             }, this.executor);
         }
@@ -229,6 +200,30 @@ class AnvilProvider implements LevelProvider {
         return CompletableFuture.allOf(futures);
     }
 
+    private static void forEachChunk(RegionFile regionFile, RegionPosition regionPos, ChunkBuilder.Factory factory,
+                                     BiConsumer<CloudChunk, Throwable> consumer) throws IOException {
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                if (!regionFile.hasChunk(x, z)) {
+                    continue;
+                }
+                ChunkBuilder builder = factory.create(regionPos.x << 5 | x, regionPos.z << 5 | z);
+                CloudChunk chunk;
+                ByteBuf buffer = regionFile.readChunk(x, z);
+                try {
+                    AnvilConverter.convertToCloudburst(builder, buffer);
+                    chunk = builder.build();
+                } catch (Exception e) {
+                    consumer.accept(null, e);
+                    continue;
+                } finally {
+                    buffer.release();
+                }
+                consumer.accept(chunk, null);
+            }
+        }
+    }
+
     @Override
     public CompletableFuture<LoadState> loadLevelData(LevelData levelData) {
         checkForClosed();
@@ -251,7 +246,7 @@ class AnvilProvider implements LevelProvider {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        });
+        }, this.executor);
     }
 
     @Override
@@ -1,5 +1,6 @@
 package org.cloudburstmc.server.level.provider.anvil;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.cloudburstmc.server.level.LevelConverter;
@@ -12,6 +13,8 @@ import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Comparator;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -22,11 +25,18 @@ public class AnvilProviderFactory implements LevelProviderFactory {
 
     @Override
     public LevelProvider create(String levelId, Path levelsPath, Executor executor) throws IOException {
-        try (LevelProvider oldProvider = new AnvilProvider(levelId, levelsPath, executor);
-             LevelProvider newProvider = LevelDBProviderFactory.INSTANCE.create(levelId, levelsPath, executor)) {
+        // Conversion gets its own threads, reads block while writes are pending
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService readExecutor = createConversionExecutor("Read", threads);
+        ExecutorService writeExecutor = createConversionExecutor("Write", Math.max(1, threads / 2));
+        try (LevelProvider oldProvider = new AnvilProvider(levelId, levelsPath, readExecutor);
+             LevelProvider newProvider = LevelDBProviderFactory.INSTANCE.create(levelId, levelsPath, writeExecutor)) {
 
             LevelConverter converter = new LevelConverter(oldProvider, newProvider);
             converter.perform().join();
+        } finally {
+            readExecutor.shutdown();
+            writeExecutor.shutdown();
         }
 
         try (Stream<Path> walk = Files.walk(levelsPath.resolve(levelId).resolve("region"))) {
@@ -40,6 +50,13 @@ public class AnvilProviderFactory implements LevelProviderFactory {
         return LevelDBProviderFactory.INSTANCE.create(levelId, levelsPath, executor);
     }
 
+    private static ExecutorService createConversionExecutor(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("Level Conversion " + name + " Thread - #%d")
+                .setDaemon(true)
+                .build());
+    }
+
     @Override
     public boolean isCompatible(String levelId, Path levelsPath) {
         Path levelPath = levelsPath.resolve(levelId);
@@ -1,16 +1,20 @@
 package org.cloudburstmc.server.level.provider.leveldb;
 
 import com.google.common.base.Preconditions;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
 import lombok.extern.log4j.Log4j2;
 import net.daporkchop.ldbjni.LevelDB;
 import org.cloudburstmc.api.level.chunk.Chunk;
-import org.cloudburstmc.api.level.chunk.LockableChunk;
 import org.cloudburstmc.server.level.LevelData;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
+import org.cloudburstmc.server.level.chunk.ChunkSnapshot;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.level.provider.LevelProvider;
 import org.cloudburstmc.server.level.provider.leveldb.serializer.*;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
 import org.cloudburstmc.server.utils.LoadState;
 import org.iq80.leveldb.*;
 
@@ -18,14 +22,18 @@ import javax.annotation.ParametersAreNonnullByDefault;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 
 @Log4j2
 @ParametersAreNonnullByDefault
 class LevelDBProvider implements LevelProvider {
+    private static final byte VERSION_TAG = LevelDBKey.VERSION.getKey(0, 0)[8];
+
     private final String levelId;
     private final Path path;
     private final Executor executor;
@@ -54,66 +62,68 @@ class LevelDBProvider implements LevelProvider {
 
     @Override
     public CompletableFuture<CloudChunk> readChunk(ChunkBuilder chunkBuilder) {
+        return CompletableFuture.supplyAsync(() -> this.loadChunk(chunkBuilder),
+                PriorityExecutor.withPriority(this.executor, chunkBuilder.getPriority()));
+    }
+
+    private CloudChunk loadChunk(ChunkBuilder chunkBuilder) {
         final int x = chunkBuilder.getX();
         final int z = chunkBuilder.getZ();
 
-        return CompletableFuture.supplyAsync(() -> {
-            byte[] versionValue = this.db.get(LevelDBKey.VERSION.getKey(x, z));
-            if (versionValue == null || versionValue.length != 1) {
-                return null;
-            }
+        byte[] versionValue = this.db.get(LevelDBKey.VERSION.getKey(x, z));
+        if (versionValue == null || versionValue.length != 1) {
+            return null;
+        }
 
-            byte[] finalizationState = this.db.get(LevelDBKey.STATE_FINALIZATION.getKey(x, z));
-            if (finalizationState == null) {
-                chunkBuilder.state(Chunk.STATE_FINISHED);
-            } else {
-                chunkBuilder.state(Unpooled.wrappedBuffer(finalizationState).readIntLE() + 1);
-            }
+        byte[] finalizationState = this.db.get(LevelDBKey.STATE_FINALIZATION.getKey(x, z));
+        if (finalizationState == null) {
+            chunkBuilder.state(Chunk.STATE_FINISHED);
+        } else {
+            chunkBuilder.state(Unpooled.wrappedBuffer(finalizationState).readIntLE() + 1);
+        }
 
-            byte chunkVersion = versionValue[0];
+        byte chunkVersion = versionValue[0];
 
-            if (chunkVersion < 7) {
-                chunkBuilder.dirty();
-            }
+        if (chunkVersion < 7) {
+            chunkBuilder.dirty();
+        }
 
-            ChunkSerializers.deserializeChunk(this.db, chunkBuilder, chunkVersion);
-            Data2dSerializer.deserialize(this.db, chunkBuilder);
+        ChunkSerializers.deserializeChunk(this.db, chunkBuilder, chunkVersion);
+        Data2dSerializer.deserialize(this.db, chunkBuilder);
 
-            BlockEntitySerializer.loadBlockEntities(this.db, chunkBuilder);
-            EntitySerializer.loadEntities(this.db, chunkBuilder);
+        BlockEntitySerializer.loadBlockEntities(this.db, chunkBuilder);
+        EntitySerializer.loadEntities(this.db, chunkBuilder);
+        PendingTicksSerializer.loadPendingTicks(this.db, chunkBuilder);
 
-            return chunkBuilder.build();
-        }, this.executor);
+        return chunkBuilder.build();
     }
 
     @Override
     public CompletableFuture<Void> saveChunk(Chunk chunk) {
-        final int x = chunk.getX();
-        final int z = chunk.getZ();
-
         return CompletableFuture.supplyAsync(() -> {
-            //we clear the dirty flag here instead of in LevelChunkManager in case there are modifications to the chunk between now and the time it was enqueued
-            if (!chunk.isGenerated() || !chunk.clearDirty()) {
-                //the chunk was not dirty, do nothing
+            try (WriteBatch batch = this.db.createWriteBatch()) {
+                if (this.writeChunk(batch, chunk)) {
+                    this.db.write(batch);
+                }
                 return null;
+            } catch (IOException e) {
+                //can't happen
+                throw new RuntimeException(e);
             }
+        }, this.executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveChunks(Collection<? extends Chunk> chunks) {
+        return CompletableFuture.supplyAsync(() -> {
             try (WriteBatch batch = this.db.createWriteBatch()) {
-                LockableChunk lockableChunk = chunk.readLockable();
-                lockableChunk.lock();
-                try {
-                    ChunkSerializers.serializeChunk(batch, (CloudChunk) chunk, 19);
-                    Data2dSerializer.serialize(batch, (CloudChunk) chunk);
-
-                    batch.put(LevelDBKey.VERSION.getKey(x, z), new byte[]{19});
-                    batch.put(LevelDBKey.STATE_FINALIZATION.getKey(x, z), Unpooled.buffer(4).writeIntLE(lockableChunk.getState() - 1).array());
-
-                    BlockEntitySerializer.saveBlockEntities(batch, (CloudChunk) chunk);
-                    EntitySerializer.saveEntities(batch, (CloudChunk) chunk);
-                } finally {
-                    lockableChunk.unlock();
+                boolean written = false;
+                for (Chunk chunk : chunks) {
+                    written |= this.writeChunk(batch, chunk);
+                }
+                if (written) {
+                    this.db.write(batch);
                 }
-
-                this.db.write(batch);
                 return null;
             } catch (IOException e) {
                 //can't happen
@@ -122,15 +132,80 @@ class LevelDBProvider implements LevelProvider {
         }, this.executor);
     }
 
+    /**
+     * Serializes the chunk into the batch if it is dirty.
+     *
+     * @return whether anything was added to the batch
+     */
+    private boolean writeChunk(WriteBatch batch, Chunk chunk) {
+        final int x = chunk.getX();
+        final int z = chunk.getZ();
+
+        //we clear the dirty flag here instead of in LevelChunkManager in case there are modifications to the chunk between now and the time it was enqueued
+        if (!chunk.isGenerated() || !chunk.clearDirty()) {
+            //the chunk was not dirty, do nothing
+            return false;
+        }
+        ((CloudChunk) chunk).compact();
+
+        // Serialized from a snapshot so writers to the chunk don't wait for the save
+        try (ChunkSnapshot snapshot = ((CloudChunk) chunk).snapshot()) {
+            ChunkSerializers.serializeChunk(batch, snapshot, 19);
+            Data2dSerializer.serialize(batch, snapshot);
+
+            batch.put(LevelDBKey.VERSION.getKey(x, z), new byte[]{19});
+            batch.put(LevelDBKey.STATE_FINALIZATION.getKey(x, z), Unpooled.buffer(4).writeIntLE(snapshot.getState() - 1).array());
+
+            BlockEntitySerializer.saveBlockEntities(batch, snapshot);
+            EntitySerializer.saveEntities(batch, snapshot);
+            PendingTicksSerializer.savePendingTicks(batch, snapshot);
+        }
+        return true;
+    }
+
     @Override
     public CompletableFuture<Void> forEachChunk(ChunkBuilder.Factory factory, BiConsumer<CloudChunk, Throwable> consumer) {
-        return CompletableFuture.runAsync(() -> {
-            DBIterator iterator = this.db.iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<byte[], byte[]> entry = iterator.next();
-                // TODO: 06/01/2020 Add support for iterating chunks
+        checkForClosed();
+
+        return CompletableFuture.supplyAsync(() -> {
+            // Overworld chunks have a version key without dimension
+            LongList chunks = new LongArrayList();
+            try (DBIterator iterator = this.db.iterator()) {
+                iterator.seekToFirst();
+                while (iterator.hasNext()) {
+                    byte[] key = iterator.next().getKey();
+                    if (key.length == 9 && key[8] == VERSION_TAG) {
+                        ByteBuf buffer = Unpooled.wrappedBuffer(key);
+                        chunks.add(CloudChunk.key(buffer.readIntLE(), buffer.readIntLE()));
+                    }
+                }
+            } catch (IOException e) {
+                throw new CompletionException(e);
             }
-        }, this.executor);
+            return chunks;
+        }, this.executor).thenCompose(chunks -> {
+            int workers = Math.max(1, Math.min(PriorityExecutor.getParallelism(this.executor), chunks.size()));
+            AtomicInteger next = new AtomicInteger();
+
+            CompletableFuture<?>[] futures = new CompletableFuture[workers];
+            for (int i = 0; i < workers; i++) {
+                futures[i] = CompletableFuture.runAsync(() -> {
+                    int index;
+                    while ((index = next.getAndIncrement()) < chunks.size()) {
+                        long key = chunks.getLong(index);
+                        CloudChunk chunk;
+                        try {
+                            chunk = this.loadChunk(factory.create(CloudChunk.fromKeyX(key), CloudChunk.fromKeyZ(key)));
+                        } catch (Exception e) {
+                            consumer.accept(null, e);
+                            continue;
+                        }
+                        consumer.accept(chunk, null);
+                    }
+                }, this.executor);
+            }
+            return CompletableFuture.allOf(futures);
+        });
     }
 
     @Override
@@ -155,7 +230,7 @@ class LevelDBProvider implements LevelProvider {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
-        }).exceptionally((e) -> {
+        }, this.executor).exceptionally((e) -> {
             log.catching(e);
             return null;
         });
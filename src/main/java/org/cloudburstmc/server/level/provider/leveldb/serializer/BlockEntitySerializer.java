@@ -12,6 +12,7 @@ import org.cloudburstmc.api.registry.RegistryException;
 import org.cloudburstmc.server.blockentity.BaseBlockEntity;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
 import org.cloudburstmc.server.level.chunk.ChunkDataLoader;
+import org.cloudburstmc.server.level.chunk.ChunkSnapshot;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
 import org.cloudburstmc.server.registry.BlockEntityRegistry;
@@ -49,7 +50,7 @@ public class BlockEntitySerializer {
         builder.dataLoader(new BlockEntityLoader(blockEntityTags));
     }
 
-    public static void saveBlockEntities(WriteBatch db, CloudChunk chunk) {
+    public static void saveBlockEntities(WriteBatch db, ChunkSnapshot chunk) {
         byte[] key = LevelDBKey.BLOCK_ENTITIES.getKey(chunk.getX(), chunk.getZ());
         if (chunk.getBlockEntities().isEmpty()) {
             db.delete(key);
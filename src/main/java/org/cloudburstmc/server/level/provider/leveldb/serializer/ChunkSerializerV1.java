@@ -6,7 +6,7 @@ import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import org.cloudburstmc.api.level.chunk.ChunkException;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
-import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.ChunkSnapshot;
 import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.WriteBatch;
@@ -17,7 +17,7 @@ class ChunkSerializerV1 implements ChunkSerializer {
     static final ChunkSerializer INSTANCE = new ChunkSerializerV1();
 
     @Override
-    public void serialize(WriteBatch db, CloudChunk chunk) {
+    public void serialize(WriteBatch db, ChunkSnapshot chunk) {
         throw new UnsupportedOperationException();
     }
 
@@ -10,6 +10,7 @@ import lombok.NoArgsConstructor;
 import org.cloudburstmc.api.level.chunk.ChunkException;
 import org.cloudburstmc.server.level.chunk.BlockStorage;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
+import org.cloudburstmc.server.level.chunk.ChunkSnapshot;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.level.chunk.CloudChunkSection;
 import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
@@ -23,10 +24,10 @@ class ChunkSerializerV3 extends ChunkSerializerV1 {
     static ChunkSerializer INSTANCE = new ChunkSerializerV3();
 
     @Override
-    public void serialize(WriteBatch db, CloudChunk chunk) {
+    public void serialize(WriteBatch db, ChunkSnapshot chunk) {
         // Write chunk sections
         for (int ySection = 0; ySection < CloudChunk.SECTION_COUNT; ySection++) {
-            CloudChunkSection section = (CloudChunkSection) chunk.getSection(ySection);
+            CloudChunkSection section = chunk.getSection(ySection);
             if (section == null) {
                 continue;
             }
@@ -3,16 +3,23 @@ package org.cloudburstmc.server.level.provider.leveldb.serializer;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
-import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.ChunkSnapshot;
+import org.cloudburstmc.server.level.chunk.HeightMapType;
 import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
 import org.iq80.leveldb.DB;
 import org.iq80.leveldb.WriteBatch;
 
 public class Data2dSerializer {
 
-    public static void serialize(WriteBatch db, CloudChunk chunk) {
+    private static final int DATA_2D_SIZE = 768;
+    // Marks the heightmaps written after the vanilla data, bump it when their format changes
+    private static final byte HEIGHT_MAPS_VERSION = 1;
+    private static final int HEIGHT_MAPS_LENGTH = HeightMapType.values().length * 256;
+
+    public static void serialize(WriteBatch db, ChunkSnapshot chunk) {
         // Write height map and biomes.
-        byte[] data2d = new byte[768];
+        int[] heightMaps = chunk.getHeightMaps();
+        byte[] data2d = new byte[heightMaps == null ? DATA_2D_SIZE : DATA_2D_SIZE + 1 + heightMaps.length * 2];
         ByteBuf buffer = Unpooled.wrappedBuffer(data2d);
         buffer.writerIndex(0);
         int[] heightMap = chunk.getHeightMapArray();
@@ -22,6 +29,14 @@ public class Data2dSerializer {
         }
         buffer.writeBytes(biomes);
 
+        // Followed by all heightmaps, which vanilla doesn't read
+        if (heightMaps != null) {
+            buffer.writeByte(HEIGHT_MAPS_VERSION);
+            for (int height : heightMaps) {
+                buffer.writeShortLE(height);
+            }
+        }
+
         db.put(LevelDBKey.DATA_2D.getKey(chunk.getX(), chunk.getZ()), data2d);
     }
 
@@ -37,6 +52,15 @@ public class Data2dSerializer {
                 heightMap[i] = buffer.readUnsignedShortLE();
             }
             buffer.readBytes(biomes);
+
+            // Chunks saved without heightmaps, or in an older format, have them rebuilt from the blocks
+            if (buffer.readableBytes() == 1 + HEIGHT_MAPS_LENGTH * 2 && buffer.readByte() == HEIGHT_MAPS_VERSION) {
+                int[] heightMaps = new int[HEIGHT_MAPS_LENGTH];
+                for (int i = 0; i < heightMaps.length; i++) {
+                    heightMaps[i] = buffer.readUnsignedShortLE();
+                }
+                builder.heightMaps(heightMaps);
+            }
         }
 
         builder.heightMap(heightMap);
@@ -11,6 +11,7 @@ import org.cloudburstmc.api.util.Identifier;
 import org.cloudburstmc.server.entity.BaseEntity;
 import org.cloudburstmc.server.level.chunk.ChunkBuilder;
 import org.cloudburstmc.server.level.chunk.ChunkDataLoader;
+import org.cloudburstmc.server.level.chunk.ChunkSnapshot;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
 import org.cloudburstmc.server.registry.EntityRegistry;
@@ -50,7 +51,7 @@ public class EntitySerializer {
         builder.dataLoader(new DataLoader(entityTags));
     }
 
-    public static void saveEntities(WriteBatch db, CloudChunk chunk) {
+    public static void saveEntities(WriteBatch db, ChunkSnapshot chunk) {
         byte[] key = LevelDBKey.ENTITIES.getKey(chunk.getX(), chunk.getZ());
         Set<BaseEntity> entities = chunk.getEntities();
         if (entities.isEmpty()) {
@@ -0,0 +1,116 @@
+package org.cloudburstmc.server.level.provider.leveldb.serializer;
+
+import com.nukkitx.math.vector.Vector3i;
+import com.nukkitx.nbt.*;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.api.block.Block;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.block.BlockPalette;
+import org.cloudburstmc.server.block.CloudBlock;
+import org.cloudburstmc.server.level.BlockUpdate;
+import org.cloudburstmc.server.level.chunk.ChunkBuilder;
+import org.cloudburstmc.server.level.chunk.ChunkSnapshot;
+import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.WriteBatch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduled block updates of a chunk, in the vanilla layout: a tick list whose times are relative to the current
+ * tick stored next to it. The extra block state and the priority are our additions, for updates of the second layer
+ * and updates of the same tick which have to run in a certain order.
+ */
+@Log4j2
+public class PendingTicksSerializer {
+
+    public static void loadPendingTicks(DB db, ChunkBuilder builder) {
+        byte[] value = db.get(LevelDBKey.PENDING_TICKS.getKey(builder.getX(), builder.getZ()));
+        if (value == null) {
+            return;
+        }
+
+        NbtMap tag;
+        try (ByteArrayInputStream stream = new ByteArrayInputStream(value);
+             NBTInputStream nbtInputStream = NbtUtils.createReaderLE(stream)) {
+            tag = (NbtMap) nbtInputStream.readTag();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        int currentTick = tag.getInt("currentTick");
+        for (NbtMap tickTag : tag.getList("tickList", NbtType.COMPOUND)) {
+            Vector3i pos = Vector3i.from(tickTag.getInt("x"), tickTag.getInt("y"), tickTag.getInt("z"));
+            if (pos.getX() >> 4 != builder.getX() || pos.getZ() >> 4 != builder.getZ()) {
+                builder.dirty();
+                continue;
+            }
+            try {
+                BlockState state = CloudBlockRegistry.get().getBlock(tickTag.getCompound("blockState"));
+                BlockState extra = tickTag.containsKey("extraBlockState") ?
+                        CloudBlockRegistry.get().getBlock(tickTag.getCompound("extraBlockState")) : BlockStates.AIR;
+                if (state == BlockStates.AIR) {
+                    builder.dirty();
+                    continue;
+                }
+                Block block = new CloudBlock(builder.getLevel(), pos, new BlockState[]{state, extra});
+                int delay = (int) Math.max(0, tickTag.getLong("time") - currentTick);
+                int priority = tickTag.getInt("priority", 0);
+
+                // The chunk isn't loaded yet when it schedules them
+                builder.blockUpdate(BlockUpdate.of(block, pos, delay, priority, false));
+            } catch (Exception e) {
+                log.debug("Unable to load pending tick {}", tickTag, e);
+                builder.dirty();
+            }
+        }
+    }
+
+    public static void savePendingTicks(WriteBatch db, ChunkSnapshot chunk) {
+        byte[] key = LevelDBKey.PENDING_TICKS.getKey(chunk.getX(), chunk.getZ());
+        List<BlockUpdate> updates = chunk.getPendingUpdates();
+        if (updates.isEmpty()) {
+            db.delete(key);
+            return;
+        }
+
+        List<NbtMap> tickList = new ArrayList<>(updates.size());
+        for (BlockUpdate update : updates) {
+            Vector3i pos = update.getPos();
+            NbtMapBuilder tickTag = NbtMap.builder()
+                    .putCompound("blockState", BlockPalette.INSTANCE.getSerialized(update.getBlock().getState()))
+                    .putLong("time", update.getDelay())
+                    .putInt("x", pos.getX())
+                    .putInt("y", pos.getY())
+                    .putInt("z", pos.getZ());
+            BlockState extra = update.getBlock().getExtra();
+            if (extra != BlockStates.AIR) {
+                tickTag.putCompound("extraBlockState", BlockPalette.INSTANCE.getSerialized(extra));
+            }
+            if (update.getPriority() != 0) {
+                tickTag.putInt("priority", update.getPriority());
+            }
+            tickList.add(tickTag.build());
+        }
+        NbtMap tag = NbtMap.builder()
+                .putInt("currentTick", 0)
+                .putList("tickList", NbtType.COMPOUND, tickList)
+                .build();
+
+        byte[] value;
+        try (ByteArrayOutputStream stream = new ByteArrayOutputStream();
+             NBTOutputStream nbtOutputStream = NbtUtils.createWriterLE(stream)) {
+            nbtOutputStream.writeTag(tag);
+            value = stream.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        db.put(key, value);
+    }
+}
@@ -0,0 +1,42 @@
+package org.cloudburstmc.server.network;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.cloudburstmc.server.level.chunk.ChunkBlob;
+
+import javax.annotation.Nullable;
+
+/**
+ * Server wide store of chunk blobs which have recently been announced to clients using the blob cache.
+ * <p>
+ * Clients respond to a cached chunk with the blob ids they are missing, which are answered from this store. The
+ * store is bounded by the total size of the stored blobs and evicts the least recently announced ones first.
+ */
+public class ClientBlobStore {
+
+    private final Cache<Long, byte[]> blobs;
+
+    public ClientBlobStore(long maxBytes) {
+        this.blobs = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long id, byte[] data) -> data.length)
+                .build();
+    }
+
+    public void put(ChunkBlob blob) {
+        this.blobs.put(blob.id(), blob.data());
+    }
+
+    @Nullable
+    public byte[] get(long id) {
+        return this.blobs.getIfPresent(id);
+    }
+
+    public long size() {
+        return this.blobs.size();
+    }
+
+    public void clear() {
+        this.blobs.invalidateAll();
+    }
+}
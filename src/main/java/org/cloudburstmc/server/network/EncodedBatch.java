@@ -0,0 +1,90 @@
+package org.cloudburstmc.server.network;
+
+import com.nukkitx.protocol.bedrock.BedrockPacket;
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import com.nukkitx.protocol.bedrock.BedrockServerSession;
+import com.nukkitx.protocol.bedrock.wrapper.BedrockWrapperSerializers;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.AbstractReferenceCounted;
+
+import java.util.Collection;
+
+/**
+ * Batch of packets which has been serialized and compressed once and can be sent to any amount of sessions using the
+ * same packet codec.
+ * <p>
+ * Every session gets its own view of the same compressed bytes, only encryption still happens per session. A batch is
+ * written as a frame of its own, players write it on the event loop of their session after flushing the packets the
+ * session has queued, so it keeps its place in their order.
+ */
+public final class EncodedBatch extends AbstractReferenceCounted {
+
+    private final BedrockPacketCodec codec;
+    private final ByteBuf compressed;
+
+    private EncodedBatch(BedrockPacketCodec codec, ByteBuf compressed) {
+        this.codec = codec;
+        this.compressed = compressed;
+    }
+
+    /**
+     * Serializes and compresses the given packets with the codec and compression level of the given session.
+     *
+     * @param session  session to encode for, any session with the same codec can receive the batch
+     * @param packets  packets in the order they should be handled by the client
+     * @return batch with a reference count of 1
+     */
+    public static EncodedBatch encode(BedrockServerSession session, Collection<BedrockPacket> packets) {
+        BedrockPacketCodec codec = session.getPacketCodec();
+        ByteBuf compressed = ByteBufAllocator.DEFAULT.ioBuffer();
+        try {
+            BedrockWrapperSerializers.getSerializer(codec.getProtocolVersion())
+                    .serialize(compressed, codec, packets, session.getCompressionLevel(), session);
+        } catch (Throwable t) {
+            compressed.release();
+            throw t;
+        }
+        return new EncodedBatch(codec, compressed);
+    }
+
+    public BedrockPacketCodec getCodec() {
+        return codec;
+    }
+
+    public int getSize() {
+        return compressed.readableBytes();
+    }
+
+    /**
+     * @return whether the session is open and uses the codec the batch has been encoded with
+     */
+    public boolean canSendTo(BedrockServerSession session) {
+        return !session.isClosed() && session.getPacketCodec() == this.codec;
+    }
+
+    /**
+     * Writes the batch to the connection of a session straight away.
+     *
+     * @return false if the session uses a different codec and the batch has not been sent
+     */
+    public boolean sendTo(BedrockServerSession session) {
+        if (!this.canSendTo(session)) {
+            return false;
+        }
+        // The session releases the buffer once it has been written
+        session.sendWrapped(this.compressed.retainedDuplicate(), true);
+        return true;
+    }
+
+    @Override
+    protected void deallocate() {
+        this.compressed.release();
+    }
+
+    @Override
+    public EncodedBatch touch(Object hint) {
+        this.compressed.touch(hint);
+        return this;
+    }
+}
@@ -0,0 +1,164 @@
+package org.cloudburstmc.server.network;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.nukkitx.protocol.bedrock.packet.LoginPacket;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
+import org.cloudburstmc.server.utils.ClientChainData;
+
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decodes and verifies login chains on the login executor instead of the network threads, so a flood of logins can't
+ * keep the event loops from answering pings.
+ * <p>
+ * Logins are turned away when too many are pending, or when their address logs in more often than allowed per minute.
+ * Addresses may burst up to a minute's worth of logins at once. The per-address limit is off by default, since every
+ * client behind a proxy shares the proxy's address.
+ */
+public class LoginVerifier {
+
+    private final PriorityExecutor executor;
+    private final int maxPending;
+    private final int loginsPerMinute;
+    private final Cache<InetAddress, RateLimit> rateLimits = CacheBuilder.newBuilder()
+            .expireAfterAccess(1, TimeUnit.MINUTES)
+            .build();
+
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    /**
+     * @param maxPending      logins decoded or waiting to be at once, 0 for no limit
+     * @param loginsPerMinute logins allowed per address and minute, 0 for no limit
+     */
+    public LoginVerifier(PriorityExecutor executor, int maxPending, int loginsPerMinute) {
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.loginsPerMinute = loginsPerMinute;
+    }
+
+    /**
+     * Decodes and verifies the chain data of the login on the login executor.
+     *
+     * @return future of the chain data. Completes exceptionally with a {@link RejectedExecutionException} carrying the
+     * disconnect message if the login was turned away.
+     */
+    public CompletableFuture<ClientChainData> verify(InetAddress address, LoginPacket packet) {
+        if (!this.tryAcquireLogin(address)) {
+            this.rejected.increment();
+            return failed("disconnectionScreen.cantConnect");
+        }
+        if (this.pending.incrementAndGet() > this.maxPending && this.maxPending > 0) {
+            this.pending.decrementAndGet();
+            this.rejected.increment();
+            return failed("disconnectionScreen.serverFull");
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<ClientChainData> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> ClientChainData.read(packet), this.executor);
+        } catch (RejectedExecutionException e) {
+            // The executor is shutting down
+            this.pending.decrementAndGet();
+            this.rejected.increment();
+            return failed("disconnectionScreen.noReason");
+        }
+        return future.whenComplete((chainData, throwable) -> {
+            this.pending.decrementAndGet();
+            if (throwable == null) {
+                this.verified.increment();
+                this.latencyNanos.add(System.nanoTime() - start);
+            } else {
+                this.failed.increment();
+            }
+        });
+    }
+
+    private boolean tryAcquireLogin(InetAddress address) {
+        if (this.loginsPerMinute <= 0) {
+            return true;
+        }
+        try {
+            return this.rateLimits.get(address, () -> new RateLimit(this.loginsPerMinute)).tryAcquire();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(String reason) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new RejectedExecutionException(reason));
+        return future;
+    }
+
+    /**
+     * @return logins being verified or waiting to be
+     */
+    public int getPending() {
+        return this.pending.get();
+    }
+
+    public int getQueueSize() {
+        return this.executor.getQueueSize();
+    }
+
+    public long getVerified() {
+        return this.verified.sum();
+    }
+
+    /**
+     * @return logins whose chain couldn't be decoded or verified
+     */
+    public long getFailed() {
+        return this.failed.sum();
+    }
+
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * @return average time from receiving a login to its chain being verified, in nanoseconds
+     */
+    public long getAverageLatencyNanos() {
+        long verified = this.verified.sum();
+        return verified == 0 ? 0 : this.latencyNanos.sum() / verified;
+    }
+
+    /**
+     * Token bucket refilling a minute's worth of logins per minute.
+     */
+    private static class RateLimit {
+        private final int loginsPerMinute;
+        private double tokens;
+        private long lastNanos = System.nanoTime();
+
+        private RateLimit(int loginsPerMinute) {
+            this.loginsPerMinute = loginsPerMinute;
+            this.tokens = loginsPerMinute;
+        }
+
+        private synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            double refill = (now - this.lastNanos) * this.loginsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.tokens = Math.min(this.loginsPerMinute, this.tokens + refill);
+            this.lastNanos = now;
+            if (this.tokens < 1) {
+                return false;
+            }
+            this.tokens--;
+            return true;
+        }
+    }
+}
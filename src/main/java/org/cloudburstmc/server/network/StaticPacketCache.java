@@ -0,0 +1,88 @@
+package org.cloudburstmc.server.network;
+
+import com.nukkitx.protocol.bedrock.BedrockPacket;
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import com.nukkitx.protocol.bedrock.BedrockServerSession;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Large packets which are the same for every player, like biome definitions and crafting data, encoded once per packet
+ * codec and sent as {@link EncodedBatch batches}.
+ * <p>
+ * Every batch remembers the registry data it has been encoded from and is encoded again once the registry hands out
+ * other data, so a registry rebuilding its packet or data also invalidates the batch.
+ */
+public final class StaticPacketCache {
+
+    public enum Payload {
+        BIOME_DEFINITIONS,
+        ENTITY_IDENTIFIERS,
+        CRAFTING_DATA,
+        CREATIVE_CONTENT
+    }
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the batch of a payload for the codec of the session, encoding the packet if there is no batch of the given
+     * source yet.
+     *
+     * @param session session to encode for
+     * @param payload payload the packet carries
+     * @param source  registry data the packet is built from, compared by identity
+     * @param packet  packet built from the source
+     * @return batch retained for the caller, which has to release it
+     */
+    public EncodedBatch get(BedrockServerSession session, Payload payload, Object source, BedrockPacket packet) {
+        EncodedBatch[] batch = new EncodedBatch[1];
+        // Encoded while holding the entry, so players joining at once don't all encode the packet
+        this.entries.compute(new Key(payload, session.getPacketCodec()), (key, entry) -> {
+            if (entry == null || entry.source != source) {
+                if (entry != null) {
+                    entry.batch.release();
+                }
+                entry = new Entry(source, EncodedBatch.encode(session, Collections.singletonList(packet)));
+            }
+            batch[0] = (EncodedBatch) entry.batch.retain();
+            return entry;
+        });
+        return batch[0];
+    }
+
+    private static class Key {
+        private final Payload payload;
+        private final BedrockPacketCodec codec;
+
+        private Key(Payload payload, BedrockPacketCodec codec) {
+            this.payload = payload;
+            this.codec = codec;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key that = (Key) o;
+            return this.payload == that.payload && this.codec.getProtocolVersion() == that.codec.getProtocolVersion();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.payload, this.codec.getProtocolVersion());
+        }
+    }
+
+    private static class Entry {
+        private final Object source;
+        private final EncodedBatch batch;
+
+        private Entry(Object source, EncodedBatch batch) {
+            this.source = source;
+            this.batch = batch;
+        }
+    }
+}
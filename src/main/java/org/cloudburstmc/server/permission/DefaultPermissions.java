@@ -108,6 +108,7 @@ public abstract class DefaultPermissions {
         registerPermission(new CloudPermission(ROOT + ".command.seed", "Allows the user to view the seed of the world", Permission.DEFAULT_OP), commands);
         registerPermission(new CloudPermission(ROOT + ".command.status", "Allows the user to view the server performance", Permission.DEFAULT_OP), commands);
         registerPermission(new CloudPermission(ROOT + ".command.gc", "Allows the user to fire garbage collection tasks", Permission.DEFAULT_OP), commands);
+        registerPermission(new CloudPermission(ROOT + ".command.pregenerate", "Allows the user to pre-generate levels", Permission.DEFAULT_OP), commands);
         registerPermission(new CloudPermission(ROOT + ".command.gamerule", "Sets or queries a game rule value", Permission.DEFAULT_OP), commands);
         registerPermission(new CloudPermission(ROOT + ".command.timings", "Allows the user to records timings for all plugin events", Permission.DEFAULT_OP), commands);
         registerPermission(new CloudPermission(ROOT + ".command.title", "Allows the user to send titles to players", Permission.DEFAULT_OP), commands);
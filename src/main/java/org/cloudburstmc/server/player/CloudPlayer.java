@@ -102,7 +102,9 @@ import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.locale.TranslationContainer;
 import org.cloudburstmc.server.math.BlockRayTrace;
 import org.cloudburstmc.server.math.NukkitMath;
+import org.cloudburstmc.server.network.EncodedBatch;
 import org.cloudburstmc.server.network.NetworkUtils;
+import org.cloudburstmc.server.network.StaticPacketCache;
 import org.cloudburstmc.server.permission.PermissibleBase;
 import org.cloudburstmc.server.player.handler.PlayerPacketHandler;
 import org.cloudburstmc.server.player.manager.PlayerChunkManager;
@@ -119,6 +121,7 @@ import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.LongConsumer;
@@ -958,21 +961,93 @@ public class CloudPlayer extends EntityHuman implements CommandSender, Inventory
      * @return packet successfully sent
      */
     public boolean sendPacket(BedrockPacket packet) {
-        if (!this.connected) {
+        if (!this.connected || !this.preparePacket(packet)) {
             return false;
         }
 
-        PlayerPacketSendEvent event = new PlayerPacketSendEvent(this, packet);
-        this.server.getEventManager().fire(event);
-        if (event.isCancelled()) {
-            return false;
+        sendPacketInternal(packet);
+        return true;
+    }
+
+    /**
+     * Fires the {@link PlayerPacketSendEvent} of an outbound packet.
+     *
+     * @param packet packet to send
+     * @return false if the packet must not be sent to this player
+     */
+    public boolean preparePacket(BedrockPacket packet) {
+        if (this.server.getEventManager().hasListeners(PlayerPacketSendEvent.class)) {
+            PlayerPacketSendEvent event = new PlayerPacketSendEvent(this, packet);
+            this.server.getEventManager().fire(event);
+            if (event.isCancelled()) {
+                return false;
+            }
         }
 
         if (log.isTraceEnabled() && !this.getServer().isIgnoredPacket(packet.getClass())) {
             log.trace("Outbound {}: {}", this.getName(), packet);
         }
+        return true;
+    }
 
-        sendPacketInternal(packet);
+    /**
+     * Serializes and compresses packets once so they can be sent to several players with {@link #sendBatch}.
+     */
+    public EncodedBatch encodeBatch(Collection<BedrockPacket> packets) {
+        return EncodedBatch.encode(this.session, packets);
+    }
+
+    /**
+     * Sends a batch that has been encoded once for all of its recipients. {@link #preparePacket(BedrockPacket)} must
+     * have allowed every packet of the batch.
+     *
+     * @param batch batch to send
+     * @return false if the batch has been encoded for another protocol version and has not been sent
+     */
+    public boolean sendBatch(EncodedBatch batch) {
+        if (!this.connected || !batch.canSendTo(this.session)) {
+            return false;
+        }
+        // Written on the event loop of the session after the packets queued before it, so it keeps its place
+        this.session.tick();
+        batch.retain();
+        try {
+            this.session.getEventLoop().execute(() -> {
+                try {
+                    batch.sendTo(this.session);
+                } finally {
+                    batch.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            batch.release();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Sends a packet which is the same for every player from the {@link StaticPacketCache}, so it is only encoded once
+     * per protocol version.
+     *
+     * @param payload payload the packet carries
+     * @param source  registry data the packet is built from
+     * @param packet  packet built from the source
+     * @return packet successfully sent
+     */
+    public boolean sendStaticPacket(StaticPacketCache.Payload payload, Object source, BedrockPacket packet) {
+        if (!this.connected || !this.preparePacket(packet)) {
+            return false;
+        }
+
+        EncodedBatch batch = this.server.getStaticPacketCache().get(this.session, payload, source, packet);
+        try {
+            if (!this.sendBatch(batch)) {
+                sendPacketInternal(packet);
+            }
+        } finally {
+            batch.release();
+        }
         return true;
     }
 
@@ -1057,13 +1132,16 @@ public class CloudPlayer extends EntityHuman implements CommandSender, Inventory
     }
 
     protected void checkNearEntities() {
-        for (Entity entity : this.getLevel().getNearbyEntities(this.boundingBox.grow(1, 0.5f, 1), this)) {
-            this.getLevel().scheduleEntityUpdate(entity);
+        this.getLevel().getEntityIndex().forEachIntersecting(this.boundingBox.grow(1, 0.5f, 1), this::checkNearEntity);
+    }
 
-            if (!entity.isAlive() || !this.isAlive()) {
-                continue;
-            }
+    private void checkNearEntity(BaseEntity entity) {
+        if (entity == this) {
+            return;
+        }
+        this.getLevel().scheduleEntityUpdate(entity);
 
+        if (entity.isAlive() && this.isAlive()) {
             this.pickupEntity(entity, true);
         }
     }
@@ -1271,6 +1349,7 @@ public class CloudPlayer extends EntityHuman implements CommandSender, Inventory
                 float radius = this.getWidth() / 2;
                 this.boundingBox.setBounds(this.position.getX() - radius, this.position.getY(), this.position.getZ() - radius,
                         this.position.getX() + radius, this.position.getY() + this.getHeight(), this.position.getZ() + radius);
+                this.getLevel().getEntityIndex().update(this);
             }
         }
 
@@ -1289,7 +1368,11 @@ public class CloudPlayer extends EntityHuman implements CommandSender, Inventory
             this.lastYaw = to.getYaw();
             this.lastPitch = to.getPitch();
 
-            if (!isFirst) {
+            if (!isFirst && !this.server.getEventManager().hasListeners(PlayerMoveEvent.class)) {
+                this.blocksAround = null;
+                this.collisionBlockStates = null;
+                this.addMovement(this.getX(), this.getY() + getBaseOffset(), this.getZ(), this.getYaw(), this.getPitch(), this.getYaw());
+            } else if (!isFirst) {
                 List<Block> blocksAround = new ArrayList<>(this.blocksAround);
                 List<Block> collidingBlockStates = new ArrayList<>(this.collisionBlockStates);
 
@@ -1587,11 +1670,12 @@ public class CloudPlayer extends EntityHuman implements CommandSender, Inventory
 
         BiomeDefinitionListPacket biomeDefinitionListPacket = new BiomeDefinitionListPacket();
         biomeDefinitionListPacket.setDefinitions(Biome.BIOME_DEFINITIONS);
-        this.sendPacket(biomeDefinitionListPacket);
+        this.sendStaticPacket(StaticPacketCache.Payload.BIOME_DEFINITIONS, Biome.BIOME_DEFINITIONS, biomeDefinitionListPacket);
 
+        NbtMap entityIdentifiers = EntityRegistry.get().getEntityIdentifiersPalette();
         AvailableEntityIdentifiersPacket availableEntityIdentifiersPacket = new AvailableEntityIdentifiersPacket();
-        availableEntityIdentifiersPacket.setIdentifiers(EntityRegistry.get().getEntityIdentifiersPalette());
-        this.sendPacket(availableEntityIdentifiersPacket);
+        availableEntityIdentifiersPacket.setIdentifiers(entityIdentifiers);
+        this.sendStaticPacket(StaticPacketCache.Payload.ENTITY_IDENTIFIERS, entityIdentifiers, availableEntityIdentifiersPacket);
 
 //        UpdateBlockPropertiesPacket updateBlockPropertiesPacket = new UpdateBlockPropertiesPacket();
 //        updateBlockPropertiesPacket.setProperties(BlockRegistry.get().getPropertiesTag());
@@ -2620,6 +2704,10 @@ public class CloudPlayer extends EntityHuman implements CommandSender, Inventory
 
     @Override
     protected void checkChunks() {
+        if (!this.closed) {
+            this.getLevel().getEntityIndex().update(this);
+        }
+
         Vector3f pos = this.getPosition();
         if (this.chunk == null || (this.chunk.getX() != pos.getFloorX() >> 4 || this.chunk.getZ() != pos.getFloorZ() >> 4)) {
             if (this.chunk != null) {
@@ -3002,6 +3090,10 @@ public class CloudPlayer extends EntityHuman implements CommandSender, Inventory
             return false;
         }
 
+        if (this.deferLevelChange(location, cause)) {
+            return true;
+        }
+
         Location from = this.getLocation();
         Location to = location;
 
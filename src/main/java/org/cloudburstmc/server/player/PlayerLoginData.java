@@ -29,6 +29,7 @@ public class PlayerLoginData {
     private String username;
     private ClientChainData chainData;
     private boolean shouldLogin;
+    private boolean clientCacheSupported;
     private List<Consumer<Player>> loginTasks;
 
     public PlayerLoginData(BedrockServerSession session, CloudServer server, BedrockInterface interfaz) {
@@ -56,6 +57,7 @@ public class PlayerLoginData {
             return null;
         }
 
+        player.getChunkManager().setClientBlobCache(this.clientCacheSupported);
         player.processLogin();
         player.completeLoginSequence();
 
@@ -86,6 +88,14 @@ public class PlayerLoginData {
         this.shouldLogin = shouldLogin;
     }
 
+    public boolean isClientCacheSupported() {
+        return clientCacheSupported;
+    }
+
+    public void setClientCacheSupported(boolean clientCacheSupported) {
+        this.clientCacheSupported = clientCacheSupported;
+    }
+
     public BedrockServerSession getSession() {
         return session;
     }
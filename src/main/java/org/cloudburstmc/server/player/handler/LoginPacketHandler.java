@@ -3,6 +3,7 @@ package org.cloudburstmc.server.player.handler;
 import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
 import com.nukkitx.protocol.bedrock.BedrockServerSession;
 import com.nukkitx.protocol.bedrock.handler.BedrockPacketHandler;
+import com.nukkitx.protocol.bedrock.packet.ClientCacheStatusPacket;
 import com.nukkitx.protocol.bedrock.packet.LoginPacket;
 import com.nukkitx.protocol.bedrock.packet.PlayStatusPacket;
 import lombok.extern.log4j.Log4j2;
@@ -18,6 +19,8 @@ import org.cloudburstmc.server.scheduler.AsyncTask;
 import org.cloudburstmc.server.utils.ClientChainData;
 import org.cloudburstmc.server.utils.TextFormat;
 
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -34,6 +37,7 @@ public class LoginPacketHandler implements BedrockPacketHandler {
     private final CloudServer server;
 
     private final PlayerLoginData loginData;
+    private boolean verifying;
 
     public LoginPacketHandler(BedrockServerSession session, CloudServer server, BedrockInterface interfaz) {
         this.session = session;
@@ -41,6 +45,12 @@ public class LoginPacketHandler implements BedrockPacketHandler {
         this.loginData = new PlayerLoginData(session, server, interfaz);
     }
 
+    @Override
+    public boolean handle(ClientCacheStatusPacket packet) {
+        this.loginData.setClientCacheSupported(packet.isSupported());
+        return true;
+    }
+
     @Override
     public boolean handle(LoginPacket packet) {
         int protocolVersion = packet.getProtocolVersion();
@@ -58,11 +68,38 @@ public class LoginPacketHandler implements BedrockPacketHandler {
         }
         session.setPacketCodec(packetCodec);
 
-        this.loginData.setChainData(ClientChainData.read(packet));
+        if (this.verifying) {
+            // The chain of the first login packet is still being verified
+            return true;
+        }
+        this.verifying = true;
+
+        // Verifying the chain takes too long for the network thread, the login continues once it's done
+        this.server.getLoginVerifier().verify(session.getAddress().getAddress(), packet).whenComplete((chainData, throwable) -> {
+            if (session.isClosed()) {
+                return;
+            }
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                if (cause instanceof RejectedExecutionException) {
+                    session.disconnect(cause.getMessage());
+                } else {
+                    log.debug("Unable to decode login chain of {}", session.getAddress(), cause);
+                    session.disconnect("disconnectionScreen.notAuthenticated");
+                }
+                return;
+            }
+            this.login(chainData);
+        });
+        return true;
+    }
+
+    private void login(ClientChainData chainData) {
+        this.loginData.setChainData(chainData);
 
         if (!this.loginData.getChainData().isXboxAuthed() && this.server.getConfig().isXboxAuth()) {
             session.disconnect("disconnectionScreen.notAuthenticated");
-            return true;
+            return;
         }
 
         String username = this.loginData.getChainData().getUsername();
@@ -70,21 +107,21 @@ public class LoginPacketHandler implements BedrockPacketHandler {
 
         if (!matcher.matches() || username.equalsIgnoreCase("rcon") || username.equalsIgnoreCase("console")) {
             session.disconnect("disconnectionScreen.invalidName");
-            return true;
+            return;
         }
 
         this.loginData.setName(TextFormat.clean(username));
 
         if (!this.loginData.getChainData().getSerializedSkin().isValid()) {
             session.disconnect("disconnectionScreen.invalidSkin");
-            return true;
+            return;
         }
 
         PlayerPreLoginEvent playerPreLoginEvent = new PlayerPreLoginEvent(loginData, "Plugin reason");
         this.server.getEventManager().fire(playerPreLoginEvent);
         if (playerPreLoginEvent.isCancelled()) {
             session.disconnect(playerPreLoginEvent.getKickMessage());
-            return true;
+            return;
         }
         session.setPacketHandler(new ResourcePackPacketHandler(session, server, loginData));
 
@@ -130,6 +167,5 @@ public class LoginPacketHandler implements BedrockPacketHandler {
         session.sendPacket(statusPacket);
 
         session.sendPacket(this.server.getPackManager().getPacksInfos());
-        return true;
     }
 }
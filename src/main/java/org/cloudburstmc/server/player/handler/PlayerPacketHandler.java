@@ -110,10 +110,12 @@ public class PlayerPacketHandler implements BedrockPacketHandler {
                 log.trace("Inbound {}: {}", player.getName(), packet);
             }
 
-            DataPacketReceiveEvent receiveEvent = new DataPacketReceiveEvent(player, packet);
-            player.getServer().getEventManager().fire(receiveEvent);
-            if (receiveEvent.isCancelled()) {
-                return true;
+            if (player.getServer().getEventManager().hasListeners(DataPacketReceiveEvent.class)) {
+                DataPacketReceiveEvent receiveEvent = new DataPacketReceiveEvent(player, packet);
+                player.getServer().getEventManager().fire(receiveEvent);
+                if (receiveEvent.isCancelled()) {
+                    return true;
+                }
             }
 
             return packet.handle(this);
@@ -809,6 +811,18 @@ public class PlayerPacketHandler implements BedrockPacketHandler {
         return true;
     }
 
+    @Override
+    public boolean handle(ClientCacheStatusPacket packet) {
+        player.getChunkManager().setClientBlobCache(packet.isSupported());
+        return true;
+    }
+
+    @Override
+    public boolean handle(ClientCacheBlobStatusPacket packet) {
+        player.getChunkManager().handleBlobStatus(packet);
+        return true;
+    }
+
     @Override
     public boolean handle(SetPlayerGameTypePacket packet) {
         if (packet.getGamemode() != player.getGamemode().getVanillaId()) {
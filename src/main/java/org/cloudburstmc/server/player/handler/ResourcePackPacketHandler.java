@@ -3,6 +3,7 @@ package org.cloudburstmc.server.player.handler;
 import com.nukkitx.protocol.bedrock.BedrockServerSession;
 import com.nukkitx.protocol.bedrock.data.ResourcePackType;
 import com.nukkitx.protocol.bedrock.handler.BedrockPacketHandler;
+import com.nukkitx.protocol.bedrock.packet.ClientCacheStatusPacket;
 import com.nukkitx.protocol.bedrock.packet.ResourcePackChunkDataPacket;
 import com.nukkitx.protocol.bedrock.packet.ResourcePackChunkRequestPacket;
 import com.nukkitx.protocol.bedrock.packet.ResourcePackClientResponsePacket;
@@ -35,6 +36,12 @@ public class ResourcePackPacketHandler implements BedrockPacketHandler {
         this.loginData = loginData;
     }
 
+    @Override
+    public boolean handle(ClientCacheStatusPacket packet) {
+        this.loginData.setClientCacheSupported(packet.isSupported());
+        return true;
+    }
+
     @Override
     public boolean handle(ResourcePackClientResponsePacket packet) {
         switch (packet.getStatus()) {
@@ -0,0 +1,63 @@
+package org.cloudburstmc.server.player.manager;
+
+/**
+ * Server wide limit of chunk data sent per tick.
+ * <p>
+ * Every player sending chunks is guaranteed an equal share of the limit, based on how many players sent chunks during
+ * the previous tick. Shares which are not used completely can be borrowed by players sending later in the same tick.
+ * Only accessed from the main thread.
+ */
+public class ChunkSendLimiter {
+
+    private final int bytesPerTick;
+    private int activePlayers;
+    private int previousActivePlayers = 1;
+    private int unclaimedBytes;
+    private long spareBytes;
+
+    public ChunkSendLimiter(int bytesPerTick) {
+        this.bytesPerTick = bytesPerTick;
+        this.unclaimedBytes = bytesPerTick;
+    }
+
+    public void tick() {
+        this.previousActivePlayers = Math.max(1, this.activePlayers);
+        this.activePlayers = 0;
+        this.unclaimedBytes = this.bytesPerTick;
+        this.spareBytes = 0;
+    }
+
+    /**
+     * Claims the share of a player for this tick. Unused bytes have to be given back with {@link #release(int)}.
+     *
+     * @return bytes the player may send
+     */
+    int claim() {
+        this.activePlayers++;
+        int share = Math.min(this.unclaimedBytes, this.bytesPerTick / this.previousActivePlayers);
+        this.unclaimedBytes -= share;
+        return share;
+    }
+
+    /**
+     * Borrows bytes released by other players.
+     *
+     * @param bytes bytes needed
+     * @return whether the bytes were available
+     */
+    boolean borrow(int bytes) {
+        if (this.spareBytes < bytes) {
+            return false;
+        }
+        this.spareBytes -= bytes;
+        return true;
+    }
+
+    void release(int bytes) {
+        this.spareBytes += bytes;
+    }
+
+    public int getBytesPerTick() {
+        return bytesPerTick;
+    }
+}
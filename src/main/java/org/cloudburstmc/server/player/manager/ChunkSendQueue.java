@@ -0,0 +1,132 @@
+package org.cloudburstmc.server.player.manager;
+
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongConsumer;
+import it.unimi.dsi.fastutil.longs.LongPredicate;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Queue of chunk keys ordered by their distance to a center chunk.
+ * <p>
+ * Keys are kept in one FIFO bucket per whole chunk of distance, so adding and polling don't need any sorting. The
+ * buckets only have to be rebuilt when the center moves.
+ */
+final class ChunkSendQueue {
+
+    private final LongArrayList scratch = new LongArrayList();
+    private LongArrayFIFOQueue[] buckets = new LongArrayFIFOQueue[0];
+    private int centerX;
+    private int centerZ;
+    private int lowest;
+    private int size;
+
+    void add(long key) {
+        int bucket = this.bucketFor(key);
+        if (bucket >= this.buckets.length) {
+            LongArrayFIFOQueue[] buckets = new LongArrayFIFOQueue[bucket + 1];
+            System.arraycopy(this.buckets, 0, buckets, 0, this.buckets.length);
+            for (int i = this.buckets.length; i < buckets.length; i++) {
+                buckets[i] = new LongArrayFIFOQueue();
+            }
+            this.buckets = buckets;
+        }
+        this.buckets[bucket].enqueue(key);
+        if (bucket < this.lowest) {
+            this.lowest = bucket;
+        }
+        this.size++;
+    }
+
+    /**
+     * Gets the nearest key without removing it.
+     *
+     * @return nearest key
+     * @throws NoSuchElementException if the queue is empty
+     */
+    long peek() {
+        return this.lowestBucket().firstLong();
+    }
+
+    /**
+     * Removes the nearest key.
+     *
+     * @return nearest key
+     * @throws NoSuchElementException if the queue is empty
+     */
+    long poll() {
+        long key = this.lowestBucket().dequeueLong();
+        this.size--;
+        return key;
+    }
+
+    /**
+     * Moves the center and redistributes all keys. Keys not matching the filter are dropped.
+     *
+     * @param centerX new center chunk x
+     * @param centerZ new center chunk z
+     * @param retain  filter of keys to keep
+     * @param removed receives dropped keys
+     */
+    void recenter(int centerX, int centerZ, LongPredicate retain, LongConsumer removed) {
+        if (this.centerX == centerX && this.centerZ == centerZ) {
+            return;
+        }
+        LongArrayList keys = this.scratch;
+        for (int i = this.lowest; i < this.buckets.length; i++) {
+            LongArrayFIFOQueue bucket = this.buckets[i];
+            while (!bucket.isEmpty()) {
+                keys.add(bucket.dequeueLong());
+            }
+        }
+
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.lowest = this.buckets.length;
+        this.size = 0;
+
+        for (int i = 0; i < keys.size(); i++) {
+            long key = keys.getLong(i);
+            if (retain.test(key)) {
+                this.add(key);
+            } else {
+                removed.accept(key);
+            }
+        }
+        keys.clear();
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    void clear() {
+        for (LongArrayFIFOQueue bucket : this.buckets) {
+            bucket.clear();
+        }
+        this.lowest = this.buckets.length;
+        this.size = 0;
+    }
+
+    private LongArrayFIFOQueue lowestBucket() {
+        if (this.size == 0) {
+            throw new NoSuchElementException();
+        }
+        while (this.buckets[this.lowest].isEmpty()) {
+            this.lowest++;
+        }
+        return this.buckets[this.lowest];
+    }
+
+    private int bucketFor(long key) {
+        int dx = CloudChunk.fromKeyX(key) - this.centerX;
+        int dz = CloudChunk.fromKeyZ(key) - this.centerZ;
+        return (int) Math.sqrt(dx * dx + dz * dz);
+    }
+}
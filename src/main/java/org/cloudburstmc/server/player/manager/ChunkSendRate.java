@@ -0,0 +1,56 @@
+package org.cloudburstmc.server.player.manager;
+
+/**
+ * Per player chunk sending budget.
+ * <p>
+ * The amount of chunk data still queued on the connection is estimated from what has been sent and the current send
+ * rate. The rate is lowered when the ping rises above the lowest ping seen recently, which happens once the client's
+ * link starts buffering.
+ */
+final class ChunkSendRate {
+
+    private static final int TICK_MILLIS = 50;
+    // Jitter which is not treated as congestion
+    private static final long PING_SLACK = 20;
+    private static final double MIN_RATE_FACTOR = 0.125;
+    private static final int BASELINE_RESET_TICKS = 20 * 60;
+
+    private final int maxBytesPerTick;
+    private long baselinePing = Long.MAX_VALUE;
+    private int baselineAge;
+    private long queuedBytes;
+
+    ChunkSendRate(int maxBytesPerTick) {
+        this.maxBytesPerTick = maxBytesPerTick;
+    }
+
+    /**
+     * Advances the estimate by one tick.
+     *
+     * @param ping current round trip time in milliseconds
+     * @return amount of bytes which can be sent this tick
+     */
+    int update(long ping) {
+        ping = Math.max(ping, 1);
+        if (ping < this.baselinePing || ++this.baselineAge >= BASELINE_RESET_TICKS) {
+            this.baselinePing = ping;
+            this.baselineAge = 0;
+        }
+
+        double factor = Math.min(1.0, (double) (this.baselinePing + PING_SLACK) / ping);
+        long rate = (long) (this.maxBytesPerTick * Math.max(MIN_RATE_FACTOR, factor));
+        this.queuedBytes = Math.max(0, this.queuedBytes - rate);
+
+        // Allow one round trip worth of data to be in flight
+        long window = rate * Math.max(1, ping / TICK_MILLIS);
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, window - this.queuedBytes));
+    }
+
+    void onSent(int bytes) {
+        this.queuedBytes += bytes;
+    }
+
+    long getQueuedBytes() {
+        return queuedBytes;
+    }
+}
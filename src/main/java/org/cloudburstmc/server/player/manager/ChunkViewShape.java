@@ -0,0 +1,105 @@
+package org.cloudburstmc.server.player.manager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Precomputed circular chunk view of a given radius.
+ * <p>
+ * Holds the half width of every row so membership and edge deltas can be computed without iterating the whole area,
+ * and all offsets in spiral order (nearest first) for full rebuilds.
+ */
+final class ChunkViewShape {
+
+    private static volatile ChunkViewShape[] shapes = new ChunkViewShape[0];
+
+    private final int radius;
+    private final int[] halfWidths;
+    private final int[] offsetsX;
+    private final int[] offsetsZ;
+
+    private ChunkViewShape(int radius) {
+        this.radius = radius;
+        int radiusSqr = radius * radius;
+
+        this.halfWidths = new int[(radius << 1) + 1];
+        for (int x = -radius; x <= radius; x++) {
+            int halfWidth = 0;
+            while ((halfWidth + 1) * (halfWidth + 1) + x * x <= radiusSqr) {
+                halfWidth++;
+            }
+            this.halfWidths[x + radius] = halfWidth;
+        }
+
+        List<int[]> offsets = new ArrayList<>();
+        for (int x = -radius; x <= radius; x++) {
+            int halfWidth = this.halfWidths[x + radius];
+            for (int z = -halfWidth; z <= halfWidth; z++) {
+                offsets.add(new int[]{x, z});
+            }
+        }
+        offsets.sort(Comparator.comparingInt(offset -> offset[0] * offset[0] + offset[1] * offset[1]));
+
+        this.offsetsX = new int[offsets.size()];
+        this.offsetsZ = new int[offsets.size()];
+        for (int i = 0; i < offsets.size(); i++) {
+            this.offsetsX[i] = offsets.get(i)[0];
+            this.offsetsZ[i] = offsets.get(i)[1];
+        }
+    }
+
+    static ChunkViewShape of(int radius) {
+        ChunkViewShape[] shapes = ChunkViewShape.shapes;
+        if (radius < shapes.length && shapes[radius] != null) {
+            return shapes[radius];
+        }
+        synchronized (ChunkViewShape.class) {
+            shapes = ChunkViewShape.shapes;
+            if (radius >= shapes.length) {
+                ChunkViewShape[] resized = new ChunkViewShape[radius + 1];
+                System.arraycopy(shapes, 0, resized, 0, shapes.length);
+                shapes = resized;
+            }
+            if (shapes[radius] == null) {
+                shapes[radius] = new ChunkViewShape(radius);
+            }
+            ChunkViewShape.shapes = shapes;
+            return shapes[radius];
+        }
+    }
+
+    int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Gets the maximum absolute z offset of the row at the given x offset.
+     *
+     * @param x x offset from the center
+     * @return half width or -1 if the row is outside of the view
+     */
+    int getHalfWidth(int x) {
+        if (x < -this.radius || x > this.radius) {
+            return -1;
+        }
+        return this.halfWidths[x + this.radius];
+    }
+
+    boolean contains(int x, int z) {
+        int halfWidth = this.getHalfWidth(x);
+        return z >= -halfWidth && z <= halfWidth;
+    }
+
+    int size() {
+        return this.offsetsX.length;
+    }
+
+    int getOffsetX(int index) {
+        return this.offsetsX[index];
+    }
+
+    int getOffsetZ(int index) {
+        return this.offsetsZ[index];
+    }
+}
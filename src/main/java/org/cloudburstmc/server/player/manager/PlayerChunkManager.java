@@ -4,17 +4,19 @@ import co.aikar.timings.Timing;
 import co.aikar.timings.Timings;
 import com.nukkitx.math.vector.Vector3f;
 import com.nukkitx.protocol.bedrock.packet.ChunkRadiusUpdatedPacket;
+import com.nukkitx.protocol.bedrock.packet.ClientCacheBlobStatusPacket;
+import com.nukkitx.protocol.bedrock.packet.ClientCacheMissResponsePacket;
 import com.nukkitx.protocol.bedrock.packet.LevelChunkPacket;
 import com.nukkitx.protocol.bedrock.packet.NetworkChunkPublisherUpdatePacket;
 import it.unimi.dsi.fastutil.longs.*;
-import it.unimi.dsi.fastutil.objects.ObjectIterator;
-import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.api.entity.Entity;
+import org.cloudburstmc.server.config.ServerConfig;
 import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.math.NukkitMath;
+import org.cloudburstmc.server.network.ClientBlobStore;
 import org.cloudburstmc.server.player.CloudPlayer;
+import org.cloudburstmc.server.scheduler.PriorityExecutor;
 
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongConsumer;
@@ -24,17 +26,38 @@ import static com.google.common.base.Preconditions.checkArgument;
 @Log4j2
 public class PlayerChunkManager {
 
+    private static final int MAX_PENDING_BLOBS = 1 << 16;
+
     private final CloudPlayer player;
-    private final AroundPlayerChunkComparator comparator;
     private final LongSet loadedChunks = new LongOpenHashSet();
     private final Long2ObjectMap<LevelChunkPacket> sendQueue = new Long2ObjectOpenHashMap<>();
+    // Keys of sendQueue ordered by distance, may contain stale keys which are skipped when polled
+    private final ChunkSendQueue sendOrder = new ChunkSendQueue();
+    private final ChunkSendRate sendRate;
+    private final int chunksPerTick;
     private final AtomicLong chunksSentCounter = new AtomicLong();
+    private final AtomicLong bytesSentCounter = new AtomicLong();
     private final LongConsumer removeChunkLoader;
+    // Chunks which left the view outside of a regular update and have to be queued again
+    private final LongSet requeuedChunks = new LongOpenHashSet();
+    // Reused by queueNewChunks so unchanged or small updates don't allocate
+    private final LongArrayList chunksToLoad = new LongArrayList();
+    private final LongArrayList chunksToUnload = new LongArrayList();
+    // Blob id -> chunk key of blobs the client has not acknowledged yet
+    private final Long2LongLinkedOpenHashMap pendingBlobs = new Long2LongLinkedOpenHashMap();
     private volatile int radius;
+    private volatile boolean clientBlobCache;
+    // View which loadedChunks currently represents
+    private boolean tracking;
+    private int trackedRadius;
+    private int centerX;
+    private int centerZ;
 
     public PlayerChunkManager(CloudPlayer player) {
         this.player = player;
-        this.comparator = new AroundPlayerChunkComparator(player);
+        ServerConfig.ChunkSending config = player.getServer().getConfig().getChunkSending();
+        this.sendRate = new ChunkSendRate(config.getPlayerBytesPerTick());
+        this.chunksPerTick = config.getPerTick();
         this.removeChunkLoader = chunkKey -> {
             CloudChunk chunk = this.player.getLevel().getLoadedChunk(chunkKey);
             if (chunk != null) {
@@ -47,47 +70,53 @@ public class PlayerChunkManager {
     }
 
     public synchronized void sendQueued() {
-        int chunksPerTick = 16; //this.player.getServer().getConfig("chunk-sending.per-tick", 4);
-        ObjectIterator<Long2ObjectMap.Entry<LevelChunkPacket>> sendQueueIterator = this.sendQueue.long2ObjectEntrySet().iterator();
-        // Remove chunks which are out of range
-        while (sendQueueIterator.hasNext()) {
-            Long2ObjectMap.Entry<LevelChunkPacket> entry = sendQueueIterator.next();
-            long key = entry.getLongKey();
-            if (!this.loadedChunks.contains(key)) {
-//                LevelChunkPacket packet = entry.getValue();
-//                if (packet != null) {
-//                    packet.release();
-//                }
-                sendQueueIterator.remove();
+        int allowance = this.sendRate.update(this.player.getPing());
 
-                CloudChunk chunk = this.player.getLevel().getLoadedChunk(key);
-                if (chunk != null) {
-                    chunk.removeLoader(this.player);
-                }
+        try (Timing ignored = Timings.playerChunkSendTimer.startTiming()) {
+            if (!this.pollReady()) {
+                return;
             }
-        }
 
-        LongList list = new LongArrayList(this.sendQueue.keySet());
-
-        try (Timing ignored = Timings.playerChunkOrderTimer.startTiming()) {
-            // Order chunks around player.
-            list.unstableSort(this.comparator);
-        }
-
-        try (Timing ignored = Timings.playerChunkSendTimer.startTiming()) {
-            for (long key : list.toLongArray()) {
-                if (chunksPerTick < 0) {
-                    break;
-                }
+            ChunkSendLimiter limiter = this.player.getServer().getChunkSendLimiter();
+            int budget = Math.min(allowance, limiter.claim());
+            int chunksPerTick = this.chunksPerTick;
+            boolean sent = false;
 
+            do {
+                long key = this.sendOrder.peek();
                 LevelChunkPacket packet = this.sendQueue.get(key);
-                if (packet == null) {
-                    // Next packet is not available.
-                    break;
+                int size = getPacketSize(packet);
+
+                // A single chunk is always let through if the connection is idle, so large chunks can't stall sending.
+                boolean idle = !sent && this.sendRate.getQueuedBytes() == 0;
+                if (!idle) {
+                    if (size > allowance) {
+                        break;
+                    }
+                    if (size > budget) {
+                        if (!limiter.borrow(size - budget)) {
+                            break;
+                        }
+                        budget = size;
+                    }
                 }
 
+                this.sendOrder.poll();
                 this.sendQueue.remove(key);
                 this.player.sendPacket(packet);
+                this.onSent(size);
+                allowance -= size;
+                budget -= size;
+                sent = true;
+
+                if (packet.isCachingEnabled()) {
+                    for (long blobId : packet.getBlobIds()) {
+                        this.pendingBlobs.put(blobId, key);
+                    }
+                    while (this.pendingBlobs.size() > MAX_PENDING_BLOBS) {
+                        this.pendingBlobs.removeFirstLong();
+                    }
+                }
 
                 CloudChunk chunk = this.player.getLevel().getLoadedChunk(key);
                 checkArgument(chunk != null, "Attempted to send unloaded chunk (%s, %s) to %s",
@@ -100,10 +129,58 @@ public class PlayerChunkManager {
                     }
                 }
 
-                chunksPerTick--;
                 this.chunksSentCounter.incrementAndGet();
+            } while (--chunksPerTick > 0 && this.pollReady());
+
+            limiter.release(Math.max(0, budget));
+        }
+    }
+
+    /**
+     * Drops keys at the head of the send order which left the view or are no longer queued.
+     *
+     * @return whether the nearest queued chunk is ready to be sent
+     */
+    private boolean pollReady() {
+        while (!this.sendOrder.isEmpty()) {
+            long key = this.sendOrder.peek();
+            if (this.isSendable(key)) {
+                // Keep the order, chunks further away have to wait until this one is encoded.
+                return this.sendQueue.get(key) != null;
             }
+            this.sendOrder.poll();
+            this.discardQueued(key);
         }
+        return false;
+    }
+
+    private boolean isSendable(long key) {
+        return this.sendQueue.containsKey(key) && this.loadedChunks.contains(key);
+    }
+
+    private void discardQueued(long key) {
+        // Keys are left in the send order when loading fails or the chunk has been sent already
+        if (this.sendQueue.containsKey(key)) {
+//            LevelChunkPacket packet = this.sendQueue.remove(key);
+//            if (packet != null) {
+//                packet.release();
+//            }
+            this.sendQueue.remove(key);
+
+            CloudChunk chunk = this.player.getLevel().getLoadedChunk(key);
+            if (chunk != null) {
+                chunk.removeLoader(this.player);
+            }
+        }
+    }
+
+    private static int getPacketSize(LevelChunkPacket packet) {
+        return packet.getData().length + packet.getBlobIds().size() * Long.BYTES;
+    }
+
+    private void onSent(int bytes) {
+        this.sendRate.onSent(bytes);
+        this.bytesSentCounter.addAndGet(bytes);
     }
 
     public void queueNewChunks() {
@@ -114,78 +191,223 @@ public class PlayerChunkManager {
         this.queueNewChunks(pos.getFloorX() >> 4, pos.getFloorZ() >> 4);
     }
 
+    /**
+     * Updates the chunks in view of the player. Nothing is done if neither the center chunk nor the radius changed
+     * since the last call, otherwise only the chunks entering and leaving the view are processed.
+     *
+     * @param chunkX center chunk x
+     * @param chunkZ center chunk z
+     */
     public synchronized void queueNewChunks(int chunkX, int chunkZ) {
         int radius = this.getChunkRadius();
-        int radiusSqr = radius * radius;
-
-        LongSet chunksForRadius = new LongOpenHashSet();
-
-        LongSet sentCopy = new LongOpenHashSet(this.loadedChunks);
-
-        LongList chunksToLoad = new LongArrayList();
+        boolean rebuild = !this.tracking || radius != this.trackedRadius;
+        boolean moved = chunkX != this.centerX || chunkZ != this.centerZ;
+        if (!rebuild && !moved && this.requeuedChunks.isEmpty()) {
+            return;
+        }
 
-        for (int x = -radius; x <= radius; ++x) {
-            for (int z = -radius; z <= radius; ++z) {
-                // Chunk radius is circular so we need to remove the corners.
-                if ((x * x) + (z * z) > radiusSqr) {
-                    continue;
+        ChunkViewShape shape = ChunkViewShape.of(radius);
+        LongArrayList chunksToLoad = this.chunksToLoad;
+        LongArrayList chunksToUnload = this.chunksToUnload;
+
+        if (rebuild) {
+            LongIterator iterator = this.loadedChunks.iterator();
+            while (iterator.hasNext()) {
+                long key = iterator.nextLong();
+                if (!shape.contains(CloudChunk.fromKeyX(key) - chunkX, CloudChunk.fromKeyZ(key) - chunkZ)) {
+                    iterator.remove();
+                    chunksToUnload.add(key);
                 }
+            }
 
-                int cx = chunkX + x;
-                int cz = chunkZ + z;
+            // Offsets are ordered by distance so the chunks to load don't need to be sorted.
+            for (int i = 0; i < shape.size(); i++) {
+                long key = CloudChunk.key(chunkX + shape.getOffsetX(i), chunkZ + shape.getOffsetZ(i));
+                if (this.loadedChunks.add(key)) {
+                    chunksToLoad.add(key);
+                }
+            }
+        } else if (moved) {
+            difference(shape, this.centerX, this.centerZ, chunkX, chunkZ, chunksToUnload);
+            for (int i = chunksToUnload.size() - 1; i >= 0; i--) {
+                if (!this.loadedChunks.remove(chunksToUnload.getLong(i))) {
+                    chunksToUnload.removeLong(i);
+                }
+            }
 
-                final long key = CloudChunk.key(cx, cz);
+            difference(shape, chunkX, chunkZ, this.centerX, this.centerZ, chunksToLoad);
+            for (int i = chunksToLoad.size() - 1; i >= 0; i--) {
+                if (!this.loadedChunks.add(chunksToLoad.getLong(i))) {
+                    chunksToLoad.removeLong(i);
+                }
+            }
+        }
 
-                chunksForRadius.add(key);
-                if (this.loadedChunks.add(key)) {
+        // Chunks which have to be sent again or failed to load
+        if (!this.requeuedChunks.isEmpty()) {
+            LongIterator iterator = this.requeuedChunks.iterator();
+            while (iterator.hasNext()) {
+                long key = iterator.nextLong();
+                if (shape.contains(CloudChunk.fromKeyX(key) - chunkX, CloudChunk.fromKeyZ(key) - chunkZ) &&
+                        this.loadedChunks.add(key)) {
                     chunksToLoad.add(key);
                 }
             }
+            this.requeuedChunks.clear();
         }
 
-        boolean loadedChunksChanged = this.loadedChunks.retainAll(chunksForRadius);
-        if (loadedChunksChanged || !chunksToLoad.isEmpty()) {
+        this.tracking = true;
+        this.trackedRadius = radius;
+        this.centerX = chunkX;
+        this.centerZ = chunkZ;
+
+        if (!chunksToUnload.isEmpty() || !chunksToLoad.isEmpty()) {
             NetworkChunkPublisherUpdatePacket packet = new NetworkChunkPublisherUpdatePacket();
             packet.setPosition(this.player.getPosition().toInt());
             packet.setRadius(this.radius);
             this.player.sendPacket(packet);
         }
 
-        // Order chunks for smoother loading
-        chunksToLoad.sort(this.comparator);
-
-        for (final long key : chunksToLoad.toLongArray()) {
-            final int cx = CloudChunk.fromKeyX(key);
-            final int cz = CloudChunk.fromKeyZ(key);
-
-            if (this.sendQueue.putIfAbsent(key, null) == null) {
-                this.player.getLevel().getChunkFuture(cx, cz).thenApply(chunk -> {
-                    chunk.addLoader(this.player);
-                    return chunk;
-                }).thenApplyAsync(CloudChunk::createChunkPacket, this.player.getServer().getScheduler().getAsyncPool())
-                        .whenComplete((packet, throwable) -> {
-                            synchronized (PlayerChunkManager.this) {
-                                if (throwable != null) {
-                                    if (this.sendQueue.remove(key, null)) {
-                                        this.loadedChunks.remove(key);
-                                    }
-                                    log.error("Unable to create chunk packet for " + this.player.getName(), throwable);
-                                } else if (!this.sendQueue.replace(key, null, packet)) {
-                                    // The chunk was already loaded!?
-                                    if (this.sendQueue.containsKey(key)) {
-                                        log.warn("Chunk ({},{}) already loaded for {}, value {}", cx, cz,
-                                                this.player.getName(), this.sendQueue.get(key));
-                                    }
-//                                    packet.release();
+        try (Timing ignored = Timings.playerChunkOrderTimer.startTiming()) {
+            this.sendOrder.recenter(chunkX, chunkZ, this::isSendable, this::discardQueued);
+        }
+
+        for (int i = 0; i < chunksToLoad.size(); i++) {
+            this.requestChunk(chunksToLoad.getLong(i));
+        }
+
+        // Remove player from chunk loaders
+        for (int i = 0; i < chunksToUnload.size(); i++) {
+            this.removeChunkLoader.accept(chunksToUnload.getLong(i));
+        }
+
+        chunksToLoad.clear();
+        chunksToUnload.clear();
+    }
+
+    /**
+     * Adds the keys of all chunks in view around the first center which are not in view around the second center.
+     * Works on whole row intervals, so the cost only depends on the radius and the size of the difference.
+     */
+    private static void difference(ChunkViewShape shape, int fromX, int fromZ, int otherX, int otherZ, LongList out) {
+        int radius = shape.getRadius();
+        for (int x = -radius; x <= radius; x++) {
+            int chunkX = fromX + x;
+            int halfWidth = shape.getHalfWidth(x);
+            int minZ = fromZ - halfWidth;
+            int maxZ = fromZ + halfWidth;
+
+            int otherHalfWidth = shape.getHalfWidth(chunkX - otherX);
+            if (otherHalfWidth < 0) {
+                addRow(chunkX, minZ, maxZ, out);
+            } else {
+                addRow(chunkX, minZ, Math.min(maxZ, otherZ - otherHalfWidth - 1), out);
+                addRow(chunkX, Math.max(minZ, otherZ + otherHalfWidth + 1), maxZ, out);
+            }
+        }
+    }
+
+    private static void addRow(int chunkX, int minZ, int maxZ, LongList out) {
+        for (int z = minZ; z <= maxZ; z++) {
+            out.add(CloudChunk.key(chunkX, z));
+        }
+    }
+
+    private void requestChunk(long key) {
+        final int cx = CloudChunk.fromKeyX(key);
+        final int cz = CloudChunk.fromKeyZ(key);
+
+        if (this.sendQueue.putIfAbsent(key, null) == null) {
+            this.sendOrder.add(key);
+            // Closest chunks first, anything in view still goes before default and background work
+            int priority = PriorityExecutor.PRIORITY_NEAR + Math.min(PriorityExecutor.PRIORITY_DEFAULT - 1,
+                    Math.max(Math.abs(cx - this.centerX), Math.abs(cz - this.centerZ)));
+            this.player.getLevel().getChunkFuture(cx, cz, priority).thenApply(chunk -> {
+                chunk.addLoader(this.player);
+                return chunk;
+            }).thenApplyAsync(this::createChunkPacket,
+                    this.player.getServer().getScheduler().getNetworkExecutor().withPriority(priority))
+                    .whenComplete((packet, throwable) -> {
+                        synchronized (PlayerChunkManager.this) {
+                            if (throwable != null) {
+                                if (this.sendQueue.remove(key, null) && this.loadedChunks.remove(key)) {
+                                    // Try again on the next update
+                                    this.requeuedChunks.add(key);
                                 }
+                                log.error("Unable to create chunk packet for " + this.player.getName(), throwable);
+                            } else if (!this.sendQueue.replace(key, null, packet)) {
+                                // The chunk was already loaded!?
+                                if (this.sendQueue.containsKey(key)) {
+                                    log.warn("Chunk ({},{}) already loaded for {}, value {}", cx, cz,
+                                            this.player.getName(), this.sendQueue.get(key));
+                                }
+//                                packet.release();
                             }
-                        });
+                        }
+                    });
+        }
+    }
+
+    private LevelChunkPacket createChunkPacket(CloudChunk chunk) {
+        if (this.clientBlobCache) {
+            return chunk.createCachedChunkPacket(this.player.getServer().getBlobStore());
+        }
+        return chunk.createChunkPacket();
+    }
+
+    /**
+     * Enables the client blob cache for chunks queued from now on, if the server allows it.
+     *
+     * @param supported whether the client supports the blob cache
+     */
+    public void setClientBlobCache(boolean supported) {
+        this.clientBlobCache = supported && this.player.getServer().getConfig().getChunkSending().isClientBlobCache();
+    }
+
+    public boolean isClientBlobCache() {
+        return clientBlobCache;
+    }
+
+    /**
+     * Answers blobs the client is missing. If a blob has been evicted from the server's store in the meantime, the
+     * chunk which referenced it is sent again.
+     *
+     * @param packet blob status reported by the client
+     */
+    public synchronized void handleBlobStatus(ClientCacheBlobStatusPacket packet) {
+        for (long blobId : packet.getAcks()) {
+            this.pendingBlobs.remove(blobId);
+        }
+
+        ClientBlobStore blobStore = this.player.getServer().getBlobStore();
+        ClientCacheMissResponsePacket response = new ClientCacheMissResponsePacket();
+        LongSet resend = null;
+        for (long blobId : packet.getNaks()) {
+            boolean pending = this.pendingBlobs.containsKey(blobId);
+            long chunkKey = this.pendingBlobs.remove(blobId);
+
+            byte[] data = blobStore.get(blobId);
+            if (data != null) {
+                response.getBlobs().put(blobId, data);
+            } else if (pending) {
+                if (resend == null) {
+                    resend = new LongOpenHashSet();
+                }
+                resend.add(chunkKey);
             }
         }
 
-        sentCopy.removeAll(chunksForRadius);
-        // Remove player from chunk loaders
-        sentCopy.forEach(this.removeChunkLoader);
+        if (!response.getBlobs().isEmpty()) {
+            this.player.sendPacket(response);
+            int size = 0;
+            for (byte[] data : response.getBlobs().values()) {
+                size += data.length;
+            }
+            this.onSent(size);
+        }
+        if (resend != null) {
+            resend.forEach((LongConsumer) key -> this.resendChunk(CloudChunk.fromKeyX(key), CloudChunk.fromKeyZ(key)));
+        }
     }
 
     public int getRadius() {
@@ -224,13 +446,28 @@ public class PlayerChunkManager {
         return chunksSentCounter.get();
     }
 
+    public long getBytesSent() {
+        return bytesSentCounter.get();
+    }
+
+    /**
+     * Gets the estimated amount of chunk data which is still queued on the player's connection.
+     *
+     * @return queued bytes
+     */
+    public synchronized long getQueuedBytes() {
+        return this.sendRate.getQueuedBytes();
+    }
+
     public LongSet getLoadedChunks() {
         return LongSets.unmodifiable(this.loadedChunks);
     }
 
     public synchronized void resendChunk(int chunkX, int chunkZ) {
         long chunkKey = CloudChunk.key(chunkX, chunkZ);
-        this.loadedChunks.remove(chunkKey);
+        if (this.loadedChunks.remove(chunkKey)) {
+            this.requeuedChunks.add(chunkKey);
+        }
         removeChunkLoader.accept(chunkKey);
     }
 
@@ -251,31 +488,12 @@ public class PlayerChunkManager {
 //            }
 //        });
         this.sendQueue.clear();
+        this.sendOrder.clear();
+        this.pendingBlobs.clear();
 
         this.loadedChunks.forEach(this.removeChunkLoader);
         this.loadedChunks.clear();
-    }
-
-    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
-    private static class AroundPlayerChunkComparator implements LongComparator {
-        private final CloudPlayer player;
-
-        public static int distance(int centerX, int centerZ, int x, int z) {
-            int dx = centerX - x;
-            int dz = centerZ - z;
-            return dx * dx + dz * dz;
-        }
-
-        @Override
-        public int compare(long o1, long o2) {
-            int x1 = CloudChunk.fromKeyX(o1);
-            int z1 = CloudChunk.fromKeyZ(o1);
-            int x2 = CloudChunk.fromKeyX(o2);
-            int z2 = CloudChunk.fromKeyZ(o2);
-            int spawnX = this.player.getPosition().getFloorX() >> 4;
-            int spawnZ = this.player.getPosition().getFloorZ() >> 4;
-
-            return Integer.compare(distance(spawnX, spawnZ, x1, z1), distance(spawnX, spawnZ, x2, z2));
-        }
+        this.requeuedChunks.clear();
+        this.tracking = false;
     }
 }
@@ -478,6 +478,7 @@ public class CommandRegistry implements Registry {
         this.registerInternal("gc", new GarbageCollectorCommand());
         this.registerInternal("help", new HelpCommand());
         this.registerInternal("plugins", new PluginsCommand());
+        this.registerInternal("pregenerate", new PregenerateCommand());
         this.registerInternal("save-all", new SaveCommand());
         this.registerInternal("save-off", new SaveOffCommand());
         this.registerInternal("save-on", new SaveOnCommand());
@@ -0,0 +1,170 @@
+package org.cloudburstmc.server.scheduler;
+
+import co.aikar.timings.Timing;
+import co.aikar.timings.Timings;
+import lombok.extern.log4j.Log4j2;
+import org.cloudburstmc.server.CloudServer;
+import org.cloudburstmc.server.level.CloudLevel;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.player.CloudPlayer;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Saves players and chunks a few per tick instead of all at once, so an autosave doesn't stall the tick it happens in.
+ * <p>
+ * Each autosave queues the online players and the loaded chunks of all levels which have something to save, which are
+ * then saved over the first half of the autosave interval. A tick saves its share of the queue but stops once it took longer than the budget,
+ * the rest is left to the following ticks. Chunks are only snapshotted on the main thread, the provider serializes and
+ * writes them on the I/O executor.
+ */
+@Log4j2
+public class AutoSaveScheduler {
+
+    private final CloudServer server;
+    private final long budgetNanos;
+    private final Set<CloudPlayer> players = new LinkedHashSet<>();
+    private final Set<CloudChunk> chunks = new LinkedHashSet<>();
+    private int savesPerTick = 1;
+    private long cycleStartNanos;
+    private boolean cycleRunning;
+
+    private final LongAdder saved = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private volatile long lastCycleNanos;
+
+    /**
+     * @param budgetMillis time a tick may spend saving, in milliseconds
+     */
+    public AutoSaveScheduler(CloudServer server, int budgetMillis) {
+        this.server = server;
+        this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, budgetMillis));
+    }
+
+    /**
+     * Queues everything to be saved, saving the level data right away.
+     *
+     * @param intervalTicks ticks until the next autosave
+     */
+    public void start(int intervalTicks) {
+        this.players.addAll(this.server.getOnlinePlayers().values());
+        int loaded = 0;
+        for (CloudLevel level : this.server.getLevels()) {
+            if (level.getAutoSave()) {
+                level.saveLevelData();
+                for (CloudChunk chunk : level.getChunks()) {
+                    loaded++;
+                    if (needsSave(level, chunk)) {
+                        this.chunks.add(chunk);
+                    }
+                }
+            }
+        }
+
+        int queued = this.getBacklog();
+        this.savesPerTick = Math.max(1, (queued * 2 + intervalTicks - 1) / Math.max(1, intervalTicks));
+        if (!this.cycleRunning) {
+            this.cycleRunning = true;
+            this.cycleStartNanos = System.nanoTime();
+        }
+        log.debug("Autosave queued {} players and {} of {} loaded chunks, saving {} per tick", this.players.size(),
+                this.chunks.size(), loaded, this.savesPerTick);
+    }
+
+    public void tick() {
+        if (!this.cycleRunning) {
+            return;
+        }
+        if (this.players.isEmpty() && this.chunks.isEmpty()) {
+            this.cycleRunning = false;
+            this.lastCycleNanos = System.nanoTime() - this.cycleStartNanos;
+            return;
+        }
+
+        try (Timing ignored = Timings.levelSaveTimer.startTiming()) {
+            long start = System.nanoTime();
+            int saves = 0;
+            while (saves < this.savesPerTick && System.nanoTime() - start < this.budgetNanos) {
+                if (!this.players.isEmpty()) {
+                    this.savePlayer(poll(this.players));
+                } else if (!this.chunks.isEmpty()) {
+                    this.saveChunk(poll(this.chunks));
+                } else {
+                    break;
+                }
+                saves++;
+            }
+        }
+    }
+
+    /**
+     * Whether the chunk was changed or may have block updates which differ from the saved ones.
+     */
+    private static boolean needsSave(CloudLevel level, CloudChunk chunk) {
+        return chunk.isDirty() || !chunk.getPendingUpdates().isEmpty() || level.hasPendingBlockUpdates(chunk);
+    }
+
+    private static <T> T poll(Set<T> set) {
+        Iterator<T> iterator = set.iterator();
+        T next = iterator.next();
+        iterator.remove();
+        return next;
+    }
+
+    private void savePlayer(CloudPlayer player) {
+        if (player.isOnline()) {
+            player.save(true);
+        }
+    }
+
+    private void saveChunk(CloudChunk chunk) {
+        CloudLevel level = (CloudLevel) chunk.getLevel();
+        // Unloading saved the chunk already
+        if (!level.getAutoSave() || level.getLoadedChunk(chunk.getX(), chunk.getZ()) != chunk) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> future = level.saveChunk(chunk);
+        if (!future.isDone()) { // Clean chunks aren't written
+            future.whenComplete((aVoid, throwable) -> {
+                this.saved.increment();
+                this.latencyNanos.add(System.nanoTime() - start);
+            });
+        }
+    }
+
+    /**
+     * @return players and chunks waiting to be saved
+     */
+    public int getBacklog() {
+        return this.players.size() + this.chunks.size();
+    }
+
+    /**
+     * @return chunks written by autosaves
+     */
+    public long getSaved() {
+        return this.saved.sum();
+    }
+
+    /**
+     * @return average time from a chunk being saved until it was written, in nanoseconds
+     */
+    public long getAverageLatencyNanos() {
+        long saved = this.saved.sum();
+        return saved == 0 ? 0 : this.latencyNanos.sum() / saved;
+    }
+
+    /**
+     * @return time the last autosave took to go through its queue, in nanoseconds
+     */
+    public long getLastCycleNanos() {
+        return this.lastCycleNanos;
+    }
+}
@@ -1,94 +1,195 @@
 package org.cloudburstmc.server.scheduler;
 
-import com.google.common.collect.Maps;
 import com.nukkitx.math.vector.Vector3i;
 import com.nukkitx.math.vector.Vector4i;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import lombok.extern.log4j.Log4j2;
 import org.cloudburstmc.api.block.Block;
 import org.cloudburstmc.api.block.BlockStates;
 import org.cloudburstmc.api.util.AxisAlignedBB;
 import org.cloudburstmc.server.level.CloudLevel;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
 import org.cloudburstmc.server.utils.BlockUpdateEntry;
 
 import java.util.*;
 
+/**
+ * Scheduled block updates of a level, kept in a hierarchical timing wheel.
+ * <p>
+ * The first wheel has one slot per tick for the next 256 ticks, the next two wheels have 64 slots of 256 and 16384
+ * ticks each, which are moved down a wheel when the current tick reaches them. Updates more than 2^20 ticks (about
+ * 14.5 hours) ahead wait in an overflow list. Every update is also indexed by its position and by its chunk, so
+ * lookups and cancels don't depend on the number of scheduled updates and a chunk's updates can be taken out when it
+ * is saved or unloaded.
+ */
 @Log4j2
 public class BlockUpdateScheduler {
+
+    private static final int[] WHEEL_SHIFTS = {0, 8, 14};
+    private static final int[] WHEEL_SIZES = {256, 64, 64};
+    private static final int SPAN_BITS = 20;
+    private static final int OVERFLOW = WHEEL_SHIFTS.length;
+
     private final CloudLevel level;
     private long lastTick;
-    private Map<Long, LinkedHashSet<BlockUpdateEntry>> queuedUpdates;
+
+    // Per wheel slot lists, the overflow list is the only slot of the last "wheel"
+    private final Node[][] heads = new Node[OVERFLOW + 1][];
+    private final Node[][] tails = new Node[OVERFLOW + 1][];
+    private final Long2ObjectMap<Node> byPosition = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<Node> byChunk = new Long2ObjectOpenHashMap<>();
+    private int size;
 
     private Set<BlockUpdateEntry> pendingUpdates;
 
     public BlockUpdateScheduler(CloudLevel level, long currentTick) {
-        queuedUpdates = Maps.newHashMap(); // Change to ConcurrentHashMap if this needs to be concurrent
+        for (int wheel = 0; wheel < OVERFLOW; wheel++) {
+            this.heads[wheel] = new Node[WHEEL_SIZES[wheel]];
+            this.tails[wheel] = new Node[WHEEL_SIZES[wheel]];
+        }
+        this.heads[OVERFLOW] = new Node[1];
+        this.tails[OVERFLOW] = new Node[1];
         lastTick = currentTick;
         this.level = level;
     }
 
     public synchronized void tick(long currentTick) {
-        // Should only perform once, unless ticks were skipped
-        if (currentTick - lastTick < Short.MAX_VALUE) {// Arbitrary
+        if (currentTick - lastTick < 1L << SPAN_BITS) {
+            // Should only perform once, unless ticks were skipped
             for (long tick = lastTick + 1; tick <= currentTick; tick++) {
-                perform(tick);
+                advance(tick);
             }
         } else {
-            ArrayList<Long> times = new ArrayList<>(queuedUpdates.keySet());
-            Collections.sort(times);
-            for (long tick : times) {
-                if (tick <= currentTick) {
-                    perform(tick);
-                } else {
-                    break;
+            this.skip(currentTick);
+        }
+        lastTick = currentTick;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    private void advance(long tick) {
+        lastTick = tick;
+        if ((tick & (WHEEL_SIZES[0] - 1)) == 0) {
+            // Higher wheels first, so their updates can still end up in a lower wheel slot for this tick
+            if ((tick & ((1L << SPAN_BITS) - 1)) == 0) {
+                this.cascade(OVERFLOW, 0);
+            }
+            for (int wheel = OVERFLOW - 1; wheel > 0; wheel--) {
+                if ((tick & ((1L << WHEEL_SHIFTS[wheel]) - 1)) == 0) {
+                    this.cascade(wheel, this.slot(wheel, tick));
                 }
             }
         }
+        perform(this.slot(0, tick));
+    }
+
+    /**
+     * Runs everything due by the given tick in order and rebuilds the wheels, for when too many ticks were skipped
+     * to advance one by one.
+     */
+    private void skip(long currentTick) {
+        List<Node> nodes = new ArrayList<>(this.size);
+        for (int wheel = 0; wheel <= OVERFLOW; wheel++) {
+            for (int slot = 0; slot < this.heads[wheel].length; slot++) {
+                for (Node node = this.heads[wheel][slot]; node != null; node = node.next) {
+                    nodes.add(node);
+                }
+                this.heads[wheel][slot] = null;
+                this.tails[wheel][slot] = null;
+            }
+        }
+        nodes.sort(Comparator.comparingLong(node -> node.tick));
+
         lastTick = currentTick;
+        // Due updates go to the current tick slot and are performed in order, the rest is placed as usual
+        for (Node node : nodes) {
+            if (node.tick <= currentTick) {
+                this.link(node, 0, this.slot(0, currentTick));
+            } else {
+                int wheel = this.wheel(node.tick);
+                this.link(node, wheel, this.slot(wheel, node.tick));
+            }
+        }
+        perform(this.slot(0, currentTick));
     }
 
-    private void perform(long tick) {
-        try {
-            lastTick = tick;
-            Set<BlockUpdateEntry> updates = pendingUpdates = queuedUpdates.remove(tick);
-            if (updates != null) {
-                for (BlockUpdateEntry entry : updates) {
-                    Vector3i pos = entry.pos;
-                    if (level.isChunkLoaded(pos.getX() >> 4, pos.getZ() >> 4)) {
-                        Block block = level.getBlock(entry.pos);
-                        var state = block.getState();
-                        var extra = block.getExtra();
-
-                        if (entry.block.getState() == state) {
-                            state.getBehavior().onUpdate(block, CloudLevel.BLOCK_UPDATE_SCHEDULED);
-                        }
+    private void cascade(int wheel, int slot) {
+        Node node = this.heads[wheel][slot];
+        this.heads[wheel][slot] = null;
+        this.tails[wheel][slot] = null;
+        while (node != null) {
+            Node next = node.next;
+            int target = this.wheel(node.tick);
+            this.link(node, target, this.slot(target, node.tick));
+            node = next;
+        }
+    }
 
-                        if (entry.block.getExtra() == extra && extra != BlockStates.AIR) {
-                            extra.getBehavior().onUpdate(block, CloudLevel.BLOCK_UPDATE_SCHEDULED);
-                        }
-                    } else {
-                        level.scheduleUpdate(entry.block, entry.pos, 0);
-                    }
-                }
+    private void perform(int slot) {
+        if (this.heads[0][slot] == null) {
+            return;
+        }
+        Set<BlockUpdateEntry> updates = pendingUpdates = new ObjectOpenHashSet<>();
+        try {
+            // Updates may cancel others of the same tick, so they are taken off one at a time
+            Node node;
+            while ((node = this.heads[0][slot]) != null) {
+                this.unschedule(node);
+                BlockUpdateEntry entry = node.entry;
+                updates.add(entry);
+                this.update(entry);
             }
         } finally {
             pendingUpdates = null;
         }
     }
 
-    public Set<BlockUpdateEntry> getPendingBlockUpdates(AxisAlignedBB boundingBox) {
+    /**
+     * Runs a due update, unless its chunk isn't loaded or the block it was scheduled for has changed.
+     */
+    void update(BlockUpdateEntry entry) {
+        Vector3i pos = entry.pos;
+        if (!level.isChunkLoaded(pos.getX() >> 4, pos.getZ() >> 4)) {
+            // Updates are saved and cancelled with their chunk, this one was left in an area that isn't loaded
+            return;
+        }
+
+        Block block = level.getBlock(entry.pos);
+        var state = block.getState();
+        var extra = block.getExtra();
+
+        if (entry.block.getState() == state) {
+            state.getBehavior().onUpdate(block, CloudLevel.BLOCK_UPDATE_SCHEDULED);
+        }
+
+        if (entry.block.getExtra() == extra && extra != BlockStates.AIR) {
+            extra.getBehavior().onUpdate(block, CloudLevel.BLOCK_UPDATE_SCHEDULED);
+        }
+    }
+
+    public synchronized Set<BlockUpdateEntry> getPendingBlockUpdates(AxisAlignedBB boundingBox) {
         Set<BlockUpdateEntry> set = null;
 
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickEntries : this.queuedUpdates.entrySet()) {
-            LinkedHashSet<BlockUpdateEntry> tickSet = tickEntries.getValue();
-            for (BlockUpdateEntry update : tickSet) {
-                Vector3i pos = update.pos;
+        int minChunkX = (int) Math.floor(boundingBox.getMinX()) >> 4;
+        int minChunkZ = (int) Math.floor(boundingBox.getMinZ()) >> 4;
+        int maxChunkX = (int) Math.ceil(boundingBox.getMaxX()) >> 4;
+        int maxChunkZ = (int) Math.ceil(boundingBox.getMaxZ()) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                for (Node node = this.byChunk.get(CloudChunk.key(chunkX, chunkZ)); node != null; node = node.chunkNext) {
+                    Vector3i pos = node.entry.pos;
 
-                if (pos.getX() >= boundingBox.getMinX() && pos.getX() < boundingBox.getMaxX() && pos.getZ() >= boundingBox.getMinZ() && pos.getZ() < boundingBox.getMaxZ()) {
-                    if (set == null) {
-                        set = new LinkedHashSet<>();
-                    }
+                    if (pos.getX() >= boundingBox.getMinX() && pos.getX() < boundingBox.getMaxX() && pos.getZ() >= boundingBox.getMinZ() && pos.getZ() < boundingBox.getMaxZ()) {
+                        if (set == null) {
+                            set = new LinkedHashSet<>();
+                        }
 
-                    set.add(update);
+                        set.add(node.entry);
+                    }
                 }
             }
         }
@@ -96,6 +197,36 @@ public class BlockUpdateScheduler {
         return set;
     }
 
+    /**
+     * @return the updates scheduled in the given chunk, due ticks are kept in {@link BlockUpdateEntry#delay}
+     */
+    public synchronized List<BlockUpdateEntry> getPendingBlockUpdates(int chunkX, int chunkZ) {
+        List<BlockUpdateEntry> updates = new ArrayList<>();
+        for (Node node = this.byChunk.get(CloudChunk.key(chunkX, chunkZ)); node != null; node = node.chunkNext) {
+            updates.add(node.entry);
+        }
+        return updates;
+    }
+
+    public synchronized boolean hasPendingBlockUpdates(int chunkX, int chunkZ) {
+        return this.byChunk.containsKey(CloudChunk.key(chunkX, chunkZ));
+    }
+
+    /**
+     * Cancels all updates scheduled in the given chunk, once it has been unloaded.
+     *
+     * @return number of cancelled updates
+     */
+    public synchronized int removeChunk(int chunkX, int chunkZ) {
+        int removed = 0;
+        Node node;
+        while ((node = this.byChunk.get(CloudChunk.key(chunkX, chunkZ))) != null) {
+            this.unschedule(node);
+            removed++;
+        }
+        return removed;
+    }
+
     public boolean isBlockTickPending(Vector3i pos, Block blockState) {
         Set<BlockUpdateEntry> tmpUpdates = pendingUpdates;
         if (tmpUpdates == null || tmpUpdates.isEmpty()) return false;
@@ -106,40 +237,180 @@ public class BlockUpdateScheduler {
         return Math.max(entry.delay, lastTick + 1);
     }
 
-    public void add(BlockUpdateEntry entry) {
+    /**
+     * Schedules the update unless an equal one is already scheduled.
+     *
+     * @return whether the update was added
+     */
+    public synchronized boolean add(BlockUpdateEntry entry) {
+        long posKey = positionKey(entry.pos);
+        Node first = this.byPosition.get(posKey);
+        if (find(first, entry) != null) {
+            return false;
+        }
+
         long time = getMinTime(entry);
-        LinkedHashSet<BlockUpdateEntry> updateSet = queuedUpdates.get(time);
-        if (updateSet == null) {
-            LinkedHashSet<BlockUpdateEntry> tmp = queuedUpdates.putIfAbsent(time, updateSet = new LinkedHashSet<>());
-            if (tmp != null) updateSet = tmp;
+        Node node = new Node(entry, time, posKey, CloudChunk.key(entry.pos.getX() >> 4, entry.pos.getZ() >> 4));
+        node.nextAtPos = first;
+        this.byPosition.put(posKey, node);
+
+        Node chunkHead = this.byChunk.put(node.chunkKey, node);
+        if (chunkHead != null) {
+            chunkHead.chunkPrev = node;
+            node.chunkNext = chunkHead;
+        }
+
+        int wheel = this.wheel(time);
+        this.link(node, wheel, this.slot(wheel, time));
+        this.size++;
+        return true;
+    }
+
+    public synchronized boolean contains(BlockUpdateEntry entry) {
+        return find(this.byPosition.get(positionKey(entry.pos)), entry) != null;
+    }
+
+    public synchronized boolean remove(BlockUpdateEntry entry) {
+        Node node = find(this.byPosition.get(positionKey(entry.pos)), entry);
+        if (node == null) {
+            return false;
         }
-        updateSet.add(entry);
+        this.unschedule(node);
+        return true;
     }
 
-    public boolean contains(BlockUpdateEntry entry) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().contains(entry)) {
-                return true;
+    /**
+     * Cancels every update at the given position, whatever block it was scheduled for.
+     */
+    public synchronized boolean remove(Vector4i pos) {
+        long posKey = positionKey(pos.getX(), pos.getY(), pos.getZ());
+        Node node = this.byPosition.get(posKey);
+        if (node == null) {
+            return false;
+        }
+        for (; node != null; node = node.nextAtPos) {
+            this.unschedule(node);
+        }
+        return true;
+    }
+
+    private void unschedule(Node node) {
+        this.unlink(node);
+
+        // Position chain
+        Node first = this.byPosition.get(node.posKey);
+        if (first == node) {
+            if (node.nextAtPos == null) {
+                this.byPosition.remove(node.posKey);
+            } else {
+                this.byPosition.put(node.posKey, node.nextAtPos);
+            }
+        } else {
+            Node previous = first;
+            while (previous.nextAtPos != node) {
+                previous = previous.nextAtPos;
             }
+            previous.nextAtPos = node.nextAtPos;
+        }
+
+        // Chunk list
+        if (node.chunkPrev == null) {
+            if (node.chunkNext == null) {
+                this.byChunk.remove(node.chunkKey);
+            } else {
+                this.byChunk.put(node.chunkKey, node.chunkNext);
+            }
+        } else {
+            node.chunkPrev.chunkNext = node.chunkNext;
+        }
+        if (node.chunkNext != null) {
+            node.chunkNext.chunkPrev = node.chunkPrev;
         }
-        return false;
+        this.size--;
     }
 
-    public boolean remove(BlockUpdateEntry entry) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().remove(entry)) {
-                return true;
+    private int wheel(long time) {
+        long delta = time - lastTick;
+        for (int wheel = 0; wheel < OVERFLOW - 1; wheel++) {
+            if (delta < 1L << WHEEL_SHIFTS[wheel + 1]) {
+                return wheel;
             }
         }
-        return false;
+        return delta < 1L << SPAN_BITS ? OVERFLOW - 1 : OVERFLOW;
     }
 
-    public boolean remove(Vector4i pos) {
-        for (Map.Entry<Long, LinkedHashSet<BlockUpdateEntry>> tickUpdateSet : queuedUpdates.entrySet()) {
-            if (tickUpdateSet.getValue().remove(pos)) {
-                return true;
+    private int slot(int wheel, long time) {
+        if (wheel == OVERFLOW) {
+            return 0;
+        }
+        return (int) (time >> WHEEL_SHIFTS[wheel]) & (WHEEL_SIZES[wheel] - 1);
+    }
+
+    private void link(Node node, int wheel, int slot) {
+        node.wheel = wheel;
+        node.slot = slot;
+        node.next = null;
+        Node tail = this.tails[wheel][slot];
+        node.prev = tail;
+        if (tail == null) {
+            this.heads[wheel][slot] = node;
+        } else {
+            tail.next = node;
+        }
+        this.tails[wheel][slot] = node;
+    }
+
+    private void unlink(Node node) {
+        if (node.prev == null) {
+            this.heads[node.wheel][node.slot] = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            this.tails[node.wheel][node.slot] = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static Node find(Node node, BlockUpdateEntry entry) {
+        for (; node != null; node = node.nextAtPos) {
+            if (node.entry.equals(entry)) {
+                return node;
             }
         }
-        return false;
+        return null;
+    }
+
+    private static long positionKey(Vector3i pos) {
+        return positionKey(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    private static long positionKey(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFF) << 38 | ((long) z & 0x3FFFFFF) << 12 | (y & 0xFFF);
+    }
+
+    private static final class Node {
+        private final BlockUpdateEntry entry;
+        private final long tick;
+        private final long posKey;
+        private final long chunkKey;
+
+        private int wheel;
+        private int slot;
+        private Node prev;
+        private Node next;
+        private Node chunkPrev;
+        private Node chunkNext;
+        private Node nextAtPos;
+
+        private Node(BlockUpdateEntry entry, long tick, long posKey, long chunkKey) {
+            this.entry = entry;
+            this.tick = tick;
+            this.posKey = posKey;
+            this.chunkKey = chunkKey;
+        }
     }
 }
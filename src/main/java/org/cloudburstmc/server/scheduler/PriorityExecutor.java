@@ -0,0 +1,170 @@
+package org.cloudburstmc.server.scheduler;
+
+import co.aikar.timings.Timing;
+import co.aikar.timings.TimingsManager;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named thread pool of a fixed size which runs the queued task with the lowest priority value first, and tasks of the
+ * same priority in submission order.
+ * <p>
+ * The time tasks wait in the queue and take to run is reported to timings by the main thread.
+ */
+public class PriorityExecutor implements Executor {
+
+    /**
+     * Work for chunks near players, their distance in chunks is added so the closest go first.
+     */
+    public static final int PRIORITY_NEAR = 0;
+    public static final int PRIORITY_DEFAULT = 64;
+    /**
+     * Work nobody waits for, like pre-generation.
+     */
+    public static final int PRIORITY_BACKGROUND = 128;
+
+    private final String name;
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    // Totals up to the last report, only touched by the main thread
+    private long reportedCompleted;
+    private long reportedWaitNanos;
+    private long reportedRunNanos;
+    private Timing waitTiming;
+    private Timing runTiming;
+
+    public PriorityExecutor(String name, int threads) {
+        this.name = name;
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat(name + " Thread - #%d")
+                        .setDaemon(true)
+                        .setUncaughtExceptionHandler(new ServerScheduler.ExceptionHandler())
+                        .build());
+    }
+
+    /**
+     * @return the executor, running tasks at the given priority if it is a priority executor
+     */
+    public static Executor withPriority(Executor executor, int priority) {
+        if (executor instanceof PriorityExecutor) {
+            return ((PriorityExecutor) executor).withPriority(priority);
+        }
+        return executor;
+    }
+
+    /**
+     * @return how many tasks the executor runs at once, 1 if that is unknown
+     */
+    public static int getParallelism(Executor executor) {
+        if (executor instanceof PriorityExecutor) {
+            return ((PriorityExecutor) executor).getThreads();
+        } else if (executor instanceof ForkJoinPool) {
+            return ((ForkJoinPool) executor).getParallelism();
+        } else if (executor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) executor).getMaximumPoolSize();
+        }
+        return 1;
+    }
+
+    public Executor withPriority(int priority) {
+        return task -> this.execute(task, priority);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        this.execute(task, PRIORITY_DEFAULT);
+    }
+
+    public void execute(Runnable task, int priority) {
+        this.pool.execute(new Task(task, priority, this.sequence.getAndIncrement()));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return this.pool.getMaximumPoolSize();
+    }
+
+    public int getQueueSize() {
+        return this.pool.getQueue().size();
+    }
+
+    public long getCompleted() {
+        return this.completed.sum();
+    }
+
+    /**
+     * Adds the wait and run times of the tasks completed since the last call to timings. Called by the main thread.
+     */
+    void reportTimings() {
+        long completed = this.completed.sum();
+        int count = (int) (completed - this.reportedCompleted);
+        if (count == 0) {
+            return;
+        }
+        long waitNanos = this.waitNanos.sum();
+        long runNanos = this.runNanos.sum();
+        if (this.waitTiming == null) {
+            this.waitTiming = TimingsManager.getTiming("## Executor - " + this.name + " - Queue Wait");
+            this.runTiming = TimingsManager.getTiming("## Executor - " + this.name + " - Run");
+        }
+        this.waitTiming.addSamples(count, waitNanos - this.reportedWaitNanos);
+        this.runTiming.addSamples(count, runNanos - this.reportedRunNanos);
+        this.reportedCompleted = completed;
+        this.reportedWaitNanos = waitNanos;
+        this.reportedRunNanos = runNanos;
+    }
+
+    /**
+     * Runs the queued tasks and waits for them to finish, up to the timeout.
+     */
+    void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        this.pool.shutdown();
+        this.pool.awaitTermination(timeout, unit);
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+        private final Runnable task;
+        private final int priority;
+        private final long sequence;
+        private final long queuedNanos = System.nanoTime();
+
+        private Task(Runnable task, int priority, long sequence) {
+            this.task = task;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            PriorityExecutor.this.waitNanos.add(start - this.queuedNanos);
+            try {
+                this.task.run();
+            } finally {
+                PriorityExecutor.this.runNanos.add(System.nanoTime() - start);
+                PriorityExecutor.this.completed.increment();
+            }
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int compare = Integer.compare(this.priority, other.priority);
+            return compare != 0 ? compare : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
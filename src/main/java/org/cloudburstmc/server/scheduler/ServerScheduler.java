@@ -10,11 +10,15 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -28,6 +32,10 @@ public class ServerScheduler {
 
     private final PluginManager pluginManager;
     private final ForkJoinPool asyncPool;
+    private PriorityExecutor ioExecutor;
+    private PriorityExecutor generationExecutor;
+    private PriorityExecutor networkExecutor;
+    private PriorityExecutor loginExecutor;
 
     private final Queue<TaskHandler> pending;
     private final Map<Integer, ArrayDeque<TaskHandler>> queueMap;
@@ -95,10 +103,75 @@ public class ServerScheduler {
         return asyncPool.getPoolSize();
     }
 
+    /**
+     * Pool of plugin async tasks.
+     */
     public ForkJoinPool getAsyncPool() {
         return asyncPool;
     }
 
+    /**
+     * Creates the executors for chunk I/O, level generation, network encoding and login verification, so none of them
+     * can starve the others or plugin async tasks. Worker counts below 1 are picked from the available processors.
+     */
+    public void initExecutors(int ioWorkers, int generationWorkers, int networkWorkers, int loginWorkers) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.ioExecutor = new PriorityExecutor("Chunk I/O", ioWorkers > 0 ? ioWorkers : 2);
+        this.generationExecutor = new PriorityExecutor("Level Generation",
+                generationWorkers > 0 ? generationWorkers : Math.max(1, processors - 1));
+        this.networkExecutor = new PriorityExecutor("Network Encoding",
+                networkWorkers > 0 ? networkWorkers : Math.max(1, processors / 4));
+        this.loginExecutor = new PriorityExecutor("Login Verification",
+                loginWorkers > 0 ? loginWorkers : Math.max(1, processors / 4));
+    }
+
+    /**
+     * Executor for level storage reads and writes.
+     */
+    public PriorityExecutor getIoExecutor() {
+        return ioExecutor;
+    }
+
+    /**
+     * Executor for chunk generation, population and lighting.
+     */
+    public PriorityExecutor getGenerationExecutor() {
+        return generationExecutor;
+    }
+
+    /**
+     * Executor for encoding chunk packets.
+     */
+    public PriorityExecutor getNetworkExecutor() {
+        return networkExecutor;
+    }
+
+    /**
+     * Executor for decoding and verifying login chains.
+     */
+    public PriorityExecutor getLoginExecutor() {
+        return loginExecutor;
+    }
+
+    public List<PriorityExecutor> getExecutors() {
+        return this.ioExecutor == null ? Collections.emptyList() :
+                Arrays.asList(this.ioExecutor, this.generationExecutor, this.networkExecutor, this.loginExecutor);
+    }
+
+    /**
+     * Lets the executors finish their queued tasks, like chunk saves, and stops them.
+     */
+    public void shutdownExecutors() {
+        for (PriorityExecutor executor : this.getExecutors()) {
+            try {
+                executor.shutdown(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
     public TaskHandler scheduleDelayedTask(Task task, int delay) {
         return this.addTask(task, delay, 0, false);
     }
@@ -285,6 +358,9 @@ public class ServerScheduler {
         }
         this.currentTick = currentTick;
         AsyncTask.collectTask();
+        for (PriorityExecutor executor : this.getExecutors()) {
+            executor.reportTimings();
+        }
     }
 
     private void runTasks(int currentTick) {
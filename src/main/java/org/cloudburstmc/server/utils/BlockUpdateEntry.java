@@ -47,7 +47,9 @@ public class BlockUpdateEntry implements Comparable<BlockUpdateEntry> {
             return false;
         } else {
             BlockUpdateEntry entry = (BlockUpdateEntry) object;
-            return this.pos.equals(entry.pos) && this.block == entry.block;
+            // Blocks are created on every lookup, the scheduled states tell updates apart
+            return this.pos.equals(entry.pos) && this.block.getState() == entry.block.getState() &&
+                    this.block.getExtra() == entry.block.getExtra();
         }
     }
 
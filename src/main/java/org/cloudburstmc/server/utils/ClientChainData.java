@@ -2,7 +2,8 @@ package org.cloudburstmc.server.utils;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.nimbusds.jose.JOSEException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.nimbusds.jose.JWSObject;
 import com.nimbusds.jose.crypto.ECDSAVerifier;
 import com.nukkitx.protocol.bedrock.data.skin.SerializedSkin;
@@ -23,6 +24,7 @@ import java.security.interfaces.ECPublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * ClientChainData is a container of chain data sent from clients.
@@ -42,6 +44,11 @@ public final class ClientChainData implements LoginChainData {
             "MHYwEAYHKoZIzj0CAQYFK4EEACIDYgAE8ELkixyLcwlZryUQcu1TvPOmI2B7vX83ndnWRUaXm74wFfa5f/lwQNTfrLVHa2PmenpGI6JhIMUJaWZrjmMj90NoKNFSNBuKdm8rYiXsfaz3K36x/1U26HpG0ZxK/V1V";
     private static final PublicKey MOJANG_PUBLIC_KEY;
 
+    private static final Cache<String, VerifiedToken> VERIFIED_TOKENS = CacheBuilder.newBuilder()
+            .maximumSize(4096)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
     private static final TypeReference<Map<String, List<String>>> MAP_TYPE_REFERENCE =
             new TypeReference<Map<String, List<String>>>() {
             };
@@ -211,10 +218,6 @@ public final class ClientChainData implements LoginChainData {
         return xboxAuthed;
     }
 
-    private boolean verify(ECPublicKey key, JWSObject object) throws JOSEException {
-        return object.verify(new ECDSAVerifier(key));
-    }
-
     private JsonNode decodeToken(String token) {
         String[] base = token.split("\\.");
         if (base.length < 2) throw new IllegalArgumentException("Invalid token length");
@@ -267,22 +270,15 @@ public final class ClientChainData implements LoginChainData {
         boolean mojangKeyVerified = false;
         Iterator<String> iterator = chains.iterator();
         while (iterator.hasNext()) {
-            JWSObject jws = JWSObject.parse(iterator.next());
-
-            URI x5u = jws.getHeader().getX509CertURL();
-            if (x5u == null) {
+            VerifiedToken token = verifyToken(iterator.next());
+            if (token == null) {
                 return false;
             }
 
-            ECPublicKey expectedKey = generateKey(x5u.toString());
             // First key is self-signed
             if (lastKey == null) {
-                lastKey = expectedKey;
-            } else if (!lastKey.equals(expectedKey)) {
-                return false;
-            }
-
-            if (!verify(lastKey, jws)) {
+                lastKey = token.signerKey;
+            } else if (!lastKey.equals(token.signerKey)) {
                 return false;
             }
 
@@ -294,16 +290,53 @@ public final class ClientChainData implements LoginChainData {
                 mojangKeyVerified = true;
             }
 
-            Map<String, Object> payload = jws.getPayload().toJSONObject();
-            Object base64key = payload.get("identityPublicKey");
-            if (!(base64key instanceof String)) {
+            if (token.identityPublicKey == null) {
                 throw new RuntimeException("No key found");
             }
-            lastKey = generateKey((String) base64key);
+            lastKey = token.identityPublicKey;
         }
         return mojangKeyVerified;
     }
 
+    /**
+     * Checks the signature of the token against the key in its header. Clients send the same chain again when they
+     * reconnect, so verified tokens are cached and their signatures only checked once.
+     *
+     * @return key the token was signed with and the key it vouches for, null if the signature is invalid
+     */
+    private static VerifiedToken verifyToken(String token) throws Exception {
+        VerifiedToken verified = VERIFIED_TOKENS.getIfPresent(token);
+        if (verified != null) {
+            return verified;
+        }
+
+        JWSObject jws = JWSObject.parse(token);
+        URI x5u = jws.getHeader().getX509CertURL();
+        if (x5u == null) {
+            return null;
+        }
+
+        ECPublicKey signerKey = generateKey(x5u.toString());
+        if (!jws.verify(new ECDSAVerifier(signerKey))) {
+            return null;
+        }
+
+        Object base64key = jws.getPayload().toJSONObject().get("identityPublicKey");
+        verified = new VerifiedToken(signerKey, base64key instanceof String ? generateKey((String) base64key) : null);
+        VERIFIED_TOKENS.put(token, verified);
+        return verified;
+    }
+
+    private static class VerifiedToken {
+        private final ECPublicKey signerKey;
+        private final ECPublicKey identityPublicKey;
+
+        private VerifiedToken(ECPublicKey signerKey, ECPublicKey identityPublicKey) {
+            this.signerKey = signerKey;
+            this.identityPublicKey = identityPublicKey;
+        }
+    }
+
     @Override
     public Skin getSkin() {
         return skin;
@@ -233,4 +233,25 @@ public final class VarInt {
     public static void writeUnsignedVarLong(OutputStream buffer, long value) throws IOException {
         write(buffer, value);
     }
-}
\ No newline at end of file
+
+    /**
+     * @param value Signed int
+     * @return number of bytes {@link #writeVarInt(ByteBuf, int)} writes for the value
+     */
+    public static int sizeOfVarInt(int value) {
+        return sizeOfUnsignedVarInt(encodeZigZag32(value));
+    }
+
+    /**
+     * @param value Unsigned int or long
+     * @return number of bytes {@link #writeUnsignedVarInt(ByteBuf, long)} writes for the value
+     */
+    public static int sizeOfUnsignedVarInt(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,94 @@
+package org.cloudburstmc.server.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Pure Java implementation of the 64 bit xxHash algorithm as used by the Bedrock client blob cache.
+ */
+public final class XXHash64 {
+
+    private static final VarHandle LONG_HANDLE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_HANDLE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private XXHash64() {
+    }
+
+    public static long hash(byte[] data) {
+        return hash(data, 0, data.length, 0);
+    }
+
+    public static long hash(byte[] data, int offset, int length, long seed) {
+        int end = offset + length;
+        long hash;
+
+        if (length >= 32) {
+            int limit = end - 32;
+            long v1 = seed + PRIME64_1 + PRIME64_2;
+            long v2 = seed + PRIME64_2;
+            long v3 = seed;
+            long v4 = seed - PRIME64_1;
+
+            do {
+                v1 = round(v1, (long) LONG_HANDLE.get(data, offset));
+                v2 = round(v2, (long) LONG_HANDLE.get(data, offset + 8));
+                v3 = round(v3, (long) LONG_HANDLE.get(data, offset + 16));
+                v4 = round(v4, (long) LONG_HANDLE.get(data, offset + 24));
+                offset += 32;
+            } while (offset <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME64_5;
+        }
+
+        hash += length;
+
+        while (offset + 8 <= end) {
+            hash ^= round(0, (long) LONG_HANDLE.get(data, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+            offset += 8;
+        }
+
+        if (offset + 4 <= end) {
+            hash ^= ((int) INT_HANDLE.get(data, offset) & 0xFFFFFFFFL) * PRIME64_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+            offset += 4;
+        }
+
+        while (offset < end) {
+            hash ^= (data[offset] & 0xFF) * PRIME64_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME64_1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME64_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME64_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+}
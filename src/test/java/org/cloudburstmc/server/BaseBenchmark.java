@@ -0,0 +1,36 @@
+package org.cloudburstmc.server;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared JMH settings of the benchmarks, which only declare their own scenario and override the output time unit
+ * where it doesn't fit.
+ * <p>
+ * Run {@link #main(String[])} with the simple names of the benchmarks to run, or none to run all of them, to include
+ * the GC profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class BaseBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        if (args.length == 0) {
+            options.include("Benchmark");
+        }
+        for (String benchmark : args) {
+            options.include("\\." + benchmark + "\\.");
+        }
+        new Runner(options.addProfiler(GCProfiler.class).build()).run();
+    }
+}
@@ -0,0 +1,29 @@
+package org.cloudburstmc.server;
+
+import org.cloudburstmc.server.utils.XXHash64;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("XXHash64")
+class XXHash64Test {
+
+    @DisplayName("Reference values")
+    @Test
+    void testReferenceValues() {
+        assertAll(
+                () -> assertEquals(0xEF46DB3751D8E999L, hash("")),
+                () -> assertEquals(0xD24EC4F1A98C6E5BL, hash("a")),
+                () -> assertEquals(0x44BC2CF5AD770999L, hash("abc")),
+                () -> assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"))
+        );
+    }
+
+    private static long hash(String input) {
+        return XXHash64.hash(input.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,82 @@
+package org.cloudburstmc.server.event.firehandler;
+
+import co.aikar.timings.Timing;
+import co.aikar.timings.TimingsManager;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.event.server.DataPacketReceiveEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Firing a packet event, which happens for every packet received, to no, one or ten listeners. Without listeners the
+ * event manager has no handler, {@code guarded} also skips creating the event like the hot call sites do.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventFireBenchmark extends BaseBenchmark {
+
+    @Param({"0", "1", "10"})
+    public int listeners;
+
+    private GeneratedEventFireHandler generated;
+    private GeneratedEventFireHandler reflective;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        if (this.listeners == 0) {
+            return;
+        }
+        Method method = PacketListener.class.getMethod("onPacket", DataPacketReceiveEvent.class);
+        Timing timing = TimingsManager.getTiming("EventFireBenchmark");
+        List<GeneratedEventFireHandler.ListenerMethod> generated = new ArrayList<>();
+        List<GeneratedEventFireHandler.ListenerMethod> reflective = new ArrayList<>();
+        for (int i = 0; i < this.listeners; i++) {
+            PacketListener listener = new PacketListener();
+            generated.add(new GeneratedEventFireHandler.ListenerMethod(listener, method, timing,
+                    GeneratedEventFireHandler.createExecutor(method)));
+            reflective.add(new GeneratedEventFireHandler.ListenerMethod(listener, method, timing,
+                    GeneratedEventFireHandler.createReflectiveExecutor(method)));
+        }
+        this.generated = new GeneratedEventFireHandler(generated);
+        this.reflective = new GeneratedEventFireHandler(reflective);
+    }
+
+    @Benchmark
+    public DataPacketReceiveEvent generated() {
+        DataPacketReceiveEvent event = new DataPacketReceiveEvent(null, null);
+        if (this.generated != null) {
+            this.generated.fire(event);
+        }
+        return event;
+    }
+
+    @Benchmark
+    public DataPacketReceiveEvent reflection() {
+        DataPacketReceiveEvent event = new DataPacketReceiveEvent(null, null);
+        if (this.reflective != null) {
+            this.reflective.fire(event);
+        }
+        return event;
+    }
+
+    @Benchmark
+    public DataPacketReceiveEvent guarded() {
+        if (this.generated == null) {
+            return null;
+        }
+        DataPacketReceiveEvent event = new DataPacketReceiveEvent(null, null);
+        this.generated.fire(event);
+        return event;
+    }
+
+    public static class PacketListener {
+        public int received;
+
+        public void onPacket(DataPacketReceiveEvent event) {
+            this.received++;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.cloudburstmc.server.event.firehandler;
+
+import co.aikar.timings.Timing;
+import co.aikar.timings.TimingsManager;
+import org.cloudburstmc.server.event.server.DataPacketReceiveEvent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("GeneratedEventFireHandler")
+class GeneratedEventFireHandlerTest {
+
+    private static Method onPacket;
+    private static Method cancel;
+    private static Method fail;
+    private static Timing timing;
+
+    @BeforeAll
+    static void setup() throws NoSuchMethodException {
+        onPacket = RecordingListener.class.getMethod("onPacket", DataPacketReceiveEvent.class);
+        cancel = RecordingListener.class.getMethod("cancel", DataPacketReceiveEvent.class);
+        fail = RecordingListener.class.getMethod("fail", DataPacketReceiveEvent.class);
+        timing = TimingsManager.getTiming("GeneratedEventFireHandlerTest");
+    }
+
+    @DisplayName("Listeners are called in the order they were baked in")
+    @Test
+    void testOrder() {
+        assertOrder(GeneratedEventFireHandler::createExecutor);
+        assertOrder(GeneratedEventFireHandler::createReflectiveExecutor);
+    }
+
+    @DisplayName("Cancelled events still reach the following listeners")
+    @Test
+    void testCancelled() {
+        assertCancelled(GeneratedEventFireHandler::createExecutor);
+        assertCancelled(GeneratedEventFireHandler::createReflectiveExecutor);
+    }
+
+    @DisplayName("A failing listener doesn't stop the following listeners")
+    @Test
+    void testFailure() {
+        assertFailure(GeneratedEventFireHandler::createExecutor);
+        assertFailure(GeneratedEventFireHandler::createReflectiveExecutor);
+    }
+
+    private static void assertOrder(Function<Method, EventExecutor> executors) {
+        List<RecordingListener> calls = new ArrayList<>();
+        List<GeneratedEventFireHandler.ListenerMethod> methods = new ArrayList<>();
+        RecordingListener[] listeners = new RecordingListener[5];
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i] = new RecordingListener(calls);
+            methods.add(new GeneratedEventFireHandler.ListenerMethod(listeners[i], onPacket, timing,
+                    executors.apply(onPacket)));
+        }
+
+        GeneratedEventFireHandler handler = new GeneratedEventFireHandler(methods);
+        handler.fire(new DataPacketReceiveEvent(null, null));
+        handler.fire(new DataPacketReceiveEvent(null, null));
+
+        assertEquals(2 * listeners.length, calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            assertSame(listeners[i % listeners.length], calls.get(i));
+        }
+    }
+
+    private static void assertCancelled(Function<Method, EventExecutor> executors) {
+        List<RecordingListener> calls = new ArrayList<>();
+        RecordingListener canceller = new RecordingListener(calls);
+        RecordingListener after = new RecordingListener(calls);
+        GeneratedEventFireHandler handler = new GeneratedEventFireHandler(List.of(
+                new GeneratedEventFireHandler.ListenerMethod(canceller, cancel, timing, executors.apply(cancel)),
+                new GeneratedEventFireHandler.ListenerMethod(after, onPacket, timing, executors.apply(onPacket))));
+
+        DataPacketReceiveEvent event = new DataPacketReceiveEvent(null, null);
+        handler.fire(event);
+
+        assertTrue(event.isCancelled());
+        assertEquals(List.of(canceller, after), calls);
+        // Listeners see the cancellation of the earlier ones and decide themselves whether to ignore the event
+        assertTrue(after.sawCancelled);
+    }
+
+    private static void assertFailure(Function<Method, EventExecutor> executors) {
+        List<RecordingListener> calls = new ArrayList<>();
+        RecordingListener failing = new RecordingListener(calls);
+        RecordingListener after = new RecordingListener(calls);
+        GeneratedEventFireHandler handler = new GeneratedEventFireHandler(List.of(
+                new GeneratedEventFireHandler.ListenerMethod(failing, fail, timing, executors.apply(fail)),
+                new GeneratedEventFireHandler.ListenerMethod(after, onPacket, timing, executors.apply(onPacket))));
+
+        handler.fire(new DataPacketReceiveEvent(null, null));
+        assertEquals(List.of(failing, after), calls);
+    }
+
+    public static class RecordingListener {
+        private final List<RecordingListener> calls;
+        private boolean sawCancelled;
+
+        RecordingListener(List<RecordingListener> calls) {
+            this.calls = calls;
+        }
+
+        public void onPacket(DataPacketReceiveEvent event) {
+            this.calls.add(this);
+            this.sawCancelled = event.isCancelled();
+        }
+
+        public void cancel(DataPacketReceiveEvent event) {
+            this.calls.add(this);
+            event.setCancelled();
+        }
+
+        public void fail(DataPacketReceiveEvent event) {
+            this.calls.add(this);
+            throw new IllegalStateException("Listener failure");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package org.cloudburstmc.server.level;
+
+import com.nukkitx.protocol.bedrock.BedrockPacket;
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import com.nukkitx.protocol.bedrock.packet.UpdateBlockPacket;
+import com.nukkitx.protocol.bedrock.packet.UpdateSubChunkBlocksPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.chunk.CloudChunkSection;
+import org.cloudburstmc.server.network.ProtocolInfo;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.cloudburstmc.server.utils.VarInt;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the encoded size of block changes sent as single block updates, as sub-chunk updates and as a chunk resend.
+ */
+@DisplayName("BlockChangeTracker")
+class BlockChangeTrackerTest {
+
+    private static final BedrockPacketCodec CODEC = ProtocolInfo.getDefaultPacketCodec();
+
+    private CloudChunk chunk;
+
+    @BeforeAll
+    static void setupRegistry() {
+        CloudBlockRegistry.get();
+    }
+
+    @BeforeEach
+    void setupChunk() {
+        this.chunk = new CloudChunk(2, -3, null);
+        for (int y = 0; y < 4; y++) {
+            ((CloudChunkSection) this.chunk.getOrCreateSection(y)).fill(0, BlockStates.STONE);
+        }
+    }
+
+    @DisplayName("Few changes are sent as single updates of the changed layer")
+    @Test
+    void testSingleUpdates() throws Exception {
+        BlockChangeTracker.ChunkChanges changes = new BlockChangeTracker.ChunkChanges(0);
+        this.setBlock(changes, 1, 20, 2, 0);
+        this.setBlock(changes, 3, 40, 4, 0);
+
+        List<BedrockPacket> packets = changes.createPackets(this.chunk);
+        assertNotNull(packets);
+        assertEquals(2, packets.size());
+        for (BedrockPacket packet : packets) {
+            UpdateBlockPacket update = assertInstanceOf(UpdateBlockPacket.class, packet);
+            assertEquals(0, update.getDataLayer());
+            assertEquals(encodedSize(update), BlockChangeTracker.updateBlockSize(update));
+        }
+    }
+
+    @DisplayName("Scattered changes are sent as a sub-chunk update")
+    @Test
+    void testSubChunkUpdate() throws Exception {
+        BlockChangeTracker.ChunkChanges changes = new BlockChangeTracker.ChunkChanges(0);
+        IntSet section = new IntOpenHashSet();
+        for (int i = 0; i < 64; i++) {
+            int x = i & 0xf;
+            int y = 16 + (i * 7 & 0xf);
+            int z = i >> 2;
+            this.setBlock(changes, x, y, z, 0);
+            section.add(BlockChangeTracker.change(x, y, z, 0));
+        }
+        this.chunk.setBlock(5, 17, 5, 1, BlockStates.WATER);
+        changes.add(5, 17, 5, 1, CloudLevel.MAX_BLOCK_CACHE);
+        section.add(BlockChangeTracker.change(5, 17, 5, 1));
+
+        List<BedrockPacket> packets = changes.createPackets(this.chunk);
+        assertNotNull(packets);
+        assertEquals(1, packets.size());
+        UpdateSubChunkBlocksPacket batch = assertInstanceOf(UpdateSubChunkBlocksPacket.class, packets.get(0));
+        assertEquals(64, batch.getStandardBlocks().size());
+        assertEquals(1, batch.getExtraBlocks().size());
+
+        assertEquals(encodedSize(batch), BlockChangeTracker.updateSubChunkBlocksSize(batch));
+        int batchSize = framedSize(batch);
+        assertTrue(batchSize < singleUpdatesSize(1, section), "sub-chunk update is larger than single updates");
+        assertTrue(batchSize < framedSize(this.chunk.createChunkPacket()), "sub-chunk update is larger than chunk");
+    }
+
+    @DisplayName("Replaced sub-chunks are sent as a chunk resend")
+    @Test
+    void testChunkResend() throws Exception {
+        BlockChangeTracker.ChunkChanges changes = new BlockChangeTracker.ChunkChanges(0);
+        IntSet section = new IntOpenHashSet();
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < 16; y++) {
+                    this.setBlock(changes, x, y, z, 0);
+                    section.add(BlockChangeTracker.change(x, y, z, 0));
+                }
+            }
+        }
+
+        assertNull(changes.createPackets(this.chunk));
+
+        assertEquals(encodedSize(this.chunk.createChunkPacket()), BlockChangeTracker.levelChunkSize(this.chunk));
+        int chunkSize = framedSize(this.chunk.createChunkPacket());
+        UpdateSubChunkBlocksPacket batch = BlockChangeTracker.createUpdateSubChunkBlocks(this.chunk, 0, section);
+        assertTrue(chunkSize < framedSize(batch), "chunk is larger than sub-chunk update");
+        assertTrue(chunkSize < singleUpdatesSize(0, section), "chunk is larger than single updates");
+    }
+
+    @DisplayName("Chunks with too many changes are resent")
+    @Test
+    void testOverflow() {
+        BlockChangeTracker.ChunkChanges changes = new BlockChangeTracker.ChunkChanges(0);
+        for (int i = 0; i < 3; i++) {
+            changes.add(i, 0, 0, 0, 2);
+        }
+        assertNull(changes.createPackets(this.chunk));
+    }
+
+    private void setBlock(BlockChangeTracker.ChunkChanges changes, int x, int y, int z, int layer) {
+        this.chunk.setBlock(x, y, z, layer, BlockStates.DIRT);
+        changes.add(x, y, z, layer, CloudLevel.MAX_BLOCK_CACHE);
+    }
+
+    /**
+     * Size of the changes sent as single updates of both layers, like before changes were tracked per layer.
+     */
+    private int singleUpdatesSize(int sectionY, IntSet section) throws Exception {
+        int size = 0;
+        for (int change : section) {
+            for (int layer = 0; layer < 2; layer++) {
+                size += framedSize(BlockChangeTracker.createUpdateBlock(this.chunk, sectionY, layer << 12 | (change & 0xfff)));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Size of the packet within a batch, including its length.
+     */
+    private static int framedSize(BedrockPacket packet) throws Exception {
+        int size = encodedSize(packet);
+        return VarInt.sizeOfUnsignedVarInt(size) + size;
+    }
+
+    private static int encodedSize(BedrockPacket packet) throws Exception {
+        ByteBuf buffer = Unpooled.buffer();
+        try {
+            VarInt.writeUnsignedVarInt(buffer, CODEC.getId(packet));
+            CODEC.tryEncode(buffer, packet, null);
+            return buffer.readableBytes();
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.cloudburstmc.server.level;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.api.util.AxisAlignedBB;
+import org.cloudburstmc.api.util.SimpleAxisAlignedBB;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Gathers the collision boxes for one tick of movement of a dropped item and a walking mob on a stone floor, the same
+ * query {@link org.cloudburstmc.server.entity.BaseEntity#move(float, float, float)} runs for every moving entity.
+ * <p>
+ * Gathering should not allocate.
+ */
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CollisionBoxesBenchmark extends BaseBenchmark {
+
+    private static final int FLOOR = 64;
+
+    private final Long2ObjectOpenHashMap<CloudChunk> chunks = new Long2ObjectOpenHashMap<>();
+    private final LongFunction<CloudChunk> loadedChunks = this.chunks::get;
+    private final AxisAlignedBB item = new SimpleAxisAlignedBB(7.875f, FLOOR - 0.04f, 7.875f,
+            8.125f + 0.1f, FLOOR + 0.25f, 8.125f + 0.1f);
+    private final AxisAlignedBB mob = new SimpleAxisAlignedBB(15.7f, FLOOR - 0.08f, 15.7f,
+            16.3f + 0.2f, FLOOR + 1.8f, 16.3f + 0.2f);
+
+    @Setup
+    public void setup() {
+        CloudBlockRegistry.get();
+        for (int chunkX = 0; chunkX < 3; chunkX++) {
+            for (int chunkZ = 0; chunkZ < 3; chunkZ++) {
+                CloudChunk chunk = new CloudChunk(chunkX - 1, chunkZ - 1, null);
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int y = FLOOR - 4; y < FLOOR; y++) {
+                            chunk.setBlock(x, y, z, 0, BlockStates.STONE);
+                        }
+                    }
+                }
+                this.chunks.put(CloudChunk.key(chunkX - 1, chunkZ - 1), chunk);
+            }
+        }
+    }
+
+    @Benchmark
+    public int item() {
+        CollisionBoxes boxes = CollisionBoxes.get();
+        boxes.addBlocks(this.item, this.loadedChunks);
+        return boxes.size();
+    }
+
+    @Benchmark
+    public int mobAcrossChunks() {
+        CollisionBoxes boxes = CollisionBoxes.get();
+        boxes.addBlocks(this.mob, this.loadedChunks);
+        return boxes.size();
+    }
+}
@@ -0,0 +1,104 @@
+package org.cloudburstmc.server.level;
+
+import com.nukkitx.math.vector.Vector3f;
+import org.cloudburstmc.api.util.AxisAlignedBB;
+import org.cloudburstmc.api.util.SimpleAxisAlignedBB;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.entity.BaseEntity;
+import org.openjdk.jmh.annotations.*;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * Item farm case: every entity of a single chunk looks for its neighbours once, like dropped items merging or players
+ * picking them up, and then moves a little.
+ * <p>
+ * The queries should not allocate and the moves only allocate the new entity positions.
+ */
+public class EntityIndexBenchmark extends BaseBenchmark {
+
+    @Param({"10", "100", "500"})
+    public int entityCount;
+
+    private final EntityIndex index = new EntityIndex();
+    private final Counter counter = new Counter();
+    private final AxisAlignedBB query = new SimpleAxisAlignedBB(0, 0, 0, 0, 0, 0);
+    private TestEntity[] entities;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        Field field = Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        Unsafe unsafe = (Unsafe) field.get(null);
+
+        this.random = new SplittableRandom(0);
+        this.entities = new TestEntity[this.entityCount];
+        for (int i = 0; i < this.entityCount; i++) {
+            // Entities can't be constructed without a level, only the position and bounding box are needed here
+            TestEntity entity = (TestEntity) unsafe.allocateInstance(TestEntity.class);
+            entity.place(this.random.nextInt(16) + 0.5f, 64, this.random.nextInt(16) + 0.5f);
+            this.index.update(entity);
+            this.entities[i] = entity;
+        }
+    }
+
+    @Benchmark
+    public int queryNeighbours() {
+        Counter counter = this.counter;
+        counter.count = 0;
+        AxisAlignedBB query = this.query;
+        for (TestEntity entity : this.entities) {
+            AxisAlignedBB bb = entity.getBoundingBox();
+            query.setBounds(bb.getMinX() - 1, bb.getMinY() - 0.5f, bb.getMinZ() - 1,
+                    bb.getMaxX() + 1, bb.getMaxY() + 0.5f, bb.getMaxZ() + 1);
+            this.index.forEachIntersecting(query, counter);
+        }
+        return counter.count;
+    }
+
+    @Benchmark
+    public int move() {
+        SplittableRandom random = this.random;
+        for (TestEntity entity : this.entities) {
+            Vector3f position = entity.getPosition();
+            entity.place(wrap(position.getX() + random.nextDouble(-0.5, 0.5)), 64,
+                    wrap(position.getZ() + random.nextDouble(-0.5, 0.5)));
+            this.index.update(entity);
+        }
+        return this.index.size();
+    }
+
+    private static float wrap(double coord) {
+        // Keep everyone inside the chunk
+        return (float) ((coord % 16 + 16) % 16);
+    }
+
+    private static final class Counter implements Consumer<BaseEntity> {
+
+        private int count;
+
+        @Override
+        public void accept(BaseEntity entity) {
+            this.count++;
+        }
+    }
+
+    public static class TestEntity extends BaseEntity {
+
+        private TestEntity() {
+            super(null, null);
+        }
+
+        private void place(float x, float y, float z) {
+            this.position = Vector3f.from(x, y, z);
+            if (this.boundingBox == null) {
+                this.boundingBox = new SimpleAxisAlignedBB(0, 0, 0, 0, 0, 0);
+            }
+            this.boundingBox.setBounds(x - 0.125f, y, z - 0.125f, x + 0.125f, y + 0.25f, z + 0.125f);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+
+/**
+ * Fills a whole section layer with {@link BlockStorage#setBlock(int, BlockState)} or at once from a buffer of ids with
+ * {@link BlockStorage#setBlocks(BlockState[], int[], int)}.
+ * <p>
+ * With the GC profiler, its normalized allocation rate is the memory cost of a loaded section for the given amount
+ * of distinct block states.
+ */
+public class BlockStorageBenchmark extends BaseBenchmark {
+
+    private static final int SIZE = 4096;
+
+    /**
+     * 1 = single value, 8 = linear palette, 64 = hashed palette
+     */
+    @Param({"1", "8", "64"})
+    public int distinctStates;
+
+    private BlockState[] states;
+    private int[] ids;
+
+    @Setup
+    public void setup() {
+        List<BlockState> registered = CloudBlockRegistry.get().getBlockStates();
+        this.states = new BlockState[this.distinctStates];
+        for (int i = 0; i < this.distinctStates; i++) {
+            this.states[i] = registered.get(i);
+        }
+        this.ids = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            this.ids[i] = (i >> 4) % this.distinctStates;
+        }
+    }
+
+    @Benchmark
+    public BlockStorage fill() {
+        BlockStorage storage = new BlockStorage();
+        BlockState[] states = this.states;
+        for (int i = 0; i < SIZE; i++) {
+            storage.setBlock(i, states[(i >> 4) % states.length]);
+        }
+        return storage;
+    }
+
+    @Benchmark
+    public BlockStorage fillAndCompact() {
+        BlockStorage storage = this.fill();
+        storage.compact();
+        return storage;
+    }
+
+    @Benchmark
+    public BlockStorage setBlocks() {
+        BlockStorage storage = new BlockStorage();
+        storage.setBlocks(this.states, this.ids, 0);
+        return storage;
+    }
+}
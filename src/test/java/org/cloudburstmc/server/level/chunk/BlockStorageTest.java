@@ -0,0 +1,57 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.server.block.BlockPalette;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BlockStorage")
+class BlockStorageTest {
+
+    private static BlockState[] states;
+
+    @BeforeAll
+    static void setup() {
+        CloudBlockRegistry.get();
+        states = BlockPalette.INSTANCE.getRuntimeMap().values().stream()
+                .distinct()
+                .limit(300)
+                .toArray(BlockState[]::new);
+    }
+
+    @DisplayName("Blocks set from ids are read back with every bit array version")
+    @Test
+    void testSetBlocks() {
+        // Palette sizes filling every version, including the padded 3, 5 and 6 bit ones, and one past each of them
+        int[] paletteSizes = {1, 2, 3, 4, 5, 8, 9, 16, 17, 32, 33, 64, 65, 256, 257, 300};
+        Random random = new Random(0L);
+        for (int paletteSize : paletteSizes) {
+            int offset = 3;
+            int[] ids = new int[offset + CloudChunkSection.SIZE + 5];
+            for (int i = 0; i < CloudChunkSection.SIZE; i++) {
+                // Every id at least once, so the palette has exactly the given size
+                ids[offset + i] = i < paletteSize ? paletteSize - 1 - i : random.nextInt(paletteSize);
+            }
+
+            BlockStorage storage = new BlockStorage();
+            storage.setBlock(0, states[states.length - 1]);
+            storage.setBlocks(states, ids, offset);
+
+            for (int i = 0; i < CloudChunkSection.SIZE; i++) {
+                assertEquals(states[ids[offset + i]], storage.getBlock(i), "palette size " + paletteSize);
+            }
+            assertEquals(paletteSize == 1, storage.isSingleValue(), "palette size " + paletteSize);
+
+            // Single blocks can still be changed afterwards
+            storage.setBlock(1, states[0]);
+            assertEquals(states[0], storage.getBlock(1), "palette size " + paletteSize);
+            assertEquals(states[ids[offset + 2]], storage.getBlock(2), "palette size " + paletteSize);
+        }
+    }
+}
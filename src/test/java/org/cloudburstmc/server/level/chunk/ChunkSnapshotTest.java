@@ -0,0 +1,67 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ChunkSnapshot")
+class ChunkSnapshotTest {
+
+    private CloudChunk chunk;
+
+    @BeforeAll
+    static void setupRegistry() {
+        CloudBlockRegistry.get();
+    }
+
+    @BeforeEach
+    void setupChunk() {
+        this.chunk = new CloudChunk(0, 0, null);
+        this.chunk.setBlock(1, 2, 3, 0, BlockStates.STONE);
+    }
+
+    @DisplayName("Snapshots keep the blocks they were taken with")
+    @Test
+    void testCopyOnWrite() {
+        try (ChunkSnapshot snapshot = this.chunk.snapshot()) {
+            this.chunk.setBlock(1, 2, 3, 0, BlockStates.DIRT);
+            this.chunk.setBlock(4, 40, 4, 0, BlockStates.DIRT);
+
+            assertEquals(BlockStates.STONE, snapshot.getSections()[0].getBlock(1, 2, 3, 0));
+            assertNull(snapshot.getSections()[2]);
+            assertEquals(BlockStates.DIRT, this.chunk.getBlock(1, 2, 3, 0));
+            assertNotSame(snapshot.getSections()[0], this.chunk.getSection(0));
+        }
+    }
+
+    @DisplayName("Sections are shared until the last snapshot is closed")
+    @Test
+    void testRelease() {
+        ChunkSnapshot first = this.chunk.snapshot();
+        ChunkSnapshot second = this.chunk.snapshot();
+
+        first.close();
+        this.chunk.setBlock(1, 2, 3, 0, BlockStates.DIRT);
+        assertEquals(BlockStates.STONE, second.getSections()[0].getBlock(1, 2, 3, 0));
+        second.close();
+
+        // Written in place once no snapshot references the section
+        ChunkSection section = this.chunk.getSection(0);
+        this.chunk.setBlock(1, 2, 3, 0, BlockStates.STONE);
+        assertSame(section, this.chunk.getSection(0));
+
+        // Closing a snapshot twice releases it once
+        ChunkSnapshot third = this.chunk.snapshot();
+        ChunkSnapshot fourth = this.chunk.snapshot();
+        third.close();
+        third.close();
+        this.chunk.setBlock(1, 2, 3, 0, BlockStates.DIRT);
+        assertEquals(BlockStates.STONE, fourth.getSections()[0].getBlock(1, 2, 3, 0));
+        fourth.close();
+    }
+}
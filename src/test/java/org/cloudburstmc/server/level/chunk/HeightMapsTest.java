@@ -0,0 +1,97 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("HeightMaps")
+class HeightMapsTest {
+
+    private UnsafeChunk chunk;
+
+    @BeforeAll
+    static void setupRegistry() {
+        CloudBlockRegistry.get();
+    }
+
+    @BeforeEach
+    void setupChunk() {
+        this.chunk = new UnsafeChunk(0, 0, null);
+        this.chunk.setBlock(1, 10, 1, 0, BlockStates.STONE);
+        this.chunk.setBlock(1, 11, 1, 0, BlockStates.TALL_GRASS);
+        this.chunk.setBlock(2, 20, 2, 0, BlockStates.GLASS);
+        this.chunk.setBlock(2, 30, 2, 1, BlockStates.WATER);
+        this.chunk.recalculateHeightMaps();
+    }
+
+    @DisplayName("Fresh chunks have no heightmaps to save")
+    @Test
+    void testFresh() {
+        assertNull(new UnsafeChunk(0, 0, null).getHeightMaps());
+    }
+
+    @DisplayName("Saved heightmaps are loaded instead of rebuilt")
+    @Test
+    void testLoad() {
+        int[] saved = this.chunk.getHeightMaps();
+        assertNotNull(saved);
+        assertEquals(HeightMapType.values().length * CloudChunk.ARRAY_SIZE, saved.length);
+
+        UnsafeChunk loaded = this.load(saved);
+        assertArrayEquals(saved, loaded.getHeightMaps());
+        for (HeightMapType type : HeightMapType.values()) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    assertEquals(this.chunk.getHeight(type, x, z), loaded.getHeight(type, x, z));
+                }
+            }
+        }
+
+        // Not rebuilt, even though the blocks say otherwise
+        saved[UnsafeChunk.get2dIndex(3, 3)] = 100;
+        assertEquals(99, this.load(saved).getHighestBlock(3, 3));
+    }
+
+    @DisplayName("Missing heightmaps are rebuilt from the blocks")
+    @Test
+    void testRebuild() {
+        UnsafeChunk loaded = this.load(null);
+        assertEquals(12, loaded.getHeight(HeightMapType.WORLD_SURFACE, 1, 1));
+        assertEquals(11, loaded.getHeight(HeightMapType.MOTION_BLOCKING, 1, 1));
+        assertEquals(31, loaded.getHeight(HeightMapType.MOTION_BLOCKING, 2, 2));
+        assertEquals(21, loaded.getHeight(HeightMapType.WORLD_SURFACE, 2, 2));
+        assertArrayEquals(this.chunk.getHeightMaps(), loaded.getHeightMaps());
+    }
+
+    @DisplayName("Missing sections only have sky light above the light blocking height")
+    @Test
+    void testSkyLight() {
+        UnsafeChunk chunk = new UnsafeChunk(0, 0, null);
+        chunk.setBlock(5, 40, 5, 0, BlockStates.STONE);
+        assertEquals(0, chunk.getSkyLight(6, 20, 6), "lit without heightmaps");
+
+        chunk.recalculateHeightMaps();
+        assertNull(chunk.getSection(1));
+        // Empty section under a solid one
+        assertEquals(0, chunk.getSkyLight(5, 20, 5));
+        assertEquals(0, chunk.getSkyLight(5, 39, 5));
+        assertEquals(15, chunk.getSkyLight(5, 41, 5));
+        assertEquals(15, chunk.getSkyLight(6, 20, 6));
+        assertEquals(15, chunk.getSkyLight(5, 100, 5));
+
+        // Created sections start with the light they were read with
+        CloudChunkSection section = chunk.getOrCreateSection(1);
+        assertEquals(0, section.getSkyLight(5, 4, 5));
+        assertEquals(15, section.getSkyLight(6, 4, 6));
+    }
+
+    private UnsafeChunk load(int[] heightMaps) {
+        return new UnsafeChunk(0, 0, null, this.chunk.getSections(), this.chunk.getBiomeArray(),
+                this.chunk.getHeightMapArray(), heightMaps);
+    }
+}
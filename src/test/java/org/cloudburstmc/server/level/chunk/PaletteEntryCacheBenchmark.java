@@ -0,0 +1,142 @@
+package org.cloudburstmc.server.level.chunk;
+
+import com.nukkitx.nbt.NBTInputStream;
+import com.nukkitx.nbt.NbtMap;
+import com.nukkitx.nbt.NbtUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import net.daporkchop.ldbjni.LevelDB;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.level.chunk.bitarray.BitArrayVersion;
+import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Options;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes the block storages of the sub-chunks of a few thousand chunks, resolving palette entries through
+ * {@link PaletteEntryCache} or by decoding their NBT like loading used to.
+ * <p>
+ * Pass the db folder of a LevelDB world with {@code -p fixture=<path>} to load real chunks. Without a fixture, sections
+ * with palettes drawn from a small pool of block states are serialized instead.
+ * <p>
+ * Cache hits should not allocate beyond the storages.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PaletteEntryCacheBenchmark extends BaseBenchmark {
+
+    private static final int SECTIONS = 16384;
+    private static final int SIZE = 4096;
+
+    @Param({""})
+    public String fixture;
+
+    private final List<byte[]> subChunks = new ArrayList<>();
+
+    @Setup
+    public void setup() throws IOException {
+        CloudBlockRegistry.get();
+        if (this.fixture.isEmpty()) {
+            this.serializeSections();
+        } else {
+            this.readFixture();
+        }
+    }
+
+    private void readFixture() throws IOException {
+        byte subChunkPrefix = LevelDBKey.SUBCHUNK_PREFIX.getKey(0, 0)[8];
+        try (DB db = LevelDB.PROVIDER.open(new File(this.fixture), new Options());
+             DBIterator iterator = db.iterator()) {
+            iterator.seekToFirst();
+            while (iterator.hasNext() && this.subChunks.size() < SECTIONS) {
+                Map.Entry<byte[], byte[]> entry = iterator.next();
+                byte[] key = entry.getKey();
+                byte[] value = entry.getValue();
+                // Overworld sub-chunks in the format this server reads
+                if (key.length == 10 && key[8] == subChunkPrefix && value.length > 0 &&
+                        value[0] == CloudChunkSection.CHUNK_SECTION_VERSION) {
+                    this.subChunks.add(value);
+                }
+            }
+        }
+    }
+
+    private void serializeSections() {
+        List<BlockState> registered = CloudBlockRegistry.get().getBlockStates();
+        BlockState[] pool = new BlockState[48];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = registered.get(i * 7 % registered.size());
+        }
+
+        Random random = new Random(1234);
+        for (int i = 0; i < SECTIONS; i++) {
+            BlockStorage storage = new BlockStorage();
+            int distinct = 2 + random.nextInt(12);
+            int offset = random.nextInt(pool.length);
+            for (int index = 0; index < SIZE; index++) {
+                storage.setBlock(index, pool[(offset + random.nextInt(distinct)) % pool.length]);
+            }
+
+            ByteBuf buffer = Unpooled.buffer();
+            buffer.writeByte(CloudChunkSection.CHUNK_SECTION_VERSION);
+            buffer.writeByte(1);
+            storage.writeToStorage(buffer);
+            byte[] value = new byte[buffer.readableBytes()];
+            buffer.readBytes(value);
+            this.subChunks.add(value);
+        }
+    }
+
+    @Benchmark
+    public int cached() {
+        int paletteEntries = 0;
+        for (byte[] subChunk : this.subChunks) {
+            ByteBuf buffer = Unpooled.wrappedBuffer(subChunk);
+            buffer.skipBytes(1);
+            int storageCount = buffer.readUnsignedByte();
+            for (int i = 0; i < storageCount; i++) {
+                BlockStorage storage = new BlockStorage();
+                storage.readFromStorage(buffer);
+                paletteEntries += storage.getPaletteSize();
+            }
+        }
+        return paletteEntries;
+    }
+
+    @Benchmark
+    public int decoded() throws IOException {
+        CloudBlockRegistry registry = CloudBlockRegistry.get();
+        int paletteEntries = 0;
+        for (byte[] subChunk : this.subChunks) {
+            ByteBuf buffer = Unpooled.wrappedBuffer(subChunk);
+            buffer.skipBytes(1);
+            int storageCount = buffer.readUnsignedByte();
+            for (int i = 0; i < storageCount; i++) {
+                BitArrayVersion version = BitArrayVersion.get(buffer.readUnsignedByte() >> 1, true);
+                buffer.skipBytes(version.getWordsForSize(SIZE) * 4);
+
+                int paletteSize = buffer.readIntLE();
+                List<BlockState> palette = new ArrayList<>(paletteSize);
+                try (NBTInputStream stream = NbtUtils.createReaderLE(new ByteBufInputStream(buffer))) {
+                    for (int entry = 0; entry < paletteSize; entry++) {
+                        palette.add(registry.getBlock((NbtMap) stream.readTag()));
+                    }
+                }
+                paletteEntries += palette.size();
+            }
+        }
+        return paletteEntries;
+    }
+}
@@ -0,0 +1,117 @@
+package org.cloudburstmc.server.level.chunk;
+
+import com.nukkitx.nbt.NBTOutputStream;
+import com.nukkitx.nbt.NbtUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.block.BlockPalette;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("PaletteEntryCache")
+class PaletteEntryCacheTest {
+
+    @BeforeAll
+    static void setupRegistry() {
+        CloudBlockRegistry.get();
+    }
+
+    @DisplayName("Repeated entries resolve to the same state")
+    @Test
+    void testHit() throws IOException {
+        ByteBuf buffer = Unpooled.buffer();
+        writeEntry(buffer, BlockStates.STONE);
+        writeEntry(buffer, BlockStates.STONE);
+        writeEntry(buffer, BlockStates.DIRT);
+
+        assertSame(BlockStates.STONE, PaletteEntryCache.read(buffer));
+        assertSame(BlockStates.STONE, PaletteEntryCache.read(buffer));
+        assertSame(BlockStates.DIRT, PaletteEntryCache.read(buffer));
+        assertFalse(buffer.isReadable());
+    }
+
+    @DisplayName("Entries sharing a slot replace each other")
+    @Test
+    void testCollision() throws IOException {
+        Int2ObjectMap<BlockState> slots = new Int2ObjectOpenHashMap<>();
+        BlockState first = null;
+        BlockState second = null;
+        for (BlockState state : CloudBlockRegistry.get().getBlockStates()) {
+            ByteBuf entry = Unpooled.buffer();
+            writeEntry(entry, state);
+            int slot = PaletteEntryCache.slot(PaletteEntryCache.hash(entry, 0, entry.readableBytes()));
+            BlockState previous = slots.putIfAbsent(slot, state);
+            if (previous != null) {
+                first = previous;
+                second = state;
+                break;
+            }
+        }
+        assertNotNull(first, "no states share a slot");
+
+        ByteBuf buffer = Unpooled.buffer();
+        writeEntry(buffer, first);
+        writeEntry(buffer, second);
+        writeEntry(buffer, first);
+        writeEntry(buffer, second);
+
+        assertSame(first, PaletteEntryCache.read(buffer));
+        assertSame(second, PaletteEntryCache.read(buffer));
+        assertSame(first, PaletteEntryCache.read(buffer));
+        assertSame(second, PaletteEntryCache.read(buffer));
+        assertFalse(buffer.isReadable());
+    }
+
+    @DisplayName("Malformed entries leave the reader index in place")
+    @Test
+    void testMalformed() {
+        ByteBuf notCompound = Unpooled.buffer();
+        notCompound.writeByte(8); // String tag
+        notCompound.writeShortLE(0);
+        notCompound.writeShortLE(0);
+        assertThrows(IOException.class, () -> PaletteEntryCache.read(notCompound));
+        assertEquals(0, notCompound.readerIndex());
+
+        ByteBuf entry = Unpooled.buffer();
+        writeEntry(entry, BlockStates.STONE);
+        ByteBuf truncated = entry.copy(0, entry.readableBytes() - 3);
+        assertThrows(IOException.class, () -> PaletteEntryCache.read(truncated));
+        assertEquals(0, truncated.readerIndex());
+    }
+
+    @DisplayName("Storages with malformed palettes are rejected")
+    @Test
+    void testMalformedStorage() {
+        BlockStorage storage = new BlockStorage();
+        storage.setBlock(0, BlockStates.STONE);
+        ByteBuf buffer = Unpooled.buffer();
+        storage.writeToStorage(buffer);
+        ByteBuf truncated = buffer.copy(0, buffer.readableBytes() - 3);
+
+        BlockStorage read = new BlockStorage();
+        read.readFromStorage(buffer);
+        assertSame(BlockStates.STONE, read.getBlock(0));
+        assertSame(BlockStates.AIR, read.getBlock(1));
+
+        assertThrows(IllegalArgumentException.class, () -> new BlockStorage().readFromStorage(truncated));
+    }
+
+    private static void writeEntry(ByteBuf buffer, BlockState state) {
+        try (NBTOutputStream stream = NbtUtils.createWriterLE(new ByteBufOutputStream(buffer))) {
+            stream.writeTag(BlockPalette.INSTANCE.getSerialized(state));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
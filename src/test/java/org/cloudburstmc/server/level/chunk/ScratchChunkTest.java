@@ -0,0 +1,93 @@
+package org.cloudburstmc.server.level.chunk;
+
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ScratchChunk")
+class ScratchChunkTest {
+
+    private CloudChunk chunk;
+    private CloudChunk neighbor;
+
+    @BeforeAll
+    static void setupRegistry() {
+        CloudBlockRegistry.get();
+    }
+
+    @BeforeEach
+    void setupChunks() {
+        this.chunk = new CloudChunk(0, 0, null);
+        this.chunk.setBlock(1, 2, 3, 0, BlockStates.STONE);
+        this.neighbor = new CloudChunk(1, 0, null);
+    }
+
+    @DisplayName("Written blocks and biomes are applied on merge")
+    @Test
+    void testMerge() {
+        ScratchChunk scratch = new ScratchChunk(this.chunk);
+        ScratchChunk neighborScratch = new ScratchChunk(this.neighbor);
+        scratch.setBlock(1, 2, 3, 0, BlockStates.DIRT);
+        scratch.setBlock(4, 40, 4, 1, BlockStates.WATER);
+        scratch.setBiome(5, 6, 7);
+        neighborScratch.setBlock(0, 0, 0, 0, BlockStates.GLASS);
+
+        assertEquals(BlockStates.DIRT, scratch.getBlock(1, 2, 3, 0));
+        assertEquals(BlockStates.STONE, this.chunk.getBlock(1, 2, 3, 0));
+        assertEquals(BlockStates.AIR, this.neighbor.getBlock(0, 0, 0, 0));
+
+        assertTrue(ScratchChunk.merge(scratch, neighborScratch));
+        assertEquals(BlockStates.DIRT, this.chunk.getBlock(1, 2, 3, 0));
+        assertEquals(BlockStates.WATER, this.chunk.getBlock(4, 40, 4, 1));
+        assertEquals(7, this.chunk.getBiome(5, 6));
+        assertEquals(BlockStates.GLASS, this.neighbor.getBlock(0, 0, 0, 0));
+    }
+
+    @DisplayName("Blocks set directly on sections are applied on merge")
+    @Test
+    void testSectionWrites() {
+        ScratchChunk scratch = new ScratchChunk(this.chunk);
+        scratch.getSection(0).setBlock(1, 2, 3, 0, BlockStates.DIRT);
+        scratch.getOrCreateSection(3).setBlock(4, 5, 6, 0, BlockStates.GLASS);
+        scratch.getSections()[0].setBlock(7, 8, 9, 1, BlockStates.WATER);
+
+        ScratchChunk.merge(scratch);
+        assertEquals(BlockStates.DIRT, this.chunk.getBlock(1, 2, 3, 0));
+        assertEquals(BlockStates.GLASS, this.chunk.getBlock(4, 53, 6, 0));
+        assertEquals(BlockStates.WATER, this.chunk.getBlock(7, 8, 9, 1));
+    }
+
+    @DisplayName("Only written blocks are applied on merge")
+    @Test
+    void testConcurrentWrites() {
+        ScratchChunk scratch = new ScratchChunk(this.chunk);
+        scratch.getSection(0).setBlock(1, 2, 3, 0, BlockStates.DIRT);
+        scratch.setBlock(4, 5, 6, 0, BlockStates.GLASS);
+
+        // Changed by the level while the chunk was populated
+        this.chunk.setBlock(10, 11, 12, 0, BlockStates.STONE);
+        this.chunk.setBlock(13, 14, 15, 0, BlockStates.STONE);
+
+        ScratchChunk.merge(scratch);
+        assertEquals(BlockStates.DIRT, this.chunk.getBlock(1, 2, 3, 0));
+        assertEquals(BlockStates.GLASS, this.chunk.getBlock(4, 5, 6, 0));
+        assertEquals(BlockStates.STONE, this.chunk.getBlock(10, 11, 12, 0));
+        assertEquals(BlockStates.STONE, this.chunk.getBlock(13, 14, 15, 0));
+    }
+
+    @DisplayName("Unmodified chunks are not merged")
+    @Test
+    void testUnmodified() {
+        ScratchChunk scratch = new ScratchChunk(this.chunk);
+        assertEquals(BlockStates.STONE, scratch.getBlock(1, 2, 3, 0));
+        this.chunk.clearDirty();
+
+        assertFalse(ScratchChunk.merge(scratch));
+        assertFalse(this.chunk.isDirty());
+    }
+}
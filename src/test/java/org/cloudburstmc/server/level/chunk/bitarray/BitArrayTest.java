@@ -0,0 +1,61 @@
+package org.cloudburstmc.server.level.chunk.bitarray;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BitArray")
+class BitArrayTest {
+
+    private static final int SIZE = 4096;
+
+    @DisplayName("Packing all entries at once matches setting them one by one")
+    @Test
+    void testSetAll() {
+        Random random = new Random(0L);
+        for (BitArrayVersion version : BitArrayVersion.values()) {
+            int maxValue = version.getMaxEntryValue();
+            // Ids are mapped to entries in reverse, so the remap is actually applied
+            int[] remap = new int[maxValue + 1];
+            for (int id = 0; id <= maxValue; id++) {
+                remap[id] = maxValue - id;
+            }
+            int offset = 7;
+            int[] ids = new int[offset + SIZE];
+            for (int i = 0; i < SIZE; i++) {
+                // Every id near the ends, so the highest bits of the last entry in each word are set too
+                ids[offset + i] = i < 2 * (maxValue + 1) ? i % (maxValue + 1) : random.nextInt(maxValue + 1);
+            }
+
+            BitArray expected = version.createPalette(SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                expected.set(i, remap[ids[offset + i]]);
+            }
+            BitArray actual = version.createPalette(SIZE);
+            actual.setAll(ids, offset, remap);
+
+            assertArrayEquals(expected.getWords(), actual.getWords(), version.name());
+            for (int i = 0; i < SIZE; i++) {
+                assertEquals(remap[ids[offset + i]], actual.get(i), version.name());
+            }
+        }
+    }
+
+    @DisplayName("Packing all entries overwrites the previous ones")
+    @Test
+    void testOverwrite() {
+        for (BitArrayVersion version : BitArrayVersion.values()) {
+            BitArray array = version.createPalette(SIZE);
+            for (int i = 0; i < SIZE; i++) {
+                array.set(i, version.getMaxEntryValue());
+            }
+            array.setAll(new int[SIZE], 0, new int[]{0});
+            for (int word : array.getWords()) {
+                assertEquals(0, word, version.name());
+            }
+        }
+    }
+}
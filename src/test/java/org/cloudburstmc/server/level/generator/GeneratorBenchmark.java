@@ -0,0 +1,47 @@
+package org.cloudburstmc.server.level.generator;
+
+import net.daporkchop.lib.random.PRandom;
+import net.daporkchop.lib.random.impl.FastPRandom;
+import org.cloudburstmc.api.level.chunk.LockableChunk;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.level.generator.impl.FlatGenerator;
+import org.cloudburstmc.server.level.generator.standard.StandardGenerator;
+import org.cloudburstmc.server.registry.BiomeRegistry;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Generates the terrain of fresh chunks along a line, without population, like a generation worker does.
+ */
+public class GeneratorBenchmark extends BaseBenchmark {
+
+    @Param({"flat", "standard"})
+    public String generator;
+
+    private Generator instance;
+    private PRandom random;
+    private int chunkX;
+
+    @Setup
+    public void setup() {
+        CloudBlockRegistry.get();
+        BiomeRegistry.get();
+        this.instance = "flat".equals(this.generator) ? new FlatGenerator(0L, null) : StandardGenerator.FACTORY.create(0L, null);
+        this.random = new FastPRandom(0L);
+    }
+
+    @Benchmark
+    public CloudChunk generate() {
+        int x = this.chunkX++;
+        CloudChunk chunk = new CloudChunk(x, 0, null);
+        LockableChunk lockable = chunk.writeLockable();
+        lockable.lock();
+        try {
+            this.instance.generate(this.random, lockable, x, 0);
+        } finally {
+            lockable.unlock();
+        }
+        return chunk;
+    }
+}
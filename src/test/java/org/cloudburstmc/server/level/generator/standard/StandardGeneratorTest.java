@@ -0,0 +1,62 @@
+package org.cloudburstmc.server.level.generator.standard;
+
+import net.daporkchop.lib.random.impl.FastPRandom;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.level.chunk.LockableChunk;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.cloudburstmc.server.registry.BiomeRegistry;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("StandardGenerator")
+class StandardGeneratorTest {
+
+    private static StandardGenerator generator;
+
+    @BeforeAll
+    static void setup() {
+        CloudBlockRegistry.get();
+        BiomeRegistry.get();
+        generator = (StandardGenerator) StandardGenerator.FACTORY.create(0L, null);
+    }
+
+    @DisplayName("Decorators cover the terrain")
+    @Test
+    void testSurface() {
+        int land = 0;
+        int covered = 0;
+        for (int chunkX = 0; chunkX < 8; chunkX++) {
+            CloudChunk chunk = new CloudChunk(chunkX, 0, null);
+            LockableChunk lockable = chunk.writeLockable();
+            lockable.lock();
+            try {
+                generator.generate(new FastPRandom(chunkX), lockable, chunkX, 0);
+            } finally {
+                lockable.unlock();
+            }
+
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    int y = lockable.getHighestBlock(x, z);
+                    assertTrue(y >= 0, "column without surface");
+                    if (y <= generator.getSeaLevel()) {
+                        continue;
+                    }
+                    land++;
+                    BlockState top = chunk.getBlock(x, y, z, 0);
+                    if (top != generator.getGround()) {
+                        covered++;
+                    }
+                }
+            }
+        }
+
+        assertTrue(land > 0, "no land generated");
+        // Some biomes leave stone exposed, but most land has grass, sand or other cover on top
+        assertTrue(covered * 2 > land, covered + " of " + land + " land columns are covered");
+    }
+}
@@ -0,0 +1,58 @@
+package org.cloudburstmc.server.level.generator.standard.generation.density;
+
+import org.cloudburstmc.server.level.generator.standard.StandardGenerator;
+import org.cloudburstmc.server.level.generator.standard.biome.map.BiomeMap;
+import org.cloudburstmc.server.registry.BiomeRegistry;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.cloudburstmc.server.level.generator.standard.StandardGenerator.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("VanillaDensitySource")
+class VanillaDensitySourceTest {
+
+    private static VanillaDensitySource density;
+    private static BiomeMap biomes;
+
+    @BeforeAll
+    static void setup() {
+        CloudBlockRegistry.get();
+        BiomeRegistry.get();
+        StandardGenerator generator = (StandardGenerator) StandardGenerator.FACTORY.create(0L, null);
+        density = assertInstanceOf(VanillaDensitySource.class, generator.getDensity());
+        biomes = generator.getBiomes();
+    }
+
+    @DisplayName("Chunk grids match the density of every sample")
+    @Test
+    void testGrid() {
+        // Neighbouring chunks, so the second one reuses the edge columns of the first
+        for (int chunkX = -1; chunkX <= 0; chunkX++) {
+            assertGrid(chunkX << 4, 0, 3 << 4, CACHE_X, CACHE_Y, CACHE_Z, STEP_X, STEP_Y, STEP_Z);
+        }
+    }
+
+    @DisplayName("Grids at other heights and steps match the density of every sample")
+    @Test
+    void testOffsetGrid() {
+        assertGrid(100, 37, -200, 3, 20, 2, 5, 3, 7);
+        assertGrid(-1000, 250, 1000, 2, 1, 2, 1, 1, 1);
+    }
+
+    private static void assertGrid(int x, int y, int z, int sizeX, int sizeY, int sizeZ, int stepX, int stepY, int stepZ) {
+        double[] expected = new double[1 + sizeX * sizeY * sizeZ];
+        for (int i = 1, dx = 0; dx < sizeX; dx++) {
+            for (int dz = 0; dz < sizeZ; dz++) {
+                for (int dy = 0; dy < sizeY; dy++) {
+                    expected[i++] = density.get(biomes, x + dx * stepX, y + dy * stepY, z + dz * stepZ);
+                }
+            }
+        }
+
+        double[] actual = density.get(new double[1], 1, biomes, x, y, z, sizeX, sizeY, sizeZ, stepX, stepY, stepZ);
+        assertArrayEquals(expected, actual);
+    }
+}
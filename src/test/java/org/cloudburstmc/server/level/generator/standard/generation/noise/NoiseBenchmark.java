@@ -0,0 +1,58 @@
+package org.cloudburstmc.server.level.generator.standard.generation.noise;
+
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.level.generator.standard.StandardGenerator;
+import org.cloudburstmc.server.level.generator.standard.biome.map.BiomeMap;
+import org.cloudburstmc.server.level.generator.standard.generation.density.DensitySource;
+import org.cloudburstmc.server.registry.BiomeRegistry;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import static org.cloudburstmc.server.level.generator.standard.StandardGenerator.*;
+
+/**
+ * Samples the density grid of a chunk of the default preset, whose density source is the vanilla one, walking along a
+ * row of chunks:
+ * <ul>
+ *     <li>pointwise - one {@link DensitySource#get(BiomeMap, int, int, int)} call per sample, like chunks used to</li>
+ *     <li>grid - {@link DensitySource#get(double[], int, BiomeMap, int, int, int, int, int, int, int, int, int)}, which
+ *     samples by column and reuses the edge columns of the previous chunk</li>
+ * </ul>
+ */
+public class NoiseBenchmark extends BaseBenchmark {
+
+    private DensitySource density;
+    private BiomeMap biomes;
+    private double[] samples;
+    private int chunkX;
+
+    @Setup
+    public void setup() {
+        CloudBlockRegistry.get();
+        BiomeRegistry.get();
+        StandardGenerator generator = (StandardGenerator) StandardGenerator.FACTORY.create(0L, null);
+        this.density = generator.getDensity();
+        this.biomes = generator.getBiomes();
+        this.samples = new double[CACHE_X * CACHE_Y * CACHE_Z];
+    }
+
+    @Benchmark
+    public double[] pointwise() {
+        int x = this.chunkX++ << 4;
+        double[] samples = this.samples;
+        for (int i = 0, dx = 0; dx < CACHE_X; dx++) {
+            for (int dz = 0; dz < CACHE_Z; dz++) {
+                for (int dy = 0; dy < CACHE_Y; dy++) {
+                    samples[i++] = this.density.get(this.biomes, x + dx * STEP_X, dy * STEP_Y, dz * STEP_Z);
+                }
+            }
+        }
+        return samples;
+    }
+
+    @Benchmark
+    public double[] grid() {
+        int x = this.chunkX++ << 4;
+        return this.density.get(this.samples, 0, this.biomes, x, 0, 0, CACHE_X, CACHE_Y, CACHE_Z, STEP_X, STEP_Y, STEP_Z);
+    }
+}
@@ -0,0 +1,75 @@
+package org.cloudburstmc.server.level.light;
+
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.level.chunk.CloudChunk;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Relights a 3x3 chunk area of stone with air pockets the way {@link LightEngine} does, after placing and breaking a
+ * light source and after a chunk has been loaded.
+ * <p>
+ * A batch should not allocate once the region is warm.
+ */
+public class LightEngineBenchmark extends BaseBenchmark {
+
+    private static final int SURFACE = 64;
+
+    private final LightRegion region = new LightRegion();
+    private final CloudChunk[] chunks = new CloudChunk[9];
+
+    @Setup
+    public void setup() {
+        for (int chunkX = 0; chunkX < 3; chunkX++) {
+            for (int chunkZ = 0; chunkZ < 3; chunkZ++) {
+                CloudChunk chunk = new CloudChunk(chunkX - 1, chunkZ - 1, null);
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int y = 0; y < SURFACE; y++) {
+                            // Hollow 4x4x4 cells so light has somewhere to spread
+                            boolean cavity = (x & 4) != 0 && (z & 4) != 0 && (y & 4) != 0;
+                            chunk.setBlock(x, y, z, 0, cavity ? BlockStates.AIR : BlockStates.STONE);
+                        }
+                    }
+                }
+                chunk.recalculateHeightMaps();
+                this.chunks[chunkX * 3 + chunkZ] = chunk;
+            }
+        }
+        this.relight(null, 0, 0, 0);
+    }
+
+    @Benchmark
+    public int placeAndBreak() {
+        int x = 16 + 5, y = 37, z = 16 + 5;
+        this.relight(BlockStates.GLOWSTONE, x, y, z);
+        this.relight(BlockStates.AIR, x, y, z);
+        return this.chunks[4].getBlockLight(x - 16, y + 1, z - 16);
+    }
+
+    @Benchmark
+    public int lightChunk() {
+        this.relight(null, 0, 0, 0);
+        return this.chunks[4].getSkyLight(8, SURFACE - 4, 8);
+    }
+
+    private void relight(BlockState state, int x, int y, int z) {
+        LightRegion region = this.region;
+        if (state != null) {
+            this.chunks[4].setBlock(x - 16, y, z - 16, 0, state);
+        }
+        region.load(this.chunks);
+        try {
+            if (state == null) {
+                region.lightCenter();
+            } else {
+                region.update(x, y, z);
+            }
+            region.propagate();
+            region.apply();
+        } finally {
+            region.unload();
+        }
+    }
+}
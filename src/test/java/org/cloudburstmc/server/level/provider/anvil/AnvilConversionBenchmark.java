@@ -0,0 +1,192 @@
+package org.cloudburstmc.server.level.provider.anvil;
+
+import com.nukkitx.nbt.NBTOutputStream;
+import com.nukkitx.nbt.NbtMap;
+import com.nukkitx.nbt.NbtType;
+import com.nukkitx.nbt.NbtUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import net.daporkchop.ldbjni.LevelDB;
+import org.cloudburstmc.server.BaseBenchmark;
+import org.cloudburstmc.server.level.chunk.CloudChunkSection;
+import org.cloudburstmc.server.level.provider.leveldb.LevelDBKey;
+import org.cloudburstmc.server.level.provider.leveldb.serializer.ChunkSectionSerializers;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.cloudburstmc.server.utils.Zlib;
+import org.iq80.leveldb.CompressionType;
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Converts all chunks of an Anvil region file to LevelDB sub-chunks, reading the region from the given amount of
+ * threads at once: read and inflate, decode the NBT, convert the legacy block ids and write the sections in a batch.
+ * <p>
+ * Pass a region file with {@code -p fixture=<path to .mca>} to convert real chunks. Without a fixture, a region of
+ * 1024 chunks of layered terrain is written first.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnvilConversionBenchmark extends BaseBenchmark {
+
+    private static final int SURFACE_SECTIONS = 4;
+
+    @Param({""})
+    public String fixture;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path directory;
+    private RegionFile regionFile;
+    private DB db;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() throws IOException {
+        CloudBlockRegistry.get();
+        this.directory = Files.createTempDirectory("anvil-conversion");
+        Path regionPath;
+        if (this.fixture.isEmpty()) {
+            regionPath = this.directory.resolve("r.0.0.mca");
+            writeRegion(regionPath);
+        } else {
+            regionPath = Paths.get(this.fixture);
+        }
+        this.regionFile = new RegionFile(regionPath);
+        this.db = LevelDB.PROVIDER.open(this.directory.resolve("db").toFile(), new Options()
+                .createIfMissing(true)
+                .compressionType(CompressionType.ZLIB_RAW)
+                .blockSize(64 * 1024));
+        this.pool = new ForkJoinPool(this.threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.pool.shutdown();
+        this.db.close();
+        this.regionFile.close();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int convert() {
+        return this.pool.submit(() -> IntStream.range(0, 1024).parallel().map(this::convertChunk).sum()).join();
+    }
+
+    private int convertChunk(int index) {
+        int x = index & 31;
+        int z = index >> 5;
+        if (!this.regionFile.hasChunk(x, z)) {
+            return 0;
+        }
+        try {
+            NbtMap tag;
+            ByteBuf buffer = this.regionFile.readChunk(x, z);
+            try {
+                tag = AnvilConverter.readLevelTag(buffer);
+            } finally {
+                buffer.release();
+            }
+            CloudChunkSection[] sections = AnvilConverter.convertSections(tag);
+
+            try (WriteBatch batch = this.db.createWriteBatch()) {
+                for (int y = 0; y < sections.length; y++) {
+                    if (sections[y] == null) {
+                        continue;
+                    }
+                    ByteBuf sectionBuffer = ByteBufAllocator.DEFAULT.ioBuffer();
+                    try {
+                        sectionBuffer.writeByte(CloudChunkSection.CHUNK_SECTION_VERSION);
+                        ChunkSectionSerializers.serialize(sectionBuffer, sections[y].getBlockStorageArray(),
+                                CloudChunkSection.CHUNK_SECTION_VERSION);
+                        byte[] payload = new byte[sectionBuffer.readableBytes()];
+                        sectionBuffer.readBytes(payload);
+                        batch.put(LevelDBKey.SUBCHUNK_PREFIX.getKey(x, z, y), payload);
+                    } finally {
+                        sectionBuffer.release();
+                    }
+                }
+                this.db.write(batch);
+            }
+            return 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeRegion(Path path) throws IOException {
+        try (RegionFile region = new RegionFile(path)) {
+            for (int x = 0; x < 32; x++) {
+                for (int z = 0; z < 32; z++) {
+                    ByteBuf uncompressed = ByteBufAllocator.DEFAULT.ioBuffer();
+                    ByteBuf compressed = ByteBufAllocator.DEFAULT.ioBuffer();
+                    try (NBTOutputStream stream = NbtUtils.createWriter(new ByteBufOutputStream(uncompressed))) {
+                        stream.writeTag(NbtMap.builder().putCompound("Level", createLevelTag(x, z)).build());
+                        Zlib.DEFAULT.deflate(uncompressed, compressed, 6);
+                        region.writeChunk(x, z, compressed);
+                    } finally {
+                        uncompressed.release();
+                        compressed.release();
+                    }
+                }
+            }
+        }
+    }
+
+    private static NbtMap createLevelTag(int chunkX, int chunkZ) {
+        List<NbtMap> sections = new ArrayList<>();
+        for (int y = 0; y < SURFACE_SECTIONS; y++) {
+            byte[] blocks = new byte[4096];
+            for (int index = 0; index < blocks.length; index++) {
+                int blockY = y << 4 | index >> 8;
+                int noise = (index * 31 + chunkX * 7 + chunkZ * 13) & 0xff;
+                if (blockY == SURFACE_SECTIONS * 16 - 1) {
+                    blocks[index] = 2; // grass
+                } else if (blockY >= SURFACE_SECTIONS * 16 - 4) {
+                    blocks[index] = 3; // dirt
+                } else if (noise < 3) {
+                    blocks[index] = (byte) (14 + noise); // ores
+                } else if (noise < 12) {
+                    blocks[index] = 0; // caves
+                } else {
+                    blocks[index] = 1; // stone
+                }
+            }
+            sections.add(NbtMap.builder()
+                    .putByte("Y", (byte) y)
+                    .putByteArray("Blocks", blocks)
+                    .putByteArray("Data", new byte[2048])
+                    .putByteArray("BlockLight", new byte[2048])
+                    .putByteArray("SkyLight", new byte[2048])
+                    .build());
+        }
+        return NbtMap.builder()
+                .putInt("xPos", chunkX)
+                .putInt("zPos", chunkZ)
+                .putList("Sections", NbtType.COMPOUND, sections)
+                .putByteArray("Biomes", new byte[256])
+                .putIntArray("HeightMap", new int[256])
+                .putBoolean("TerrainGenerated", true)
+                .putBoolean("TerrainPopulated", true)
+                .build();
+    }
+}
@@ -0,0 +1,205 @@
+package org.cloudburstmc.server.scheduler;
+
+import com.nukkitx.math.vector.Vector3i;
+import com.nukkitx.math.vector.Vector4i;
+import org.cloudburstmc.api.block.BlockState;
+import org.cloudburstmc.api.block.BlockStates;
+import org.cloudburstmc.server.block.CloudBlock;
+import org.cloudburstmc.server.registry.CloudBlockRegistry;
+import org.cloudburstmc.server.utils.BlockUpdateEntry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BlockUpdateScheduler")
+class BlockUpdateSchedulerTest {
+
+    private static final int SPAN = 1 << 20;
+
+    private int nextIndex;
+
+    @BeforeAll
+    static void setupRegistry() {
+        CloudBlockRegistry.get();
+    }
+
+    @DisplayName("Updates run on their tick across wheel boundaries")
+    @Test
+    void testWheelBoundaries() {
+        // Start off a slot boundary, so updates are placed relative to a tick in the middle of every wheel
+        long start = 1000;
+        RecordingScheduler scheduler = new RecordingScheduler(start);
+        long[] delays = {1, 255, 256, 257, 511, 512, 16383, 16384, 16385, 16384 + 256, 100_000, SPAN - 1, SPAN,
+                SPAN + 1};
+        Map<BlockUpdateEntry, Long> due = new HashMap<>();
+        for (long delay : delays) {
+            BlockUpdateEntry entry = this.entry(start + delay);
+            assertTrue(scheduler.add(entry));
+            due.put(entry, start + delay);
+        }
+        assertEquals(delays.length, scheduler.size());
+
+        scheduler.tickTo(start + SPAN + 1);
+
+        assertEquals(due, scheduler.ran);
+        assertEquals(0, scheduler.size());
+    }
+
+    @DisplayName("Updates further ahead than the wheels wait in the overflow list")
+    @Test
+    void testOverflow() {
+        RecordingScheduler scheduler = new RecordingScheduler(0);
+        BlockUpdateEntry far = this.entry(3L * SPAN + 5);
+        BlockUpdateEntry edge = this.entry(2L * SPAN);
+        BlockUpdateEntry near = this.entry(10);
+        scheduler.add(far);
+        scheduler.add(edge);
+        scheduler.add(near);
+
+        scheduler.tickTo(2L * SPAN - 1);
+        assertEquals(Map.of(near, 10L), scheduler.ran);
+        assertTrue(scheduler.contains(edge));
+        assertTrue(scheduler.contains(far));
+
+        scheduler.tickTo(3L * SPAN + 5);
+        assertEquals(Map.of(near, 10L, edge, 2L * SPAN, far, 3L * SPAN + 5), scheduler.ran);
+        assertEquals(0, scheduler.size());
+    }
+
+    @DisplayName("Skipped ticks run everything due in order")
+    @Test
+    void testSkip() {
+        RecordingScheduler scheduler = new RecordingScheduler(0);
+        BlockUpdateEntry second = this.entry(70_000);
+        BlockUpdateEntry first = this.entry(300);
+        BlockUpdateEntry later = this.entry(3L * SPAN);
+        scheduler.add(second);
+        scheduler.add(first);
+        scheduler.add(later);
+
+        scheduler.tick(2L * SPAN);
+        assertEquals(List.of(first, second), scheduler.order);
+        assertTrue(scheduler.contains(later));
+
+        scheduler.tickTo(3L * SPAN);
+        assertEquals(3L * SPAN, scheduler.ran.get(later));
+    }
+
+    @DisplayName("Updates of the same tick run in the order they were scheduled")
+    @Test
+    void testSameTick() {
+        RecordingScheduler scheduler = new RecordingScheduler(0);
+        List<BlockUpdateEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            BlockUpdateEntry entry = this.entry(20_000);
+            scheduler.add(entry);
+            entries.add(entry);
+        }
+        scheduler.tickTo(20_000);
+        assertEquals(entries, scheduler.order);
+    }
+
+    @DisplayName("Cancelled updates don't run and rescheduled ones run on their new tick")
+    @Test
+    void testCancelAndReschedule() {
+        RecordingScheduler scheduler = new RecordingScheduler(0);
+        BlockUpdateEntry cancelled = this.entry(300);
+        BlockUpdateEntry rescheduled = this.entry(20_000);
+        BlockUpdateEntry kept = this.entry(20_000);
+        scheduler.add(cancelled);
+        scheduler.add(rescheduled);
+        scheduler.add(kept);
+        assertFalse(scheduler.add(this.copy(kept, 50)), "equal update scheduled twice");
+
+        assertTrue(scheduler.remove(cancelled));
+        assertFalse(scheduler.remove(cancelled));
+        assertFalse(scheduler.contains(cancelled));
+
+        BlockUpdateEntry moved = this.copy(rescheduled, 100);
+        assertTrue(scheduler.remove(rescheduled));
+        assertTrue(scheduler.add(moved));
+        assertEquals(2, scheduler.size());
+
+        scheduler.tickTo(20_000);
+        assertEquals(Map.of(moved, 100L, kept, 20_000L), scheduler.ran);
+    }
+
+    @DisplayName("Updates are cancelled by position and by chunk")
+    @Test
+    void testRemovePositionAndChunk() {
+        RecordingScheduler scheduler = new RecordingScheduler(0);
+        BlockUpdateEntry water = this.entry(400);
+        BlockUpdateEntry still = new BlockUpdateEntry(water.pos, block(water.pos, BlockStates.WATER), 500, 0);
+        BlockUpdateEntry other = this.entry(600);
+        Vector3i farPos = Vector3i.from(40, 64, 40);
+        BlockUpdateEntry far = new BlockUpdateEntry(farPos, block(farPos, BlockStates.FLOWING_WATER), 700, 0);
+        scheduler.add(water);
+        scheduler.add(still);
+        scheduler.add(other);
+        scheduler.add(far);
+
+        assertTrue(scheduler.remove(Vector4i.from(water.pos.getX(), water.pos.getY(), water.pos.getZ(), 0)));
+        assertFalse(scheduler.contains(water));
+        assertFalse(scheduler.contains(still));
+        assertEquals(1, scheduler.getPendingBlockUpdates(0, 0).size());
+
+        assertEquals(1, scheduler.removeChunk(0, 0));
+        assertTrue(scheduler.getPendingBlockUpdates(0, 0).isEmpty());
+
+        scheduler.tickTo(1000);
+        assertEquals(Map.of(far, 700L), scheduler.ran);
+    }
+
+    private BlockUpdateEntry entry(long tick) {
+        int index = this.nextIndex++;
+        Vector3i pos = Vector3i.from(index & 0xf, 64, index >> 4 & 0xf);
+        return new BlockUpdateEntry(pos, block(pos, BlockStates.FLOWING_WATER), tick, 0);
+    }
+
+    private BlockUpdateEntry copy(BlockUpdateEntry entry, long tick) {
+        return new BlockUpdateEntry(entry.pos, entry.block, tick, entry.priority);
+    }
+
+    private static CloudBlock block(Vector3i pos, BlockState state) {
+        return new CloudBlock(null, pos, new BlockState[]{state, BlockStates.AIR});
+    }
+
+    /**
+     * Records the tick updates run at instead of running them, which needs a level.
+     */
+    private static final class RecordingScheduler extends BlockUpdateScheduler {
+        private final Map<BlockUpdateEntry, Long> ran = new HashMap<>();
+        private final List<BlockUpdateEntry> order = new ArrayList<>();
+        private long tick;
+
+        private RecordingScheduler(long currentTick) {
+            super(null, currentTick);
+            this.tick = currentTick;
+        }
+
+        private void tickTo(long target) {
+            while (this.tick < target) {
+                this.tick(this.tick + 1);
+            }
+        }
+
+        @Override
+        public synchronized void tick(long currentTick) {
+            this.tick = currentTick;
+            super.tick(currentTick);
+        }
+
+        @Override
+        void update(BlockUpdateEntry entry) {
+            assertNull(this.ran.put(entry, this.tick), "update ran twice");
+            this.order.add(entry);
+        }
+    }
+}